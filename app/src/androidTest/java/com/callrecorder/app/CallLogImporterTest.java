@@ -0,0 +1,166 @@
+package com.callrecorder.app.calllog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.provider.CallLog;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.callrecorder.app.database.AppDatabase;
+import com.callrecorder.app.models.Recording;
+import com.callrecorder.app.models.RecordingDetails;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Reconciles synthetic call log rows against recordings in an in-memory database,
+ * over one or more runs.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CallLogImporterTest {
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long HOUR_MILLIS = 60 * 60_000;
+    // Well before the save grace period, so unmatched rows never hold the cursor
+    private static final long CALL_DATE = NOW - 24 * HOUR_MILLIS;
+    private static final String NUMBER = "+15551234567";
+
+    private AppDatabase database;
+    private CallLogImporter importer;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        importer = new CallLogImporter(context, database);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void correctsMatchedRecordingAndMarksItDirty() {
+        // Recorded as incoming, saved a few seconds after the outgoing call ended
+        long id = insertRecording(1, CALL_DATE + 65_000, 64_000);
+
+        assertEquals(1, importer.reconcile(Collections.singletonList(
+                call(7, NUMBER, CallLog.Calls.OUTGOING_TYPE, CALL_DATE, 60_000)), 0, NOW));
+
+        RecordingDetails recording = database.recordingDao().getRecordingById(id);
+        assertEquals(2, recording.getCallType());
+        assertEquals(60_000, recording.getDuration());
+        assertEquals(NUMBER, recording.getPhoneNumber());
+        assertEquals(Long.valueOf(7), recording.getCallLogId());
+        assertTrue(recording.isDirty());
+        assertEquals(Long.valueOf(7), database.syncDao().getCursor("call_log"));
+    }
+
+    @Test
+    public void callThatNeverConnectedKeepsRecordedDuration() {
+        long id = insertRecording(2, CALL_DATE + 20_000, 15_000);
+
+        importer.reconcile(Collections.singletonList(
+                call(1, NUMBER, CallLog.Calls.OUTGOING_TYPE, CALL_DATE, 0)), 0, NOW);
+
+        assertEquals(15_000, database.recordingDao().getRecordingById(id).getDuration());
+    }
+
+    @Test
+    public void recordingMatchedInEarlierRunIsNotMatchedAgain() {
+        long first = insertRecording(1, CALL_DATE + 62_000, 60_000);
+        importer.reconcile(Collections.singletonList(
+                call(1, NUMBER, CallLog.Calls.INCOMING_TYPE, CALL_DATE, 60_000)), 0, NOW);
+
+        // A later row whose window still covers the matched recording
+        assertEquals(0, importer.reconcile(Collections.singletonList(
+                call(2, "+15559876543", CallLog.Calls.OUTGOING_TYPE, CALL_DATE + 5_000, 55_000)), 1, NOW));
+
+        RecordingDetails recording = database.recordingDao().getRecordingById(first);
+        assertEquals(1, recording.getCallType());
+        assertEquals(NUMBER, recording.getPhoneNumber());
+        assertEquals(Long.valueOf(1), recording.getCallLogId());
+        assertEquals(Long.valueOf(2), database.syncDao().getCursor("call_log"));
+    }
+
+    @Test
+    public void laterRunMatchesOnlyUnmatchedRecordings() {
+        long first = insertRecording(1, CALL_DATE + 62_000, 60_000);
+        importer.reconcile(Collections.singletonList(
+                call(1, NUMBER, CallLog.Calls.INCOMING_TYPE, CALL_DATE, 60_000)), 0, NOW);
+        long second = insertRecording(1, CALL_DATE + 70_000, 5_000);
+
+        // The first recording is closer to this call's end, but already taken
+        assertEquals(1, importer.reconcile(Collections.singletonList(
+                call(2, NUMBER, CallLog.Calls.OUTGOING_TYPE, CALL_DATE + 5_000, 55_000)), 1, NOW));
+
+        assertEquals(Long.valueOf(1), database.recordingDao().getRecordingById(first).getCallLogId());
+        assertEquals(Long.valueOf(2), database.recordingDao().getRecordingById(second).getCallLogId());
+    }
+
+    @Test
+    public void eachRecordingGoesToClosestCall() {
+        long early = insertRecording(1, CALL_DATE + 31_000, 30_000);
+        long late = insertRecording(1, CALL_DATE + 42_000, 40_000);
+
+        // Both recordings fall inside both calls' windows
+        assertEquals(2, importer.reconcile(Arrays.asList(
+                call(1, NUMBER, CallLog.Calls.OUTGOING_TYPE, CALL_DATE, 40_000),
+                call(2, NUMBER, CallLog.Calls.INCOMING_TYPE, CALL_DATE, 30_000)), 0, NOW));
+
+        assertEquals(Long.valueOf(2), database.recordingDao().getRecordingById(early).getCallLogId());
+        assertEquals(Long.valueOf(1), database.recordingDao().getRecordingById(late).getCallLogId());
+    }
+
+    @Test
+    public void recentCallWithoutRecordingHoldsCursor() {
+        insertRecording(1, CALL_DATE + 62_000, 60_000);
+
+        importer.reconcile(Arrays.asList(
+                call(1, NUMBER, CallLog.Calls.INCOMING_TYPE, CALL_DATE, 60_000),
+                call(2, NUMBER, CallLog.Calls.INCOMING_TYPE, CALL_DATE + HOUR_MILLIS, 10_000),
+                call(3, NUMBER, CallLog.Calls.INCOMING_TYPE, NOW - 60_000, 30_000),
+                call(4, NUMBER, CallLog.Calls.INCOMING_TYPE, NOW - 20_000, 10_000)), 0, NOW);
+
+        // Row 2 is old enough to give up on; row 3 may still be saving
+        assertEquals(Long.valueOf(2), database.syncDao().getCursor("call_log"));
+    }
+
+    @Test
+    public void unmatchedRecordingIsLeftClean() {
+        long id = insertRecording(1, CALL_DATE + 10 * HOUR_MILLIS, 60_000);
+
+        assertEquals(0, importer.reconcile(Collections.singletonList(
+                call(1, NUMBER, CallLog.Calls.OUTGOING_TYPE, CALL_DATE, 60_000)), 0, NOW));
+
+        RecordingDetails recording = database.recordingDao().getRecordingById(id);
+        assertNull(recording.getCallLogId());
+        assertFalse(recording.isDirty());
+    }
+
+    // Inserted clean, as after a sync, so the test sees whether the importer dirties it
+    private long insertRecording(int callType, long date, long duration) {
+        Recording recording = new Recording(0, null, callType, "/recordings/" + date + ".m4a",
+                duration, date, false, null, 1024, "aac");
+        recording.setDirty(false);
+        return database.recordingDao().insert(recording);
+    }
+
+    private static CallLogImporter.CallEntry call(long id, String number, int type, long date, long durationMillis) {
+        return new CallLogImporter.CallEntry(id, number, type, date, durationMillis);
+    }
+}
@@ -0,0 +1,251 @@
+package com.callrecorder.app.database;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.SupportSQLiteStatement;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.callrecorder.app.models.RecordingQuery;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+/**
+ * Migrates a large version 1 archive to the current schema and checks the data and
+ * the rollups that come out. Version 1 predates schema export, so it is created from
+ * its SQL here; Room validates the result against the exported current schema.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseMigrationTest {
+    private static final String TEST_DB = "migration-test";
+    private static final int LATEST_VERSION = 13;
+    private static final int RECORDING_COUNT = 20000;
+    private static final int NUMBER_COUNT = 500;
+    private static final int FORMAT_COUNT = 5;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(),
+            AppDatabase.class.getCanonicalName(),
+            new FrameworkSQLiteOpenHelperFactory());
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void migrateLargeArchiveFromVersion1() {
+        createVersion1Database();
+
+        SupportSQLiteDatabase db = helper.runMigrationsAndValidate(TEST_DB, LATEST_VERSION, true,
+                DatabaseMigrations.ALL);
+
+        assertEquals(RECORDING_COUNT, queryLong(db, "SELECT COUNT(*) FROM recordings"));
+        // Every number appears in five formats, international and national, that all
+        // end up in the same contact; named numbers keep their name through the merge
+        assertEquals(NUMBER_COUNT, queryLong(db, "SELECT COUNT(*) FROM contacts"));
+        assertEquals(0, queryLong(db, "SELECT COUNT(*) FROM contacts " +
+                "WHERE contactName IS NULL AND CAST(normalizedNumber AS INTEGER) % 2 = 0"));
+        assertEquals(0, queryLong(db, "SELECT COUNT(*) FROM recordings r " +
+                "WHERE r.id % 10 != 0 AND r.contactId IS NULL"));
+        assertEquals(RECORDING_COUNT / 10, queryLong(db,
+                "SELECT COUNT(*) FROM recordings WHERE contactId IS NULL"));
+        assertEquals(0, queryLong(db, "SELECT COUNT(*) FROM recordings WHERE codec IS NULL"));
+
+        // Sync columns: a distinct id per row, and every row waiting for its first upload
+        assertEquals(RECORDING_COUNT, queryLong(db, "SELECT COUNT(DISTINCT syncId) FROM recordings"));
+        assertEquals(RECORDING_COUNT, queryLong(db, "SELECT COUNT(*) FROM recordings WHERE dirty = 1"));
+        assertEquals(0, queryLong(db, "SELECT COUNT(*) FROM recordings WHERE day IS NULL"));
+        assertEquals(0, queryLong(db, "SELECT COUNT(*) FROM recordings WHERE callLogId IS NOT NULL"));
+
+        assertRollupsMatch(db);
+    }
+
+    @Test
+    public void numbersInAnyFormatShareOneContact() {
+        createVersion1Database();
+        helper.runMigrationsAndValidate(TEST_DB, LATEST_VERSION, true, DatabaseMigrations.ALL);
+        AppDatabase database = Room.databaseBuilder(context, AppDatabase.class, TEST_DB)
+                .addMigrations(DatabaseMigrations.ALL)
+                .allowMainThreadQueries()
+                .build();
+        helper.closeWhenFinished(database);
+        ContactDao contactDao = database.contactDao();
+
+        // A seeded number finds the contact the migration merged its formats into
+        long seeded = contactDao.getOrCreateContactId(formatNumber(7, 0), null);
+        for (int style = 1; style < FORMAT_COUNT; style++) {
+            assertEquals(seeded, (long) contactDao.getOrCreateContactId(formatNumber(7, style), null));
+        }
+
+        // A new number creates one contact whichever format it arrives in
+        long added = contactDao.getOrCreateContactId("+966501234567", null);
+        assertEquals(added, (long) contactDao.getOrCreateContactId("00966501234567", null));
+        assertEquals(added, (long) contactDao.getOrCreateContactId("0501234567", null));
+        assertEquals(NUMBER_COUNT + 1, queryLong(database.getOpenHelper().getReadableDatabase(),
+                "SELECT COUNT(*) FROM contacts"));
+    }
+
+    @Test
+    public void triggersKeepRollupsAfterMigration() {
+        createVersion1Database();
+        SupportSQLiteDatabase db = helper.runMigrationsAndValidate(TEST_DB, LATEST_VERSION, true,
+                DatabaseMigrations.ALL);
+
+        db.execSQL("INSERT INTO recordings (contactId, callType, filePath, duration, date, " +
+                "isStarred, fileSize, codec, syncId) " +
+                "SELECT contactId, 2, '/new.aac', 60000, 1700000000000, 0, 0, 'aac_adts', 'new' " +
+                "FROM recordings WHERE id = 1");
+        db.execSQL("UPDATE recordings SET duration = duration + 1000 WHERE id % 7 = 0");
+        db.execSQL("DELETE FROM recordings WHERE id % 5 = 0");
+
+        assertRollupsMatch(db);
+    }
+
+    @Test
+    public void rollupsFollowStoredDayNotCurrentTimeZone() {
+        createVersion1Database();
+        SupportSQLiteDatabase db = helper.runMigrationsAndValidate(TEST_DB, LATEST_VERSION, true,
+                DatabaseMigrations.ALL);
+
+        // A day that no time zone gives for this date, as if recorded far away
+        db.execSQL("INSERT INTO recordings (contactId, callType, filePath, duration, date, " +
+                "isStarred, fileSize, codec, syncId, day) " +
+                "VALUES (NULL, 1, '/away.aac', 30000, 1700000000000, 0, 0, 'aac_adts', 'away', '1999-12-31')");
+        assertEquals(1, queryLong(db, "SELECT callCount FROM daily_stats WHERE day = '1999-12-31'"));
+        // The list sorts on the same stored day, so the row is last, under the day that counts it
+        Cursor list = db.query(RecordingListQuery.build(RecordingQuery.DEFAULT));
+        try {
+            list.moveToLast();
+            assertEquals(queryLong(db, "SELECT id FROM recordings WHERE syncId = 'away'"), list.getLong(0));
+        } finally {
+            list.close();
+        }
+
+        db.execSQL("UPDATE recordings SET duration = 45000 WHERE syncId = 'away'");
+        assertEquals(45000, queryLong(db, "SELECT totalDuration FROM daily_stats WHERE day = '1999-12-31'"));
+
+        db.execSQL("DELETE FROM recordings WHERE syncId = 'away'");
+        assertEquals(0, queryLong(db, "SELECT COUNT(*) FROM daily_stats WHERE day = '1999-12-31'"));
+        assertRollupsMatch(db);
+    }
+
+    private void assertRollupsMatch(SupportSQLiteDatabase db) {
+        long recordings = queryLong(db, "SELECT COUNT(*) FROM recordings");
+        assertEquals(recordings, queryLong(db, "SELECT SUM(callCount) FROM contact_stats"));
+        assertEquals(recordings, queryLong(db, "SELECT SUM(callCount) FROM daily_stats"));
+        assertEquals(0, queryLong(db, CallStatsTriggers.COUNT_CONTACT_STATS_MISMATCHES));
+        assertEquals(0, queryLong(db, CallStatsTriggers.COUNT_DAILY_STATS_MISMATCHES));
+        assertEquals(0, queryLong(db, "SELECT COUNT(*) FROM contact_stats WHERE lastCallDate = 0"));
+    }
+
+    private void createVersion1Database() {
+        SupportSQLiteOpenHelper.Configuration configuration = SupportSQLiteOpenHelper.Configuration
+                .builder(context)
+                .name(TEST_DB)
+                .callback(new SupportSQLiteOpenHelper.Callback(1) {
+                    @Override
+                    public void onCreate(@NonNull SupportSQLiteDatabase db) {
+                        db.execSQL("CREATE TABLE IF NOT EXISTS recordings (" +
+                                "id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, phoneNumber TEXT, " +
+                                "contactName TEXT, callType INTEGER NOT NULL, filePath TEXT, " +
+                                "duration INTEGER NOT NULL, date INTEGER NOT NULL, " +
+                                "isStarred INTEGER NOT NULL, notes TEXT)");
+                    }
+
+                    @Override
+                    public void onUpgrade(@NonNull SupportSQLiteDatabase db, int oldVersion, int newVersion) {
+                    }
+                })
+                .build();
+        SupportSQLiteOpenHelper openHelper = new FrameworkSQLiteOpenHelperFactory().create(configuration);
+        SupportSQLiteDatabase db = openHelper.getWritableDatabase();
+        try {
+            seed(db);
+        } finally {
+            openHelper.close();
+        }
+    }
+
+    // Two years of calls; every tenth has no number
+    private static void seed(SupportSQLiteDatabase db) {
+        String[] extensions = {".aac", ".3gp", ".mp4"};
+        long start = 1640995200000L; // 2022-01-01 UTC
+        Random random = new Random(31);
+        SupportSQLiteStatement insert = db.compileStatement("INSERT INTO recordings (phoneNumber, " +
+                "contactName, callType, filePath, duration, date, isStarred, notes) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+        db.beginTransaction();
+        try {
+            for (int i = 1; i <= RECORDING_COUNT; i++) {
+                int number = random.nextInt(NUMBER_COUNT);
+                if (i % 10 == 0) {
+                    insert.bindNull(1);
+                } else {
+                    insert.bindString(1, formatNumber(number, i % FORMAT_COUNT));
+                }
+                if (number % 2 == 0) {
+                    insert.bindString(2, "Contact " + number);
+                } else {
+                    insert.bindNull(2);
+                }
+                insert.bindLong(3, 1 + random.nextInt(2));
+                insert.bindString(4, "/recordings/call_" + i + extensions[i % extensions.length]);
+                insert.bindLong(5, 1000L * (5 + random.nextInt(3600)));
+                insert.bindLong(6, start + (long) (random.nextDouble() * 730 * DAY_MILLIS));
+                insert.bindLong(7, random.nextInt(20) == 0 ? 1 : 0);
+                insert.bindNull(8);
+                insert.executeInsert();
+                insert.clearBindings();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static String formatNumber(int number, int style) {
+        String digits = String.format("%07d", number);
+        switch (style) {
+            case 0:
+                return "+96650" + digits;
+            case 1:
+                return "+966 50 " + digits.substring(0, 3) + " " + digits.substring(3);
+            case 2:
+                return "+966-50-" + digits.substring(0, 3) + "-" + digits.substring(3);
+            case 3:
+                return "0096650" + digits;
+            default:
+                return "050" + digits;
+        }
+    }
+
+    private static long queryLong(SupportSQLiteDatabase db, String sql) {
+        Cursor cursor = db.query(sql);
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.callrecorder.app.transcription;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.os.CancellationSignal;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.callrecorder.app.database.TranscriptDao;
+import com.callrecorder.app.models.RecordingFile;
+import com.callrecorder.app.models.Transcript;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the queue against an engine that holds every job until released. On a device,
+ * because CancellationSignal is only a stub in JVM tests.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TranscriptionQueueTest {
+    private static final long TIMEOUT_SECONDS = 5;
+    // Matches TranscriptionQueue's batch size
+    private static final int BACKFILL_BATCH_SIZE = 50;
+    private static final long USER_RECORDING_ID = 1000;
+
+    private final HeldEngine engine = new HeldEngine();
+    private final FakeTranscriptDao transcriptDao = new FakeTranscriptDao();
+
+    @After
+    public void tearDown() {
+        engine.releaseAll();
+    }
+
+    @Test
+    public void neverRunsMoreThanMaxJobsAtOnce() throws Exception {
+        TranscriptionQueue queue = new TranscriptionQueue(transcriptDao, engine, 2);
+        for (long id = 1; id <= 6; id++) {
+            queue.enqueue(id, path(id), TranscriptionQueue.PRIORITY_NEW);
+        }
+
+        engine.awaitStarted();
+        engine.awaitStarted();
+        assertNull(engine.started.poll(200, TimeUnit.MILLISECONDS));
+        engine.releaseAll();
+
+        transcriptDao.awaitInserted(6);
+        assertEquals(2, engine.maxRunning.get());
+    }
+
+    @Test
+    public void runsHighestPriorityFirstThenInOrder() throws Exception {
+        TranscriptionQueue queue = new TranscriptionQueue(transcriptDao, engine, 1);
+        queue.enqueue(1, path(1), TranscriptionQueue.PRIORITY_NEW);
+        assertEquals(1, engine.awaitStarted());
+
+        queue.enqueue(2, path(2), TranscriptionQueue.PRIORITY_BACKFILL);
+        queue.enqueue(3, path(3), TranscriptionQueue.PRIORITY_NEW);
+        queue.enqueue(4, path(4), TranscriptionQueue.PRIORITY_USER);
+        queue.enqueue(5, path(5), TranscriptionQueue.PRIORITY_NEW);
+        engine.releaseAll();
+
+        assertEquals(Arrays.asList(4L, 3L, 5L, 2L), Arrays.asList(
+                engine.awaitStarted(), engine.awaitStarted(), engine.awaitStarted(), engine.awaitStarted()));
+    }
+
+    @Test
+    public void enqueueRaisesPriorityOfWaitingJob() throws Exception {
+        TranscriptionQueue queue = new TranscriptionQueue(transcriptDao, engine, 1);
+        queue.enqueue(1, path(1), TranscriptionQueue.PRIORITY_NEW);
+        engine.awaitStarted();
+
+        queue.enqueue(2, path(2), TranscriptionQueue.PRIORITY_NEW);
+        queue.enqueue(3, path(3), TranscriptionQueue.PRIORITY_NEW);
+        queue.enqueue(3, path(3), TranscriptionQueue.PRIORITY_USER);
+        engine.releaseAll();
+
+        assertEquals(3, engine.awaitStarted());
+        assertEquals(2, engine.awaitStarted());
+        transcriptDao.awaitInserted(3);
+        assertNull(engine.started.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void cancelledWaitingJobNeverRuns() throws Exception {
+        TranscriptionQueue queue = new TranscriptionQueue(transcriptDao, engine, 1);
+        queue.enqueue(1, path(1), TranscriptionQueue.PRIORITY_NEW);
+        engine.awaitStarted();
+        queue.enqueue(2, path(2), TranscriptionQueue.PRIORITY_NEW);
+
+        queue.cancel(2);
+        engine.releaseAll();
+
+        transcriptDao.awaitInserted(1);
+        assertNull(engine.started.poll(200, TimeUnit.MILLISECONDS));
+        assertFalse(transcriptDao.transcripts.containsKey(2L));
+    }
+
+    @Test
+    public void cancelledRunningJobStopsWithoutTranscript() throws Exception {
+        TranscriptionQueue queue = new TranscriptionQueue(transcriptDao, engine, 1);
+        queue.enqueue(1, path(1), TranscriptionQueue.PRIORITY_NEW);
+        engine.awaitStarted();
+
+        queue.cancel(1);
+        assertTrue(engine.cancelled.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        // The worker is free again for the next job
+        engine.releaseAll();
+        queue.enqueue(2, path(2), TranscriptionQueue.PRIORITY_NEW);
+        transcriptDao.awaitInserted(1);
+        assertTrue(transcriptDao.transcripts.containsKey(2L));
+        assertFalse(transcriptDao.transcripts.containsKey(1L));
+    }
+
+    @Test
+    public void backfillLoadsBatchesUntilEverythingIsTranscribed() throws Exception {
+        transcriptDao.addRecordings(1, BACKFILL_BATCH_SIZE * 2 + 10);
+        TranscriptionQueue queue = new TranscriptionQueue(transcriptDao, engine, 2);
+        engine.releaseAll();
+
+        queue.startBackfill();
+
+        transcriptDao.awaitInserted(BACKFILL_BATCH_SIZE * 2 + 10);
+        assertEquals(Arrays.asList(Long.MAX_VALUE, 61L, 11L, 1L), transcriptDao.awaitQueries(4));
+    }
+
+    @Test
+    public void cancellingLastWaitingBackfillJobLoadsNextBatch() throws Exception {
+        transcriptDao.addRecordings(1, BACKFILL_BATCH_SIZE + 1);
+        TranscriptionQueue queue = new TranscriptionQueue(transcriptDao, engine, 1);
+        // Holds the only worker, so no finishing job can load the next batch
+        queue.enqueue(USER_RECORDING_ID, path(USER_RECORDING_ID), TranscriptionQueue.PRIORITY_USER);
+        assertEquals(USER_RECORDING_ID, engine.awaitStarted());
+
+        queue.startBackfill();
+        assertEquals(Long.valueOf(Long.MAX_VALUE), transcriptDao.queries.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        for (long id = 2; id <= BACKFILL_BATCH_SIZE + 1; id++) {
+            queue.cancel(id);
+        }
+
+        // The next batch starts loading while the user job is still running
+        assertEquals(Long.valueOf(2), transcriptDao.queries.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        engine.releaseAll();
+        transcriptDao.awaitInserted(2);
+        assertTrue(transcriptDao.transcripts.containsKey(1L));
+        assertTrue(transcriptDao.transcripts.containsKey(USER_RECORDING_ID));
+    }
+
+    private static String path(long recordingId) {
+        return "/recordings/" + recordingId + ".m4a";
+    }
+
+    private static long recordingId(File file) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(0, name.indexOf('.')));
+    }
+
+    // Holds each job until releaseAll(), stopping early when it is cancelled
+    private static class HeldEngine implements TranscriptionEngine {
+        final BlockingQueue<Long> started = new LinkedBlockingQueue<>();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        private final AtomicInteger running = new AtomicInteger();
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        @Override
+        public String getName() {
+            return "held";
+        }
+
+        @Override
+        public String transcribe(File file, CancellationSignal signal) {
+            long id = recordingId(file);
+            int now = running.incrementAndGet();
+            maxRunning.accumulateAndGet(now, Math::max);
+            started.add(id);
+            try {
+                while (!released.await(10, TimeUnit.MILLISECONDS)) {
+                    if (signal.isCanceled()) {
+                        cancelled.countDown();
+                        signal.throwIfCanceled();
+                    }
+                }
+                return "transcript " + id;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        void releaseAll() {
+            released.countDown();
+        }
+
+        long awaitStarted() throws InterruptedException {
+            Long id = started.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertNotNull("No job started", id);
+            return id;
+        }
+    }
+
+    private static class FakeTranscriptDao implements TranscriptDao {
+        final Map<Long, Transcript> transcripts = new ConcurrentHashMap<>();
+        // beforeId of each backfill query, in order
+        final BlockingQueue<Long> queries = new LinkedBlockingQueue<>();
+        private final List<Long> recordingIds = new ArrayList<>();
+        private final BlockingQueue<Long> inserted = new LinkedBlockingQueue<>();
+
+        synchronized void addRecordings(long firstId, long lastId) {
+            for (long id = firstId; id <= lastId; id++) {
+                recordingIds.add(id);
+            }
+        }
+
+        @Override
+        public void insert(Transcript transcript) {
+            transcripts.put(transcript.getRecordingId(), transcript);
+            inserted.add(transcript.getRecordingId());
+        }
+
+        @Override
+        public Transcript getTranscript(long recordingId) {
+            return transcripts.get(recordingId);
+        }
+
+        @Override
+        public synchronized List<RecordingFile> getUntranscribedBefore(long beforeId, int limit) {
+            queries.add(beforeId);
+            List<RecordingFile> batch = new ArrayList<>();
+            for (int i = recordingIds.size() - 1; i >= 0 && batch.size() < limit; i--) {
+                long id = recordingIds.get(i);
+                if (id < beforeId && !transcripts.containsKey(id)) {
+                    batch.add(new RecordingFile(id, path(id)));
+                }
+            }
+            return batch;
+        }
+
+        void awaitInserted(int count) throws InterruptedException {
+            for (int i = 0; i < count; i++) {
+                assertNotNull("Only " + i + " transcripts stored",
+                        inserted.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            }
+        }
+
+        List<Long> awaitQueries(int count) throws InterruptedException {
+            List<Long> result = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                Long beforeId = queries.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                assertNotNull("Only " + i + " backfill queries", beforeId);
+                result.add(beforeId);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.callrecorder.app.debug;
+
+import android.content.Context;
+import android.content.Intent;
+import android.telephony.TelephonyManager;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import com.callrecorder.app.services.CallRecorderService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a script of telephony call states into CallRecorderService, as if
+ * the calls were really happening. A script line is
+ * "offsetMillis STATE [number]", with STATE one of IDLE, RINGING or OFFHOOK;
+ * blank lines and lines starting with # are skipped.
+ */
+public class CallEventReplayer {
+    private static final String TAG = "CallEventReplayer";
+
+    public static class Event {
+        public final long offsetMillis;
+        public final int state;
+        public final String phoneNumber;
+
+        public Event(long offsetMillis, int state, String phoneNumber) {
+            this.offsetMillis = offsetMillis;
+            this.state = state;
+            this.phoneNumber = phoneNumber;
+        }
+    }
+
+    private final Context context;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    public CallEventReplayer(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Send each event to the service at its offset
+     * @param speed Playback rate; 2 replays an hour of calls in half an hour
+     */
+    public void replay(List<Event> events, double speed) {
+        for (final Event event : events) {
+            long delay = (long) (event.offsetMillis / speed);
+            scheduler.schedule(() -> send(event), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop events that have not been sent yet
+     */
+    public void cancel() {
+        scheduler.shutdownNow();
+    }
+
+    private void send(Event event) {
+        Log.d(TAG, "Replaying call state " + event.state + " at " + event.offsetMillis + " ms");
+        Intent intent = new Intent(context, CallRecorderService.class)
+                .setAction(CallRecorderService.ACTION_SIMULATE_CALL_STATE)
+                .putExtra(CallRecorderService.EXTRA_CALL_STATE, event.state)
+                .putExtra(CallRecorderService.EXTRA_PHONE_NUMBER, event.phoneNumber);
+        ContextCompat.startForegroundService(context, intent);
+    }
+
+    /**
+     * @throws IllegalArgumentException If a line cannot be read
+     */
+    public static List<Event> parse(String script) {
+        List<Event> events = new ArrayList<>();
+        String[] lines = script.split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            if (fields.length < 2) {
+                throw new IllegalArgumentException("Line " + (i + 1) + ": expected offset and state");
+            }
+            try {
+                events.add(new Event(Long.parseLong(fields[0]), parseState(fields[1]),
+                        fields.length > 2 ? fields[2] : null));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Line " + (i + 1) + ": bad offset " + fields[0], e);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Build a script of back-to-back calls. The same seed gives the same script.
+     * @param calls Number of calls
+     * @param meanGapMillis Average idle time between calls
+     * @param meanDurationMillis Average time a call stays off hook
+     */
+    public static String buildScript(long seed, int calls, long meanGapMillis, long meanDurationMillis) {
+        Random random = new Random(seed);
+        StringBuilder script = new StringBuilder();
+        long offset = 0;
+        for (int i = 0; i < calls; i++) {
+            offset += (long) (meanGapMillis * (0.5 + random.nextDouble()));
+            String number = String.format(Locale.US, "+96650%07d", random.nextInt(1000));
+            if (random.nextBoolean()) {
+                appendEvent(script, offset, "RINGING", number);
+                offset += 2000 + random.nextInt(8000);
+                appendEvent(script, offset, "OFFHOOK", number);
+            } else {
+                appendEvent(script, offset, "OFFHOOK", number);
+            }
+            offset += (long) (meanDurationMillis * (0.5 + random.nextDouble()));
+            appendEvent(script, offset, "IDLE", null);
+        }
+        return script.toString();
+    }
+
+    private static void appendEvent(StringBuilder script, long offset, String state, String number) {
+        script.append(offset).append(' ').append(state);
+        if (number != null) {
+            script.append(' ').append(number);
+        }
+        script.append('\n');
+    }
+
+    private static int parseState(String state) {
+        switch (state.toUpperCase(Locale.US)) {
+            case "IDLE":
+                return TelephonyManager.CALL_STATE_IDLE;
+            case "RINGING":
+                return TelephonyManager.CALL_STATE_RINGING;
+            case "OFFHOOK":
+                return TelephonyManager.CALL_STATE_OFFHOOK;
+            default:
+                throw new IllegalArgumentException("Unknown call state " + state);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.callrecorder.app.debug;
+
+import android.content.Intent;
+import android.graphics.Typeface;
+import android.os.Bundle;
+import android.widget.Button;
+import android.widget.LinearLayout;
+import android.widget.ScrollView;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.callrecorder.app.BuildConfig;
+import com.callrecorder.app.CallRecorderApp;
+import com.callrecorder.app.energy.EnergyModel;
+import com.callrecorder.app.energy.EnergyReport;
+import com.callrecorder.app.energy.PowerUsage;
+
+import java.util.List;
+
+/**
+ * Energy attributed to each call and to idle listening since the process started.
+ * Debug builds only:
+ *
+ * adb shell am start -n com.callrecorder.app/.debug.EnergyDebugActivity
+ */
+public class EnergyDebugActivity extends AppCompatActivity {
+    private TextView summaryView;
+    private TextView sessionsView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        if (!BuildConfig.DEBUG) {
+            finish();
+            return;
+        }
+        setTitle("استهلاك الطاقة");
+
+        // A plain view tree, so the screen adds no resources to release builds
+        int padding = Math.round(16 * getResources().getDisplayMetrics().density);
+        LinearLayout content = new LinearLayout(this);
+        content.setOrientation(LinearLayout.VERTICAL);
+        content.setPadding(padding, padding, padding, padding);
+
+        Button refreshButton = new Button(this);
+        refreshButton.setText("تحديث");
+        refreshButton.setOnClickListener(v -> refresh());
+        content.addView(refreshButton);
+
+        Button exportButton = new Button(this);
+        exportButton.setText("تصدير CSV");
+        exportButton.setOnClickListener(v -> export());
+        content.addView(exportButton);
+
+        summaryView = new TextView(this);
+        summaryView.setPadding(0, padding, 0, padding);
+        content.addView(summaryView);
+
+        sessionsView = new TextView(this);
+        sessionsView.setTypeface(Typeface.MONOSPACE);
+        content.addView(sessionsView);
+
+        ScrollView scrollView = new ScrollView(this);
+        scrollView.addView(content);
+        setContentView(scrollView);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (BuildConfig.DEBUG) {
+            refresh();
+        }
+    }
+
+    private void refresh() {
+        List<PowerUsage> usages = CallRecorderApp.getEnergyAccountant().snapshot();
+        summaryView.setText(EnergyReport.summary(usages, EnergyModel.DEFAULT));
+        sessionsView.setText(EnergyReport.toCsv(usages, EnergyModel.DEFAULT));
+    }
+
+    private void export() {
+        String csv = EnergyReport.toCsv(CallRecorderApp.getEnergyAccountant().snapshot(), EnergyModel.DEFAULT);
+        Intent intent = new Intent(Intent.ACTION_SEND)
+                .setType("text/csv")
+                .putExtra(Intent.EXTRA_SUBJECT, "energy.csv")
+                .putExtra(Intent.EXTRA_TEXT, csv);
+        startActivity(Intent.createChooser(intent, "تصدير"));
+    }
+}
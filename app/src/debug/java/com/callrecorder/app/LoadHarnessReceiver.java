@@ -0,0 +1,74 @@
+package com.callrecorder.app.debug;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.callrecorder.app.BuildConfig;
+import com.callrecorder.app.CallRecorderApp;
+import com.callrecorder.app.energy.EnergyModel;
+import com.callrecorder.app.energy.EnergyReport;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.Executors;
+
+/**
+ * adb entry point for the load tools; ignored in release builds.
+ *
+ * adb shell am broadcast -n com.callrecorder.app/.debug.LoadHarnessReceiver \
+ *     -a com.callrecorder.app.debug.GENERATE_ARCHIVE --ei count 100000 --el seed 42
+ * adb shell am broadcast -n com.callrecorder.app/.debug.LoadHarnessReceiver \
+ *     -a com.callrecorder.app.debug.REPLAY_CALLS --ei calls 20 --el seed 42 --ef speed 10
+ * adb shell am broadcast -n com.callrecorder.app/.debug.LoadHarnessReceiver \
+ *     -a com.callrecorder.app.debug.EXPORT_ENERGY
+ * adb pull /sdcard/Android/data/com.callrecorder.app/files/energy.csv
+ */
+public class LoadHarnessReceiver extends BroadcastReceiver {
+    private static final String TAG = "LoadHarness";
+    public static final String ACTION_GENERATE_ARCHIVE = "com.callrecorder.app.debug.GENERATE_ARCHIVE";
+    public static final String ACTION_REPLAY_CALLS = "com.callrecorder.app.debug.REPLAY_CALLS";
+    public static final String ACTION_EXPORT_ENERGY = "com.callrecorder.app.debug.EXPORT_ENERGY";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!BuildConfig.DEBUG) {
+            return;
+        }
+        long seed = intent.getLongExtra("seed", 42);
+
+        if (ACTION_GENERATE_ARCHIVE.equals(intent.getAction())) {
+            final int count = intent.getIntExtra("count", 1000);
+            final File directory = new File(
+                    CallRecorderApp.getSettingsManager().getSettings().getStoragePath(), "synthetic");
+            // Not goAsync: a large archive takes longer than a receiver may hold on
+            Executors.newSingleThreadExecutor().execute(() -> {
+                try {
+                    new SyntheticArchiveGenerator(CallRecorderApp.getDatabase(), directory)
+                            .generate(count, seed, System.currentTimeMillis());
+                } catch (IOException | RuntimeException e) {
+                    Log.e(TAG, "Error generating synthetic archive", e);
+                }
+            });
+        } else if (ACTION_REPLAY_CALLS.equals(intent.getAction())) {
+            int calls = intent.getIntExtra("calls", 10);
+            float speed = intent.getFloatExtra("speed", 1f);
+            String script = intent.hasExtra("script") ? intent.getStringExtra("script")
+                    : CallEventReplayer.buildScript(seed, calls, 30_000, 60_000);
+            new CallEventReplayer(context).replay(CallEventReplayer.parse(script), speed);
+        } else if (ACTION_EXPORT_ENERGY.equals(intent.getAction())) {
+            File file = new File(context.getExternalFilesDir(null), "energy.csv");
+            String csv = EnergyReport.toCsv(CallRecorderApp.getEnergyAccountant().snapshot(), EnergyModel.DEFAULT);
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+                writer.write(csv);
+                Log.i(TAG, "Energy accounting written to " + file);
+            } catch (IOException e) {
+                Log.e(TAG, "Error exporting energy accounting", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.callrecorder.app.debug;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.callrecorder.app.database.AppDatabase;
+import com.callrecorder.app.models.Recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills the database and a storage directory with synthetic recordings for
+ * performance work. The same seed and count always give the same archive.
+ * Files are sparse: they have the size a real recording would have but take
+ * almost no disk, so a 100k archive fits on any test device.
+ */
+public class SyntheticArchiveGenerator {
+    private static final String TAG = "SyntheticArchive";
+    private static final int BATCH_SIZE = 1000;
+    private static final int FILES_PER_DIRECTORY = 1000;
+
+    // Shape of the archive, loosely matched to real call logs
+    private static final int RECORDINGS_PER_CONTACT = 20;
+    private static final double NAMED_CONTACT_RATIO = 0.7;
+    private static final double INCOMING_RATIO = 0.55;
+    private static final double STARRED_RATIO = 0.05;
+    private static final long MEDIAN_DURATION_MILLIS = 90_000;
+    private static final double DURATION_SIGMA = 1.0;
+    private static final long MAX_DURATION_MILLIS = TimeUnit.HOURS.toMillis(3);
+    private static final long ARCHIVE_SPAN_MILLIS = TimeUnit.DAYS.toMillis(730);
+
+    public static class Result {
+        public final int recordings;
+        public final int contacts;
+        public final long elapsedMillis;
+
+        Result(int recordings, int contacts, long elapsedMillis) {
+            this.recordings = recordings;
+            this.contacts = contacts;
+            this.elapsedMillis = elapsedMillis;
+        }
+    }
+
+    private final AppDatabase database;
+    private final File directory;
+
+    /**
+     * @param directory Where the placeholder files go; created if missing
+     */
+    public SyntheticArchiveGenerator(AppDatabase database, File directory) {
+        this.database = database;
+        this.directory = directory;
+    }
+
+    /**
+     * Add count recordings. Blocks, so call it from a background thread.
+     * @param count Number of recordings to add
+     * @param seed Seed for every random choice
+     * @param endTime Date of the newest recording; the archive spans two years before it
+     */
+    public Result generate(int count, long seed, long endTime) throws IOException {
+        long started = SystemClock.elapsedRealtime();
+        Random random = new Random(seed);
+
+        int contactCount = Math.max(1, count / RECORDINGS_PER_CONTACT);
+        Long[] contactIds = createContacts(contactCount, random);
+
+        long startTime = endTime - ARCHIVE_SPAN_MILLIS;
+        List<Recording> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < count; i++) {
+            // Cubing a uniform value skews calls towards a few frequent contacts
+            double u = random.nextDouble();
+            Long contactId = contactIds[(int) (contactCount * u * u * u)];
+            int callType = random.nextDouble() < INCOMING_RATIO ? 1 : 2;
+            long date = startTime + ARCHIVE_SPAN_MILLIS * i / count + random.nextInt(60_000);
+            long duration = Math.min(MAX_DURATION_MILLIS, Math.max(1000,
+                    (long) (MEDIAN_DURATION_MILLIS * Math.exp(DURATION_SIGMA * random.nextGaussian()))));
+            boolean starred = random.nextDouble() < STARRED_RATIO;
+
+            String codec;
+            String extension;
+            long bytesPerSecond;
+            double format = random.nextDouble();
+            if (format < 0.6) {
+                codec = Recording.CODEC_AAC_MP4;
+                extension = ".mp4";
+                bytesPerSecond = 96000 / 8;
+            } else if (format < 0.85) {
+                codec = Recording.CODEC_AAC_ADTS;
+                extension = ".aac";
+                bytesPerSecond = 192000 / 8;
+            } else {
+                codec = Recording.CODEC_AMR_NB;
+                extension = ".3gp";
+                bytesPerSecond = 12200 / 8;
+            }
+            long fileSize = duration * bytesPerSecond / 1000;
+
+            File file = placeholderFile(i, seed, extension);
+            createSparseFile(file, fileSize);
+
+            Recording recording = new Recording(0, contactId, callType, file.getAbsolutePath(), duration,
+                    date, starred, null, fileSize, codec);
+            // Deterministic sync id, and kept out of sync
+            recording.setSyncId(new UUID(seed, i).toString());
+            recording.setDirty(false);
+            batch.add(recording);
+            if (batch.size() == BATCH_SIZE) {
+                database.recordingDao().insertAll(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            database.recordingDao().insertAll(batch);
+        }
+
+        long elapsed = SystemClock.elapsedRealtime() - started;
+        Log.i(TAG, "Generated " + count + " recordings for " + contactCount + " contacts in " + elapsed + " ms");
+        return new Result(count, contactCount, elapsed);
+    }
+
+    private Long[] createContacts(final int contactCount, final Random random) {
+        final Long[] ids = new Long[contactCount];
+        database.runInTransaction(() -> {
+            for (int i = 0; i < contactCount; i++) {
+                // Distinct, stable numbers in one national range
+                String number = String.format(Locale.US, "+96650%07d", i);
+                String name = random.nextDouble() < NAMED_CONTACT_RATIO
+                        ? "جهة اتصال " + (i + 1) : null;
+                ids[i] = database.contactDao().getOrCreateContactId(number, name);
+            }
+        });
+        return ids;
+    }
+
+    private File placeholderFile(int index, long seed, String extension) {
+        File subdirectory = new File(directory, String.format(Locale.US, "%04d", index / FILES_PER_DIRECTORY));
+        return new File(subdirectory, String.format(Locale.US, "synthetic_%d_%06d%s", seed, index, extension));
+    }
+
+    // Setting the length without writing leaves a hole the filesystem does not store
+    private static void createSparseFile(File file, long size) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(size);
+        } finally {
+            out.close();
+        }
+    }
+}
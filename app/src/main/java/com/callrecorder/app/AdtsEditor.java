@@ -0,0 +1,116 @@
+package com.callrecorder.app.editing;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Cuts and joins ADTS AAC streams (the .aac recordings) at frame boundaries. ADTS
+ * frames carry their own headers, so a clip is the byte range from the first to the
+ * last wanted frame, copied with transferTo. ADTS has no index: finding a frame walks
+ * the headers from the start of the file, reading 7 bytes per ~20 ms frame.
+ */
+final class AdtsEditor {
+    private static final int HEADER_SIZE = 7;
+    private static final int SAMPLES_PER_BLOCK = 1024;
+    private static final int WINDOW_SIZE = 64 * 1024;
+    private static final int[] SAMPLE_RATES = {
+            96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350
+    };
+
+    private AdtsEditor() {
+    }
+
+    static void clip(FileChannel source, long startMillis, long endMillis, FileChannel target) throws IOException {
+        ChannelWindow in = new ChannelWindow(source, WINDOW_SIZE);
+        long size = in.size();
+        int sampleRate = sampleRate(in, 0);
+        // Frame-accurate: from the frame playing at startMillis to the one playing at endMillis
+        long startSample = startMillis * sampleRate / 1000;
+        long endSample = (endMillis * sampleRate + 999) / 1000;
+
+        long startOffset = -1;
+        long endOffset = size;
+        long offset = 0;
+        long sample = 0;
+        while (offset + HEADER_SIZE <= size) {
+            checkSync(in, offset);
+            long frameSamples = (long) ((in.readUnsignedByte(offset + 6) & 0x3) + 1) * SAMPLES_PER_BLOCK;
+            if (startOffset < 0 && sample + frameSamples > startSample) {
+                startOffset = offset;
+            }
+            if (sample >= endSample) {
+                endOffset = offset;
+                break;
+            }
+            long next = offset + frameLength(in, offset);
+            if (next > size) {
+                // A frame cut short when recording stopped
+                break;
+            }
+            sample += frameSamples;
+            offset = next;
+        }
+        endOffset = Math.min(endOffset, offset);
+        if (startOffset < 0 || endOffset <= startOffset) {
+            throw new IllegalArgumentException("Clip " + startMillis + "-" + endMillis + " ms is outside the recording");
+        }
+        transferFully(source, startOffset, endOffset - startOffset, target);
+    }
+
+    /**
+     * @throws IllegalArgumentException If the streams differ in sample rate or channels
+     */
+    static void concat(List<FileChannel> sources, FileChannel target) throws IOException {
+        int config = -1;
+        for (FileChannel source : sources) {
+            ChannelWindow in = new ChannelWindow(source, HEADER_SIZE);
+            checkSync(in, 0);
+            // Profile, sample rate index and channel configuration
+            int sourceConfig = (in.readUnsignedByte(2) << 8 | in.readUnsignedByte(3)) & 0xfdc0;
+            if (config >= 0 && sourceConfig != config) {
+                throw new IllegalArgumentException("Recordings have different AAC formats");
+            }
+            config = sourceConfig;
+        }
+        for (FileChannel source : sources) {
+            transferFully(source, 0, source.size(), target);
+        }
+    }
+
+    private static int sampleRate(ChannelWindow in, long offset) throws IOException {
+        checkSync(in, offset);
+        int index = (in.readUnsignedByte(offset + 2) >> 2) & 0xf;
+        if (index >= SAMPLE_RATES.length) {
+            throw new IOException("Unsupported ADTS sample rate index " + index);
+        }
+        return SAMPLE_RATES[index];
+    }
+
+    private static int frameLength(ChannelWindow in, long offset) throws IOException {
+        int length = ((in.readUnsignedByte(offset + 3) & 0x3) << 11)
+                | (in.readUnsignedByte(offset + 4) << 3)
+                | (in.readUnsignedByte(offset + 5) >> 5);
+        if (length < HEADER_SIZE) {
+            throw new IOException("Corrupt ADTS frame at " + offset);
+        }
+        return length;
+    }
+
+    private static void checkSync(ChannelWindow in, long offset) throws IOException {
+        if (in.readUnsignedByte(offset) != 0xff || (in.readUnsignedByte(offset + 1) & 0xf0) != 0xf0) {
+            throw new IOException("No ADTS frame at " + offset);
+        }
+    }
+
+    static void transferFully(FileChannel source, long position, long count, FileChannel target) throws IOException {
+        long done = 0;
+        while (done < count) {
+            long transferred = source.transferTo(position + done, count - done, target);
+            if (transferred <= 0) {
+                throw new IOException("Source ended at " + (position + done));
+            }
+            done += transferred;
+        }
+    }
+}
@@ -2,19 +2,51 @@ package com.callrecorder.app.database;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import com.callrecorder.app.models.AudioFingerprint;
+import com.callrecorder.app.models.BackupFileEntry;
+import com.callrecorder.app.models.Contact;
+import com.callrecorder.app.models.ContactStats;
+import com.callrecorder.app.models.DailyStats;
+import com.callrecorder.app.models.DuplicateCandidate;
+import com.callrecorder.app.models.FingerprintLandmark;
 import com.callrecorder.app.models.Recording;
+import com.callrecorder.app.models.SyncCursor;
+import com.callrecorder.app.models.Transcript;
+import com.callrecorder.app.models.TranscriptFts;
+import com.callrecorder.app.models.UploadChunk;
+import com.callrecorder.app.models.UploadSession;
 
-@Database(entities = {Recording.class}, version = 1, exportSchema = false)
+@Database(entities = {Recording.class, Contact.class, ContactStats.class, DailyStats.class,
+        BackupFileEntry.class, SyncCursor.class, UploadSession.class, UploadChunk.class,
+        Transcript.class, TranscriptFts.class, AudioFingerprint.class, FingerprintLandmark.class,
+        DuplicateCandidate.class},
+        version = 13, exportSchema = true)
 public abstract class AppDatabase extends RoomDatabase {
     
     private static final String DATABASE_NAME = "call_recorder_database";
     private static volatile AppDatabase INSTANCE;
     
     public abstract RecordingDao recordingDao();
+
+    public abstract ContactDao contactDao();
+
+    public abstract CallStatsDao callStatsDao();
+
+    public abstract BackupDao backupDao();
+
+    public abstract SyncDao syncDao();
+
+    public abstract UploadDao uploadDao();
+
+    public abstract TranscriptDao transcriptDao();
+
+    public abstract FingerprintDao fingerprintDao();
     
     public static AppDatabase getInstance(Context context) {
         if (INSTANCE == null) {
@@ -24,10 +56,20 @@ public abstract class AppDatabase extends RoomDatabase {
                             context.getApplicationContext(),
                             AppDatabase.class,
                             DATABASE_NAME)
+                            .addMigrations(DatabaseMigrations.ALL)
+                            .addCallback(CALLBACK)
                             .build();
                 }
             }
         }
         return INSTANCE;
     }
+
+    // Triggers are not part of Room's schema, so fresh installs create them here
+    private static final Callback CALLBACK = new Callback() {
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            CallStatsTriggers.createTriggers(db);
+        }
+    };
 }
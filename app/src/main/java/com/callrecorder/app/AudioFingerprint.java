@@ -0,0 +1,43 @@
+package com.callrecorder.app.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.PrimaryKey;
+
+/**
+ * Acoustic fingerprint of a recording, one byte per 25 ms frame.
+ * A recording whose audio could not be decoded gets an empty fingerprint,
+ * so the backfill does not try it again.
+ */
+@Entity(tableName = "fingerprints",
+        foreignKeys = @ForeignKey(entity = Recording.class,
+                parentColumns = "id",
+                childColumns = "recordingId",
+                onDelete = ForeignKey.CASCADE))
+public class AudioFingerprint {
+    @PrimaryKey
+    private long recordingId;
+    @NonNull
+    private byte[] frames;
+    private long createdAt;
+
+    public AudioFingerprint(long recordingId, @NonNull byte[] frames, long createdAt) {
+        this.recordingId = recordingId;
+        this.frames = frames;
+        this.createdAt = createdAt;
+    }
+
+    public long getRecordingId() {
+        return recordingId;
+    }
+
+    @NonNull
+    public byte[] getFrames() {
+        return frames;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+}
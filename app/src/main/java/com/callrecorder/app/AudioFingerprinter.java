@@ -0,0 +1,132 @@
+package com.callrecorder.app.fingerprint;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.os.Build;
+
+import com.callrecorder.app.utils.EncryptedMediaDataSource;
+import com.callrecorder.app.utils.EncryptedRecordingFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * Decodes a recording with MediaExtractor and MediaCodec and streams the PCM into a
+ * FingerprintBuilder one output buffer at a time. Encrypted recordings are read
+ * through EncryptedMediaDataSource, so plaintext never reaches disk.
+ */
+public final class AudioFingerprinter {
+    private static final long TIMEOUT_US = 10_000;
+
+    private AudioFingerprinter() {
+    }
+
+    /**
+     * Decode a recording and fingerprint it. Blocks for the length of the decode.
+     * @param file Recording file, plain or encrypted
+     * @return Fingerprint frames
+     */
+    public static byte[] fingerprint(File file) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        EncryptedMediaDataSource dataSource = null;
+        try {
+            if (file.getName().endsWith(EncryptedRecordingFormat.FILE_EXTENSION)) {
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+                    throw new IOException("Encrypted recordings need API 23");
+                }
+                dataSource = new EncryptedMediaDataSource(file);
+                extractor.setDataSource(dataSource);
+            } else {
+                extractor.setDataSource(file.getAbsolutePath());
+            }
+
+            int track = findAudioTrack(extractor);
+            if (track < 0) {
+                throw new IOException("No audio track in " + file.getName());
+            }
+            extractor.selectTrack(track);
+            MediaFormat format = extractor.getTrackFormat(track);
+
+            MediaCodec codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            try {
+                codec.configure(format, null, null, 0);
+                codec.start();
+                return decode(extractor, codec, format);
+            } finally {
+                codec.release();
+            }
+        } finally {
+            extractor.release();
+            if (dataSource != null) {
+                dataSource.close();
+            }
+        }
+    }
+
+    private static int findAudioTrack(MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("audio/")) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] decode(MediaExtractor extractor, MediaCodec codec, MediaFormat format) {
+        FingerprintBuilder builder = new FingerprintBuilder(
+                format.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                format.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        short[] samples = new short[0];
+        boolean inputDone = false;
+        boolean decodedAny = false;
+
+        while (true) {
+            if (!inputDone) {
+                int inputIndex = codec.dequeueInputBuffer(TIMEOUT_US);
+                if (inputIndex >= 0) {
+                    ByteBuffer input = codec.getInputBuffer(inputIndex);
+                    int size = extractor.readSampleData(input, 0);
+                    if (size < 0) {
+                        codec.queueInputBuffer(inputIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                        inputDone = true;
+                    } else {
+                        codec.queueInputBuffer(inputIndex, 0, size, extractor.getSampleTime(), 0);
+                        extractor.advance();
+                    }
+                }
+            }
+
+            int outputIndex = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+            if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED && !decodedAny) {
+                // The decoder's actual output, which can differ from the container's claim
+                MediaFormat output = codec.getOutputFormat();
+                builder = new FingerprintBuilder(output.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                        output.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+            } else if (outputIndex >= 0) {
+                ByteBuffer output = codec.getOutputBuffer(outputIndex);
+                if (output != null && info.size > 0) {
+                    output.position(info.offset);
+                    output.limit(info.offset + info.size);
+                    ShortBuffer pcm = output.order(ByteOrder.nativeOrder()).asShortBuffer();
+                    int count = pcm.remaining();
+                    if (samples.length < count) {
+                        samples = new short[count];
+                    }
+                    pcm.get(samples, 0, count);
+                    builder.addSamples(samples, 0, count);
+                    decodedAny = true;
+                }
+                codec.releaseOutputBuffer(outputIndex, false);
+                if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                    return builder.finish();
+                }
+            }
+        }
+    }
+}
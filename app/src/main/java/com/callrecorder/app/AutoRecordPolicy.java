@@ -0,0 +1,200 @@
+package com.callrecorder.app.rules;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.ContactsContract;
+import android.util.Log;
+
+import com.callrecorder.app.utils.SettingsManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Decides whether a call is recorded. Rules from settings are compiled in the
+ * background into a CompiledRules and published with a single volatile write, so
+ * shouldRecord() always sees one complete rule set and never waits for a rebuild.
+ * Until the first build finishes, the global auto-record setting decides.
+ */
+public class AutoRecordPolicy implements SettingsManager.OnSettingsChangedListener {
+    private static final String TAG = "AutoRecordPolicy";
+
+    private final Context context;
+    private final SettingsManager settingsManager;
+    private final ExecutorService buildExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    private volatile CompiledRules rules;
+    private boolean observingGroups; // build thread only
+
+    // Group membership lives in the address book, so group rules follow its changes
+    private final ContentObserver groupObserver = new ContentObserver(new Handler(Looper.getMainLooper())) {
+        @Override
+        public void onChange(boolean selfChange) {
+            requestRebuild();
+        }
+    };
+
+    public AutoRecordPolicy(Context context, SettingsManager settingsManager) {
+        this.context = context.getApplicationContext();
+        this.settingsManager = settingsManager;
+        rules = CompiledRules.compile(Collections.<RecordRule>emptyList(),
+                Collections.<String, Set<String>>emptyMap(),
+                settingsManager.getSettings().isAutoRecordEnabled());
+        settingsManager.addOnSettingsChangedListener(this);
+        requestRebuild();
+    }
+
+    /**
+     * Decide for a call now. Runs in microseconds and never touches disk or the
+     * contacts provider, but callers at ring time still run it off the main thread.
+     * @param phoneNumber Number of the other party, may be null
+     * @return true if the call should be recorded
+     */
+    public boolean shouldRecord(String phoneNumber) {
+        long now = System.currentTimeMillis();
+        long local = now + TimeZone.getDefault().getOffset(now);
+        int minuteOfDay = (int) ((local / 60_000L) % RecordRule.MINUTES_PER_DAY);
+        return rules.shouldRecord(phoneNumber, minuteOfDay);
+    }
+
+    @Override
+    public void onSettingsChanged(SettingsManager.Settings oldSettings, SettingsManager.Settings newSettings) {
+        if (oldSettings.isAutoRecordEnabled() != newSettings.isAutoRecordEnabled()
+                || !newSettings.getAutoRecordRules().equals(oldSettings.getAutoRecordRules())) {
+            requestRebuild();
+        }
+    }
+
+    // Bursts of changes collapse into one rebuild that reads the latest settings
+    private void requestRebuild() {
+        if (!rebuildPending.compareAndSet(false, true)) {
+            return;
+        }
+        buildExecutor.execute(() -> {
+            rebuildPending.set(false);
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                // Keep the previous rules rather than recording everything or nothing
+                Log.e(TAG, "Error compiling auto-record rules", e);
+            }
+        });
+    }
+
+    private void rebuild() {
+        SettingsManager.Settings settings = settingsManager.getSettings();
+        List<RecordRule> ruleList = RecordRule.parseAll(settings.getAutoRecordRules());
+
+        Set<String> groupIds = new HashSet<>();
+        for (RecordRule rule : ruleList) {
+            if (rule.getType() == RecordRule.TYPE_CONTACT_GROUP) {
+                groupIds.add(rule.getValue());
+            }
+        }
+        updateGroupObserver(!groupIds.isEmpty());
+
+        rules = CompiledRules.compile(ruleList, loadGroupNumbers(groupIds), settings.isAutoRecordEnabled());
+    }
+
+    private void updateGroupObserver(boolean needed) {
+        if (needed == observingGroups) {
+            return;
+        }
+        if (needed) {
+            context.getContentResolver().registerContentObserver(
+                    ContactsContract.Data.CONTENT_URI, true, groupObserver);
+        } else {
+            context.getContentResolver().unregisterContentObserver(groupObserver);
+        }
+        observingGroups = needed;
+    }
+
+    // Two bulk queries: group memberships to contact ids, then those contacts' numbers
+    private Map<String, Set<String>> loadGroupNumbers(Set<String> groupIds) {
+        Map<String, Set<String>> numbersByGroup = new HashMap<>();
+        if (groupIds.isEmpty()) {
+            return numbersByGroup;
+        }
+
+        Map<String, List<String>> groupsByContact = new HashMap<>();
+        List<String> args = new ArrayList<>();
+        args.add(ContactsContract.CommonDataKinds.GroupMembership.CONTENT_ITEM_TYPE);
+        args.addAll(groupIds);
+        Cursor cursor = context.getContentResolver().query(ContactsContract.Data.CONTENT_URI,
+                new String[]{ContactsContract.Data.CONTACT_ID,
+                        ContactsContract.CommonDataKinds.GroupMembership.GROUP_ROW_ID},
+                ContactsContract.Data.MIMETYPE + " = ? AND " +
+                        ContactsContract.CommonDataKinds.GroupMembership.GROUP_ROW_ID +
+                        " IN (" + placeholders(groupIds.size()) + ")",
+                args.toArray(new String[0]), null);
+        if (cursor == null) {
+            return numbersByGroup;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                String contactId = cursor.getString(0);
+                List<String> groups = groupsByContact.get(contactId);
+                if (groups == null) {
+                    groups = new ArrayList<>(1);
+                    groupsByContact.put(contactId, groups);
+                }
+                groups.add(cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        if (groupsByContact.isEmpty()) {
+            return numbersByGroup;
+        }
+
+        cursor = context.getContentResolver().query(ContactsContract.CommonDataKinds.Phone.CONTENT_URI,
+                new String[]{ContactsContract.CommonDataKinds.Phone.CONTACT_ID,
+                        ContactsContract.CommonDataKinds.Phone.NUMBER},
+                ContactsContract.CommonDataKinds.Phone.CONTACT_ID +
+                        " IN (" + placeholders(groupsByContact.size()) + ")",
+                groupsByContact.keySet().toArray(new String[0]), null);
+        if (cursor == null) {
+            return numbersByGroup;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                List<String> groups = groupsByContact.get(cursor.getString(0));
+                String number = cursor.getString(1);
+                if (groups == null || number == null) {
+                    continue;
+                }
+                for (String groupId : groups) {
+                    Set<String> numbers = numbersByGroup.get(groupId);
+                    if (numbers == null) {
+                        numbers = new HashSet<>();
+                        numbersByGroup.put(groupId, numbers);
+                    }
+                    numbers.add(number);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return numbersByGroup;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder builder = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            builder.append(i == 0 ? "?" : ",?");
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,248 @@
+package com.callrecorder.app.utils;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.ContactsContract;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads contact photos for list rows off the main thread. Photos are kept
+ * downsampled in a memory LRU and in a disk cache, and contacts without a
+ * photo are remembered on disk too, so each number is looked up in
+ * ContactsContract at most once. Requests for the same number share one load.
+ * Main thread only, apart from the loads themselves.
+ */
+public class AvatarLoader {
+    private static final String TAG = "AvatarLoader";
+    private static final String CACHE_DIRECTORY = "avatars";
+    private static final int LOADER_THREADS = 2;
+    private static final int JPEG_QUALITY = 90;
+    // Photos and missing photos are looked up again after this, to pick up edits
+    private static final long CACHE_MAX_AGE_MILLIS = 7L * 24 * 60 * 60 * 1000;
+
+    private static volatile AvatarLoader instance;
+
+    private final Context context;
+    private final int sizePx;
+    private final File cacheDirectory;
+    private final LruCache<String, Bitmap> memoryCache;
+    private final ExecutorService executor = Executors.newFixedThreadPool(LOADER_THREADS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Loads waiting or running, by normalized number
+    private final Map<String, Request> requests = new HashMap<>();
+
+    private static class Request {
+        final List<ImageView> targets = new ArrayList<>();
+        Future<?> future;
+    }
+
+    private AvatarLoader(Context context) {
+        this.context = context.getApplicationContext();
+        sizePx = Math.round(48 * context.getResources().getDisplayMetrics().density);
+        cacheDirectory = new File(context.getCacheDir(), CACHE_DIRECTORY);
+
+        // An eighth of the heap, measured in bytes
+        int maxBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8);
+        memoryCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    public static AvatarLoader getInstance(Context context) {
+        if (instance == null) {
+            synchronized (AvatarLoader.class) {
+                if (instance == null) {
+                    instance = new AvatarLoader(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Show the contact photo for a number in a view, or the placeholder until
+     * it loads and when there is none
+     */
+    public void load(String phoneNumber, ImageView view, int placeholderResId) {
+        cancel(view);
+        String key = phoneNumber != null ? ContactUtils.normalizePhoneNumber(phoneNumber) : "";
+        if (key.isEmpty()) {
+            view.setImageResource(placeholderResId);
+            return;
+        }
+
+        Bitmap cached = memoryCache.get(key);
+        if (cached != null) {
+            view.setImageBitmap(cached);
+            return;
+        }
+        view.setImageResource(placeholderResId);
+        view.setTag(key);
+
+        Request request = requests.get(key);
+        if (request == null) {
+            request = new Request();
+            requests.put(key, request);
+            final String number = phoneNumber;
+            final String requestKey = key;
+            request.future = executor.submit(() -> {
+                Bitmap bitmap = loadBitmap(requestKey, number);
+                mainHandler.post(() -> deliver(requestKey, bitmap));
+            });
+        }
+        request.targets.add(view);
+    }
+
+    /**
+     * Detach a view from its pending load, for example when its row is recycled.
+     * A load nobody waits for is dropped if it has not started yet.
+     */
+    public void cancel(ImageView view) {
+        Object key = view.getTag();
+        if (!(key instanceof String)) {
+            return;
+        }
+        view.setTag(null);
+        Request request = requests.get(key);
+        if (request == null) {
+            return;
+        }
+        request.targets.remove(view);
+        // A load already running is left to finish, so its result is cached
+        if (request.targets.isEmpty() && request.future.cancel(false)) {
+            requests.remove(key);
+        }
+    }
+
+    private void deliver(String key, Bitmap bitmap) {
+        Request request = requests.remove(key);
+        if (bitmap != null) {
+            memoryCache.put(key, bitmap);
+        }
+        if (request == null) {
+            return;
+        }
+        for (ImageView view : request.targets) {
+            // Skip views that were rebound to another number meanwhile
+            if (key.equals(view.getTag())) {
+                if (bitmap != null) {
+                    view.setImageBitmap(bitmap);
+                }
+                view.setTag(null);
+            }
+        }
+    }
+
+    // Runs on a loader thread
+    private Bitmap loadBitmap(String key, String phoneNumber) {
+        File cacheFile = new File(cacheDirectory, key + ".jpg");
+        if (cacheFile.exists()
+                && System.currentTimeMillis() - cacheFile.lastModified() < CACHE_MAX_AGE_MILLIS) {
+            // An empty file records that the contact has no photo
+            return cacheFile.length() > 0 ? BitmapFactory.decodeFile(cacheFile.getPath()) : null;
+        }
+
+        Bitmap bitmap = null;
+        Uri photoUri = lookupPhotoUri(phoneNumber);
+        if (photoUri != null) {
+            bitmap = decodeDownsampled(photoUri);
+        }
+        writeCacheFile(cacheFile, bitmap);
+        return bitmap;
+    }
+
+    private Uri lookupPhotoUri(String phoneNumber) {
+        Uri uri = Uri.withAppendedPath(ContactsContract.PhoneLookup.CONTENT_FILTER_URI, Uri.encode(phoneNumber));
+        String[] projection = new String[]{ContactsContract.PhoneLookup.PHOTO_THUMBNAIL_URI};
+
+        Cursor cursor = null;
+        try {
+            cursor = context.getContentResolver().query(uri, projection, null, null, null);
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                return Uri.parse(cursor.getString(0));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error looking up contact photo", e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return null;
+    }
+
+    private Bitmap decodeDownsampled(Uri photoUri) {
+        try {
+            // Read the bounds first, then decode at the smallest power of two that
+            // still covers the target size
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            try (InputStream in = context.getContentResolver().openInputStream(photoUri)) {
+                BitmapFactory.decodeStream(in, null, options);
+            }
+            int sampleSize = 1;
+            while (options.outWidth / (sampleSize * 2) >= sizePx
+                    && options.outHeight / (sampleSize * 2) >= sizePx) {
+                sampleSize *= 2;
+            }
+
+            options = new BitmapFactory.Options();
+            options.inSampleSize = sampleSize;
+            Bitmap decoded;
+            try (InputStream in = context.getContentResolver().openInputStream(photoUri)) {
+                decoded = BitmapFactory.decodeStream(in, null, options);
+            }
+            if (decoded == null || decoded.getWidth() <= sizePx) {
+                return decoded;
+            }
+            Bitmap scaled = Bitmap.createScaledBitmap(decoded, sizePx,
+                    Math.max(1, decoded.getHeight() * sizePx / decoded.getWidth()), true);
+            if (scaled != decoded) {
+                decoded.recycle();
+            }
+            return scaled;
+        } catch (IOException | SecurityException e) {
+            Log.e(TAG, "Error decoding contact photo", e);
+            return null;
+        }
+    }
+
+    private void writeCacheFile(File cacheFile, Bitmap bitmap) {
+        cacheDirectory.mkdirs();
+        File temp = new File(cacheFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            if (bitmap != null) {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing avatar cache", e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(cacheFile)) {
+            temp.delete();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.callrecorder.app.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.callrecorder.app.models.BackupFileEntry;
+
+import java.util.List;
+
+@Dao
+public interface BackupDao {
+    @Query("SELECT * FROM backup_files WHERE filePath = :filePath")
+    BackupFileEntry getEntry(String filePath);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void putEntries(List<BackupFileEntry> entries);
+
+    @Query("UPDATE backup_files SET lastSnapshot = :snapshot WHERE filePath IN (:filePaths)")
+    void markSeen(List<String> filePaths, long snapshot);
+
+    // Files that no longer exist in the archive
+    @Query("DELETE FROM backup_files WHERE lastSnapshot < :snapshot")
+    void deleteNotSeenSince(long snapshot);
+}
@@ -0,0 +1,90 @@
+package com.callrecorder.app.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * What the last backup knew about a recording file. A file whose size and
+ * modification time still match is not read again; its chunk list is reused.
+ */
+@Entity(tableName = "backup_files")
+public class BackupFileEntry {
+    @PrimaryKey
+    @NonNull
+    private String filePath;
+    private long recordingId;
+    private long size;
+    private long lastModified;
+    private String contentHash; // SHA-256 of the whole file
+    private String chunkHashes; // SHA-256 of each content-defined chunk, comma separated
+    private long lastSnapshot; // snapshot that last saw this file
+
+    public BackupFileEntry(@NonNull String filePath, long recordingId, long size, long lastModified,
+                           String contentHash, String chunkHashes, long lastSnapshot) {
+        this.filePath = filePath;
+        this.recordingId = recordingId;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.contentHash = contentHash;
+        this.chunkHashes = chunkHashes;
+        this.lastSnapshot = lastSnapshot;
+    }
+
+    @NonNull
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(@NonNull String filePath) {
+        this.filePath = filePath;
+    }
+
+    public long getRecordingId() {
+        return recordingId;
+    }
+
+    public void setRecordingId(long recordingId) {
+        this.recordingId = recordingId;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getChunkHashes() {
+        return chunkHashes;
+    }
+
+    public void setChunkHashes(String chunkHashes) {
+        this.chunkHashes = chunkHashes;
+    }
+
+    public long getLastSnapshot() {
+        return lastSnapshot;
+    }
+
+    public void setLastSnapshot(long lastSnapshot) {
+        this.lastSnapshot = lastSnapshot;
+    }
+}
@@ -0,0 +1,24 @@
+package com.callrecorder.app.backup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Content-addressed store that incremental backups write into
+ */
+public interface BackupTarget {
+    boolean hasChunk(String hash) throws IOException;
+
+    /**
+     * Store a chunk copied from part of a file. Must be atomic: a chunk is either
+     * complete under its hash or absent.
+     */
+    void putChunk(String hash, FileChannel source, long offset, long length) throws IOException;
+
+    /**
+     * Store a snapshot manifest. Called last, so a snapshot only exists once all of
+     * its chunks do.
+     */
+    void putSnapshot(String name, File manifest) throws IOException;
+}
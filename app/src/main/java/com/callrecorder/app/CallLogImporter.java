@@ -0,0 +1,215 @@
+package com.callrecorder.app.calllog;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.provider.CallLog;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import com.callrecorder.app.database.AppDatabase;
+import com.callrecorder.app.models.RecordingTiming;
+import com.callrecorder.app.models.SyncCursor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Corrects recordings with what the system call log knows: the real call
+ * direction, the number and the connected duration. Each run reads only call
+ * log rows added since the last one, in a single provider query, and applies
+ * every correction in one transaction. A matched recording remembers its call
+ * log row and is never matched again.
+ */
+public class CallLogImporter {
+    private static final String TAG = "CallLogImporter";
+    private static final String CURSOR_CALL_LOG = "call_log";
+
+    // A recording is saved when the call ends. The log dates a call from when it
+    // started ringing or dialling, and its duration leaves the ringing out.
+    private static final long MAX_RING_MILLIS = 90_000;
+    private static final long MATCH_SLACK_MILLIS = 10_000;
+    // Log rows this recent may be waiting for their recording to be saved
+    private static final long SAVE_GRACE_MILLIS = 10 * 60_000;
+
+    static class CallEntry {
+        final long id;
+        final String number;
+        final int type;
+        final long date;
+        final long durationMillis;
+
+        CallEntry(long id, String number, int type, long date, long durationMillis) {
+            this.id = id;
+            this.number = number;
+            this.type = type;
+            this.date = date;
+            this.durationMillis = durationMillis;
+        }
+
+        long latestEnd() {
+            return date + MAX_RING_MILLIS + durationMillis + MATCH_SLACK_MILLIS;
+        }
+
+        long earliestEnd() {
+            return date + durationMillis - MATCH_SLACK_MILLIS;
+        }
+    }
+
+    private final Context context;
+    private final AppDatabase database;
+
+    public CallLogImporter(Context context, AppDatabase database) {
+        this.context = context.getApplicationContext();
+        this.database = database;
+    }
+
+    /**
+     * Import call log rows added since the last run. Blocks, so call it from a background thread.
+     * @return Number of recordings corrected
+     */
+    public int importNewCalls() {
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.READ_CALL_LOG)
+                != PackageManager.PERMISSION_GRANTED) {
+            return 0;
+        }
+        Long cursor = database.syncDao().getCursor(CURSOR_CALL_LOG);
+        long afterId = cursor != null ? cursor : 0;
+        return reconcile(readCallsAfter(afterId), afterId, System.currentTimeMillis());
+    }
+
+    /**
+     * Match call log rows read after the cursor to recordings no earlier run matched,
+     * correct those recordings and move the cursor on.
+     * @return Number of recordings corrected
+     */
+    int reconcile(List<CallEntry> calls, long cursor, long now) {
+        if (calls.isEmpty()) {
+            return 0;
+        }
+
+        long from = Long.MAX_VALUE;
+        long to = Long.MIN_VALUE;
+        for (CallEntry call : calls) {
+            from = Math.min(from, call.earliestEnd());
+            to = Math.max(to, call.latestEnd());
+        }
+        List<RecordingTiming> recordings = database.recordingDao().getUnmatchedTimingsBetween(from, to);
+
+        final Map<CallEntry, RecordingTiming> matches = match(calls, recordings);
+        final long newCursor = advanceCursor(calls, matches, cursor, now);
+
+        database.runInTransaction(() -> {
+            Map<String, Long> contactIds = new HashMap<>();
+            for (Map.Entry<CallEntry, RecordingTiming> match : matches.entrySet()) {
+                CallEntry call = match.getKey();
+                Long contactId = null;
+                if (call.number != null && !call.number.isEmpty()) {
+                    if (!contactIds.containsKey(call.number)) {
+                        contactIds.put(call.number,
+                                database.contactDao().getOrCreateContactId(call.number, null));
+                    }
+                    contactId = contactIds.get(call.number);
+                }
+                // A call that never connected keeps the recorded length
+                long duration = call.durationMillis > 0 ? call.durationMillis : match.getValue().getDuration();
+                database.recordingDao().updateCallDetails(match.getValue().getId(), call.id,
+                        call.type == CallLog.Calls.INCOMING_TYPE ? 1 : 2, contactId, duration);
+            }
+            database.syncDao().putCursor(new SyncCursor(CURSOR_CALL_LOG, newCursor));
+        });
+        Log.d(TAG, "Matched " + matches.size() + " of " + calls.size() + " call log entries");
+        return matches.size();
+    }
+
+    private List<CallEntry> readCallsAfter(long afterId) {
+        List<CallEntry> calls = new ArrayList<>();
+        String[] projection = {
+                CallLog.Calls._ID,
+                CallLog.Calls.NUMBER,
+                CallLog.Calls.TYPE,
+                CallLog.Calls.DATE,
+                CallLog.Calls.DURATION
+        };
+        // Only answered or placed calls can have a recording
+        String selection = CallLog.Calls._ID + " > ? AND " + CallLog.Calls.TYPE + " IN ("
+                + CallLog.Calls.INCOMING_TYPE + ", " + CallLog.Calls.OUTGOING_TYPE + ")";
+
+        Cursor cursor = null;
+        try {
+            cursor = context.getContentResolver().query(CallLog.Calls.CONTENT_URI, projection,
+                    selection, new String[]{Long.toString(afterId)}, CallLog.Calls._ID + " ASC");
+            if (cursor == null) {
+                return calls;
+            }
+            while (cursor.moveToNext()) {
+                calls.add(new CallEntry(cursor.getLong(0), cursor.getString(1), cursor.getInt(2),
+                        cursor.getLong(3), cursor.getLong(4) * 1000));
+            }
+        } catch (SecurityException e) {
+            Log.e(TAG, "Error reading call log", e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return calls;
+    }
+
+    // Each recording goes to at most one call: the one whose expected end is closest
+    static Map<CallEntry, RecordingTiming> match(List<CallEntry> calls, List<RecordingTiming> recordings) {
+        List<CallEntry> byEnd = new ArrayList<>(calls);
+        Collections.sort(byEnd, new Comparator<CallEntry>() {
+            @Override
+            public int compare(CallEntry a, CallEntry b) {
+                return Long.compare(a.earliestEnd(), b.earliestEnd());
+            }
+        });
+
+        Map<CallEntry, RecordingTiming> matches = new HashMap<>();
+        boolean[] used = new boolean[recordings.size()];
+        int first = 0;
+        for (CallEntry call : byEnd) {
+            // Recordings are sorted by date; skip those that ended before this call could have
+            while (first < recordings.size() && recordings.get(first).getDate() < call.earliestEnd()) {
+                first++;
+            }
+            int best = -1;
+            long bestDistance = Long.MAX_VALUE;
+            for (int i = first; i < recordings.size() && recordings.get(i).getDate() <= call.latestEnd(); i++) {
+                if (used[i]) {
+                    continue;
+                }
+                long distance = Math.abs(recordings.get(i).getDate() - (call.date + call.durationMillis));
+                if (distance < bestDistance) {
+                    best = i;
+                    bestDistance = distance;
+                }
+            }
+            if (best >= 0) {
+                used[best] = true;
+                matches.put(call, recordings.get(best));
+            }
+        }
+        return matches;
+    }
+
+    // Stop before the first recent call without a recording, so it is tried again next run
+    static long advanceCursor(List<CallEntry> calls, Map<CallEntry, RecordingTiming> matches,
+                              long cursor, long now) {
+        long graceStart = now - SAVE_GRACE_MILLIS;
+        for (CallEntry call : calls) {
+            if (!matches.containsKey(call) && call.date > graceStart) {
+                break;
+            }
+            cursor = call.id;
+        }
+        return cursor;
+    }
+}
@@ -2,31 +2,86 @@ package com.callrecorder.app;
 
 import android.app.Application;
 import android.content.Context;
+import android.util.Log;
 
-import androidx.room.Room;
-
+import com.callrecorder.app.calllog.CallLogImporter;
 import com.callrecorder.app.database.AppDatabase;
+import com.callrecorder.app.database.CallStatsRebuildJob;
+import com.callrecorder.app.energy.EnergyAccountant;
+import com.callrecorder.app.energy.ProcessEnergyClock;
+import com.callrecorder.app.fingerprint.FingerprintQueue;
+import com.callrecorder.app.rules.AutoRecordPolicy;
+import com.callrecorder.app.sync.RecordingSyncEngine;
+import com.callrecorder.app.transcription.StubTranscriptionEngine;
+import com.callrecorder.app.transcription.TranscriptionQueue;
+import com.callrecorder.app.upload.UploadServer;
 import com.callrecorder.app.utils.SettingsManager;
+import com.callrecorder.app.utils.StartupTracer;
+
+import java.util.concurrent.Executors;
 
 public class CallRecorderApp extends Application {
+    private static final String TAG = "CallRecorderApp";
+    private static final int MAX_TRANSCRIPTION_JOBS = 2;
+
     private static Context appContext;
-    private static AppDatabase database;
-    private static SettingsManager settingsManager;
+    private static volatile SettingsManager settingsManager;
+    private static volatile AutoRecordPolicy autoRecordPolicy;
+    private static volatile TranscriptionQueue transcriptionQueue;
+    private static volatile FingerprintQueue fingerprintQueue;
+    private static volatile EnergyAccountant energyAccountant;
 
     @Override
     public void onCreate() {
+        StartupTracer.beginSection("CallRecorderApp.onCreate");
         super.onCreate();
         appContext = getApplicationContext();
-        
-        // Initialize database
-        database = Room.databaseBuilder(
-                getApplicationContext(),
-                AppDatabase.class,
-                "call_recorder_database")
-                .build();
-                
-        // Initialize settings manager
-        settingsManager = new SettingsManager(getApplicationContext());
+
+        // Database and settings are created on first use; warm them up in
+        // the background so the first screen rarely has to wait for them
+        Executors.newSingleThreadExecutor().execute(CallRecorderApp::warmUp);
+        StartupTracer.endSection();
+    }
+
+    private static void warmUp() {
+        // Settings first: the call path needs them and they are cheap
+        StartupTracer.beginSection("warmUp.settings");
+        try {
+            getSettingsManager();
+            // Compiles the auto-record rules before the first call rings
+            getAutoRecordPolicy();
+        } finally {
+            StartupTracer.endSection();
+        }
+
+        // Opening the database runs any pending migrations off the main thread
+        StartupTracer.beginSection("warmUp.database");
+        try {
+            getDatabase().getOpenHelper().getWritableDatabase();
+            StartupTracer.mark("database ready");
+        } catch (Exception e) {
+            Log.e(TAG, "Error warming up database", e);
+        } finally {
+            StartupTracer.endSection();
+        }
+
+        // Picks up calls that ended while the app was not running
+        try {
+            new CallLogImporter(appContext, getDatabase()).importNewCalls();
+        } catch (Exception e) {
+            Log.e(TAG, "Error importing call log", e);
+        }
+
+        TranscriptionQueue queue = getTranscriptionQueue();
+        if (queue != null) {
+            queue.startBackfill();
+        }
+
+        // Fingerprints recordings made before duplicate detection existed
+        getFingerprintQueue().startBackfill();
+
+        // Daily check that the statistics rollups still match the recordings
+        CallStatsRebuildJob.schedule(appContext);
     }
 
     public static Context getAppContext() {
@@ -34,10 +89,96 @@ public class CallRecorderApp extends Application {
     }
 
     public static AppDatabase getDatabase() {
-        return database;
+        return AppDatabase.getInstance(appContext);
     }
 
     public static SettingsManager getSettingsManager() {
+        if (settingsManager == null) {
+            synchronized (CallRecorderApp.class) {
+                if (settingsManager == null) {
+                    settingsManager = new SettingsManager(appContext);
+                }
+            }
+        }
         return settingsManager;
     }
+
+    public static AutoRecordPolicy getAutoRecordPolicy() {
+        if (autoRecordPolicy == null) {
+            synchronized (CallRecorderApp.class) {
+                if (autoRecordPolicy == null) {
+                    autoRecordPolicy = new AutoRecordPolicy(appContext, getSettingsManager());
+                }
+            }
+        }
+        return autoRecordPolicy;
+    }
+
+    /**
+     * @return The sync engine, or null when no sync server is configured.
+     * No build ships one yet, so local changes only collect dirty flags.
+     */
+    public static RecordingSyncEngine getSyncEngine() {
+        return null;
+    }
+
+    /**
+     * Ask for a sync after a local change. Does nothing while sync is off.
+     */
+    public static void requestSync() {
+        RecordingSyncEngine engine = getSyncEngine();
+        if (engine != null) {
+            engine.requestSync();
+        }
+    }
+
+
+    public static FingerprintQueue getFingerprintQueue() {
+        if (fingerprintQueue == null) {
+            synchronized (CallRecorderApp.class) {
+                if (fingerprintQueue == null) {
+                    fingerprintQueue = new FingerprintQueue(getDatabase().fingerprintDao());
+                }
+            }
+        }
+        return fingerprintQueue;
+    }
+
+    public static EnergyAccountant getEnergyAccountant() {
+        if (energyAccountant == null) {
+            synchronized (CallRecorderApp.class) {
+                if (energyAccountant == null) {
+                    energyAccountant = new EnergyAccountant(new ProcessEnergyClock());
+                }
+            }
+        }
+        return energyAccountant;
+    }
+
+    /**
+     * @return The server recordings are archived to, or null when none is configured.
+     * No build ships one yet, so uploads stay off and nothing is reported as archived.
+     */
+    public static UploadServer getUploadServer() {
+        return null;
+    }
+
+    /**
+     * @return The transcription queue, or null when no speech engine is available.
+     * Only debug builds have one for now, backed by the stub engine.
+     */
+    public static TranscriptionQueue getTranscriptionQueue() {
+        if (!BuildConfig.DEBUG) {
+            return null;
+        }
+        if (transcriptionQueue == null) {
+            synchronized (CallRecorderApp.class) {
+                if (transcriptionQueue == null) {
+                    transcriptionQueue = new TranscriptionQueue(getDatabase().transcriptDao(),
+                            new StubTranscriptionEngine(), MAX_TRANSCRIPTION_JOBS);
+                }
+            }
+        }
+        return transcriptionQueue;
+    }
 }
@@ -12,18 +12,29 @@ import android.media.MediaRecorder;
 import android.os.Build;
 import android.os.Environment;
 import android.os.IBinder;
+import android.os.PowerManager;
 import android.telephony.PhoneStateListener;
 import android.telephony.TelephonyManager;
 import android.util.Log;
 
 import androidx.core.app.NotificationCompat;
 
+import com.callrecorder.app.BuildConfig;
 import com.callrecorder.app.CallRecorderApp;
 import com.callrecorder.app.R;
 import com.callrecorder.app.activities.MainActivity;
+import com.callrecorder.app.calllog.CallLogImporter;
 import com.callrecorder.app.database.AppDatabase;
+import com.callrecorder.app.energy.EnergyAccountant;
+import com.callrecorder.app.energy.PowerUsage;
 import com.callrecorder.app.models.Recording;
+import com.callrecorder.app.rules.AutoRecordPolicy;
+import com.callrecorder.app.transcription.TranscriptionQueue;
+import com.callrecorder.app.upload.UploadWorker;
 import com.callrecorder.app.utils.ContactUtils;
+import com.callrecorder.app.utils.EncryptedRecordingFormat;
+import com.callrecorder.app.utils.RecordingEncryptor;
+import com.callrecorder.app.utils.RecordingKeys;
 import com.callrecorder.app.utils.SettingsManager;
 
 import java.io.File;
@@ -31,43 +42,80 @@ import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class CallRecorderService extends Service {
     private static final String TAG = "CallRecorderService";
     private static final int NOTIFICATION_ID = 1001;
     private static final String CHANNEL_ID = "call_recorder_channel";
+    // Upper bound in case saving hangs; encrypting a long call takes a few seconds
+    private static final long SAVE_WAKE_LOCK_TIMEOUT_MS = 60_000;
+    // Longest a ringing call waits for the stored settings on a cold start
+    private static final long SETTINGS_LOAD_TIMEOUT_MS = 3_000;
+
+    // Debug builds only: feed a TelephonyManager call state to the service
+    public static final String ACTION_SIMULATE_CALL_STATE = "com.callrecorder.app.action.SIMULATE_CALL_STATE";
+    public static final String EXTRA_CALL_STATE = "call_state";
+    public static final String EXTRA_PHONE_NUMBER = "phone_number";
 
     private MediaRecorder mediaRecorder;
     private boolean isRecording = false;
     private String outputFile;
+    private String encryptedOutputFile; // final path when the recording is encrypted on stop
     private long startTime;
     private String phoneNumber;
     private int callType; // 1 for incoming, 2 for outgoing
+    private String recordingCodec;
     private PhoneStateListener phoneStateListener;
     private TelephonyManager telephonyManager;
     private SettingsManager settingsManager;
     private AppDatabase database;
+    private AutoRecordPolicy autoRecordPolicy;
+    private EnergyAccountant energyAccountant;
+    // The call being recorded, closed once its recording is saved
+    private EnergyAccountant.Session callSession;
+    private PowerManager powerManager;
+    // Rules are evaluated here at ring time or on the outgoing intent, not on the main thread
+    private final ExecutorService ruleExecutor = Executors.newSingleThreadExecutor();
+    private volatile RecordDecision recordDecision;
+    private boolean skippingCall; // the rules said not to record the current call
 
     @Override
     public void onCreate() {
         super.onCreate();
         settingsManager = CallRecorderApp.getSettingsManager();
         database = CallRecorderApp.getDatabase();
+        autoRecordPolicy = CallRecorderApp.getAutoRecordPolicy();
+        energyAccountant = CallRecorderApp.getEnergyAccountant();
+        energyAccountant.startListening();
+        powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
         createNotificationChannel();
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         // Extract phone number and call type from intent if available
-        if (intent != null) {
+        if (intent != null && !ACTION_SIMULATE_CALL_STATE.equals(intent.getAction())) {
             phoneNumber = intent.getStringExtra("phone_number");
             callType = intent.getIntExtra("call_type", 0);
+            if (phoneNumber != null) {
+                evaluateRules(phoneNumber);
+            }
         }
 
         // Start foreground service with notification
         startForeground(NOTIFICATION_ID, createNotification("تطبيق تسجيل المكالمات قيد التشغيل"));
 
+        // Replayed call events from the load harness take the same path as real ones
+        if (intent != null && ACTION_SIMULATE_CALL_STATE.equals(intent.getAction())) {
+            if (BuildConfig.DEBUG) {
+                handleCallState(intent.getIntExtra(EXTRA_CALL_STATE, TelephonyManager.CALL_STATE_IDLE),
+                        intent.getStringExtra(EXTRA_PHONE_NUMBER));
+            }
+            return START_STICKY;
+        }
+
         // Setup phone state listener
         setupPhoneStateListener();
 
@@ -75,41 +123,16 @@ public class CallRecorderService extends Service {
     }
 
     private void setupPhoneStateListener() {
+        // onStartCommand runs for every start request; a second listener would
+        // handle each call state twice and record the call twice
+        if (phoneStateListener != null) {
+            return;
+        }
         telephonyManager = (TelephonyManager) getSystemService(Context.TELEPHONY_SERVICE);
         phoneStateListener = new PhoneStateListener() {
             @Override
             public void onCallStateChanged(int state, String incomingNumber) {
-                switch (state) {
-                    case TelephonyManager.CALL_STATE_IDLE:
-                        // Call ended, stop recording
-                        if (isRecording) {
-                            stopRecording();
-                        }
-                        break;
-                    case TelephonyManager.CALL_STATE_OFFHOOK:
-                        // Call started, begin recording
-                        if (!isRecording) {
-                            if (phoneNumber == null) {
-                                phoneNumber = incomingNumber;
-                            }
-                            if (callType == 0) {
-                                // If call type wasn't set, try to determine it
-                                // This is a simplification, might not be accurate in all cases
-                                callType = (incomingNumber != null && !incomingNumber.isEmpty()) ? 1 : 2;
-                            }
-                            startRecording();
-                        }
-                        break;
-                    case TelephonyManager.CALL_STATE_RINGING:
-                        // Phone is ringing, prepare for recording
-                        if (phoneNumber == null) {
-                            phoneNumber = incomingNumber;
-                        }
-                        if (callType == 0) {
-                            callType = 1; // Incoming call
-                        }
-                        break;
-                }
+                handleCallState(state, incomingNumber);
             }
         };
 
@@ -119,18 +142,118 @@ public class CallRecorderService extends Service {
         }
     }
 
+    private void handleCallState(int state, String incomingNumber) {
+        switch (state) {
+            case TelephonyManager.CALL_STATE_IDLE:
+                // Call ended, stop recording
+                if (isRecording) {
+                    stopRecording();
+                }
+                // The next call brings its own number and direction, including
+                // after a missed or rejected call that never went off hook
+                phoneNumber = null;
+                callType = 0;
+                skippingCall = false;
+                recordDecision = null;
+                break;
+            case TelephonyManager.CALL_STATE_OFFHOOK:
+                // Call started, begin recording
+                if (!isRecording && !skippingCall) {
+                    if (phoneNumber == null) {
+                        phoneNumber = incomingNumber;
+                    }
+                    if (callType == 0) {
+                        // If call type wasn't set, try to determine it
+                        // This is a simplification, might not be accurate in all cases
+                        callType = (incomingNumber != null && !incomingNumber.isEmpty()) ? 1 : 2;
+                    }
+                    if (!shouldRecordCall()) {
+                        skippingCall = true;
+                        break;
+                    }
+                    startRecording();
+                }
+                break;
+            case TelephonyManager.CALL_STATE_RINGING:
+                // Phone is ringing, prepare for recording
+                if (phoneNumber == null) {
+                    phoneNumber = incomingNumber;
+                }
+                if (callType == 0) {
+                    callType = 1; // Incoming call
+                }
+                evaluateRules(phoneNumber);
+                break;
+        }
+    }
+
+    // Decides ahead of OFFHOOK so answering never waits for the rules. On a cold start
+    // this is also where the call waits for the stored settings, off the main thread
+    private void evaluateRules(final String number) {
+        ruleExecutor.execute(() -> {
+            try {
+                settingsManager.awaitLoaded(SETTINGS_LOAD_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            recordDecision = new RecordDecision(number, autoRecordPolicy.shouldRecord(number));
+        });
+    }
+
+    private boolean shouldRecordCall() {
+        RecordDecision decision = recordDecision;
+        if (decision != null && decision.isFor(phoneNumber)) {
+            return decision.record;
+        }
+        // Not evaluated yet, or for another number; the check itself takes microseconds
+        return autoRecordPolicy.shouldRecord(phoneNumber);
+    }
+
+    private static final class RecordDecision {
+        final String phoneNumber;
+        final boolean record;
+
+        RecordDecision(String phoneNumber, boolean record) {
+            this.phoneNumber = phoneNumber;
+            this.record = record;
+        }
+
+        boolean isFor(String number) {
+            return phoneNumber == null ? number == null : phoneNumber.equals(number);
+        }
+    }
+
     private void startRecording() {
         if (isRecording) return;
+        callSession = energyAccountant.beginCall();
+
+        // Read settings once so the whole call uses consistent values. Checked before the
+        // snapshot is taken, so a loaded result always goes with the stored values
+        boolean settingsLoaded = settingsManager.isLoaded();
+        SettingsManager.Settings settings = settingsManager.getSettings();
 
         try {
             // Create output directory if it doesn't exist
-            File directory = new File(settingsManager.getStoragePath());
+            File directory = new File(settings.getStoragePath());
             if (!directory.exists()) {
                 directory.mkdirs();
             }
 
             // Create output file
-            outputFile = createOutputFile();
+            outputFile = createOutputFile(settings);
+
+            // Encrypted recordings are captured in private storage and sealed when the call ends
+            encryptedOutputFile = null;
+            // Settings still loading hold the defaults, which have encryption off; a call
+            // that comes in before they load is encrypted rather than left in public storage
+            boolean encrypt = !settingsLoaded || settings.isEncryptRecordingsEnabled();
+            if (encrypt && RecordingKeys.isSupported()) {
+                File pendingDirectory = new File(getNoBackupFilesDir(), "pending_recordings");
+                pendingDirectory.mkdirs();
+                encryptedOutputFile = outputFile + EncryptedRecordingFormat.FILE_EXTENSION;
+                outputFile = new File(pendingDirectory, new File(outputFile).getName()).getAbsolutePath();
+            }
 
             // Configure MediaRecorder based on quality settings
             mediaRecorder = new MediaRecorder();
@@ -148,17 +271,19 @@ public class CallRecorderService extends Service {
             }
 
             // Set output format and encoder based on quality setting
-            int quality = settingsManager.getRecordingQuality();
+            int quality = settings.getRecordingQuality();
             switch (quality) {
                 case SettingsManager.QUALITY_HIGH:
                     mediaRecorder.setOutputFormat(MediaRecorder.OutputFormat.AAC_ADTS);
                     mediaRecorder.setAudioEncoder(MediaRecorder.AudioEncoder.AAC);
                     mediaRecorder.setAudioSamplingRate(44100);
                     mediaRecorder.setAudioEncodingBitRate(192000);
+                    recordingCodec = Recording.CODEC_AAC_ADTS;
                     break;
                 case SettingsManager.QUALITY_LOW:
                     mediaRecorder.setOutputFormat(MediaRecorder.OutputFormat.THREE_GPP);
                     mediaRecorder.setAudioEncoder(MediaRecorder.AudioEncoder.AMR_NB);
+                    recordingCodec = Recording.CODEC_AMR_NB;
                     break;
                 case SettingsManager.QUALITY_MEDIUM:
                 default:
@@ -166,12 +291,16 @@ public class CallRecorderService extends Service {
                     mediaRecorder.setAudioEncoder(MediaRecorder.AudioEncoder.AAC);
                     mediaRecorder.setAudioSamplingRate(22050);
                     mediaRecorder.setAudioEncodingBitRate(96000);
+                    recordingCodec = Recording.CODEC_AAC_MP4;
                     break;
             }
 
             mediaRecorder.setOutputFile(outputFile);
             mediaRecorder.prepare();
             mediaRecorder.start();
+            // MediaRecorder captures and encodes together
+            energyAccountant.setAudioActive(true);
+            energyAccountant.setEncoderActive(true);
             
             startTime = System.currentTimeMillis();
             isRecording = true;
@@ -194,7 +323,7 @@ public class CallRecorderService extends Service {
             
             // Create output file
             if (outputFile == null) {
-                outputFile = createOutputFile();
+                outputFile = createOutputFile(settingsManager.getSettings());
             }
             
             // Configure MediaRecorder with microphone source
@@ -205,9 +334,13 @@ public class CallRecorderService extends Service {
             mediaRecorder.setOutputFormat(MediaRecorder.OutputFormat.THREE_GPP);
             mediaRecorder.setAudioEncoder(MediaRecorder.AudioEncoder.AMR_NB);
             mediaRecorder.setOutputFile(outputFile);
+            recordingCodec = Recording.CODEC_AMR_NB;
             
             mediaRecorder.prepare();
             mediaRecorder.start();
+            // MediaRecorder captures and encodes together
+            energyAccountant.setAudioActive(true);
+            energyAccountant.setEncoderActive(true);
             
             startTime = System.currentTimeMillis();
             isRecording = true;
@@ -218,6 +351,7 @@ public class CallRecorderService extends Service {
         } catch (IOException e) {
             Log.e(TAG, "Error starting alternative recording", e);
             isRecording = false;
+            energyAccountant.endCall(callSession, PowerUsage.NO_RECORDING);
         }
     }
 
@@ -229,6 +363,8 @@ public class CallRecorderService extends Service {
             mediaRecorder.reset();
             mediaRecorder.release();
             mediaRecorder = null;
+            energyAccountant.setAudioActive(false);
+            energyAccountant.setEncoderActive(false);
             
             // Calculate duration
             long duration = System.currentTimeMillis() - startTime;
@@ -245,10 +381,13 @@ public class CallRecorderService extends Service {
             
         } catch (Exception e) {
             Log.e(TAG, "Error stopping recording", e);
+            energyAccountant.setAudioActive(false);
+            energyAccountant.setEncoderActive(false);
+            energyAccountant.endCall(callSession, PowerUsage.NO_RECORDING);
         }
     }
 
-    private String createOutputFile() {
+    private String createOutputFile(SettingsManager.Settings settings) {
         String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
         String fileName;
         
@@ -269,7 +408,7 @@ public class CallRecorderService extends Service {
         
         // Get file extension based on quality setting
         String extension;
-        int quality = settingsManager.getRecordingQuality();
+        int quality = settings.getRecordingQuality();
         switch (quality) {
             case SettingsManager.QUALITY_HIGH:
                 extension = ".aac";
@@ -283,34 +422,83 @@ public class CallRecorderService extends Service {
                 break;
         }
         
-        return settingsManager.getStoragePath() + File.separator + fileName + extension;
+        return settings.getStoragePath() + File.separator + fileName + extension;
     }
 
     private void saveRecordingToDatabase(final long duration) {
         // Get contact name if available
+        final String number = phoneNumber;
         String contactName = null;
-        if (phoneNumber != null && !phoneNumber.isEmpty()) {
-            contactName = ContactUtils.getContactName(this, phoneNumber);
+        if (number != null && !number.isEmpty()) {
+            contactName = ContactUtils.getContactName(this, number);
         }
-        
-        // Create recording object
-        final Recording recording = new Recording(
-                0, // ID will be auto-generated
-                phoneNumber,
-                contactName,
-                callType,
-                outputFile,
-                duration,
-                System.currentTimeMillis(),
-                false,
-                null
-        );
+        final String name = contactName;
+        final String filePath = outputFile;
+        final String encryptTo = encryptedOutputFile;
+        final int type = callType;
+        final String codec = recordingCodec;
+        final long date = System.currentTimeMillis();
+        final EnergyAccountant.Session session = callSession;
+
+        // The screen is usually off once the call ends; keep the CPU up until the file is saved
+        final PowerManager.WakeLock wakeLock =
+                powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "CallRecorder:save");
+        wakeLock.acquire(SAVE_WAKE_LOCK_TIMEOUT_MS);
+        energyAccountant.wakeLockAcquired();
         
         // Insert recording into database
         Executors.newSingleThreadExecutor().execute(new Runnable() {
             @Override
             public void run() {
-                database.recordingDao().insert(recording);
+                long recordingId = PowerUsage.NO_RECORDING;
+                try {
+                    recordingId = save();
+                } finally {
+                    energyAccountant.endCall(session, recordingId);
+                    energyAccountant.wakeLockReleased();
+                    if (wakeLock.isHeld()) {
+                        wakeLock.release();
+                    }
+                }
+            }
+
+            private long save() {
+                String storedPath = filePath;
+                if (encryptTo != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                    try {
+                        storedPath = RecordingEncryptor.encrypt(new File(filePath), new File(encryptTo))
+                                .getAbsolutePath();
+                    } catch (IOException e) {
+                        // Keep the plaintext in private storage rather than lose the call
+                        Log.e(TAG, "Error encrypting recording", e);
+                    }
+                }
+
+                Long contactId = database.contactDao().getOrCreateContactId(number, name);
+                Recording recording = new Recording(
+                        0, // ID will be auto-generated
+                        contactId,
+                        type,
+                        storedPath,
+                        duration,
+                        date,
+                        false,
+                        null,
+                        new File(storedPath).length(),
+                        codec
+                );
+                long recordingId = database.recordingDao().insert(recording);
+                CallRecorderApp.requestSync();
+                TranscriptionQueue transcriptionQueue = CallRecorderApp.getTranscriptionQueue();
+                if (transcriptionQueue != null) {
+                    transcriptionQueue.enqueue(recordingId, storedPath, TranscriptionQueue.PRIORITY_NEW);
+                }
+                CallRecorderApp.getFingerprintQueue().enqueue(recordingId, storedPath);
+
+                // The call log usually has the finished call by now
+                new CallLogImporter(CallRecorderService.this, database).importNewCalls();
+                UploadWorker.schedule(CallRecorderService.this);
+                return recordingId;
             }
         });
     }
@@ -361,6 +549,8 @@ public class CallRecorderService extends Service {
         if (telephonyManager != null && phoneStateListener != null) {
             telephonyManager.listen(phoneStateListener, PhoneStateListener.LISTEN_NONE);
         }
+        ruleExecutor.shutdown();
+        energyAccountant.stopListening();
         
         super.onDestroy();
     }
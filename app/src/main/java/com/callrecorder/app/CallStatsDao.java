@@ -0,0 +1,101 @@
+package com.callrecorder.app.database;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.callrecorder.app.models.ContactStats;
+import com.callrecorder.app.models.ContactWithStats;
+import com.callrecorder.app.models.DailyStats;
+
+import java.util.List;
+
+@Dao
+public abstract class CallStatsDao {
+    @Query("SELECT * FROM contact_stats ORDER BY totalDuration DESC")
+    public abstract LiveData<List<ContactStats>> getContactStats();
+
+    @Query("SELECT * FROM contact_stats WHERE contactId = :contactId")
+    public abstract LiveData<ContactStats> getContactStatsForContact(long contactId);
+
+    // Contacts list, newest call first. Pages are keyed on (lastCallDate, contactId) so
+    // each one is a range scan of the contact_stats index rather than an OFFSET; the
+    // leading bound on lastCallDate alone is what lets SQLite use the index for an OR.
+    // Calls without a number (contact id 0) have no contacts row and drop out of the join.
+    @Query("SELECT c.id, c.phoneNumber, c.contactName, s.callCount, s.totalDuration, s.lastCallDate " +
+            "FROM contact_stats s JOIN contacts c ON c.id = s.contactId " +
+            "WHERE s.lastCallDate <= :beforeDate " +
+            "AND (s.lastCallDate < :beforeDate OR s.contactId < :beforeId) " +
+            "ORDER BY s.lastCallDate DESC, s.contactId DESC LIMIT :limit")
+    public abstract List<ContactWithStats> getContactsWithStatsPage(long beforeDate, long beforeId, int limit);
+
+    // Everything from the top of the list down to and including the given key, used to
+    // refresh the pages already loaded
+    @Query("SELECT c.id, c.phoneNumber, c.contactName, s.callCount, s.totalDuration, s.lastCallDate " +
+            "FROM contact_stats s JOIN contacts c ON c.id = s.contactId " +
+            "WHERE s.lastCallDate >= :untilDate " +
+            "AND (s.lastCallDate > :untilDate OR s.contactId >= :untilId) " +
+            "ORDER BY s.lastCallDate DESC, s.contactId DESC")
+    public abstract List<ContactWithStats> getContactsWithStatsUntil(long untilDate, long untilId);
+
+    // Days are yyyy-MM-dd, so string comparison is a date range
+    @Query("SELECT * FROM daily_stats WHERE day BETWEEN :fromDay AND :toDay ORDER BY day")
+    public abstract LiveData<List<DailyStats>> getDailyStats(String fromDay, String toDay);
+
+    // Day sections of the full recordings list
+    @Query("SELECT * FROM daily_stats ORDER BY day DESC")
+    public abstract LiveData<List<DailyStats>> getDailyStatsNewestFirst();
+
+    @Query("SELECT COALESCE(SUM(incomingCount), 0) FROM daily_stats")
+    public abstract LiveData<Long> getIncomingCount();
+
+    @Query("SELECT COALESCE(SUM(outgoingCount), 0) FROM daily_stats")
+    public abstract LiveData<Long> getOutgoingCount();
+
+    @Query(CallStatsTriggers.COUNT_CONTACT_STATS_MISMATCHES)
+    public abstract int countContactStatsMismatches();
+
+    @Query(CallStatsTriggers.COUNT_DAILY_STATS_MISMATCHES)
+    public abstract int countDailyStatsMismatches();
+
+    @Query("DELETE FROM contact_stats")
+    abstract void clearContactStats();
+
+    @Query("DELETE FROM daily_stats")
+    abstract void clearDailyStats();
+
+    @Query(CallStatsTriggers.FILL_MISSING_DAYS)
+    abstract void fillMissingDays();
+
+    @Query(CallStatsTriggers.REBUILD_CONTACT_STATS)
+    abstract void insertContactStatsFromRecordings();
+
+    @Query(CallStatsTriggers.REBUILD_DAILY_STATS)
+    abstract void insertDailyStatsFromRecordings();
+
+    /**
+     * Recompute both rollup tables from the recordings table
+     */
+    @Transaction
+    public void rebuild() {
+        fillMissingDays();
+        clearContactStats();
+        clearDailyStats();
+        insertContactStatsFromRecordings();
+        insertDailyStatsFromRecordings();
+    }
+
+    /**
+     * Compare the rollup tables with a fresh GROUP BY and rebuild them if they differ
+     * @return Number of rows that were out of date before the rebuild
+     */
+    @Transaction
+    public int verifyAndRebuild() {
+        int mismatches = countContactStatsMismatches() + countDailyStatsMismatches();
+        if (mismatches > 0) {
+            rebuild();
+        }
+        return mismatches;
+    }
+}
@@ -0,0 +1,62 @@
+package com.callrecorder.app.database;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.callrecorder.app.CallRecorderApp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the call statistics rollups against the recordings table and rebuilds them
+ * if they drifted. Scans the whole archive, so it runs as daily background work
+ * while the device charges.
+ */
+public class CallStatsRebuildJob extends Worker {
+    private static final String TAG = "CallStatsRebuildJob";
+    private static final String WORK_NAME = "call_stats_verify";
+
+    public CallStatsRebuildJob(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Make sure the daily check is scheduled. Keeps an existing schedule, so it is
+     * cheap to call on every start.
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresCharging(true)
+                .setRequiresBatteryNotLow(true)
+                .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(CallStatsRebuildJob.class,
+                1, TimeUnit.DAYS)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        try {
+            int mismatches = CallRecorderApp.getDatabase().callStatsDao().verifyAndRebuild();
+            if (mismatches > 0) {
+                Log.w(TAG, "Rebuilt call statistics, " + mismatches + " rows were out of date");
+            }
+            return Result.success();
+        } catch (Exception e) {
+            Log.e(TAG, "Error rebuilding call statistics", e);
+            return Result.retry();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.callrecorder.app.database;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * SQL that keeps contact_stats and daily_stats in step with the recordings table.
+ * Every insert, delete, or change to a counted column adjusts the affected rollup
+ * rows, so reading the totals never scans recordings.
+ *
+ * Days come from recordings.day, the local calendar day stored when the row is
+ * written. Computing them from the date at trigger time would file a deletion under
+ * a different day than the insert after a time zone or DST change.
+ */
+public final class CallStatsTriggers {
+
+    // Local calendar day of a date in the current time zone, matching DailyStats.day
+    public static final String LOCAL_DAY_OF_DATE = "date(date / 1000, 'unixepoch', 'localtime')";
+    private static final String LOCAL_DAY_OF_NEW = "date(NEW.date / 1000, 'unixepoch', 'localtime')";
+    // Read back after the trigger stores it, so both rollups use the same value
+    private static final String STORED_DAY_OF_NEW = "(SELECT day FROM recordings WHERE id = NEW.id)";
+
+    public static final String CREATE_CONTACT_STATS_TABLE =
+            "CREATE TABLE IF NOT EXISTS contact_stats (" +
+            "contactId INTEGER NOT NULL, callCount INTEGER NOT NULL, " +
+            "incomingCount INTEGER NOT NULL, outgoingCount INTEGER NOT NULL, " +
+            "totalDuration INTEGER NOT NULL, lastCallDate INTEGER NOT NULL DEFAULT 0, " +
+            "PRIMARY KEY(contactId))";
+
+    // Keyset paging of the contacts list walks this index newest first
+    public static final String CREATE_CONTACT_STATS_INDEX =
+            "CREATE INDEX IF NOT EXISTS index_contact_stats_lastCallDate_contactId " +
+            "ON contact_stats (lastCallDate, contactId)";
+
+    public static final String CREATE_DAILY_STATS_TABLE =
+            "CREATE TABLE IF NOT EXISTS daily_stats (" +
+            "day TEXT NOT NULL, callCount INTEGER NOT NULL, incomingCount INTEGER NOT NULL, " +
+            "outgoingCount INTEGER NOT NULL, totalDuration INTEGER NOT NULL, PRIMARY KEY(day))";
+
+    // Full recomputation, used by migrations and the rebuild job
+    public static final String REBUILD_CONTACT_STATS =
+            "INSERT INTO contact_stats (contactId, callCount, incomingCount, " +
+            "outgoingCount, totalDuration, lastCallDate) " +
+            "SELECT COALESCE(contactId, 0), COUNT(*), " +
+            "SUM(callType = 1), SUM(callType = 2), SUM(duration), MAX(date) " +
+            "FROM recordings GROUP BY COALESCE(contactId, 0)";
+
+    // Rows written before the triggers existed get their day from the current time zone
+    public static final String FILL_MISSING_DAYS =
+            "UPDATE recordings SET day = " + LOCAL_DAY_OF_DATE + " WHERE day IS NULL";
+
+    public static final String REBUILD_DAILY_STATS =
+            "INSERT INTO daily_stats (day, callCount, incomingCount, outgoingCount, totalDuration) " +
+            "SELECT day, COUNT(*), SUM(callType = 1), SUM(callType = 2), SUM(duration) " +
+            "FROM recordings GROUP BY day";
+
+    // Rows whose stored totals differ from a fresh GROUP BY, in either direction
+    public static final String COUNT_CONTACT_STATS_MISMATCHES =
+            "SELECT (SELECT COUNT(*) FROM (" +
+            "SELECT COALESCE(contactId, 0) AS k, COUNT(*) AS c, SUM(callType = 1) AS i, " +
+            "SUM(callType = 2) AS o, SUM(duration) AS d, MAX(date) AS l " +
+            "FROM recordings GROUP BY k) g " +
+            "LEFT JOIN contact_stats s ON s.contactId = g.k " +
+            "WHERE s.contactId IS NULL OR s.callCount != g.c OR s.incomingCount != g.i " +
+            "OR s.outgoingCount != g.o OR s.totalDuration != g.d OR s.lastCallDate != g.l) + " +
+            "(SELECT COUNT(*) FROM contact_stats WHERE contactId NOT IN " +
+            "(SELECT COALESCE(contactId, 0) FROM recordings))";
+
+    public static final String COUNT_DAILY_STATS_MISMATCHES =
+            "SELECT (SELECT COUNT(*) FROM (" +
+            "SELECT day AS k, COUNT(*) AS c, " +
+            "SUM(callType = 1) AS i, SUM(callType = 2) AS o, SUM(duration) AS d " +
+            "FROM recordings GROUP BY k) g " +
+            "LEFT JOIN daily_stats s ON s.day = g.k " +
+            "WHERE s.day IS NULL OR s.callCount != g.c OR s.incomingCount != g.i " +
+            "OR s.outgoingCount != g.o OR s.totalDuration != g.d) + " +
+            "(SELECT COUNT(*) FROM daily_stats WHERE day NOT IN " +
+            "(SELECT day FROM recordings WHERE day IS NOT NULL))";
+
+    private static final String TRIGGER_INSERT = "recordings_stats_insert";
+    private static final String TRIGGER_DELETE = "recordings_stats_delete";
+    private static final String TRIGGER_UPDATE = "recordings_stats_update";
+
+    private CallStatsTriggers() {
+    }
+
+    public static void createTables(SupportSQLiteDatabase db) {
+        db.execSQL(CREATE_CONTACT_STATS_TABLE);
+        db.execSQL(CREATE_CONTACT_STATS_INDEX);
+        db.execSQL(CREATE_DAILY_STATS_TABLE);
+    }
+
+    public static void createTriggers(SupportSQLiteDatabase db) {
+        // A day set by the caller, such as a restored row, is kept
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TRIGGER_INSERT +
+                " AFTER INSERT ON recordings BEGIN " +
+                "UPDATE recordings SET day = COALESCE(NEW.day, " + LOCAL_DAY_OF_NEW + ") " +
+                "WHERE id = NEW.id; " +
+                add("NEW", STORED_DAY_OF_NEW) +
+                "END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TRIGGER_DELETE +
+                " AFTER DELETE ON recordings BEGIN " +
+                subtract("OLD", "OLD.day") +
+                "END");
+
+        // Fires only when a counted column is written, whether or not its value changes.
+        // The star and notes setters in RecordingDao write their own columns and leave
+        // the totals alone; a whole-row @Update would write all of them and fire it.
+        // The day moves only when the date does; writing day alone does not fire this.
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TRIGGER_UPDATE +
+                " AFTER UPDATE OF contactId, callType, duration, date ON recordings BEGIN " +
+                subtract("OLD", "OLD.day") +
+                "UPDATE recordings SET day = CASE WHEN NEW.date = OLD.date AND OLD.day IS NOT NULL THEN OLD.day " +
+                "ELSE " + LOCAL_DAY_OF_NEW + " END WHERE id = NEW.id; " +
+                add("NEW", STORED_DAY_OF_NEW) +
+                "END");
+    }
+
+    public static void dropTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("DROP TRIGGER IF EXISTS " + TRIGGER_INSERT);
+        db.execSQL("DROP TRIGGER IF EXISTS " + TRIGGER_DELETE);
+        db.execSQL("DROP TRIGGER IF EXISTS " + TRIGGER_UPDATE);
+    }
+
+    public static void rebuild(SupportSQLiteDatabase db) {
+        db.execSQL(FILL_MISSING_DAYS);
+        db.execSQL("DELETE FROM contact_stats");
+        db.execSQL("DELETE FROM daily_stats");
+        db.execSQL(REBUILD_CONTACT_STATS);
+        db.execSQL(REBUILD_DAILY_STATS);
+    }
+
+    private static String add(String row, String day) {
+        String contact = "COALESCE(" + row + ".contactId, 0)";
+        return "INSERT OR IGNORE INTO contact_stats (contactId, callCount, " +
+                "incomingCount, outgoingCount, totalDuration) VALUES (" + contact + ", 0, 0, 0, 0); " +
+                "UPDATE contact_stats SET callCount = callCount + 1, " +
+                "incomingCount = incomingCount + (" + row + ".callType = 1), " +
+                "outgoingCount = outgoingCount + (" + row + ".callType = 2), " +
+                "totalDuration = totalDuration + " + row + ".duration, " +
+                "lastCallDate = MAX(lastCallDate, " + row + ".date) " +
+                "WHERE contactId = " + contact + "; " +
+                "INSERT OR IGNORE INTO daily_stats (day, callCount, incomingCount, outgoingCount, " +
+                "totalDuration) VALUES (" + day + ", 0, 0, 0, 0); " +
+                "UPDATE daily_stats SET callCount = callCount + 1, " +
+                "incomingCount = incomingCount + (" + row + ".callType = 1), " +
+                "outgoingCount = outgoingCount + (" + row + ".callType = 2), " +
+                "totalDuration = totalDuration + " + row + ".duration " +
+                "WHERE day = " + day + "; ";
+    }
+
+    // Newest remaining recording of the row's contact, looked up through the contactId
+    // index. Triggers run after the change, so a deleted row is already gone.
+    private static String latestDate(String row) {
+        return "COALESCE(CASE WHEN " + row + ".contactId IS NULL " +
+                "THEN (SELECT MAX(date) FROM recordings WHERE contactId IS NULL) " +
+                "ELSE (SELECT MAX(date) FROM recordings WHERE contactId = " + row + ".contactId) END, 0)";
+    }
+
+    private static String subtract(String row, String day) {
+        String contact = "COALESCE(" + row + ".contactId, 0)";
+        return "UPDATE contact_stats SET callCount = callCount - 1, " +
+                "incomingCount = incomingCount - (" + row + ".callType = 1), " +
+                "outgoingCount = outgoingCount - (" + row + ".callType = 2), " +
+                "totalDuration = totalDuration - " + row + ".duration, " +
+                "lastCallDate = " + latestDate(row) + " " +
+                "WHERE contactId = " + contact + "; " +
+                "DELETE FROM contact_stats WHERE contactId = " + contact + " AND callCount <= 0; " +
+                "UPDATE daily_stats SET callCount = callCount - 1, " +
+                "incomingCount = incomingCount - (" + row + ".callType = 1), " +
+                "outgoingCount = outgoingCount - (" + row + ".callType = 2), " +
+                "totalDuration = totalDuration - " + row + ".duration " +
+                "WHERE day = " + day + "; " +
+                "DELETE FROM daily_stats WHERE day = " + day + " AND callCount <= 0; ";
+    }
+}
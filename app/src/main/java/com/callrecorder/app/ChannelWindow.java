@@ -0,0 +1,78 @@
+package com.callrecorder.app.editing;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Big-endian reads at arbitrary positions of a file through one fixed window, so
+ * many small nearby reads (box headers, sample tables, frame headers) cost one
+ * read call per window rather than one each.
+ */
+final class ChannelWindow {
+    private final FileChannel channel;
+    private final ByteBuffer window;
+    private long windowStart;
+    private int windowLength;
+
+    ChannelWindow(FileChannel channel, int windowSize) {
+        this.channel = channel;
+        this.window = ByteBuffer.allocate(windowSize);
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    int readUnsignedByte(long position) throws IOException {
+        return window.get(load(position, 1)) & 0xff;
+    }
+
+    int readUnsignedShort(long position) throws IOException {
+        return window.getShort(load(position, 2)) & 0xffff;
+    }
+
+    int readInt(long position) throws IOException {
+        return window.getInt(load(position, 4));
+    }
+
+    long readUnsignedInt(long position) throws IOException {
+        return readInt(position) & 0xffffffffL;
+    }
+
+    long readLong(long position) throws IOException {
+        return window.getLong(load(position, 8));
+    }
+
+    void read(long position, byte[] destination) throws IOException {
+        int done = 0;
+        while (done < destination.length) {
+            int length = Math.min(destination.length - done, window.capacity());
+            int index = load(position + done, length);
+            for (int i = 0; i < length; i++) {
+                destination[done + i] = window.get(index + i);
+            }
+            done += length;
+        }
+    }
+
+    // Index into the window of the bytes at position, refilling it if they are not there
+    private int load(long position, int length) throws IOException {
+        if (position >= windowStart && position + length <= windowStart + windowLength) {
+            return (int) (position - windowStart);
+        }
+        window.clear();
+        windowStart = position;
+        while (window.hasRemaining()) {
+            if (channel.read(window, position + window.position()) < 0) {
+                break;
+            }
+        }
+        windowLength = window.position();
+        if (windowLength < length) {
+            throw new EOFException("Read past end of file at " + position);
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,280 @@
+package com.callrecorder.app.upload;
+
+import android.util.Log;
+
+import com.callrecorder.app.database.UploadDao;
+import com.callrecorder.app.models.RecordingFile;
+import com.callrecorder.app.models.UploadChunk;
+import com.callrecorder.app.models.UploadSession;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads recording files in fixed-size chunks, a few at a time. Each
+ * acknowledged chunk is recorded in Room, so after a dropped connection or
+ * process death only the missing chunks are sent again.
+ */
+public class ChunkedUploader {
+    private static final String TAG = "ChunkedUploader";
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int PARALLEL_UPLOADS = 3;
+    private static final int MAX_ATTEMPTS = 6;
+    private static final long BASE_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30000;
+    private static final long WORKER_SHUTDOWN_SECONDS = 10;
+    // SQLite allows 999 bound variables per statement
+    private static final int MAX_INDEXES_PER_UPDATE = 500;
+
+    private final UploadDao uploadDao;
+    private final UploadServer server;
+    private final long baseBackoffMillis;
+    private final Random random = new Random();
+    private volatile boolean stopped;
+
+    public ChunkedUploader(UploadDao uploadDao, UploadServer server) {
+        this(uploadDao, server, BASE_BACKOFF_MILLIS);
+    }
+
+    // Tests shorten the backoff so retries don't dominate the run time
+    ChunkedUploader(UploadDao uploadDao, UploadServer server, long baseBackoffMillis) {
+        this.uploadDao = uploadDao;
+        this.server = server;
+        this.baseBackoffMillis = baseBackoffMillis;
+    }
+
+    /**
+     * Stop after the chunks in flight; progress so far is kept
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Upload a recording file, resuming an earlier session when the file is unchanged.
+     * Blocks, so call it from a background thread.
+     * @return true once the server has the whole file, false if stopped first
+     */
+    public boolean upload(RecordingFile recording) throws IOException {
+        File file = new File(recording.getFilePath());
+        if (!file.isFile()) {
+            Log.w(TAG, "Missing file for recording " + recording.getId());
+            return false;
+        }
+
+        UploadSession session = uploadDao.getSessionForRecording(recording.getId());
+        if (session != null && (session.getFileSize() != file.length()
+                || session.getLastModified() != file.lastModified()
+                || !file.getPath().equals(session.getFilePath()))) {
+            // The file changed since the session began; its chunks no longer line up
+            uploadDao.deleteSession(session);
+            session = null;
+        }
+        if (session != null && session.isCompleted()) {
+            return true;
+        }
+
+        if (session == null) {
+            session = startSession(recording, file);
+        } else {
+            try {
+                reconcile(session);
+            } catch (UploadServer.UploadNotFoundException e) {
+                Log.w(TAG, "Server dropped upload " + session.getUploadId() + ", starting over");
+                uploadDao.deleteSession(session);
+                session = startSession(recording, file);
+            }
+        }
+
+        if (!uploadChunks(session, file)) {
+            return false;
+        }
+        final String uploadId = session.getUploadId();
+        withRetry(() -> {
+            server.finishUpload(uploadId);
+            return null;
+        });
+        uploadDao.markCompleted(session.getId());
+        return true;
+    }
+
+    private UploadSession startSession(RecordingFile recording, File file) throws IOException {
+        final String name = file.getName();
+        final long size = file.length();
+        String uploadId = withRetry(() -> server.startUpload(name, size, CHUNK_SIZE));
+        return uploadDao.createSession(new UploadSession(0, recording.getId(), file.getPath(),
+                size, file.lastModified(), CHUNK_SIZE, uploadId, false));
+    }
+
+    // Chunks whose acknowledgement was lost are marked done without sending them again
+    private void reconcile(UploadSession session) throws IOException {
+        final String uploadId = session.getUploadId();
+        List<Integer> received = withRetry(() -> server.getReceivedChunks(uploadId));
+        for (int start = 0; start < received.size(); start += MAX_INDEXES_PER_UPDATE) {
+            int end = Math.min(received.size(), start + MAX_INDEXES_PER_UPDATE);
+            uploadDao.markChunksDone(session.getId(), received.subList(start, end));
+        }
+    }
+
+    private boolean uploadChunks(UploadSession session, File file) throws IOException {
+        List<UploadChunk> pending = uploadDao.getPendingChunks(session.getId());
+        if (pending.isEmpty()) {
+            return true;
+        }
+
+        // One buffer per worker, reused for every chunk it sends
+        final BlockingQueue<ByteBuffer> buffers = new ArrayBlockingQueue<>(PARALLEL_UPLOADS);
+        for (int i = 0; i < PARALLEL_UPLOADS; i++) {
+            buffers.add(ByteBuffer.allocate(session.getChunkSize()));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(PARALLEL_UPLOADS);
+        FileInputStream in = new FileInputStream(file);
+        try {
+            final FileChannel channel = in.getChannel();
+            final String uploadId = session.getUploadId();
+            ExecutorCompletionService<Void> completion = new ExecutorCompletionService<>(executor);
+            List<Future<Void>> futures = new ArrayList<>(pending.size());
+            for (final UploadChunk chunk : pending) {
+                futures.add(completion.submit(() -> {
+                    if (stopped) {
+                        return null;
+                    }
+                    ByteBuffer buffer = buffers.take();
+                    try {
+                        sendChunk(channel, uploadId, chunk, buffer);
+                    } finally {
+                        buffers.add(buffer);
+                    }
+                    uploadDao.markChunkDone(chunk.getSessionId(), chunk.getChunkIndex());
+                    return null;
+                }));
+            }
+
+            // Wait in completion order so the first failure stops the rest promptly
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    completion.take().get();
+                } catch (ExecutionException e) {
+                    for (Future<Void> future : futures) {
+                        future.cancel(true);
+                    }
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IOException("Chunk upload failed", cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Upload interrupted");
+        } finally {
+            // Let cancelled workers finish before the file closes under them
+            executor.shutdownNow();
+            awaitWorkers(executor);
+            in.close();
+        }
+        return !stopped;
+    }
+
+    private static void awaitWorkers(ExecutorService executor) {
+        try {
+            executor.awaitTermination(WORKER_SHUTDOWN_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sendChunk(FileChannel channel, String uploadId, UploadChunk chunk, ByteBuffer buffer)
+            throws IOException {
+        // Positional reads, so workers share the channel without seeking
+        buffer.clear();
+        buffer.limit(chunk.getLength());
+        long position = chunk.getChunkOffset();
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("File ended before chunk " + chunk.getChunkIndex());
+            }
+            position += read;
+        }
+        buffer.flip();
+        final ByteBuffer data = buffer;
+        final String sha256 = sha256(data);
+        withRetry(() -> {
+            server.putChunk(uploadId, chunk.getChunkIndex(), data.duplicate(), sha256);
+            return null;
+        });
+    }
+
+    private interface ServerCall<T> {
+        T call() throws IOException;
+    }
+
+    // Exponential backoff with full jitter; a throttled call waits at least as long as asked
+    private <T> T withRetry(ServerCall<T> call) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.call();
+            } catch (InterruptedIOException | UploadServer.UploadNotFoundException e) {
+                throw e;
+            } catch (IOException e) {
+                if (attempt >= MAX_ATTEMPTS || stopped) {
+                    throw e;
+                }
+                long ceiling = Math.min(MAX_BACKOFF_MILLIS, baseBackoffMillis << (attempt - 1));
+                long delay;
+                synchronized (random) {
+                    delay = (long) (random.nextDouble() * ceiling);
+                }
+                if (e instanceof UploadServer.ThrottledException) {
+                    delay = Math.max(delay, ((UploadServer.ThrottledException) e).retryAfterMillis);
+                }
+                Log.w(TAG, "Upload call failed (attempt " + attempt + "), retrying in " + delay + " ms: "
+                        + e.getMessage());
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Upload interrupted");
+                }
+            }
+        }
+    }
+
+    // Hex SHA-256 of a buffer's remaining bytes, leaving its position alone
+    static String sha256(ByteBuffer data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(data.duplicate());
+            byte[] hash = digest.digest();
+            char[] hex = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                int b = hash[i] & 0xff;
+                hex[i * 2] = Character.forDigit(b >>> 4, 16);
+                hex[i * 2 + 1] = Character.forDigit(b & 0xf, 16);
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.callrecorder.app.rules;
+
+import com.callrecorder.app.utils.ContactUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Auto-record rules compiled for lookup at ring time. Explicit numbers and contact
+ * group members sit in hash maps keyed by ContactUtils.getMatchKey, and prefixes and
+ * country codes in a trie over the normalized number, so a decision costs two hash
+ * lookups and one walk of at most the number's length, whatever the rule count.
+ *
+ * The most specific match decides: an explicit number, then a group, then the longest
+ * prefix, then the global auto-record setting. Exclude wins over include at the same level.
+ * Instances are immutable and safe to share between threads.
+ */
+final class CompiledRules {
+    private static final int DECISION_NONE = 0;
+    private static final int DECISION_RECORD = 1;
+    private static final int DECISION_SKIP = 2;
+
+    // '+' and the ten digits
+    private static final int ALPHABET = 11;
+
+    private final Map<String, RecordRule[]> numbers;
+    private final Map<String, RecordRule[]> groupMembers;
+    // Trie as flat arrays: child of node n for symbol s is children[n * ALPHABET + s], 0 for none
+    private final int[] children;
+    private final RecordRule[][] prefixRules;
+    private final boolean recordByDefault;
+
+    private CompiledRules(Map<String, RecordRule[]> numbers, Map<String, RecordRule[]> groupMembers,
+                          int[] children, RecordRule[][] prefixRules, boolean recordByDefault) {
+        this.numbers = numbers;
+        this.groupMembers = groupMembers;
+        this.children = children;
+        this.prefixRules = prefixRules;
+        this.recordByDefault = recordByDefault;
+    }
+
+    /**
+     * @param rules Rules in settings order
+     * @param groupNumbers Phone numbers of each group named by a group rule, keyed by group id
+     * @param recordByDefault Decision when no rule matches
+     */
+    static CompiledRules compile(List<RecordRule> rules, Map<String, Set<String>> groupNumbers,
+                                 boolean recordByDefault) {
+        Map<String, List<RecordRule>> numbers = new HashMap<>();
+        Map<String, List<RecordRule>> groupMembers = new HashMap<>();
+        TrieBuilder trie = new TrieBuilder();
+
+        for (RecordRule rule : rules) {
+            switch (rule.getType()) {
+                case RecordRule.TYPE_NUMBER:
+                    addTo(numbers, ContactUtils.getMatchKey(rule.getValue()), rule);
+                    break;
+                case RecordRule.TYPE_CONTACT_GROUP:
+                    Set<String> members = groupNumbers.get(rule.getValue());
+                    if (members != null) {
+                        for (String number : members) {
+                            addTo(groupMembers, ContactUtils.getMatchKey(number), rule);
+                        }
+                    }
+                    break;
+                case RecordRule.TYPE_PREFIX:
+                    trie.add(ContactUtils.normalizePhoneNumber(rule.getValue()), rule);
+                    break;
+                case RecordRule.TYPE_COUNTRY_CODE:
+                    // Both ways of dialing out of the country
+                    String code = ContactUtils.normalizePhoneNumber(rule.getValue()).replace("+", "");
+                    trie.add("+" + code, rule);
+                    trie.add("00" + code, rule);
+                    break;
+            }
+        }
+        return new CompiledRules(freeze(numbers), freeze(groupMembers),
+                trie.children(), trie.rules(), recordByDefault);
+    }
+
+    /**
+     * @param phoneNumber Number as reported by telephony, may be null
+     * @param minuteOfDay Local time as minutes after midnight
+     * @return true if the call should be recorded
+     */
+    boolean shouldRecord(String phoneNumber, int minuteOfDay) {
+        String normalized = ContactUtils.normalizePhoneNumber(phoneNumber);
+        if (normalized.isEmpty()) {
+            return recordByDefault;
+        }
+
+        String key = ContactUtils.getMatchKey(normalized);
+        int decision = decide(numbers.get(key), minuteOfDay);
+        if (decision == DECISION_NONE) {
+            decision = decide(groupMembers.get(key), minuteOfDay);
+        }
+        if (decision == DECISION_NONE) {
+            decision = longestPrefixDecision(normalized, minuteOfDay);
+        }
+        if (decision == DECISION_NONE) {
+            return recordByDefault;
+        }
+        return decision == DECISION_RECORD;
+    }
+
+    private int longestPrefixDecision(String normalized, int minuteOfDay) {
+        int decision = DECISION_NONE;
+        int node = 0;
+        for (int i = 0; i < normalized.length(); i++) {
+            node = children[node * ALPHABET + symbol(normalized.charAt(i))];
+            if (node == 0) {
+                break;
+            }
+            int nodeDecision = decide(prefixRules[node], minuteOfDay);
+            if (nodeDecision != DECISION_NONE) {
+                decision = nodeDecision;
+            }
+        }
+        return decision;
+    }
+
+    private static int decide(RecordRule[] rules, int minuteOfDay) {
+        if (rules == null) {
+            return DECISION_NONE;
+        }
+        int decision = DECISION_NONE;
+        for (RecordRule rule : rules) {
+            if (rule.isActiveAt(minuteOfDay)) {
+                if (!rule.isInclude()) {
+                    return DECISION_SKIP;
+                }
+                decision = DECISION_RECORD;
+            }
+        }
+        return decision;
+    }
+
+    private static int symbol(char c) {
+        return c == '+' ? 10 : c - '0';
+    }
+
+    private static void addTo(Map<String, List<RecordRule>> map, String key, RecordRule rule) {
+        if (key.isEmpty()) {
+            return;
+        }
+        List<RecordRule> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<>(1);
+            map.put(key, list);
+        }
+        list.add(rule);
+    }
+
+    private static Map<String, RecordRule[]> freeze(Map<String, List<RecordRule>> map) {
+        Map<String, RecordRule[]> frozen = new HashMap<>(Math.max(16, map.size() * 2));
+        for (Map.Entry<String, List<RecordRule>> entry : map.entrySet()) {
+            frozen.put(entry.getKey(), entry.getValue().toArray(new RecordRule[0]));
+        }
+        return frozen;
+    }
+
+    private static final class TrieBuilder {
+        private int[] children = new int[16 * ALPHABET];
+        private final List<List<RecordRule>> rules = new ArrayList<>();
+
+        TrieBuilder() {
+            rules.add(null); // root
+        }
+
+        void add(String prefix, RecordRule rule) {
+            if (prefix.isEmpty()) {
+                return;
+            }
+            int node = 0;
+            for (int i = 0; i < prefix.length(); i++) {
+                int slot = node * ALPHABET + symbol(prefix.charAt(i));
+                if (children[slot] == 0) {
+                    children[slot] = newNode();
+                }
+                node = children[slot];
+            }
+            if (rules.get(node) == null) {
+                rules.set(node, new ArrayList<RecordRule>(1));
+            }
+            rules.get(node).add(rule);
+        }
+
+        private int newNode() {
+            int node = rules.size();
+            rules.add(null);
+            if ((node + 1) * ALPHABET > children.length) {
+                children = Arrays.copyOf(children, children.length * 2);
+            }
+            return node;
+        }
+
+        int[] children() {
+            return Arrays.copyOf(children, rules.size() * ALPHABET);
+        }
+
+        RecordRule[][] rules() {
+            RecordRule[][] frozen = new RecordRule[rules.size()][];
+            for (int i = 0; i < frozen.length; i++) {
+                List<RecordRule> nodeRules = rules.get(i);
+                frozen[i] = nodeRules != null ? nodeRules.toArray(new RecordRule[0]) : null;
+            }
+            return frozen;
+        }
+    }
+}
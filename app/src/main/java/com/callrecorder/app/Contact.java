@@ -0,0 +1,61 @@
+package com.callrecorder.app.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * One row per distinct phone number, shared by all recordings of that number in
+ * whatever format telephony reported it
+ */
+@Entity(tableName = "contacts",
+        indices = {@Index(value = "normalizedNumber", unique = true)})
+public class Contact {
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+    @NonNull
+    private String normalizedNumber; // ContactUtils.getMatchKey of the number
+    private String phoneNumber;
+    private String contactName;
+
+    public Contact(long id, @NonNull String normalizedNumber, String phoneNumber, String contactName) {
+        this.id = id;
+        this.normalizedNumber = normalizedNumber;
+        this.phoneNumber = phoneNumber;
+        this.contactName = contactName;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    @NonNull
+    public String getNormalizedNumber() {
+        return normalizedNumber;
+    }
+
+    public void setNormalizedNumber(@NonNull String normalizedNumber) {
+        this.normalizedNumber = normalizedNumber;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    public void setPhoneNumber(String phoneNumber) {
+        this.phoneNumber = phoneNumber;
+    }
+
+    public String getContactName() {
+        return contactName;
+    }
+
+    public void setContactName(String contactName) {
+        this.contactName = contactName;
+    }
+}
@@ -0,0 +1,50 @@
+package com.callrecorder.app.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.callrecorder.app.models.Contact;
+import com.callrecorder.app.utils.ContactUtils;
+
+@Dao
+public abstract class ContactDao {
+    @Query("SELECT * FROM contacts WHERE id = :id")
+    public abstract Contact getContactById(long id);
+
+    @Query("SELECT * FROM contacts WHERE normalizedNumber = :normalizedNumber")
+    public abstract Contact getContactByNormalizedNumber(String normalizedNumber);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    abstract long insert(Contact contact);
+
+    @Query("UPDATE contacts SET contactName = :contactName, phoneNumber = :phoneNumber WHERE id = :id")
+    abstract void updateNameAndNumber(long id, String phoneNumber, String contactName);
+
+    /**
+     * Find the contact row for a number, creating it if needed. Rows are keyed by
+     * ContactUtils.getMatchKey, so +966501234567, 00966501234567 and 0501234567
+     * share one contact, as they share one address book entry.
+     * @param phoneNumber Phone number as reported by telephony
+     * @param contactName Current display name, or null to keep the stored one
+     * @return Contact id, or null for calls without a number
+     */
+    @Transaction
+    public Long getOrCreateContactId(String phoneNumber, String contactName) {
+        String matchKey = ContactUtils.getMatchKey(phoneNumber);
+        if (matchKey.isEmpty()) {
+            return null;
+        }
+
+        Contact existing = getContactByNormalizedNumber(matchKey);
+        if (existing == null) {
+            return insert(new Contact(0, matchKey, phoneNumber, contactName));
+        }
+        if (contactName != null && !contactName.equals(existing.getContactName())) {
+            updateNameAndNumber(existing.getId(), phoneNumber, contactName);
+        }
+        return existing.getId();
+    }
+}
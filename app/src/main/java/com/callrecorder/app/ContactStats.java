@@ -0,0 +1,81 @@
+package com.callrecorder.app.models;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Per-contact call totals, kept up to date by triggers on the recordings table.
+ * Calls without a number are counted under contact id 0.
+ */
+@Entity(tableName = "contact_stats",
+        indices = {@Index({"lastCallDate", "contactId"})})
+public class ContactStats {
+    @PrimaryKey
+    private long contactId;
+    private long callCount;
+    private long incomingCount;
+    private long outgoingCount;
+    private long totalDuration;
+    @ColumnInfo(defaultValue = "0")
+    private long lastCallDate; // date of the newest recording
+
+    public ContactStats(long contactId, long callCount, long incomingCount,
+                        long outgoingCount, long totalDuration, long lastCallDate) {
+        this.contactId = contactId;
+        this.callCount = callCount;
+        this.incomingCount = incomingCount;
+        this.outgoingCount = outgoingCount;
+        this.totalDuration = totalDuration;
+        this.lastCallDate = lastCallDate;
+    }
+
+    public long getContactId() {
+        return contactId;
+    }
+
+    public void setContactId(long contactId) {
+        this.contactId = contactId;
+    }
+
+    public long getCallCount() {
+        return callCount;
+    }
+
+    public void setCallCount(long callCount) {
+        this.callCount = callCount;
+    }
+
+    public long getIncomingCount() {
+        return incomingCount;
+    }
+
+    public void setIncomingCount(long incomingCount) {
+        this.incomingCount = incomingCount;
+    }
+
+    public long getOutgoingCount() {
+        return outgoingCount;
+    }
+
+    public void setOutgoingCount(long outgoingCount) {
+        this.outgoingCount = outgoingCount;
+    }
+
+    public long getTotalDuration() {
+        return totalDuration;
+    }
+
+    public void setTotalDuration(long totalDuration) {
+        this.totalDuration = totalDuration;
+    }
+
+    public long getLastCallDate() {
+        return lastCallDate;
+    }
+
+    public void setLastCallDate(long lastCallDate) {
+        this.lastCallDate = lastCallDate;
+    }
+}
@@ -5,6 +5,9 @@ import android.database.Cursor;
 import android.net.Uri;
 import android.provider.ContactsContract;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class ContactUtils {
     
     /**
@@ -41,6 +44,80 @@ public class ContactUtils {
         return contactName;
     }
     
+    // Trailing digits compared when matching against the address book, enough to tell
+    // subscribers apart while ignoring country and trunk prefixes
+    private static final int MATCH_DIGITS = 9;
+
+    /**
+     * Read every phone number in the address book with one query
+     * @param context Application context
+     * @return Display names keyed by getMatchKey() of each number; empty without permission
+     */
+    public static Map<String, String> getAddressBookNames(Context context) {
+        Map<String, String> names = new HashMap<>();
+        String[] projection = new String[]{
+                ContactsContract.CommonDataKinds.Phone.NUMBER,
+                ContactsContract.CommonDataKinds.Phone.DISPLAY_NAME
+        };
+
+        Cursor cursor = null;
+        try {
+            cursor = context.getContentResolver().query(
+                    ContactsContract.CommonDataKinds.Phone.CONTENT_URI, projection, null, null, null);
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    String key = getMatchKey(cursor.getString(0));
+                    String name = cursor.getString(1);
+                    // The first entry wins when two contacts share a number
+                    if (!key.isEmpty() && name != null && !names.containsKey(key)) {
+                        names.put(key, name);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     * Key for matching a number against getAddressBookNames()
+     * @param phoneNumber Raw phone number
+     * @return Last digits of the number, empty if there are none
+     */
+    public static String getMatchKey(String phoneNumber) {
+        String normalized = normalizePhoneNumber(phoneNumber);
+        int digitsStart = normalized.startsWith("+") ? 1 : 0;
+        return normalized.substring(Math.max(digitsStart, normalized.length() - MATCH_DIGITS));
+    }
+
+    /**
+     * Normalize a phone number for matching: digits only, keeping a leading plus sign
+     * @param phoneNumber Raw phone number
+     * @return Normalized number, empty if there are no digits
+     */
+    public static String normalizePhoneNumber(String phoneNumber) {
+        if (phoneNumber == null || phoneNumber.isEmpty()) {
+            return "";
+        }
+
+        StringBuilder normalized = new StringBuilder(phoneNumber.length());
+        for (int i = 0; i < phoneNumber.length(); i++) {
+            char c = phoneNumber.charAt(i);
+            if (c >= '0' && c <= '9') {
+                normalized.append(c);
+            } else if (c == '+' && normalized.length() == 0) {
+                normalized.append(c);
+            }
+        }
+        return normalized.length() == 1 && normalized.charAt(0) == '+' ? "" : normalized.toString();
+    }
+    
     /**
      * Format phone number for display
      * @param phoneNumber Raw phone number
@@ -0,0 +1,88 @@
+package com.callrecorder.app.models;
+
+/**
+ * A contacts list row: the stored contact joined with its contact_stats totals.
+ * The name is replaced with the address book's display name when one matches.
+ */
+public class ContactWithStats {
+    private final long id;
+    private final String phoneNumber;
+    private final String contactName;
+    private final long callCount;
+    private final long totalDuration;
+    private final long lastCallDate;
+
+    public ContactWithStats(long id, String phoneNumber, String contactName, long callCount,
+                            long totalDuration, long lastCallDate) {
+        this.id = id;
+        this.phoneNumber = phoneNumber;
+        this.contactName = contactName;
+        this.callCount = callCount;
+        this.totalDuration = totalDuration;
+        this.lastCallDate = lastCallDate;
+    }
+
+    /**
+     * Copy of this row showing a different name
+     * @param displayName Name to show
+     * @return This row if the name is unchanged, otherwise a copy
+     */
+    public ContactWithStats withContactName(String displayName) {
+        if (equalsNullable(contactName, displayName)) {
+            return this;
+        }
+        return new ContactWithStats(id, phoneNumber, displayName, callCount, totalDuration, lastCallDate);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    public String getContactName() {
+        return contactName;
+    }
+
+    public long getCallCount() {
+        return callCount;
+    }
+
+    public long getTotalDuration() {
+        return totalDuration;
+    }
+
+    public long getLastCallDate() {
+        return lastCallDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ContactWithStats)) return false;
+        ContactWithStats other = (ContactWithStats) o;
+        return id == other.id &&
+               callCount == other.callCount &&
+               totalDuration == other.totalDuration &&
+               lastCallDate == other.lastCallDate &&
+               equalsNullable(phoneNumber, other.phoneNumber) &&
+               equalsNullable(contactName, other.contactName);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (id ^ (id >>> 32));
+        result = 31 * result + (phoneNumber != null ? phoneNumber.hashCode() : 0);
+        result = 31 * result + (contactName != null ? contactName.hashCode() : 0);
+        result = 31 * result + (int) (callCount ^ (callCount >>> 32));
+        result = 31 * result + (int) (totalDuration ^ (totalDuration >>> 32));
+        result = 31 * result + (int) (lastCallDate ^ (lastCallDate >>> 32));
+        return result;
+    }
+
+    private static boolean equalsNullable(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,105 @@
+package com.callrecorder.app.adapters;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.callrecorder.app.R;
+import com.callrecorder.app.models.ContactWithStats;
+import com.callrecorder.app.utils.AvatarLoader;
+import com.callrecorder.app.utils.ContactUtils;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+public class ContactsAdapter extends ListAdapter<ContactWithStats, ContactsAdapter.ContactViewHolder> {
+
+    private final ContactItemListener listener;
+    private final AvatarLoader avatarLoader;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMM، hh:mm a", new Locale("ar"));
+
+    public ContactsAdapter(ContactItemListener listener, AvatarLoader avatarLoader) {
+        super(DIFF_CALLBACK);
+        this.listener = listener;
+        this.avatarLoader = avatarLoader;
+    }
+
+    @NonNull
+    @Override
+    public ContactViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View itemView = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_contact, parent, false);
+        return new ContactViewHolder(itemView);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ContactViewHolder holder, int position) {
+        holder.bind(getItem(position));
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ContactViewHolder holder) {
+        avatarLoader.cancel(holder.avatarImageView);
+    }
+
+    class ContactViewHolder extends RecyclerView.ViewHolder {
+        private final TextView nameTextView;
+        private final TextView callCountTextView;
+        private final TextView lastCallTextView;
+        private final ImageView avatarImageView;
+
+        public ContactViewHolder(@NonNull View itemView) {
+            super(itemView);
+            nameTextView = itemView.findViewById(R.id.text_view_name);
+            callCountTextView = itemView.findViewById(R.id.text_view_call_count);
+            lastCallTextView = itemView.findViewById(R.id.text_view_last_call);
+            avatarImageView = itemView.findViewById(R.id.image_view_avatar);
+
+            itemView.setOnClickListener(v -> {
+                int position = getAdapterPosition();
+                if (position != RecyclerView.NO_POSITION && listener != null) {
+                    listener.onContactClick(getItem(position));
+                }
+            });
+        }
+
+        public void bind(ContactWithStats contact) {
+            // Set contact name or phone number
+            String displayName = contact.getContactName();
+            if (displayName == null || displayName.isEmpty()) {
+                displayName = ContactUtils.formatPhoneNumber(contact.getPhoneNumber());
+            }
+            nameTextView.setText(displayName);
+
+            callCountTextView.setText(String.format(new Locale("ar"), "%d مكالمة", contact.getCallCount()));
+            lastCallTextView.setText(dateFormat.format(new Date(contact.getLastCallDate())));
+
+            avatarLoader.load(contact.getPhoneNumber(), avatarImageView, R.drawable.ic_contact_placeholder);
+        }
+    }
+
+    public interface ContactItemListener {
+        void onContactClick(ContactWithStats contact);
+    }
+
+    private static final DiffUtil.ItemCallback<ContactWithStats> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<ContactWithStats>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull ContactWithStats oldItem, @NonNull ContactWithStats newItem) {
+                    return oldItem.getId() == newItem.getId();
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull ContactWithStats oldItem, @NonNull ContactWithStats newItem) {
+                    return oldItem.equals(newItem);
+                }
+            };
+}
@@ -0,0 +1,89 @@
+package com.callrecorder.app.fragments;
+
+import android.os.Bundle;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.callrecorder.app.R;
+import com.callrecorder.app.adapters.ContactsAdapter;
+import com.callrecorder.app.models.ContactWithStats;
+import com.callrecorder.app.utils.AvatarLoader;
+import com.callrecorder.app.viewmodels.ContactsViewModel;
+
+import java.util.List;
+
+public class ContactsFragment extends Fragment implements ContactsAdapter.ContactItemListener {
+    private ContactsViewModel viewModel;
+    private ContactsAdapter adapter;
+    private LinearLayoutManager layoutManager;
+    private RecyclerView recyclerView;
+    private TextView emptyView;
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
+        View view = inflater.inflate(R.layout.fragment_contacts, container, false);
+
+        // Initialize views
+        recyclerView = view.findViewById(R.id.recycler_view_contacts);
+        emptyView = view.findViewById(R.id.text_empty_contacts);
+
+        return view;
+    }
+
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+
+        viewModel = new ViewModelProvider(requireActivity()).get(ContactsViewModel.class);
+
+        setupRecyclerView();
+
+        viewModel.getContacts().observe(getViewLifecycleOwner(), contacts -> {
+            adapter.submitList(contacts);
+            updateEmptyView(contacts);
+        });
+    }
+
+    private void setupRecyclerView() {
+        adapter = new ContactsAdapter(this, AvatarLoader.getInstance(requireContext()));
+        layoutManager = new LinearLayoutManager(requireContext());
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.setAdapter(adapter);
+
+        // Ask for the next page while half a page is still left to scroll
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                if (dy > 0 && lastVisible >= adapter.getItemCount() - ContactsViewModel.PAGE_SIZE / 2) {
+                    viewModel.loadMore();
+                }
+            }
+        });
+    }
+
+    private void updateEmptyView(List<ContactWithStats> contacts) {
+        if (contacts == null || contacts.isEmpty()) {
+            emptyView.setVisibility(View.VISIBLE);
+            recyclerView.setVisibility(View.GONE);
+        } else {
+            emptyView.setVisibility(View.GONE);
+            recyclerView.setVisibility(View.VISIBLE);
+        }
+    }
+
+    @Override
+    public void onContactClick(ContactWithStats contact) {
+        // Open the contact's recordings
+    }
+}
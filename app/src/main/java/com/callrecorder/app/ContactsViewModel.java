@@ -0,0 +1,190 @@
+package com.callrecorder.app.viewmodels;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.pm.PackageManager;
+import android.database.ContentObserver;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.ContactsContract;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.room.InvalidationTracker;
+
+import com.callrecorder.app.database.AppDatabase;
+import com.callrecorder.app.database.CallStatsDao;
+import com.callrecorder.app.models.ContactWithStats;
+import com.callrecorder.app.utils.ContactUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Contacts with their call totals, newest call first. Rows come from one joined query
+ * over contacts and the contact_stats rollup, loaded a page at a time, and names are
+ * filled in from a single bulk read of the address book rather than a lookup per row.
+ * A change to either side re-reads only that side and re-publishes the merged list.
+ */
+public class ContactsViewModel extends AndroidViewModel {
+    public static final int PAGE_SIZE = 50;
+
+    private final CallStatsDao callStatsDao;
+    private final InvalidationTracker invalidationTracker;
+    private final MutableLiveData<List<ContactWithStats>> contacts = new MutableLiveData<>();
+    // One thread, so the fields below are only touched in order
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean loadPending = new AtomicBoolean();
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    private final AtomicBoolean addressBookPending = new AtomicBoolean();
+    private final boolean addressBookReadable;
+
+    private final List<ContactWithStats> rows = new ArrayList<>();
+    private Map<Long, ContactWithStats> publishedById = new HashMap<>();
+    private Map<String, String> addressBookNames;
+    private boolean endReached;
+
+    private final InvalidationTracker.Observer statsObserver =
+            new InvalidationTracker.Observer("contact_stats", "contacts") {
+                @Override
+                public void onInvalidated(@NonNull Set<String> tables) {
+                    requestRefresh();
+                }
+            };
+
+    private final ContentObserver addressBookObserver =
+            new ContentObserver(new Handler(Looper.getMainLooper())) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    requestAddressBookReload();
+                }
+            };
+
+    public ContactsViewModel(@NonNull Application application) {
+        super(application);
+        AppDatabase database = AppDatabase.getInstance(application);
+        callStatsDao = database.callStatsDao();
+        invalidationTracker = database.getInvalidationTracker();
+
+        invalidationTracker.addObserver(statsObserver);
+        // Registering without READ_CONTACTS throws; the list then shows numbers only
+        addressBookReadable = ContextCompat.checkSelfPermission(application,
+                Manifest.permission.READ_CONTACTS) == PackageManager.PERMISSION_GRANTED;
+        if (addressBookReadable) {
+            application.getContentResolver().registerContentObserver(
+                    ContactsContract.Contacts.CONTENT_URI, true, addressBookObserver);
+        }
+
+        requestAddressBookReload();
+        loadMore();
+    }
+
+    public LiveData<List<ContactWithStats>> getContacts() {
+        return contacts;
+    }
+
+    /**
+     * Load the next page after the rows already shown. Calls while a load is
+     * queued, or after the last page, do nothing.
+     */
+    public void loadMore() {
+        if (!loadPending.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            loadPending.set(false);
+            if (endReached) {
+                return;
+            }
+            List<ContactWithStats> page;
+            if (rows.isEmpty()) {
+                page = callStatsDao.getContactsWithStatsPage(Long.MAX_VALUE, Long.MAX_VALUE, PAGE_SIZE);
+            } else {
+                ContactWithStats last = rows.get(rows.size() - 1);
+                page = callStatsDao.getContactsWithStatsPage(last.getLastCallDate(), last.getId(), PAGE_SIZE);
+            }
+            endReached = page.size() < PAGE_SIZE;
+            rows.addAll(page);
+            publish();
+        });
+    }
+
+    // Re-reads the loaded range in one query. New calls move contacts to the top, so the
+    // range is bounded by the last row's key rather than by a row count.
+    private void requestRefresh() {
+        if (!refreshPending.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            refreshPending.set(false);
+            List<ContactWithStats> fresh;
+            if (rows.isEmpty()) {
+                fresh = callStatsDao.getContactsWithStatsPage(Long.MAX_VALUE, Long.MAX_VALUE, PAGE_SIZE);
+                endReached = fresh.size() < PAGE_SIZE;
+            } else if (endReached) {
+                // Everything was loaded, so rows added past the old last one belong too
+                fresh = callStatsDao.getContactsWithStatsUntil(Long.MIN_VALUE, Long.MIN_VALUE);
+            } else {
+                ContactWithStats last = rows.get(rows.size() - 1);
+                fresh = callStatsDao.getContactsWithStatsUntil(last.getLastCallDate(), last.getId());
+            }
+            rows.clear();
+            rows.addAll(fresh);
+            publish();
+        });
+    }
+
+    private void requestAddressBookReload() {
+        if (!addressBookPending.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            addressBookPending.set(false);
+            addressBookNames = addressBookReadable
+                    ? ContactUtils.getAddressBookNames(getApplication())
+                    : Collections.<String, String>emptyMap();
+            publish();
+        });
+    }
+
+    // Runs on the executor. Rows equal to the last published ones keep those instances,
+    // so the adapter's diff finds them unchanged by reference and only rebinds the rest.
+    private void publish() {
+        if (addressBookNames == null) {
+            return;
+        }
+        List<ContactWithStats> merged = new ArrayList<>(rows.size());
+        Map<Long, ContactWithStats> mergedById = new HashMap<>(rows.size() * 2);
+        for (ContactWithStats row : rows) {
+            String name = addressBookNames.get(ContactUtils.getMatchKey(row.getPhoneNumber()));
+            ContactWithStats contact = name != null ? row.withContactName(name) : row;
+            ContactWithStats previous = publishedById.get(contact.getId());
+            if (contact.equals(previous)) {
+                contact = previous;
+            }
+            merged.add(contact);
+            mergedById.put(contact.getId(), contact);
+        }
+        publishedById = mergedById;
+        contacts.postValue(merged);
+    }
+
+    @Override
+    protected void onCleared() {
+        invalidationTracker.removeObserver(statsObserver);
+        if (addressBookReadable) {
+            getApplication().getContentResolver().unregisterContentObserver(addressBookObserver);
+        }
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,118 @@
+package com.callrecorder.app.backup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Splits a file into content-defined chunks with a gear rolling hash. Boundaries
+ * depend on the bytes around them rather than on offsets, so inserting or removing
+ * data only changes the chunks near the edit and the rest still deduplicate.
+ */
+class ContentChunker {
+    static final int MIN_CHUNK = 256 * 1024;
+    static final int MAX_CHUNK = 4 * 1024 * 1024;
+    // About one boundary per MiB once past the minimum. The top bits are used
+    // because they depend on the last 64 bytes rather than the last few.
+    private static final long BOUNDARY_MASK = ((1L << 20) - 1) << 44;
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // Fixed seed: boundaries must be identical across runs and devices
+        Random random = new Random(0x5eedc0deL);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    static final class Chunk {
+        final long offset;
+        final long length;
+        final String hash;
+
+        Chunk(long offset, long length, String hash) {
+            this.offset = offset;
+            this.length = length;
+            this.hash = hash;
+        }
+    }
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private final MessageDigest chunkDigest;
+    private final MessageDigest fileDigest;
+    private String lastFileHash;
+
+    ContentChunker() {
+        try {
+            chunkDigest = MessageDigest.getInstance("SHA-256");
+            fileDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Read a file once, returning its chunks. The whole-file hash is available
+     * from getLastFileHash() afterwards.
+     */
+    List<Chunk> chunk(FileChannel channel) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        fileDigest.reset();
+        chunkDigest.reset();
+
+        long chunkStart = 0;
+        long position = 0;
+        long hash = 0;
+        channel.position(0);
+        buffer.clear();
+        while (channel.read(buffer) > 0 || buffer.position() > 0) {
+            buffer.flip();
+            byte[] data = buffer.array();
+            int start = buffer.position();
+            int end = buffer.limit();
+            int segmentStart = start;
+
+            for (int i = start; i < end; i++) {
+                hash = (hash << 1) + GEAR[data[i] & 0xff];
+                long length = position + (i - start) + 1 - chunkStart;
+                if ((length >= MIN_CHUNK && (hash & BOUNDARY_MASK) == 0) || length >= MAX_CHUNK) {
+                    chunkDigest.update(data, segmentStart, i + 1 - segmentStart);
+                    chunks.add(new Chunk(chunkStart, length, toHex(chunkDigest.digest())));
+                    chunkStart += length;
+                    segmentStart = i + 1;
+                    hash = 0;
+                }
+            }
+            chunkDigest.update(data, segmentStart, end - segmentStart);
+            fileDigest.update(data, start, end - start);
+            position += end - start;
+            buffer.clear();
+        }
+
+        if (position > chunkStart || chunks.isEmpty()) {
+            chunks.add(new Chunk(chunkStart, position - chunkStart, toHex(chunkDigest.digest())));
+        }
+        lastFileHash = toHex(fileDigest.digest());
+        return chunks;
+    }
+
+    String getLastFileHash() {
+        return lastFileHash;
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xff;
+            hex[i * 2] = Character.forDigit(b >>> 4, 16);
+            hex[i * 2 + 1] = Character.forDigit(b & 0xf, 16);
+        }
+        return new String(hex);
+    }
+}
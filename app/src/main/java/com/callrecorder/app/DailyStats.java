@@ -0,0 +1,70 @@
+package com.callrecorder.app.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Per-day call totals, kept up to date by triggers on the recordings table.
+ * The day is the local calendar date formatted as yyyy-MM-dd, so it sorts chronologically.
+ */
+@Entity(tableName = "daily_stats")
+public class DailyStats {
+    @PrimaryKey
+    @NonNull
+    private String day;
+    private long callCount;
+    private long incomingCount;
+    private long outgoingCount;
+    private long totalDuration;
+
+    public DailyStats(@NonNull String day, long callCount, long incomingCount,
+                      long outgoingCount, long totalDuration) {
+        this.day = day;
+        this.callCount = callCount;
+        this.incomingCount = incomingCount;
+        this.outgoingCount = outgoingCount;
+        this.totalDuration = totalDuration;
+    }
+
+    @NonNull
+    public String getDay() {
+        return day;
+    }
+
+    public void setDay(@NonNull String day) {
+        this.day = day;
+    }
+
+    public long getCallCount() {
+        return callCount;
+    }
+
+    public void setCallCount(long callCount) {
+        this.callCount = callCount;
+    }
+
+    public long getIncomingCount() {
+        return incomingCount;
+    }
+
+    public void setIncomingCount(long incomingCount) {
+        this.incomingCount = incomingCount;
+    }
+
+    public long getOutgoingCount() {
+        return outgoingCount;
+    }
+
+    public void setOutgoingCount(long outgoingCount) {
+        this.outgoingCount = outgoingCount;
+    }
+
+    public long getTotalDuration() {
+        return totalDuration;
+    }
+
+    public void setTotalDuration(long totalDuration) {
+        this.totalDuration = totalDuration;
+    }
+}
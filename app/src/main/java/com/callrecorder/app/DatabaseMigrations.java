@@ -0,0 +1,580 @@
+package com.callrecorder.app.database;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.callrecorder.app.utils.ContactUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Schema migrations for AppDatabase. SQL here describes the schema of the
+ * version being migrated to and must not change once released.
+ */
+public final class DatabaseMigrations {
+
+    // Adds the call statistics rollups. Always followed by MIGRATION_2_3,
+    // which rebuilds them and installs the triggers.
+    public static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS contact_stats (" +
+                    "phoneNumber TEXT NOT NULL, contactName TEXT, callCount INTEGER NOT NULL, " +
+                    "incomingCount INTEGER NOT NULL, outgoingCount INTEGER NOT NULL, " +
+                    "totalDuration INTEGER NOT NULL, PRIMARY KEY(phoneNumber))");
+            db.execSQL("CREATE TABLE IF NOT EXISTS daily_stats (" +
+                    "day TEXT NOT NULL, callCount INTEGER NOT NULL, incomingCount INTEGER NOT NULL, " +
+                    "outgoingCount INTEGER NOT NULL, totalDuration INTEGER NOT NULL, PRIMARY KEY(day))");
+        }
+    };
+
+    // Moves numbers and names into a contacts table, adds file size, codec and the
+    // list indexes. Row data is copied with set-based statements; only the distinct
+    // numbers pass through Java to be normalized.
+    public static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            dropStatsTriggers(db);
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS contacts (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, normalizedNumber TEXT NOT NULL, " +
+                    "phoneNumber TEXT, contactName TEXT)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS index_contacts_normalizedNumber " +
+                    "ON contacts (normalizedNumber)");
+
+            db.execSQL("CREATE TEMP TABLE number_map (phoneNumber TEXT PRIMARY KEY, contactId INTEGER)");
+            fillContacts(db);
+
+            db.execSQL("CREATE TABLE recordings_new (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, contactId INTEGER, " +
+                    "callType INTEGER NOT NULL, filePath TEXT, duration INTEGER NOT NULL, " +
+                    "date INTEGER NOT NULL, isStarred INTEGER NOT NULL, notes TEXT, " +
+                    "fileSize INTEGER NOT NULL, codec TEXT, " +
+                    "FOREIGN KEY(contactId) REFERENCES contacts(id) ON UPDATE NO ACTION ON DELETE SET NULL)");
+            db.execSQL("INSERT INTO recordings_new (id, contactId, callType, filePath, duration, " +
+                    "date, isStarred, notes, fileSize, codec) " +
+                    "SELECT r.id, m.contactId, r.callType, r.filePath, r.duration, r.date, " +
+                    "r.isStarred, r.notes, 0, " +
+                    "CASE WHEN r.filePath LIKE '%.aac' THEN 'aac_adts' " +
+                    "WHEN r.filePath LIKE '%.3gp' THEN 'amr_nb' " +
+                    "WHEN r.filePath LIKE '%.mp4' THEN 'aac_mp4' END " +
+                    "FROM recordings r LEFT JOIN number_map m ON m.phoneNumber = r.phoneNumber");
+            db.execSQL("DROP TABLE recordings");
+            db.execSQL("ALTER TABLE recordings_new RENAME TO recordings");
+            db.execSQL("DROP TABLE number_map");
+
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_recordings_date ON recordings (date)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_recordings_callType_date ON recordings (callType, date)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_recordings_isStarred_date ON recordings (isStarred, date)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_recordings_contactId ON recordings (contactId)");
+
+            // contact_stats is now keyed by contact id
+            db.execSQL("DROP TABLE IF EXISTS contact_stats");
+            db.execSQL("CREATE TABLE IF NOT EXISTS contact_stats (" +
+                    "contactId INTEGER NOT NULL, callCount INTEGER NOT NULL, " +
+                    "incomingCount INTEGER NOT NULL, outgoingCount INTEGER NOT NULL, " +
+                    "totalDuration INTEGER NOT NULL, PRIMARY KEY(contactId))");
+            db.execSQL("DELETE FROM daily_stats");
+            db.execSQL("INSERT INTO contact_stats (contactId, callCount, incomingCount, " +
+                    "outgoingCount, totalDuration) " +
+                    "SELECT COALESCE(contactId, 0), COUNT(*), " +
+                    "SUM(callType = 1), SUM(callType = 2), SUM(duration) " +
+                    "FROM recordings GROUP BY COALESCE(contactId, 0)");
+            db.execSQL("INSERT INTO daily_stats (day, callCount, incomingCount, outgoingCount, totalDuration) " +
+                    "SELECT date(date / 1000, 'unixepoch', 'localtime') AS d, COUNT(*), " +
+                    "SUM(callType = 1), SUM(callType = 2), SUM(duration) " +
+                    "FROM recordings GROUP BY d");
+            execAll(db, STATS_TRIGGERS_V3);
+        }
+
+        private void fillContacts(SupportSQLiteDatabase db) {
+            SupportSQLiteStatement insertContact = db.compileStatement(
+                    "INSERT INTO contacts (normalizedNumber, phoneNumber, contactName) VALUES (?, ?, ?)");
+            SupportSQLiteStatement insertMapping = db.compileStatement(
+                    "INSERT INTO number_map (phoneNumber, contactId) VALUES (?, ?)");
+            Map<String, Long> idsByNormalizedNumber = new HashMap<>();
+
+            // MAX(date) makes SQLite return the name from each number's latest recording
+            Cursor cursor = db.query("SELECT phoneNumber, contactName, MAX(date) FROM recordings " +
+                    "WHERE phoneNumber IS NOT NULL AND phoneNumber != '' GROUP BY phoneNumber");
+            try {
+                while (cursor.moveToNext()) {
+                    String phoneNumber = cursor.getString(0);
+                    String contactName = cursor.getString(1);
+                    String normalizedNumber = ContactUtils.normalizePhoneNumber(phoneNumber);
+                    if (normalizedNumber.isEmpty()) {
+                        continue;
+                    }
+
+                    Long contactId = idsByNormalizedNumber.get(normalizedNumber);
+                    if (contactId == null) {
+                        insertContact.bindString(1, normalizedNumber);
+                        insertContact.bindString(2, phoneNumber);
+                        if (contactName != null) {
+                            insertContact.bindString(3, contactName);
+                        } else {
+                            insertContact.bindNull(3);
+                        }
+                        contactId = insertContact.executeInsert();
+                        insertContact.clearBindings();
+                        idsByNormalizedNumber.put(normalizedNumber, contactId);
+                    } else if (contactName != null) {
+                        db.execSQL("UPDATE contacts SET contactName = COALESCE(contactName, ?) WHERE id = ?",
+                                new Object[]{contactName, contactId});
+                    }
+
+                    insertMapping.bindString(1, phoneNumber);
+                    insertMapping.bindLong(2, contactId);
+                    insertMapping.executeInsert();
+                    insertMapping.clearBindings();
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+    };
+
+    // Adds the content hash index used by incremental backups
+    public static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS backup_files (" +
+                    "filePath TEXT NOT NULL, recordingId INTEGER NOT NULL, size INTEGER NOT NULL, " +
+                    "lastModified INTEGER NOT NULL, contentHash TEXT, chunkHashes TEXT, " +
+                    "lastSnapshot INTEGER NOT NULL, PRIMARY KEY(filePath))");
+        }
+    };
+
+    // Adds the sync columns to recordings and the sync cursor table. Existing rows
+    // get a random sync id and start dirty, so the first sync uploads them once.
+    public static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE recordings ADD COLUMN syncId TEXT");
+            db.execSQL("ALTER TABLE recordings ADD COLUMN starredAt INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE recordings ADD COLUMN notesUpdatedAt INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE recordings ADD COLUMN dirty INTEGER NOT NULL DEFAULT 1");
+            db.execSQL("UPDATE recordings SET syncId = lower(hex(randomblob(16)))");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS index_recordings_syncId ON recordings (syncId)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_recordings_dirty ON recordings (dirty)");
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS sync_cursors (" +
+                    "name TEXT NOT NULL, value INTEGER NOT NULL, PRIMARY KEY(name))");
+        }
+    };
+
+    // Adds chunk-level progress tracking for recording uploads
+    public static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS upload_sessions (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, recordingId INTEGER NOT NULL, " +
+                    "filePath TEXT, fileSize INTEGER NOT NULL, lastModified INTEGER NOT NULL, " +
+                    "chunkSize INTEGER NOT NULL, uploadId TEXT, completed INTEGER NOT NULL, " +
+                    "FOREIGN KEY(recordingId) REFERENCES recordings(id) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS index_upload_sessions_recordingId " +
+                    "ON upload_sessions (recordingId)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS upload_chunks (" +
+                    "sessionId INTEGER NOT NULL, chunkIndex INTEGER NOT NULL, chunkOffset INTEGER NOT NULL, " +
+                    "length INTEGER NOT NULL, done INTEGER NOT NULL, PRIMARY KEY(sessionId, chunkIndex), " +
+                    "FOREIGN KEY(sessionId) REFERENCES upload_sessions(id) ON UPDATE NO ACTION ON DELETE CASCADE)");
+        }
+    };
+
+    // Adds transcripts and their full-text index. The triggers are the ones Room
+    // generates for an FTS4 table with a content entity.
+    public static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS transcripts (" +
+                    "recordingId INTEGER NOT NULL, text TEXT, engine TEXT, createdAt INTEGER NOT NULL, " +
+                    "PRIMARY KEY(recordingId), " +
+                    "FOREIGN KEY(recordingId) REFERENCES recordings(id) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS transcripts_fts " +
+                    "USING FTS4(text TEXT, tokenize=unicode61, content=`transcripts`)");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_transcripts_fts_BEFORE_UPDATE " +
+                    "BEFORE UPDATE ON transcripts BEGIN DELETE FROM transcripts_fts WHERE docid=OLD.rowid; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_transcripts_fts_BEFORE_DELETE " +
+                    "BEFORE DELETE ON transcripts BEGIN DELETE FROM transcripts_fts WHERE docid=OLD.rowid; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_transcripts_fts_AFTER_UPDATE " +
+                    "AFTER UPDATE ON transcripts BEGIN INSERT INTO transcripts_fts(docid, text) " +
+                    "VALUES (NEW.rowid, NEW.text); END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_transcripts_fts_AFTER_INSERT " +
+                    "AFTER INSERT ON transcripts BEGIN INSERT INTO transcripts_fts(docid, text) " +
+                    "VALUES (NEW.rowid, NEW.text); END");
+        }
+    };
+
+    // Adds the newest call date to contact_stats for the contacts list. The table is
+    // recreated and refilled from recordings so existing contacts get their date.
+    public static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            dropStatsTriggers(db);
+            db.execSQL("DROP TABLE IF EXISTS contact_stats");
+            db.execSQL("CREATE TABLE IF NOT EXISTS contact_stats (" +
+                    "contactId INTEGER NOT NULL, callCount INTEGER NOT NULL, " +
+                    "incomingCount INTEGER NOT NULL, outgoingCount INTEGER NOT NULL, " +
+                    "totalDuration INTEGER NOT NULL, lastCallDate INTEGER NOT NULL DEFAULT 0, " +
+                    "PRIMARY KEY(contactId))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_contact_stats_lastCallDate_contactId " +
+                    "ON contact_stats (lastCallDate, contactId)");
+            db.execSQL("INSERT INTO contact_stats (contactId, callCount, incomingCount, " +
+                    "outgoingCount, totalDuration, lastCallDate) " +
+                    "SELECT COALESCE(contactId, 0), COUNT(*), " +
+                    "SUM(callType = 1), SUM(callType = 2), SUM(duration), MAX(date) " +
+                    "FROM recordings GROUP BY COALESCE(contactId, 0)");
+            execAll(db, STATS_TRIGGERS_V8);
+        }
+    };
+
+    // Adds audio fingerprints, their landmark index and detected duplicates
+    public static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS fingerprints (" +
+                    "recordingId INTEGER NOT NULL, frames BLOB NOT NULL, createdAt INTEGER NOT NULL, " +
+                    "PRIMARY KEY(recordingId), " +
+                    "FOREIGN KEY(recordingId) REFERENCES recordings(id) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS fingerprint_landmarks (" +
+                    "recordingId INTEGER NOT NULL, frame INTEGER NOT NULL, value INTEGER NOT NULL, " +
+                    "PRIMARY KEY(recordingId, frame), " +
+                    "FOREIGN KEY(recordingId) REFERENCES fingerprints(recordingId) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_fingerprint_landmarks_value " +
+                    "ON fingerprint_landmarks (value)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS duplicate_candidates (" +
+                    "recordingId INTEGER NOT NULL, duplicateOfId INTEGER NOT NULL, similarity REAL NOT NULL, " +
+                    "PRIMARY KEY(recordingId, duplicateOfId), " +
+                    "FOREIGN KEY(recordingId) REFERENCES recordings(id) ON UPDATE NO ACTION ON DELETE CASCADE, " +
+                    "FOREIGN KEY(duplicateOfId) REFERENCES recordings(id) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_duplicate_candidates_duplicateOfId " +
+                    "ON duplicate_candidates (duplicateOfId)");
+        }
+    };
+
+    // Stores each recording's local calendar day and buckets daily_stats by it, so a
+    // time zone or DST change no longer moves rows between days under the triggers.
+    // Existing rows take their day from the current time zone, and daily_stats is
+    // rebuilt to match.
+    public static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            dropStatsTriggers(db);
+            db.execSQL("ALTER TABLE recordings ADD COLUMN day TEXT");
+            db.execSQL("UPDATE recordings SET day = date(date / 1000, 'unixepoch', 'localtime')");
+            db.execSQL("DELETE FROM daily_stats");
+            db.execSQL("INSERT INTO daily_stats (day, callCount, incomingCount, outgoingCount, totalDuration) " +
+                    "SELECT day, COUNT(*), SUM(callType = 1), SUM(callType = 2), SUM(duration) " +
+                    "FROM recordings GROUP BY day");
+            execAll(db, STATS_TRIGGERS_V10);
+        }
+    };
+
+    // Records which call log row each recording was matched to, so CallLogImporter
+    // never matches a corrected recording to a later call. Existing rows stay unmatched.
+    public static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE recordings ADD COLUMN callLogId INTEGER");
+        }
+    };
+
+    // Indexes for the newest-first list, which sorts by the stored day and then the date
+    // so that it matches the day sections
+    public static final Migration MIGRATION_11_12 = new Migration(11, 12) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_recordings_day_date ON recordings (day, date)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_recordings_callType_day_date " +
+                    "ON recordings (callType, day, date)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_recordings_isStarred_day_date " +
+                    "ON recordings (isStarred, day, date)");
+        }
+    };
+
+    // Re-keys contacts by ContactUtils.getMatchKey, the last nine digits, so a number seen
+    // as +966501234567, 00966501234567 and 0501234567 is one contact. Contacts that now
+    // share a key merge into the oldest; their recordings move through the update
+    // trigger, which keeps contact_stats in step.
+    public static final Migration MIGRATION_12_13 = new Migration(12, 13) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            // normalizedNumber is digits after an optional plus sign
+            db.execSQL("CREATE TEMP TABLE contact_keys AS SELECT id, " +
+                    "CASE WHEN length(ltrim(normalizedNumber, '+')) > 9 THEN substr(normalizedNumber, -9) " +
+                    "ELSE ltrim(normalizedNumber, '+') END AS matchKey FROM contacts");
+            db.execSQL("CREATE TEMP TABLE contact_merge (id INTEGER PRIMARY KEY, keepId INTEGER NOT NULL)");
+            db.execSQL("INSERT INTO contact_merge (id, keepId) " +
+                    "SELECT k.id, m.keepId FROM contact_keys k " +
+                    "JOIN (SELECT matchKey, MIN(id) AS keepId FROM contact_keys GROUP BY matchKey) m " +
+                    "ON m.matchKey = k.matchKey WHERE k.id != m.keepId");
+
+            // A kept contact without a name takes the one last called under another format
+            db.execSQL("UPDATE contacts SET contactName = (SELECT c.contactName FROM contact_merge m " +
+                    "JOIN contacts c ON c.id = m.id WHERE m.keepId = contacts.id AND c.contactName IS NOT NULL " +
+                    "ORDER BY (SELECT MAX(date) FROM recordings WHERE contactId = c.id) DESC LIMIT 1) " +
+                    "WHERE contactName IS NULL AND id IN (SELECT keepId FROM contact_merge)");
+            db.execSQL("UPDATE recordings SET contactId = " +
+                    "(SELECT keepId FROM contact_merge WHERE id = recordings.contactId) " +
+                    "WHERE contactId IN (SELECT id FROM contact_merge)");
+            db.execSQL("DELETE FROM contacts WHERE id IN (SELECT id FROM contact_merge)");
+            db.execSQL("UPDATE contacts SET normalizedNumber = " +
+                    "(SELECT matchKey FROM contact_keys WHERE id = contacts.id)");
+
+            db.execSQL("DROP TABLE contact_keys");
+            db.execSQL("DROP TABLE contact_merge");
+        }
+    };
+
+    public static final Migration[] ALL = {
+            MIGRATION_1_2,
+            MIGRATION_2_3,
+            MIGRATION_3_4,
+            MIGRATION_4_5,
+            MIGRATION_5_6,
+            MIGRATION_6_7,
+            MIGRATION_7_8,
+            MIGRATION_8_9,
+            MIGRATION_9_10,
+            MIGRATION_10_11,
+            MIGRATION_11_12,
+            MIGRATION_12_13
+    };
+
+    // The rollup triggers as each migration installed them. CallStatsTriggers holds the
+    // current ones, which later versions change.
+    private static final String[] STATS_TRIGGERS_V3 = {
+            "CREATE TRIGGER IF NOT EXISTS recordings_stats_insert AFTER INSERT ON recordings BEGIN " +
+            "INSERT OR IGNORE INTO contact_stats (contactId, callCount, incomingCount, " +
+            "outgoingCount, totalDuration) VALUES (COALESCE(NEW.contactId, 0), 0, 0, 0, 0); " +
+            "UPDATE contact_stats SET callCount = callCount + 1, " +
+            "incomingCount = incomingCount + (NEW.callType = 1), " +
+            "outgoingCount = outgoingCount + (NEW.callType = 2), " +
+            "totalDuration = totalDuration + NEW.duration " +
+            "WHERE contactId = COALESCE(NEW.contactId, 0); " +
+            "INSERT OR IGNORE INTO daily_stats (day, callCount, incomingCount, outgoingCount, " +
+            "totalDuration) VALUES (date(NEW.date / 1000, 'unixepoch', 'localtime'), 0, 0, 0, 0); " +
+            "UPDATE daily_stats SET callCount = callCount + 1, " +
+            "incomingCount = incomingCount + (NEW.callType = 1), " +
+            "outgoingCount = outgoingCount + (NEW.callType = 2), " +
+            "totalDuration = totalDuration + NEW.duration " +
+            "WHERE day = date(NEW.date / 1000, 'unixepoch', 'localtime'); " +
+            "END",
+            "CREATE TRIGGER IF NOT EXISTS recordings_stats_delete AFTER DELETE ON recordings BEGIN " +
+            "UPDATE contact_stats SET callCount = callCount - 1, " +
+            "incomingCount = incomingCount - (OLD.callType = 1), " +
+            "outgoingCount = outgoingCount - (OLD.callType = 2), " +
+            "totalDuration = totalDuration - OLD.duration " +
+            "WHERE contactId = COALESCE(OLD.contactId, 0); " +
+            "DELETE FROM contact_stats " +
+            "WHERE contactId = COALESCE(OLD.contactId, 0) AND callCount <= 0; " +
+            "UPDATE daily_stats SET callCount = callCount - 1, " +
+            "incomingCount = incomingCount - (OLD.callType = 1), " +
+            "outgoingCount = outgoingCount - (OLD.callType = 2), " +
+            "totalDuration = totalDuration - OLD.duration " +
+            "WHERE day = date(OLD.date / 1000, 'unixepoch', 'localtime'); " +
+            "DELETE FROM daily_stats " +
+            "WHERE day = date(OLD.date / 1000, 'unixepoch', 'localtime') AND callCount <= 0; " +
+            "END",
+            "CREATE TRIGGER IF NOT EXISTS recordings_stats_update " +
+            "AFTER UPDATE OF contactId, callType, duration, date ON recordings BEGIN " +
+            "UPDATE contact_stats SET callCount = callCount - 1, " +
+            "incomingCount = incomingCount - (OLD.callType = 1), " +
+            "outgoingCount = outgoingCount - (OLD.callType = 2), " +
+            "totalDuration = totalDuration - OLD.duration " +
+            "WHERE contactId = COALESCE(OLD.contactId, 0); " +
+            "DELETE FROM contact_stats " +
+            "WHERE contactId = COALESCE(OLD.contactId, 0) AND callCount <= 0; " +
+            "UPDATE daily_stats SET callCount = callCount - 1, " +
+            "incomingCount = incomingCount - (OLD.callType = 1), " +
+            "outgoingCount = outgoingCount - (OLD.callType = 2), " +
+            "totalDuration = totalDuration - OLD.duration " +
+            "WHERE day = date(OLD.date / 1000, 'unixepoch', 'localtime'); " +
+            "DELETE FROM daily_stats " +
+            "WHERE day = date(OLD.date / 1000, 'unixepoch', 'localtime') AND callCount <= 0; " +
+            "INSERT OR IGNORE INTO contact_stats (contactId, callCount, incomingCount, " +
+            "outgoingCount, totalDuration) VALUES (COALESCE(NEW.contactId, 0), 0, 0, 0, 0); " +
+            "UPDATE contact_stats SET callCount = callCount + 1, " +
+            "incomingCount = incomingCount + (NEW.callType = 1), " +
+            "outgoingCount = outgoingCount + (NEW.callType = 2), " +
+            "totalDuration = totalDuration + NEW.duration " +
+            "WHERE contactId = COALESCE(NEW.contactId, 0); " +
+            "INSERT OR IGNORE INTO daily_stats (day, callCount, incomingCount, outgoingCount, " +
+            "totalDuration) VALUES (date(NEW.date / 1000, 'unixepoch', 'localtime'), 0, 0, 0, 0); " +
+            "UPDATE daily_stats SET callCount = callCount + 1, " +
+            "incomingCount = incomingCount + (NEW.callType = 1), " +
+            "outgoingCount = outgoingCount + (NEW.callType = 2), " +
+            "totalDuration = totalDuration + NEW.duration " +
+            "WHERE day = date(NEW.date / 1000, 'unixepoch', 'localtime'); " +
+            "END"
+    };
+
+    private static final String[] STATS_TRIGGERS_V8 = {
+            "CREATE TRIGGER IF NOT EXISTS recordings_stats_insert AFTER INSERT ON recordings BEGIN " +
+            "INSERT OR IGNORE INTO contact_stats (contactId, callCount, incomingCount, " +
+            "outgoingCount, totalDuration) VALUES (COALESCE(NEW.contactId, 0), 0, 0, 0, 0); " +
+            "UPDATE contact_stats SET callCount = callCount + 1, " +
+            "incomingCount = incomingCount + (NEW.callType = 1), " +
+            "outgoingCount = outgoingCount + (NEW.callType = 2), " +
+            "totalDuration = totalDuration + NEW.duration, " +
+            "lastCallDate = MAX(lastCallDate, NEW.date) " +
+            "WHERE contactId = COALESCE(NEW.contactId, 0); " +
+            "INSERT OR IGNORE INTO daily_stats (day, callCount, incomingCount, outgoingCount, " +
+            "totalDuration) VALUES (date(NEW.date / 1000, 'unixepoch', 'localtime'), 0, 0, 0, 0); " +
+            "UPDATE daily_stats SET callCount = callCount + 1, " +
+            "incomingCount = incomingCount + (NEW.callType = 1), " +
+            "outgoingCount = outgoingCount + (NEW.callType = 2), " +
+            "totalDuration = totalDuration + NEW.duration " +
+            "WHERE day = date(NEW.date / 1000, 'unixepoch', 'localtime'); " +
+            "END",
+            "CREATE TRIGGER IF NOT EXISTS recordings_stats_delete AFTER DELETE ON recordings BEGIN " +
+            "UPDATE contact_stats SET callCount = callCount - 1, " +
+            "incomingCount = incomingCount - (OLD.callType = 1), " +
+            "outgoingCount = outgoingCount - (OLD.callType = 2), " +
+            "totalDuration = totalDuration - OLD.duration, " +
+            "lastCallDate = COALESCE(CASE WHEN OLD.contactId IS NULL THEN (SELECT MAX(date) " +
+            "FROM recordings WHERE contactId IS NULL) ELSE (SELECT MAX(date) FROM recordings " +
+            "WHERE contactId = OLD.contactId) END, 0) " +
+            "WHERE contactId = COALESCE(OLD.contactId, 0); " +
+            "DELETE FROM contact_stats " +
+            "WHERE contactId = COALESCE(OLD.contactId, 0) AND callCount <= 0; " +
+            "UPDATE daily_stats SET callCount = callCount - 1, " +
+            "incomingCount = incomingCount - (OLD.callType = 1), " +
+            "outgoingCount = outgoingCount - (OLD.callType = 2), " +
+            "totalDuration = totalDuration - OLD.duration " +
+            "WHERE day = date(OLD.date / 1000, 'unixepoch', 'localtime'); " +
+            "DELETE FROM daily_stats " +
+            "WHERE day = date(OLD.date / 1000, 'unixepoch', 'localtime') AND callCount <= 0; " +
+            "END",
+            "CREATE TRIGGER IF NOT EXISTS recordings_stats_update " +
+            "AFTER UPDATE OF contactId, callType, duration, date ON recordings BEGIN " +
+            "UPDATE contact_stats SET callCount = callCount - 1, " +
+            "incomingCount = incomingCount - (OLD.callType = 1), " +
+            "outgoingCount = outgoingCount - (OLD.callType = 2), " +
+            "totalDuration = totalDuration - OLD.duration, " +
+            "lastCallDate = COALESCE(CASE WHEN OLD.contactId IS NULL THEN (SELECT MAX(date) " +
+            "FROM recordings WHERE contactId IS NULL) ELSE (SELECT MAX(date) FROM recordings " +
+            "WHERE contactId = OLD.contactId) END, 0) " +
+            "WHERE contactId = COALESCE(OLD.contactId, 0); " +
+            "DELETE FROM contact_stats " +
+            "WHERE contactId = COALESCE(OLD.contactId, 0) AND callCount <= 0; " +
+            "UPDATE daily_stats SET callCount = callCount - 1, " +
+            "incomingCount = incomingCount - (OLD.callType = 1), " +
+            "outgoingCount = outgoingCount - (OLD.callType = 2), " +
+            "totalDuration = totalDuration - OLD.duration " +
+            "WHERE day = date(OLD.date / 1000, 'unixepoch', 'localtime'); " +
+            "DELETE FROM daily_stats " +
+            "WHERE day = date(OLD.date / 1000, 'unixepoch', 'localtime') AND callCount <= 0; " +
+            "INSERT OR IGNORE INTO contact_stats (contactId, callCount, incomingCount, " +
+            "outgoingCount, totalDuration) VALUES (COALESCE(NEW.contactId, 0), 0, 0, 0, 0); " +
+            "UPDATE contact_stats SET callCount = callCount + 1, " +
+            "incomingCount = incomingCount + (NEW.callType = 1), " +
+            "outgoingCount = outgoingCount + (NEW.callType = 2), " +
+            "totalDuration = totalDuration + NEW.duration, " +
+            "lastCallDate = MAX(lastCallDate, NEW.date) " +
+            "WHERE contactId = COALESCE(NEW.contactId, 0); " +
+            "INSERT OR IGNORE INTO daily_stats (day, callCount, incomingCount, outgoingCount, " +
+            "totalDuration) VALUES (date(NEW.date / 1000, 'unixepoch', 'localtime'), 0, 0, 0, 0); " +
+            "UPDATE daily_stats SET callCount = callCount + 1, " +
+            "incomingCount = incomingCount + (NEW.callType = 1), " +
+            "outgoingCount = outgoingCount + (NEW.callType = 2), " +
+            "totalDuration = totalDuration + NEW.duration " +
+            "WHERE day = date(NEW.date / 1000, 'unixepoch', 'localtime'); " +
+            "END"
+    };
+
+    private static final String[] STATS_TRIGGERS_V10 = {
+            "CREATE TRIGGER IF NOT EXISTS recordings_stats_insert AFTER INSERT ON recordings BEGIN " +
+            "UPDATE recordings SET day = COALESCE(NEW.day, date(NEW.date / 1000, 'unixepoch', 'localtime')) " +
+            "WHERE id = NEW.id; " +
+            "INSERT OR IGNORE INTO contact_stats (contactId, callCount, incomingCount, " +
+            "outgoingCount, totalDuration) VALUES (COALESCE(NEW.contactId, 0), 0, 0, 0, 0); " +
+            "UPDATE contact_stats SET callCount = callCount + 1, " +
+            "incomingCount = incomingCount + (NEW.callType = 1), " +
+            "outgoingCount = outgoingCount + (NEW.callType = 2), " +
+            "totalDuration = totalDuration + NEW.duration, " +
+            "lastCallDate = MAX(lastCallDate, NEW.date) " +
+            "WHERE contactId = COALESCE(NEW.contactId, 0); " +
+            "INSERT OR IGNORE INTO daily_stats (day, callCount, incomingCount, outgoingCount, " +
+            "totalDuration) VALUES ((SELECT day FROM recordings WHERE id = NEW.id), 0, 0, 0, 0); " +
+            "UPDATE daily_stats SET callCount = callCount + 1, " +
+            "incomingCount = incomingCount + (NEW.callType = 1), " +
+            "outgoingCount = outgoingCount + (NEW.callType = 2), " +
+            "totalDuration = totalDuration + NEW.duration " +
+            "WHERE day = (SELECT day FROM recordings WHERE id = NEW.id); " +
+            "END",
+            "CREATE TRIGGER IF NOT EXISTS recordings_stats_delete AFTER DELETE ON recordings BEGIN " +
+            "UPDATE contact_stats SET callCount = callCount - 1, " +
+            "incomingCount = incomingCount - (OLD.callType = 1), " +
+            "outgoingCount = outgoingCount - (OLD.callType = 2), " +
+            "totalDuration = totalDuration - OLD.duration, " +
+            "lastCallDate = COALESCE(CASE WHEN OLD.contactId IS NULL THEN (SELECT MAX(date) " +
+            "FROM recordings WHERE contactId IS NULL) ELSE (SELECT MAX(date) FROM recordings " +
+            "WHERE contactId = OLD.contactId) END, 0) " +
+            "WHERE contactId = COALESCE(OLD.contactId, 0); " +
+            "DELETE FROM contact_stats " +
+            "WHERE contactId = COALESCE(OLD.contactId, 0) AND callCount <= 0; " +
+            "UPDATE daily_stats SET callCount = callCount - 1, " +
+            "incomingCount = incomingCount - (OLD.callType = 1), " +
+            "outgoingCount = outgoingCount - (OLD.callType = 2), " +
+            "totalDuration = totalDuration - OLD.duration WHERE day = OLD.day; " +
+            "DELETE FROM daily_stats WHERE day = OLD.day AND callCount <= 0; " +
+            "END",
+            "CREATE TRIGGER IF NOT EXISTS recordings_stats_update " +
+            "AFTER UPDATE OF contactId, callType, duration, date ON recordings BEGIN " +
+            "UPDATE contact_stats SET callCount = callCount - 1, " +
+            "incomingCount = incomingCount - (OLD.callType = 1), " +
+            "outgoingCount = outgoingCount - (OLD.callType = 2), " +
+            "totalDuration = totalDuration - OLD.duration, " +
+            "lastCallDate = COALESCE(CASE WHEN OLD.contactId IS NULL THEN (SELECT MAX(date) " +
+            "FROM recordings WHERE contactId IS NULL) ELSE (SELECT MAX(date) FROM recordings " +
+            "WHERE contactId = OLD.contactId) END, 0) " +
+            "WHERE contactId = COALESCE(OLD.contactId, 0); " +
+            "DELETE FROM contact_stats " +
+            "WHERE contactId = COALESCE(OLD.contactId, 0) AND callCount <= 0; " +
+            "UPDATE daily_stats SET callCount = callCount - 1, " +
+            "incomingCount = incomingCount - (OLD.callType = 1), " +
+            "outgoingCount = outgoingCount - (OLD.callType = 2), " +
+            "totalDuration = totalDuration - OLD.duration WHERE day = OLD.day; " +
+            "DELETE FROM daily_stats WHERE day = OLD.day AND callCount <= 0; " +
+            "UPDATE recordings SET day = CASE WHEN NEW.date = OLD.date AND OLD.day IS NOT NULL " +
+            "THEN OLD.day ELSE date(NEW.date / 1000, 'unixepoch', 'localtime') END " +
+            "WHERE id = NEW.id; " +
+            "INSERT OR IGNORE INTO contact_stats (contactId, callCount, incomingCount, " +
+            "outgoingCount, totalDuration) VALUES (COALESCE(NEW.contactId, 0), 0, 0, 0, 0); " +
+            "UPDATE contact_stats SET callCount = callCount + 1, " +
+            "incomingCount = incomingCount + (NEW.callType = 1), " +
+            "outgoingCount = outgoingCount + (NEW.callType = 2), " +
+            "totalDuration = totalDuration + NEW.duration, " +
+            "lastCallDate = MAX(lastCallDate, NEW.date) " +
+            "WHERE contactId = COALESCE(NEW.contactId, 0); " +
+            "INSERT OR IGNORE INTO daily_stats (day, callCount, incomingCount, outgoingCount, " +
+            "totalDuration) VALUES ((SELECT day FROM recordings WHERE id = NEW.id), 0, 0, 0, 0); " +
+            "UPDATE daily_stats SET callCount = callCount + 1, " +
+            "incomingCount = incomingCount + (NEW.callType = 1), " +
+            "outgoingCount = outgoingCount + (NEW.callType = 2), " +
+            "totalDuration = totalDuration + NEW.duration " +
+            "WHERE day = (SELECT day FROM recordings WHERE id = NEW.id); " +
+            "END"
+    };
+
+    private static void dropStatsTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("DROP TRIGGER IF EXISTS recordings_stats_insert");
+        db.execSQL("DROP TRIGGER IF EXISTS recordings_stats_delete");
+        db.execSQL("DROP TRIGGER IF EXISTS recordings_stats_update");
+    }
+
+    private static void execAll(SupportSQLiteDatabase db, String[] statements) {
+        for (String sql : statements) {
+            db.execSQL(sql);
+        }
+    }
+
+    private DatabaseMigrations() {
+    }
+}
@@ -0,0 +1,153 @@
+package com.callrecorder.app.adapters;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.TypedValue;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.core.view.ViewCompat;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Draws a header with the day's call count and talk time above the first recording
+ * of each day, and keeps the current day's header pinned to the top while scrolling.
+ * Headers are drawn rather than added as rows, so list positions stay the same and
+ * TimelineSections can map them directly. Nothing is drawn while sections are null.
+ */
+public class DayHeaderDecoration extends RecyclerView.ItemDecoration {
+    private final int headerHeight;
+    private final int padding;
+    private final Paint backgroundPaint = new Paint();
+    private final Paint titlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint summaryPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final SimpleDateFormat dayParser = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+    private final SimpleDateFormat dayFormat = new SimpleDateFormat("EEEE، d MMMM yyyy", new Locale("ar"));
+
+    private TimelineSections sections;
+    // Header text per section, formatted once per section list
+    private String[] titles;
+    private String[] summaries;
+
+    public DayHeaderDecoration(Context context) {
+        headerHeight = dp(context, 36);
+        padding = dp(context, 16);
+        backgroundPaint.setColor(Color.parseColor("#EEEEEE"));
+        titlePaint.setColor(Color.parseColor("#212121"));
+        titlePaint.setTextSize(sp(context, 14));
+        titlePaint.setFakeBoldText(true);
+        summaryPaint.setColor(Color.parseColor("#757575"));
+        summaryPaint.setTextSize(sp(context, 12));
+    }
+
+    /**
+     * @param sections Sections of the list now shown, or null to hide the headers
+     */
+    public void setSections(TimelineSections sections) {
+        this.sections = sections;
+        titles = sections != null ? new String[sections.getSectionCount()] : null;
+        summaries = sections != null ? new String[sections.getSectionCount()] : null;
+    }
+
+    public TimelineSections getSections() {
+        return sections;
+    }
+
+    @Override
+    public void getItemOffsets(@NonNull Rect outRect, @NonNull View view,
+                               @NonNull RecyclerView parent, @NonNull RecyclerView.State state) {
+        int position = parent.getChildAdapterPosition(view);
+        if (sections != null && position != RecyclerView.NO_POSITION && sections.isSectionStart(position)) {
+            outRect.top = headerHeight;
+        } else {
+            outRect.setEmpty();
+        }
+    }
+
+    @Override
+    public void onDrawOver(@NonNull Canvas canvas, @NonNull RecyclerView parent, @NonNull RecyclerView.State state) {
+        if (sections == null || parent.getChildCount() == 0) {
+            return;
+        }
+        boolean rtl = ViewCompat.getLayoutDirection(parent) == ViewCompat.LAYOUT_DIRECTION_RTL;
+
+        // Headers of days that start on screen
+        int pinnedSection = -1;
+        int pushedTop = 0;
+        for (int i = 0; i < parent.getChildCount(); i++) {
+            View child = parent.getChildAt(i);
+            int position = parent.getChildAdapterPosition(child);
+            if (position == RecyclerView.NO_POSITION) {
+                continue;
+            }
+            if (pinnedSection < 0) {
+                pinnedSection = sections.sectionOf(position);
+            }
+            if (sections.isSectionStart(position)) {
+                int top = child.getTop() - headerHeight;
+                drawHeader(canvas, parent, sections.sectionOf(position), top, rtl);
+                // The next day's header pushes the pinned one up as it arrives
+                if (top > 0 && top < headerHeight && sections.sectionOf(position) != pinnedSection) {
+                    pushedTop = top - headerHeight;
+                }
+            }
+        }
+
+        if (pinnedSection >= 0) {
+            drawHeader(canvas, parent, pinnedSection, pushedTop, rtl);
+        }
+    }
+
+    private void drawHeader(Canvas canvas, RecyclerView parent, int section, int top, boolean rtl) {
+        int left = parent.getPaddingLeft();
+        int right = parent.getWidth() - parent.getPaddingRight();
+        canvas.drawRect(left, top, right, top + headerHeight, backgroundPaint);
+
+        float baseline = top + headerHeight / 2f - (titlePaint.descent() + titlePaint.ascent()) / 2f;
+        titlePaint.setTextAlign(rtl ? Paint.Align.RIGHT : Paint.Align.LEFT);
+        summaryPaint.setTextAlign(rtl ? Paint.Align.LEFT : Paint.Align.RIGHT);
+        canvas.drawText(getTitle(section), rtl ? right - padding : left + padding, baseline, titlePaint);
+        canvas.drawText(getSummary(section), rtl ? left + padding : right - padding, baseline, summaryPaint);
+    }
+
+    private String getTitle(int section) {
+        if (titles[section] == null) {
+            String day = sections.getDay(section);
+            try {
+                titles[section] = dayFormat.format(dayParser.parse(day));
+            } catch (ParseException e) {
+                titles[section] = day;
+            }
+        }
+        return titles[section];
+    }
+
+    private String getSummary(int section) {
+        if (summaries[section] == null) {
+            long duration = sections.getTotalDuration(section);
+            long minutes = TimeUnit.MILLISECONDS.toMinutes(duration);
+            long seconds = TimeUnit.MILLISECONDS.toSeconds(duration) % 60;
+            summaries[section] = String.format(new Locale("ar"), "%d مكالمة · %d:%02d",
+                    sections.getCallCount(section), minutes, seconds);
+        }
+        return summaries[section];
+    }
+
+    private static int dp(Context context, int value) {
+        return (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, value,
+                context.getResources().getDisplayMetrics());
+    }
+
+    private static float sp(Context context, int value) {
+        return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, value,
+                context.getResources().getDisplayMetrics());
+    }
+}
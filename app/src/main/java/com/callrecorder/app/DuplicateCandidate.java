@@ -0,0 +1,46 @@
+package com.callrecorder.app.models;
+
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+
+/**
+ * Two recordings whose audio matched, waiting for the user to clean up.
+ * recordingId is the one fingerprinted later.
+ */
+@Entity(tableName = "duplicate_candidates",
+        primaryKeys = {"recordingId", "duplicateOfId"},
+        foreignKeys = {
+                @ForeignKey(entity = Recording.class,
+                        parentColumns = "id",
+                        childColumns = "recordingId",
+                        onDelete = ForeignKey.CASCADE),
+                @ForeignKey(entity = Recording.class,
+                        parentColumns = "id",
+                        childColumns = "duplicateOfId",
+                        onDelete = ForeignKey.CASCADE)
+        },
+        indices = {@Index("duplicateOfId")})
+public class DuplicateCandidate {
+    private long recordingId;
+    private long duplicateOfId;
+    private float similarity; // fraction of matching fingerprint bits
+
+    public DuplicateCandidate(long recordingId, long duplicateOfId, float similarity) {
+        this.recordingId = recordingId;
+        this.duplicateOfId = duplicateOfId;
+        this.similarity = similarity;
+    }
+
+    public long getRecordingId() {
+        return recordingId;
+    }
+
+    public long getDuplicateOfId() {
+        return duplicateOfId;
+    }
+
+    public float getSimilarity() {
+        return similarity;
+    }
+}
@@ -0,0 +1,51 @@
+package com.callrecorder.app.models;
+
+/**
+ * A duplicate candidate with what the cleanup needs to pick which copy to keep
+ */
+public class DuplicatePair {
+    private final long recordingId;
+    private final long recordingDuration;
+    private final long duplicateOfId;
+    private final long duplicateOfDuration;
+    private final float similarity;
+
+    public DuplicatePair(long recordingId, long recordingDuration, long duplicateOfId,
+                         long duplicateOfDuration, float similarity) {
+        this.recordingId = recordingId;
+        this.recordingDuration = recordingDuration;
+        this.duplicateOfId = duplicateOfId;
+        this.duplicateOfDuration = duplicateOfDuration;
+        this.similarity = similarity;
+    }
+
+    public long getRecordingId() {
+        return recordingId;
+    }
+
+    public long getRecordingDuration() {
+        return recordingDuration;
+    }
+
+    public long getDuplicateOfId() {
+        return duplicateOfId;
+    }
+
+    public long getDuplicateOfDuration() {
+        return duplicateOfDuration;
+    }
+
+    public float getSimilarity() {
+        return similarity;
+    }
+
+    /**
+     * @return The copy to delete: the shorter one, or the later one if they are equally long
+     */
+    public long getRedundantId() {
+        if (recordingDuration != duplicateOfDuration) {
+            return recordingDuration < duplicateOfDuration ? recordingId : duplicateOfId;
+        }
+        return Math.max(recordingId, duplicateOfId);
+    }
+}
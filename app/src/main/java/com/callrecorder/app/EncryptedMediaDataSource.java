@@ -0,0 +1,37 @@
+package com.callrecorder.app.utils;
+
+import android.media.MediaDataSource;
+import android.os.Build;
+
+import androidx.annotation.RequiresApi;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Lets MediaPlayer play an encrypted recording directly; seeks decrypt only the chunks they land on.
+ * Usage: mediaPlayer.setDataSource(new EncryptedMediaDataSource(file))
+ */
+@RequiresApi(Build.VERSION_CODES.M)
+public class EncryptedMediaDataSource extends MediaDataSource {
+    private final EncryptedRecordingFile file;
+
+    public EncryptedMediaDataSource(File encryptedFile) throws IOException {
+        file = new EncryptedRecordingFile(encryptedFile, RecordingKeys.getInstance()::unwrapDataKey);
+    }
+
+    @Override
+    public int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+        return file.read(position, buffer, offset, size);
+    }
+
+    @Override
+    public long getSize() {
+        return file.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
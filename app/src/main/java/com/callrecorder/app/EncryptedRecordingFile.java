@@ -0,0 +1,136 @@
+package com.callrecorder.app.utils;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Random-access reader for an encrypted recording. A read decrypts only the chunks it
+ * touches, and the last decrypted chunk is kept so sequential playback decrypts each
+ * chunk once.
+ */
+public class EncryptedRecordingFile implements Closeable {
+    private final FileChannel channel;
+    private final EncryptedRecordingFormat format;
+    private final Cipher cipher;
+    private final long dataStart;
+    private final long chunkCount;
+    private final long size;
+    private final ByteBuffer cipherBuffer;
+    private final byte[] plainBuffer;
+    private final byte[] nonce = new byte[EncryptedRecordingFormat.NONCE_LENGTH];
+    private final SecretKey dataKey;
+    private long cachedChunk = -1;
+    private int cachedLength;
+
+    /**
+     * @param file Encrypted recording
+     * @param keyResolver Unwraps the file key, usually RecordingKeys::unwrapDataKey
+     */
+    public EncryptedRecordingFile(File file, KeyResolver keyResolver) throws IOException {
+        channel = new RandomAccessFile(file, "r").getChannel();
+        try {
+            format = EncryptedRecordingFormat.readHeader(
+                    new DataInputStream(Channels.newInputStream(channel.position(0))));
+            dataKey = keyResolver.resolve(format.wrappedKey);
+            cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        } catch (GeneralSecurityException e) {
+            channel.close();
+            throw new IOException("AES-GCM not available", e);
+        }
+
+        dataStart = format.headerLength();
+        long stride = format.chunkSize + EncryptedRecordingFormat.TAG_LENGTH;
+        long dataLength = channel.size() - dataStart;
+        chunkCount = Math.max(1, (dataLength + stride - 1) / stride);
+        long lastChunkLength = dataLength - (chunkCount - 1) * stride - EncryptedRecordingFormat.TAG_LENGTH;
+        if (lastChunkLength < 0) {
+            channel.close();
+            throw new IOException("Truncated encrypted recording");
+        }
+        size = (chunkCount - 1) * format.chunkSize + lastChunkLength;
+
+        cipherBuffer = ByteBuffer.allocate((int) stride);
+        plainBuffer = new byte[format.chunkSize];
+    }
+
+    /**
+     * @return Plaintext length in bytes
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Read plaintext starting at a position
+     * @return Number of bytes read, or -1 at end of file
+     */
+    public synchronized int read(long position, byte[] buffer, int offset, int length) throws IOException {
+        if (position >= size) {
+            return -1;
+        }
+        int total = 0;
+        while (length > 0 && position < size) {
+            long chunk = position / format.chunkSize;
+            int chunkOffset = (int) (position % format.chunkSize);
+            loadChunk(chunk);
+            int count = Math.min(length, cachedLength - chunkOffset);
+            System.arraycopy(plainBuffer, chunkOffset, buffer, offset, count);
+            position += count;
+            offset += count;
+            length -= count;
+            total += count;
+        }
+        return total;
+    }
+
+    private void loadChunk(long chunk) throws IOException {
+        if (chunk == cachedChunk) {
+            return;
+        }
+        long stride = format.chunkSize + EncryptedRecordingFormat.TAG_LENGTH;
+        cipherBuffer.clear();
+        long filePosition = dataStart + chunk * stride;
+        while (cipherBuffer.hasRemaining()) {
+            int read = channel.read(cipherBuffer, filePosition + cipherBuffer.position());
+            if (read < 0) {
+                break;
+            }
+        }
+
+        boolean isFinal = chunk == chunkCount - 1;
+        format.nonceForChunk(chunk, nonce);
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, dataKey,
+                    new GCMParameterSpec(EncryptedRecordingFormat.TAG_LENGTH_BITS, nonce));
+            cipher.updateAAD(EncryptedRecordingFormat.aad(isFinal));
+            cachedLength = cipher.doFinal(cipherBuffer.array(), 0, cipherBuffer.position(), plainBuffer, 0);
+            cachedChunk = chunk;
+        } catch (GeneralSecurityException e) {
+            cachedChunk = -1;
+            throw new IOException("Chunk " + chunk + " failed authentication", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    public interface KeyResolver {
+        SecretKey resolve(byte[] wrappedKey) throws IOException;
+    }
+}
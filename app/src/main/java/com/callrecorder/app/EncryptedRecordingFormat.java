@@ -0,0 +1,79 @@
+package com.callrecorder.app.utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of an encrypted recording file:
+ *
+ * <pre>
+ * magic "CRE1" | chunk size (int) | wrapped key length (short) | wrapped key | nonce prefix (8 bytes)
+ * chunk 0 | chunk 1 | ... | final chunk
+ * </pre>
+ *
+ * Each chunk is AES-GCM ciphertext of up to chunk size plaintext bytes followed by a 16 byte tag.
+ * The nonce is the file's random prefix followed by the chunk index, so any chunk can be
+ * decrypted on its own and chunks cannot be reordered. The last chunk is authenticated as
+ * final, so a truncated file fails to decrypt instead of playing short.
+ */
+public final class EncryptedRecordingFormat {
+    static final int MAGIC = 0x43524531; // "CRE1"
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    static final int TAG_LENGTH = 16;
+    static final int TAG_LENGTH_BITS = TAG_LENGTH * 8;
+    static final int NONCE_LENGTH = 12;
+    static final int NONCE_PREFIX_LENGTH = 8;
+    public static final String FILE_EXTENSION = ".enc";
+
+    private static final byte[] AAD_INTERMEDIATE = {0};
+    private static final byte[] AAD_FINAL = {1};
+
+    final int chunkSize;
+    final byte[] wrappedKey;
+    final byte[] noncePrefix;
+
+    EncryptedRecordingFormat(int chunkSize, byte[] wrappedKey, byte[] noncePrefix) {
+        this.chunkSize = chunkSize;
+        this.wrappedKey = wrappedKey;
+        this.noncePrefix = noncePrefix;
+    }
+
+    int headerLength() {
+        return 4 + 4 + 2 + wrappedKey.length + NONCE_PREFIX_LENGTH;
+    }
+
+    void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(chunkSize);
+        out.writeShort(wrappedKey.length);
+        out.write(wrappedKey);
+        out.write(noncePrefix);
+    }
+
+    static EncryptedRecordingFormat readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an encrypted recording");
+        }
+        int chunkSize = in.readInt();
+        if (chunkSize <= 0) {
+            throw new IOException("Invalid chunk size " + chunkSize);
+        }
+        byte[] wrappedKey = new byte[in.readUnsignedShort()];
+        in.readFully(wrappedKey);
+        byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+        in.readFully(noncePrefix);
+        return new EncryptedRecordingFormat(chunkSize, wrappedKey, noncePrefix);
+    }
+
+    // Fills nonce with the file prefix and the chunk index
+    void nonceForChunk(long chunkIndex, byte[] nonce) {
+        System.arraycopy(noncePrefix, 0, nonce, 0, NONCE_PREFIX_LENGTH);
+        ByteBuffer.wrap(nonce, NONCE_PREFIX_LENGTH, 4).putInt((int) chunkIndex);
+    }
+
+    static byte[] aad(boolean isFinal) {
+        return isFinal ? AAD_FINAL : AAD_INTERMEDIATE;
+    }
+}
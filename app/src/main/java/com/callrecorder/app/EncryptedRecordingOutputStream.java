@@ -0,0 +1,118 @@
+package com.callrecorder.app.utils;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Streams plaintext into the chunked AES-GCM format described in EncryptedRecordingFormat.
+ * Buffers are allocated once, so memory use is two chunks regardless of file length.
+ */
+public class EncryptedRecordingOutputStream extends OutputStream {
+    private final DataOutputStream out;
+    private final SecretKey dataKey;
+    private final EncryptedRecordingFormat format;
+    private final Cipher cipher;
+    private final byte[] plainBuffer;
+    private final byte[] cipherBuffer;
+    private final byte[] nonce = new byte[EncryptedRecordingFormat.NONCE_LENGTH];
+    private int buffered;
+    private long chunkIndex;
+    private boolean finished;
+    private boolean closed;
+
+    /**
+     * @param out Destination, closed together with this stream
+     * @param dataKey Per-file AES key
+     * @param wrappedKey dataKey wrapped by the master key, stored in the header
+     * @param chunkSize Plaintext bytes per chunk
+     */
+    public EncryptedRecordingOutputStream(OutputStream out, SecretKey dataKey, byte[] wrappedKey,
+                                          int chunkSize) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.dataKey = dataKey;
+
+        byte[] noncePrefix = new byte[EncryptedRecordingFormat.NONCE_PREFIX_LENGTH];
+        new SecureRandom().nextBytes(noncePrefix);
+        format = new EncryptedRecordingFormat(chunkSize, wrappedKey, noncePrefix);
+
+        try {
+            cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IOException("AES-GCM not available", e);
+        }
+        plainBuffer = new byte[chunkSize];
+        cipherBuffer = new byte[chunkSize + EncryptedRecordingFormat.TAG_LENGTH];
+        format.writeHeader(this.out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished) {
+            throw new IOException("Stream finished");
+        }
+        while (len > 0) {
+            // A full buffer is only sealed once more data arrives, so the last chunk is always final
+            if (buffered == plainBuffer.length) {
+                writeChunk(false);
+            }
+            int count = Math.min(len, plainBuffer.length - buffered);
+            System.arraycopy(b, off, plainBuffer, buffered, count);
+            buffered += count;
+            off += count;
+            len -= count;
+        }
+    }
+
+    /**
+     * Seal the final chunk and flush without closing the destination, so the caller
+     * can sync it to storage first. Nothing more can be written afterwards.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        writeChunk(true);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeChunk(boolean isFinal) throws IOException {
+        format.nonceForChunk(chunkIndex, nonce);
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, dataKey,
+                    new GCMParameterSpec(EncryptedRecordingFormat.TAG_LENGTH_BITS, nonce));
+            cipher.updateAAD(EncryptedRecordingFormat.aad(isFinal));
+            int length = cipher.doFinal(plainBuffer, 0, buffered, cipherBuffer, 0);
+            out.write(cipherBuffer, 0, length);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Error encrypting chunk " + chunkIndex, e);
+        }
+        chunkIndex++;
+        buffered = 0;
+    }
+}
@@ -0,0 +1,198 @@
+package com.callrecorder.app.energy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Attributes CPU time, wakelock time and audio capture and encoder time to the
+ * call session in progress, or to idle listening when there is none. Nothing is
+ * sampled: each event charges the time since the previous event to whichever
+ * session was current, so the cost is a couple of clock reads per event.
+ *
+ * CPU time is read for the whole process, so it also counts whatever else the
+ * process ran meanwhile: the screens, database migrations and the fingerprint and
+ * transcription backfills all land on idle listening, or on a call if one is open.
+ */
+public class EnergyAccountant {
+    static final int MAX_SESSIONS = 200;
+
+    public interface Clock {
+        // Monotonic time, including deep sleep
+        long elapsedMillis();
+
+        // CPU time used by the process so far
+        long cpuMillis();
+
+        long currentTimeMillis();
+    }
+
+    /**
+     * Handle for one call session, returned by beginCall and closed by endCall
+     */
+    public static final class Session {
+        final String kind;
+        final long startedAt;
+        boolean ended;
+        long wall;
+        long cpu;
+        long wakeLock;
+        long audio;
+        long encoder;
+
+        private Session(String kind, long startedAt) {
+            this.kind = kind;
+            this.startedAt = startedAt;
+        }
+
+        PowerUsage toUsage(long recordingId) {
+            return new PowerUsage(kind, recordingId, startedAt, wall, cpu, wakeLock, audio, encoder);
+        }
+    }
+
+    private final Clock clock;
+    private final ArrayDeque<PowerUsage> finishedCalls = new ArrayDeque<>();
+    private Session idle;
+    private Session call;
+    // Calls a newer call replaced before their recording was saved, oldest first
+    private final ArrayDeque<Session> endingCalls = new ArrayDeque<>();
+    private boolean listening;
+    private int wakeLocks;
+    private boolean audioActive;
+    private boolean encoderActive;
+    private long lastElapsed;
+    private long lastCpu;
+
+    public EnergyAccountant(Clock clock) {
+        this.clock = clock;
+        lastElapsed = clock.elapsedMillis();
+        lastCpu = clock.cpuMillis();
+    }
+
+    /**
+     * The recording service is running; time outside calls counts as idle listening
+     */
+    public synchronized void startListening() {
+        advance();
+        listening = true;
+        if (idle == null) {
+            idle = new Session(PowerUsage.KIND_IDLE, clock.currentTimeMillis());
+        }
+    }
+
+    public synchronized void stopListening() {
+        advance();
+        listening = false;
+    }
+
+    /**
+     * Start charging to a new call session. A call still waiting for its recording
+     * to be saved stops being charged, but stays open for its own endCall.
+     * @return Handle to pass to endCall
+     */
+    public synchronized Session beginCall() {
+        advance();
+        if (call != null) {
+            if (endingCalls.size() == MAX_SESSIONS) {
+                finishCall(endingCalls.removeFirst(), PowerUsage.NO_RECORDING);
+            }
+            endingCalls.addLast(call);
+        }
+        call = new Session(PowerUsage.KIND_CALL, clock.currentTimeMillis());
+        return call;
+    }
+
+    /**
+     * End a call session once its recording has been saved. Saving runs on another
+     * thread, so the next call may already have begun; only the given session ends.
+     * @param session Handle returned by beginCall
+     * @param recordingId Saved recording, or PowerUsage.NO_RECORDING
+     */
+    public synchronized void endCall(Session session, long recordingId) {
+        advance();
+        if (session.ended) {
+            return;
+        }
+        if (session == call) {
+            call = null;
+        } else {
+            endingCalls.remove(session);
+        }
+        finishCall(session, recordingId);
+    }
+
+    public synchronized void wakeLockAcquired() {
+        advance();
+        wakeLocks++;
+    }
+
+    public synchronized void wakeLockReleased() {
+        advance();
+        wakeLocks = Math.max(0, wakeLocks - 1);
+    }
+
+    public synchronized void setAudioActive(boolean active) {
+        advance();
+        audioActive = active;
+    }
+
+    public synchronized void setEncoderActive(boolean active) {
+        advance();
+        encoderActive = active;
+    }
+
+    /**
+     * @return Idle listening so far, then finished calls oldest first, then calls
+     * still being saved, then the call in progress if there is one
+     */
+    public synchronized List<PowerUsage> snapshot() {
+        advance();
+        List<PowerUsage> usages = new ArrayList<>(finishedCalls.size() + endingCalls.size() + 2);
+        if (idle != null) {
+            usages.add(idle.toUsage(PowerUsage.NO_RECORDING));
+        }
+        usages.addAll(finishedCalls);
+        for (Session ending : endingCalls) {
+            usages.add(ending.toUsage(PowerUsage.NO_RECORDING));
+        }
+        if (call != null) {
+            usages.add(call.toUsage(PowerUsage.NO_RECORDING));
+        }
+        return usages;
+    }
+
+    private void finishCall(Session session, long recordingId) {
+        session.ended = true;
+        if (finishedCalls.size() == MAX_SESSIONS) {
+            finishedCalls.removeFirst();
+        }
+        finishedCalls.addLast(session.toUsage(recordingId));
+    }
+
+    private void advance() {
+        long elapsed = clock.elapsedMillis();
+        long cpu = clock.cpuMillis();
+        long wall = elapsed - lastElapsed;
+        long cpuUsed = cpu - lastCpu;
+        lastElapsed = elapsed;
+        lastCpu = cpu;
+
+        // Time while the service is stopped belongs to neither. The CPU time is the whole
+        // process's, so screens and background work since the last event count here too
+        Session session = call != null ? call : listening ? idle : null;
+        if (session == null) {
+            return;
+        }
+        session.wall += wall;
+        session.cpu += cpuUsed;
+        if (wakeLocks > 0) {
+            session.wakeLock += wall;
+        }
+        if (audioActive) {
+            session.audio += wall;
+        }
+        if (encoderActive) {
+            session.encoder += wall;
+        }
+    }
+}
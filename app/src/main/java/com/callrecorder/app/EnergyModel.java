@@ -0,0 +1,76 @@
+package com.callrecorder.app.energy;
+
+import java.util.List;
+
+/**
+ * Converts attributed time into battery charge, in the spirit of the platform's
+ * power_profile.xml: each component draws a fixed current while it is active.
+ * The defaults are typical mid-range phone values; they make sessions and builds
+ * comparable with each other rather than predicting a particular device.
+ */
+public final class EnergyModel {
+    public static final EnergyModel DEFAULT = new EnergyModel(120, 15, 25, 20);
+
+    private static final double MILLIS_PER_HOUR = 3_600_000d;
+    private static final double MILLIS_PER_MINUTE = 60_000d;
+
+    private final double cpuActiveMilliamps;
+    private final double awakeMilliamps;
+    private final double audioMilliamps;
+    private final double encoderMilliamps;
+
+    /**
+     * @param cpuActiveMilliamps While the process is using a CPU
+     * @param awakeMilliamps While a wakelock keeps the device out of suspend
+     * @param audioMilliamps While the microphone path is capturing
+     * @param encoderMilliamps While the encoder is running
+     */
+    public EnergyModel(double cpuActiveMilliamps, double awakeMilliamps,
+                       double audioMilliamps, double encoderMilliamps) {
+        this.cpuActiveMilliamps = cpuActiveMilliamps;
+        this.awakeMilliamps = awakeMilliamps;
+        this.audioMilliamps = audioMilliamps;
+        this.encoderMilliamps = encoderMilliamps;
+    }
+
+    public double milliampHours(PowerUsage usage) {
+        // CPU time already keeps the device awake; only the rest is charged to the wakelock
+        long awakeOnly = Math.max(0, usage.getWakeLockMillis() - usage.getCpuMillis());
+        double milliampMillis = usage.getCpuMillis() * cpuActiveMilliamps
+                + awakeOnly * awakeMilliamps
+                + usage.getAudioMillis() * audioMilliamps
+                + usage.getEncoderMillis() * encoderMilliamps;
+        return milliampMillis / MILLIS_PER_HOUR;
+    }
+
+    /**
+     * @return Charge of all call sessions divided by the minutes they recorded, or 0
+     * if nothing was recorded
+     */
+    public double perRecordingMinute(List<PowerUsage> usages) {
+        double charge = 0;
+        long recorded = 0;
+        for (PowerUsage usage : usages) {
+            if (usage.isCall()) {
+                charge += milliampHours(usage);
+                recorded += usage.getAudioMillis();
+            }
+        }
+        return recorded > 0 ? charge / (recorded / MILLIS_PER_MINUTE) : 0;
+    }
+
+    /**
+     * @return Charge per hour spent listening between calls, or 0 before any idle time
+     */
+    public double idlePerHour(List<PowerUsage> usages) {
+        double charge = 0;
+        long wall = 0;
+        for (PowerUsage usage : usages) {
+            if (!usage.isCall()) {
+                charge += milliampHours(usage);
+                wall += usage.getWallMillis();
+            }
+        }
+        return wall > 0 ? charge / (wall / MILLIS_PER_HOUR) : 0;
+    }
+}
@@ -0,0 +1,54 @@
+package com.callrecorder.app.energy;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Text forms of the energy accounting: CSV for export and a short summary
+ */
+public final class EnergyReport {
+    public static final String CSV_HEADER = "kind,recordingId,startedAt,wallMs,cpuMs,wakeLockMs,"
+            + "audioMs,encoderMs,mAh";
+
+    private EnergyReport() {
+    }
+
+    public static String toCsv(List<PowerUsage> usages, EnergyModel model) {
+        StringBuilder csv = new StringBuilder(CSV_HEADER).append('\n');
+        for (PowerUsage usage : usages) {
+            csv.append(usage.getKind()).append(',')
+                    .append(usage.getRecordingId()).append(',')
+                    .append(usage.getStartedAt()).append(',')
+                    .append(usage.getWallMillis()).append(',')
+                    .append(usage.getCpuMillis()).append(',')
+                    .append(usage.getWakeLockMillis()).append(',')
+                    .append(usage.getAudioMillis()).append(',')
+                    .append(usage.getEncoderMillis()).append(',')
+                    .append(String.format(Locale.US, "%.4f", model.milliampHours(usage)))
+                    .append('\n');
+        }
+        return csv.toString();
+    }
+
+    public static String summary(List<PowerUsage> usages, EnergyModel model) {
+        int calls = 0;
+        long cpu = 0;
+        long wakeLock = 0;
+        long recorded = 0;
+        for (PowerUsage usage : usages) {
+            if (usage.isCall()) {
+                calls++;
+                recorded += usage.getAudioMillis();
+            }
+            cpu += usage.getCpuMillis();
+            wakeLock += usage.getWakeLockMillis();
+        }
+        return String.format(Locale.US,
+                "calls: %d, recorded: %.1f min\n"
+                        + "cpu: %.1f s, wakelock: %.1f s\n"
+                        + "per recording minute: %.3f mAh\n"
+                        + "idle listening: %.3f mAh/h",
+                calls, recorded / 60_000d, cpu / 1000d, wakeLock / 1000d,
+                model.perRecordingMinute(usages), model.idlePerHour(usages));
+    }
+}
@@ -0,0 +1,56 @@
+package com.callrecorder.app.fingerprint;
+
+/**
+ * In-place iterative radix-2 FFT for the fingerprint frames
+ */
+final class Fft {
+    private Fft() {
+    }
+
+    /**
+     * @param real Real parts, length a power of two
+     * @param imaginary Imaginary parts, same length
+     */
+    static void transform(float[] real, float[] imaginary) {
+        int n = real.length;
+        // Bit-reversal permutation
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                float t = real[i];
+                real[i] = real[j];
+                real[j] = t;
+                t = imaginary[i];
+                imaginary[i] = imaginary[j];
+                imaginary[j] = t;
+            }
+        }
+
+        for (int length = 2; length <= n; length <<= 1) {
+            double angle = -2 * Math.PI / length;
+            float stepReal = (float) Math.cos(angle);
+            float stepImaginary = (float) Math.sin(angle);
+            for (int start = 0; start < n; start += length) {
+                float wReal = 1f;
+                float wImaginary = 0f;
+                for (int k = 0; k < length / 2; k++) {
+                    int even = start + k;
+                    int odd = even + length / 2;
+                    float oddReal = real[odd] * wReal - imaginary[odd] * wImaginary;
+                    float oddImaginary = real[odd] * wImaginary + imaginary[odd] * wReal;
+                    real[odd] = real[even] - oddReal;
+                    imaginary[odd] = imaginary[even] - oddImaginary;
+                    real[even] += oddReal;
+                    imaginary[even] += oddImaginary;
+                    float nextReal = wReal * stepReal - wImaginary * stepImaginary;
+                    wImaginary = wReal * stepImaginary + wImaginary * stepReal;
+                    wReal = nextReal;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.callrecorder.app.fingerprint;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Streaming acoustic fingerprint of a call. PCM is fed in as it is decoded, so a
+ * recording is never held in memory. Audio is mixed to mono and reduced to 8 kHz,
+ * the telephone band, then every 25 ms a 100 ms frame is split into five bands
+ * between 300 and 3400 Hz. Each frame is one byte: four bits saying whether the energy
+ * difference between neighbouring bands rose or fell over the last 100 ms, and a bit
+ * marking frames loud enough for those signs to mean anything. The signs survive
+ * re-encoding, level changes and small offsets; silence only carries noise.
+ */
+public final class FingerprintBuilder {
+    public static final int FRAMES_PER_SECOND = 40;
+    static final int BITS_PER_FRAME = 4;
+    static final int FEATURE_MASK = (1 << BITS_PER_FRAME) - 1;
+    static final int VOICED = 1 << BITS_PER_FRAME;
+
+    private static final int SAMPLE_RATE = 8000;
+    private static final int FRAME_SIZE = 800;   // 100 ms
+    private static final int HOP_SIZE = 200;     // 25 ms
+    // RMS below which a frame is treated as silence, about -38 dBFS
+    private static final double SILENCE_RMS = 400;
+    private static final int FFT_SIZE = 1024;
+    private static final int[] BAND_EDGES_HZ = {300, 490, 800, 1300, 2100, 3400};
+    // Frames compared for the change, one frame length apart so they do not overlap.
+    // Adjacent frames share most of their samples, which left the signs to noise.
+    private static final int LAG_FRAMES = FRAME_SIZE / HOP_SIZE;
+
+    private static final float[] WINDOW = new float[FRAME_SIZE];
+    private static final int[] BAND_EDGE_BINS = new int[BAND_EDGES_HZ.length];
+
+    static {
+        for (int i = 0; i < FRAME_SIZE; i++) {
+            WINDOW[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / (FRAME_SIZE - 1)));
+        }
+        for (int i = 0; i < BAND_EDGES_HZ.length; i++) {
+            BAND_EDGE_BINS[i] = BAND_EDGES_HZ[i] * FFT_SIZE / SAMPLE_RATE;
+        }
+    }
+
+    private final int channels;
+    private final double step; // input frames per output sample
+    private double phase;
+    private double sum;
+    private int sumCount;
+
+    private final float[] frame = new float[FRAME_SIZE];
+    private int frameFill;
+    private final float[] real = new float[FFT_SIZE];
+    private final float[] imaginary = new float[FFT_SIZE];
+    private final double[] bandDiffs = new double[BAND_EDGES_HZ.length - 2];
+    // Band differences of the last LAG_FRAMES frames, as a ring
+    private final double[][] bandDiffHistory = new double[LAG_FRAMES][BAND_EDGES_HZ.length - 2];
+    private int framesProcessed;
+
+    private final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+    private int frameCount;
+
+    /**
+     * @param sampleRate Input sample rate in Hz
+     * @param channels Interleaved channels in the input
+     */
+    public FingerprintBuilder(int sampleRate, int channels) {
+        this.channels = Math.max(1, channels);
+        step = Math.max(1.0, (double) sampleRate / SAMPLE_RATE);
+    }
+
+    /**
+     * Add interleaved 16-bit PCM
+     * @param samples Sample buffer
+     * @param offset First sample to read
+     * @param count Number of samples, across all channels
+     */
+    public void addSamples(short[] samples, int offset, int count) {
+        int end = offset + count - count % channels;
+        for (int i = offset; i < end; i += channels) {
+            int mono = 0;
+            for (int c = 0; c < channels; c++) {
+                mono += samples[i + c];
+            }
+            // Averaging over each output period is a crude low-pass before decimating,
+            // enough for five broad bands
+            sum += (double) mono / channels;
+            sumCount++;
+            phase += 1.0;
+            if (phase >= step) {
+                phase -= step;
+                addDecimated((float) (sum / sumCount));
+                sum = 0;
+                sumCount = 0;
+            }
+        }
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return The fingerprint, one byte per frame and FRAMES_PER_SECOND frames per second
+     */
+    public byte[] finish() {
+        return frames.toByteArray();
+    }
+
+    private void addDecimated(float sample) {
+        frame[frameFill++] = sample;
+        if (frameFill < FRAME_SIZE) {
+            return;
+        }
+        processFrame();
+        // Keep the second half as the start of the next frame
+        System.arraycopy(frame, HOP_SIZE, frame, 0, FRAME_SIZE - HOP_SIZE);
+        frameFill = FRAME_SIZE - HOP_SIZE;
+    }
+
+    private void processFrame() {
+        double power = 0;
+        for (int i = 0; i < FFT_SIZE; i++) {
+            if (i < FRAME_SIZE) {
+                power += frame[i] * frame[i];
+                real[i] = frame[i] * WINDOW[i];
+            } else {
+                real[i] = 0f;
+            }
+            imaginary[i] = 0f;
+        }
+        boolean voiced = Math.sqrt(power / FRAME_SIZE) >= SILENCE_RMS;
+        Fft.transform(real, imaginary);
+
+        double previousEnergy = 0;
+        for (int band = 0; band < BAND_EDGES_HZ.length - 1; band++) {
+            double energy = 0;
+            for (int bin = BAND_EDGE_BINS[band]; bin < BAND_EDGE_BINS[band + 1]; bin++) {
+                energy += real[bin] * real[bin] + imaginary[bin] * imaginary[bin];
+            }
+            // Log energy, so a volume change shifts every band equally and cancels out
+            energy = Math.log(energy + 1e-3);
+            if (band > 0) {
+                bandDiffs[band - 1] = previousEnergy - energy;
+            }
+            previousEnergy = energy;
+        }
+
+        double[] laggedBandDiffs = bandDiffHistory[framesProcessed % LAG_FRAMES];
+        if (framesProcessed >= LAG_FRAMES) {
+            int bits = 0;
+            for (int i = 0; i < bandDiffs.length; i++) {
+                if (bandDiffs[i] - laggedBandDiffs[i] > 0) {
+                    bits |= 1 << i;
+                }
+            }
+            frames.write(voiced ? bits | VOICED : bits);
+            frameCount++;
+        }
+        System.arraycopy(bandDiffs, 0, laggedBandDiffs, 0, bandDiffs.length);
+        framesProcessed++;
+    }
+
+}
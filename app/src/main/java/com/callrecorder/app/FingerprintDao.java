@@ -0,0 +1,68 @@
+package com.callrecorder.app.database;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.callrecorder.app.models.AudioFingerprint;
+import com.callrecorder.app.models.DuplicateCandidate;
+import com.callrecorder.app.models.DuplicatePair;
+import com.callrecorder.app.models.FingerprintLandmark;
+import com.callrecorder.app.models.LandmarkHit;
+import com.callrecorder.app.models.RecordingFile;
+
+import java.util.List;
+
+@Dao
+public abstract class FingerprintDao {
+    // Stays under SQLite's default limit of 999 bound parameters
+    public static final int MAX_LOOKUP_VALUES = 500;
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    abstract void insertFingerprint(AudioFingerprint fingerprint);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    abstract void insertLandmarks(List<FingerprintLandmark> landmarks);
+
+    @Query("DELETE FROM fingerprint_landmarks WHERE recordingId = :recordingId")
+    abstract void deleteLandmarks(long recordingId);
+
+    /**
+     * Store a fingerprint and replace its landmarks in the index
+     */
+    @Transaction
+    public void insert(AudioFingerprint fingerprint, List<FingerprintLandmark> landmarks) {
+        insertFingerprint(fingerprint);
+        deleteLandmarks(fingerprint.getRecordingId());
+        insertLandmarks(landmarks);
+    }
+
+    @Query("SELECT frames FROM fingerprints WHERE recordingId = :recordingId")
+    public abstract byte[] getFrames(long recordingId);
+
+    // Index lookup on value; pass at most MAX_LOOKUP_VALUES values per call
+    @Query("SELECT recordingId, frame, value FROM fingerprint_landmarks " +
+            "WHERE value IN (:values) AND recordingId != :excludeId")
+    public abstract List<LandmarkHit> findLandmarks(int[] values, long excludeId);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void insertCandidate(DuplicateCandidate candidate);
+
+    @Query("SELECT d.recordingId, a.duration AS recordingDuration, d.duplicateOfId, " +
+            "b.duration AS duplicateOfDuration, d.similarity FROM duplicate_candidates d " +
+            "JOIN recordings a ON a.id = d.recordingId JOIN recordings b ON b.id = d.duplicateOfId " +
+            "ORDER BY d.recordingId DESC")
+    public abstract LiveData<List<DuplicatePair>> getDuplicatePairs();
+
+    // The user decided both copies are worth keeping
+    @Query("DELETE FROM duplicate_candidates WHERE recordingId = :recordingId AND duplicateOfId = :duplicateOfId")
+    public abstract void dismissCandidate(long recordingId, long duplicateOfId);
+
+    // Newest first, so a backfill reaches recent calls before old ones
+    @Query("SELECT id, filePath FROM recordings WHERE filePath IS NOT NULL AND id < :beforeId " +
+            "AND id NOT IN (SELECT recordingId FROM fingerprints) ORDER BY id DESC LIMIT :limit")
+    public abstract List<RecordingFile> getUnfingerprintedBefore(long beforeId, int limit);
+}
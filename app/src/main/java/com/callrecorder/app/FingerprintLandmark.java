@@ -0,0 +1,40 @@
+package com.callrecorder.app.models;
+
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+
+/**
+ * One landmark of a fingerprint: a shingle value and the frame it ends on.
+ * The value index is the lookup table for finding duplicates.
+ */
+@Entity(tableName = "fingerprint_landmarks",
+        primaryKeys = {"recordingId", "frame"},
+        foreignKeys = @ForeignKey(entity = AudioFingerprint.class,
+                parentColumns = "recordingId",
+                childColumns = "recordingId",
+                onDelete = ForeignKey.CASCADE),
+        indices = {@Index("value")})
+public class FingerprintLandmark {
+    private long recordingId;
+    private int frame;
+    private int value;
+
+    public FingerprintLandmark(long recordingId, int frame, int value) {
+        this.recordingId = recordingId;
+        this.frame = frame;
+        this.value = value;
+    }
+
+    public long getRecordingId() {
+        return recordingId;
+    }
+
+    public int getFrame() {
+        return frame;
+    }
+
+    public int getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,99 @@
+package com.callrecorder.app.fingerprint;
+
+import java.util.Arrays;
+
+/**
+ * Locality-sensitive keys and verification for fingerprints from FingerprintBuilder.
+ *
+ * Every run of five speech frames (125 ms) forms a 20-bit shingle. Shingles whose hash
+ * falls in a fixed 1/32 slice become landmarks, about one a second. The choice depends
+ * only on the shingle's value, so two copies of the same audio pick the same landmarks
+ * wherever they start. Looking a recording's landmarks up in an index keyed by value
+ * finds the recordings that share them. A duplicate shares several at one consistent
+ * time offset, and the frames are then compared bit by bit at that offset.
+ */
+public final class FingerprintMatcher {
+    static final int SHINGLE_FRAMES = 5;
+    private static final int SHINGLE_BITS = FingerprintBuilder.BITS_PER_FRAME * SHINGLE_FRAMES;
+    private static final int LANDMARK_SAMPLING_MASK = 31;
+
+    // Landmarks that must agree on an offset before the frames are compared
+    public static final int MIN_VOTES = 3;
+    // Duplicates must overlap for at least half the shorter recording and 5 seconds, with
+    // at most 20% of the compared bits differing; unrelated audio differs in about half
+    public static final float MIN_SIMILARITY = 0.8f;
+    private static final int MIN_OVERLAP_FRAMES = 5 * FingerprintBuilder.FRAMES_PER_SECOND;
+    // Frames that are speech in both recordings, the only ones whose bits are compared
+    private static final int MIN_VOICED_FRAMES = 2 * FingerprintBuilder.FRAMES_PER_SECOND;
+
+    private FingerprintMatcher() {
+    }
+
+    /**
+     * @param frames Frames from FingerprintBuilder
+     * @return Landmarks as (shingle value << 32 | frame index), in frame order
+     */
+    public static long[] landmarks(byte[] frames) {
+        long[] landmarks = new long[16];
+        int count = 0;
+        int shingle = 0;
+        int voicedRun = 0;
+        for (int i = 0; i < frames.length; i++) {
+            shingle = ((shingle << FingerprintBuilder.BITS_PER_FRAME)
+                    | (frames[i] & FingerprintBuilder.FEATURE_MASK)) & ((1 << SHINGLE_BITS) - 1);
+            voicedRun = (frames[i] & FingerprintBuilder.VOICED) != 0 ? voicedRun + 1 : 0;
+            // Only shingles made entirely of speech; silence bits are noise
+            if (voicedRun < SHINGLE_FRAMES || (mix(shingle) & LANDMARK_SAMPLING_MASK) != 0) {
+                continue;
+            }
+            if (count == landmarks.length) {
+                landmarks = Arrays.copyOf(landmarks, count * 2);
+            }
+            landmarks[count++] = ((long) shingle << 32) | i;
+        }
+        return Arrays.copyOf(landmarks, count);
+    }
+
+    public static int landmarkValue(long landmark) {
+        return (int) (landmark >>> 32);
+    }
+
+    public static int landmarkFrame(long landmark) {
+        return (int) landmark;
+    }
+
+    /**
+     * Compare the speech frames two fingerprints share at a given alignment
+     * @param offset Frame i of a lines up with frame i + offset of b
+     * @return Fraction of matching bits, or 0 if they do not overlap enough
+     */
+    public static float similarity(byte[] a, byte[] b, int offset) {
+        int start = Math.max(0, -offset);
+        int end = Math.min(a.length, b.length - offset);
+        int overlap = end - start;
+        if (overlap < MIN_OVERLAP_FRAMES || overlap * 2 < Math.min(a.length, b.length)) {
+            return 0f;
+        }
+        int compared = 0;
+        int differing = 0;
+        for (int i = start; i < end; i++) {
+            int frameA = a[i];
+            int frameB = b[i + offset];
+            if ((frameA & frameB & FingerprintBuilder.VOICED) != 0) {
+                compared++;
+                differing += Integer.bitCount((frameA ^ frameB) & FingerprintBuilder.FEATURE_MASK);
+            }
+        }
+        if (compared < MIN_VOICED_FRAMES) {
+            return 0f;
+        }
+        return 1f - (float) differing / (compared * FingerprintBuilder.BITS_PER_FRAME);
+    }
+
+    // SplitMix64 finalizer. Fixed, since the landmark choice is stored in the index.
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
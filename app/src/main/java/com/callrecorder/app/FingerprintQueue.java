@@ -0,0 +1,184 @@
+package com.callrecorder.app.fingerprint;
+
+import android.util.Log;
+
+import com.callrecorder.app.database.FingerprintDao;
+import com.callrecorder.app.models.AudioFingerprint;
+import com.callrecorder.app.models.DuplicateCandidate;
+import com.callrecorder.app.models.FingerprintLandmark;
+import com.callrecorder.app.models.LandmarkHit;
+import com.callrecorder.app.models.RecordingFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Fingerprints recordings one at a time in the background and records any earlier
+ * recording with the same audio as a duplicate candidate. New recordings are queued
+ * as they are saved; older ones are backfilled a batch at a time, newest first, with
+ * new recordings taking their turn between batches.
+ */
+public class FingerprintQueue {
+    private static final String TAG = "FingerprintQueue";
+    private static final int BACKFILL_BATCH_SIZE = 20;
+
+    private final FingerprintDao fingerprintDao;
+    // One decoder at a time keeps this from competing with playback and recording
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Set<Long> queued = new HashSet<>();
+    private long backfillBeforeId = Long.MAX_VALUE; // executor thread only
+    private boolean backfilling;
+
+    public FingerprintQueue(FingerprintDao fingerprintDao) {
+        this.fingerprintDao = fingerprintDao;
+    }
+
+    /**
+     * Queue a recording, unless it is already waiting
+     */
+    public void enqueue(final long recordingId, final String filePath) {
+        synchronized (queued) {
+            if (!queued.add(recordingId)) {
+                return;
+            }
+        }
+        executor.execute(() -> {
+            try {
+                process(recordingId, filePath);
+            } finally {
+                synchronized (queued) {
+                    queued.remove(recordingId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Start fingerprinting recordings that have no fingerprint yet
+     */
+    public synchronized void startBackfill() {
+        if (backfilling) {
+            return;
+        }
+        backfilling = true;
+        executor.execute(this::backfillBatch);
+    }
+
+    private void backfillBatch() {
+        List<RecordingFile> batch = fingerprintDao.getUnfingerprintedBefore(backfillBeforeId, BACKFILL_BATCH_SIZE);
+        if (batch.isEmpty()) {
+            synchronized (this) {
+                backfilling = false;
+            }
+            return;
+        }
+        for (RecordingFile recording : batch) {
+            backfillBeforeId = Math.min(backfillBeforeId, recording.getId());
+            process(recording.getId(), recording.getFilePath());
+        }
+        // Behind anything enqueued while this batch ran
+        executor.execute(this::backfillBatch);
+    }
+
+    private void process(long recordingId, String filePath) {
+        byte[] frames;
+        try {
+            frames = AudioFingerprinter.fingerprint(new File(filePath));
+        } catch (IOException | RuntimeException e) {
+            // Stored empty so the backfill moves on; the recording can never match
+            Log.w(TAG, "Could not fingerprint recording " + recordingId, e);
+            frames = new byte[0];
+        }
+
+        long[] landmarks = FingerprintMatcher.landmarks(frames);
+        List<FingerprintLandmark> rows = new ArrayList<>(landmarks.length);
+        for (long landmark : landmarks) {
+            rows.add(new FingerprintLandmark(recordingId, FingerprintMatcher.landmarkFrame(landmark),
+                    FingerprintMatcher.landmarkValue(landmark)));
+        }
+        try {
+            fingerprintDao.insert(new AudioFingerprint(recordingId, frames, System.currentTimeMillis()), rows);
+            findDuplicates(recordingId, frames, landmarks);
+        } catch (RuntimeException e) {
+            // Usually the recording was deleted while it was being decoded
+            Log.w(TAG, "Could not store fingerprint for recording " + recordingId, e);
+        }
+    }
+
+    private void findDuplicates(long recordingId, byte[] frames, long[] landmarks) {
+        Map<Integer, List<Integer>> framesByValue = new HashMap<>();
+        for (long landmark : landmarks) {
+            int value = FingerprintMatcher.landmarkValue(landmark);
+            List<Integer> landmarkFrames = framesByValue.get(value);
+            if (landmarkFrames == null) {
+                landmarkFrames = new ArrayList<>(1);
+                framesByValue.put(value, landmarkFrames);
+            }
+            landmarkFrames.add(FingerprintMatcher.landmarkFrame(landmark));
+        }
+
+        // Votes per recording per offset; a duplicate piles its votes on one offset
+        Map<Long, Map<Integer, Integer>> votes = new HashMap<>();
+        int[] values = new int[framesByValue.size()];
+        int valueCount = 0;
+        for (Integer value : framesByValue.keySet()) {
+            values[valueCount++] = value;
+        }
+        for (int start = 0; start < valueCount; start += FingerprintDao.MAX_LOOKUP_VALUES) {
+            int end = Math.min(valueCount, start + FingerprintDao.MAX_LOOKUP_VALUES);
+            int[] lookup = new int[end - start];
+            System.arraycopy(values, start, lookup, 0, lookup.length);
+            for (LandmarkHit hit : fingerprintDao.findLandmarks(lookup, recordingId)) {
+                Map<Integer, Integer> offsets = votes.get(hit.getRecordingId());
+                if (offsets == null) {
+                    offsets = new HashMap<>();
+                    votes.put(hit.getRecordingId(), offsets);
+                }
+                for (int frame : framesByValue.get(hit.getValue())) {
+                    int offset = hit.getFrame() - frame;
+                    Integer count = offsets.get(offset);
+                    offsets.put(offset, count == null ? 1 : count + 1);
+                }
+            }
+        }
+
+        for (Map.Entry<Long, Map<Integer, Integer>> entry : votes.entrySet()) {
+            Map<Integer, Integer> offsets = entry.getValue();
+            int bestOffset = 0;
+            int bestVotes = 0;
+            for (int offset : offsets.keySet()) {
+                // Neighbouring offsets count too: copies can be misaligned by half a frame
+                int total = get(offsets, offset - 1) + get(offsets, offset) + get(offsets, offset + 1);
+                if (total > bestVotes) {
+                    bestVotes = total;
+                    bestOffset = offset;
+                }
+            }
+            if (bestVotes < FingerprintMatcher.MIN_VOTES) {
+                continue;
+            }
+
+            byte[] other = fingerprintDao.getFrames(entry.getKey());
+            if (other == null) {
+                continue;
+            }
+            float similarity = FingerprintMatcher.similarity(frames, other, bestOffset);
+            if (similarity >= FingerprintMatcher.MIN_SIMILARITY) {
+                fingerprintDao.insertCandidate(new DuplicateCandidate(recordingId, entry.getKey(), similarity));
+            }
+        }
+    }
+
+    private static int get(Map<Integer, Integer> counts, int key) {
+        Integer count = counts.get(key);
+        return count != null ? count : 0;
+    }
+}
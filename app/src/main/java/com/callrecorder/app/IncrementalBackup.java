@@ -0,0 +1,191 @@
+package com.callrecorder.app.backup;
+
+import android.util.Log;
+
+import com.callrecorder.app.database.BackupDao;
+import com.callrecorder.app.database.RecordingDao;
+import com.callrecorder.app.models.BackupFileEntry;
+import com.callrecorder.app.models.RecordingFile;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Backs up recording files into a content-addressed BackupTarget.
+ *
+ * Files whose size and modification time match the persisted hash index are not
+ * read at all. Changed or new files are split into content-defined chunks, and only
+ * chunks the target does not already hold are copied, so a file that shares most of
+ * its bytes with an earlier one costs only its changed chunks. Each run ends with a
+ * snapshot manifest listing every file and its chunks.
+ */
+public class IncrementalBackup {
+    private static final String TAG = "IncrementalBackup";
+    private static final int PAGE_SIZE = 200;
+
+    private final RecordingDao recordingDao;
+    private final BackupDao backupDao;
+    private final BackupTarget target;
+    private final File workDirectory;
+    private final ContentChunker chunker = new ContentChunker();
+    private int chunksCopied;
+    private long bytesCopied;
+
+    /**
+     * @param workDirectory Private directory for the snapshot manifest while it is built
+     */
+    public IncrementalBackup(RecordingDao recordingDao, BackupDao backupDao, BackupTarget target,
+                             File workDirectory) {
+        this.recordingDao = recordingDao;
+        this.backupDao = backupDao;
+        this.target = target;
+        this.workDirectory = workDirectory;
+    }
+
+    public static final class Result {
+        public final int filesTotal;
+        public final int filesHashed;
+        public final int chunksCopied;
+        public final long bytesCopied;
+
+        Result(int filesTotal, int filesHashed, int chunksCopied, long bytesCopied) {
+            this.filesTotal = filesTotal;
+            this.filesHashed = filesHashed;
+            this.chunksCopied = chunksCopied;
+            this.bytesCopied = bytesCopied;
+        }
+    }
+
+    /**
+     * Run one backup. Blocks until done, so call it from a background thread.
+     * @return What the run had to do
+     */
+    public Result run() throws IOException {
+        long snapshot = System.currentTimeMillis();
+        int filesTotal = 0;
+        int filesHashed = 0;
+        chunksCopied = 0;
+        bytesCopied = 0;
+
+        workDirectory.mkdirs();
+        File manifestFile = new File(workDirectory, "snapshot_" + snapshot + ".jsonl");
+        OutputStream manifest = new BufferedOutputStream(new FileOutputStream(manifestFile));
+        try {
+            long afterId = 0;
+            List<RecordingFile> page;
+            do {
+                page = recordingDao.getRecordingFilesAfter(afterId, PAGE_SIZE);
+                List<BackupFileEntry> changed = new ArrayList<>();
+                List<String> unchanged = new ArrayList<>();
+
+                for (RecordingFile recording : page) {
+                    afterId = recording.getId();
+                    if (recording.getFilePath() == null) {
+                        continue;
+                    }
+                    File file = new File(recording.getFilePath());
+                    if (!file.isFile()) {
+                        Log.w(TAG, "Missing file for recording " + recording.getId());
+                        continue;
+                    }
+                    filesTotal++;
+
+                    BackupFileEntry entry = backupDao.getEntry(recording.getFilePath());
+                    if (entry != null && entry.getSize() == file.length()
+                            && entry.getLastModified() == file.lastModified()
+                            && targetHasChunks(entry)) {
+                        unchanged.add(entry.getFilePath());
+                    } else {
+                        entry = backupFile(recording, file, snapshot);
+                        filesHashed++;
+                        changed.add(entry);
+                    }
+                    appendManifestLine(manifest, entry);
+                }
+
+                if (!changed.isEmpty()) {
+                    backupDao.putEntries(changed);
+                }
+                if (!unchanged.isEmpty()) {
+                    backupDao.markSeen(unchanged, snapshot);
+                }
+            } while (page.size() == PAGE_SIZE);
+        } finally {
+            manifest.close();
+        }
+
+        try {
+            target.putSnapshot(Long.toString(snapshot), manifestFile);
+        } finally {
+            manifestFile.delete();
+        }
+        backupDao.deleteNotSeenSince(snapshot);
+        return new Result(filesTotal, filesHashed, chunksCopied, bytesCopied);
+    }
+
+    // The index is local, so a new or pruned target still needs the chunks checked
+    private boolean targetHasChunks(BackupFileEntry entry) throws IOException {
+        for (String hash : entry.getChunkHashes().split(",")) {
+            if (!target.hasChunk(hash)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private BackupFileEntry backupFile(RecordingFile recording, File file, long snapshot) throws IOException {
+        long lastModified = file.lastModified();
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            List<ContentChunker.Chunk> chunks = chunker.chunk(channel);
+            StringBuilder chunkHashes = new StringBuilder();
+            for (ContentChunker.Chunk chunk : chunks) {
+                if (!target.hasChunk(chunk.hash)) {
+                    target.putChunk(chunk.hash, channel, chunk.offset, chunk.length);
+                    chunksCopied++;
+                    bytesCopied += chunk.length;
+                }
+                if (chunkHashes.length() > 0) {
+                    chunkHashes.append(',');
+                }
+                chunkHashes.append(chunk.hash);
+            }
+            return new BackupFileEntry(recording.getFilePath(), recording.getId(), channel.size(),
+                    lastModified, chunker.getLastFileHash(), chunkHashes.toString(), snapshot);
+        } finally {
+            in.close();
+        }
+    }
+
+    private void appendManifestLine(OutputStream manifest, BackupFileEntry entry) throws IOException {
+        try {
+            JSONArray chunks = new JSONArray();
+            for (String hash : entry.getChunkHashes().split(",")) {
+                chunks.put(hash);
+            }
+            String line = new JSONObject()
+                    .put("recordingId", entry.getRecordingId())
+                    .put("path", entry.getFilePath())
+                    .put("size", entry.getSize())
+                    .put("hash", entry.getContentHash())
+                    .put("chunks", chunks)
+                    .toString() + "\n";
+            manifest.write(line.getBytes(StandardCharsets.UTF_8));
+        } catch (JSONException e) {
+            throw new IOException("Error writing snapshot entry for " + entry.getFilePath(), e);
+        }
+    }
+}
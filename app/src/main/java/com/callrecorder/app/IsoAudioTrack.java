@@ -0,0 +1,303 @@
+package com.callrecorder.app.editing;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * The audio track of an ISO base media file (the .mp4 and .3gp recordings), read
+ * from its sample tables without loading them. Sample sizes and chunk offsets are
+ * read on demand through a window, so only the samples a clip touches are visited;
+ * the run-length tables (stts, stsc) are a handful of entries and are kept.
+ */
+final class IsoAudioTrack {
+    private static final int WINDOW_SIZE = 16 * 1024;
+
+    final FileChannel channel;
+    private final ChannelWindow in;
+
+    // Boxes copied into edited files as they are
+    long ftypOffset;
+    long ftypSize;
+    long stsdOffset;
+    long stsdSize;
+    long hdlrOffset;
+    long hdlrSize;
+    long smhdOffset;
+    long smhdSize;
+    long dinfOffset;
+    long dinfSize;
+
+    int timescale;
+    int sampleCount;
+    // Non-zero when every sample has this size and there is no size table
+    int constantSampleSize;
+    long sampleSizeTable;
+    int chunkCount;
+    long chunkOffsetTable;
+    boolean chunkOffsets64;
+
+    // stts: runs of sampleRunCounts[i] samples lasting sampleRunDeltas[i] each
+    int[] sampleRunCounts;
+    int[] sampleRunDeltas;
+    // stsc: from chunk (1-based) chunkRunFirst[i], each chunk holds chunkRunSamples[i] samples
+    int[] chunkRunFirst;
+    int[] chunkRunSamples;
+
+    /**
+     * Bytes of consecutive samples that sit next to each other in the file
+     */
+    static final class Run {
+        final IsoAudioTrack track;
+        final long offset;
+        long length;
+        int samples;
+
+        Run(IsoAudioTrack track, long offset, long length, int samples) {
+            this.track = track;
+            this.offset = offset;
+            this.length = length;
+            this.samples = samples;
+        }
+    }
+
+    IsoAudioTrack(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.in = new ChannelWindow(channel, WINDOW_SIZE);
+        parse();
+    }
+
+    /**
+     * @return Index of the sample playing at time, in timescale units
+     */
+    int sampleAt(long time) {
+        long runStart = 0;
+        int sample = 0;
+        for (int i = 0; i < sampleRunCounts.length; i++) {
+            long runLength = (long) sampleRunCounts[i] * sampleRunDeltas[i];
+            if (time < runStart + runLength) {
+                return sample + (int) ((time - runStart) / sampleRunDeltas[i]);
+            }
+            runStart += runLength;
+            sample += sampleRunCounts[i];
+        }
+        return sampleCount;
+    }
+
+    /**
+     * @return Index of the first sample that starts at or after time, in timescale units
+     */
+    int sampleStartingAt(long time) {
+        int sample = sampleAt(time);
+        return sample < sampleCount && sampleTime(sample) < time ? sample + 1 : sample;
+    }
+
+    long sampleTime(int sample) {
+        long time = 0;
+        int remaining = sample;
+        for (int i = 0; i < sampleRunCounts.length && remaining > 0; i++) {
+            int count = Math.min(remaining, sampleRunCounts[i]);
+            time += (long) count * sampleRunDeltas[i];
+            remaining -= count;
+        }
+        return time;
+    }
+
+    int sampleSize(int sample) throws IOException {
+        return constantSampleSize != 0 ? constantSampleSize : in.readInt(sampleSizeTable + 4L * sample);
+    }
+
+    long chunkOffset(int chunk) throws IOException {
+        return chunkOffsets64 ? in.readLong(chunkOffsetTable + 8L * chunk)
+                : in.readUnsignedInt(chunkOffsetTable + 4L * chunk);
+    }
+
+    /**
+     * Append the file ranges holding samples [first, first + count) to runs, merging
+     * ranges that continue the previous one
+     */
+    void collectRuns(int first, int count, List<Run> runs) throws IOException {
+        int end = first + count;
+        // Find the chunk holding the first sample
+        int entry = 0;
+        int chunk = 0;
+        int chunkFirstSample = 0;
+        while (true) {
+            int samplesPerChunk = chunkRunSamples[entry];
+            int entryEndChunk = entry + 1 < chunkRunFirst.length ? chunkRunFirst[entry + 1] - 1 : chunkCount;
+            long entrySamples = (long) (entryEndChunk - chunk) * samplesPerChunk;
+            if (first < chunkFirstSample + entrySamples || entry + 1 == chunkRunFirst.length) {
+                int skipped = (first - chunkFirstSample) / samplesPerChunk;
+                chunk += skipped;
+                chunkFirstSample += skipped * samplesPerChunk;
+                break;
+            }
+            chunk = entryEndChunk;
+            chunkFirstSample += (int) entrySamples;
+            entry++;
+        }
+
+        int sample = first;
+        while (sample < end) {
+            if (chunk >= chunkCount) {
+                throw new IOException("Sample table points past the last chunk");
+            }
+            while (entry + 1 < chunkRunFirst.length && chunk + 1 >= chunkRunFirst[entry + 1]) {
+                entry++;
+            }
+            int chunkEnd = Math.min(chunkFirstSample + chunkRunSamples[entry], end);
+            long offset = chunkOffset(chunk);
+            for (int s = chunkFirstSample; s < sample; s++) {
+                offset += sampleSize(s);
+            }
+            long length = 0;
+            for (int s = sample; s < chunkEnd; s++) {
+                length += sampleSize(s);
+            }
+
+            Run last = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+            if (last != null && last.track == this && last.offset + last.length == offset) {
+                last.length += length;
+                last.samples += chunkEnd - sample;
+            } else {
+                runs.add(new Run(this, offset, length, chunkEnd - sample));
+            }
+
+            sample = chunkEnd;
+            chunkFirstSample += chunkRunSamples[entry];
+            chunk++;
+        }
+    }
+
+    byte[] readBox(long offset, long size) throws IOException {
+        byte[] box = new byte[(int) size];
+        in.read(offset, box);
+        return box;
+    }
+
+    private void parse() throws IOException {
+        long size = in.size();
+        long ftyp = findBox(0, size, "ftyp");
+        long moov = findBox(0, size, "moov");
+        if (ftyp < 0 || moov < 0) {
+            throw new IOException("Not an MP4 file, or it was not finished");
+        }
+        ftypOffset = ftyp;
+        ftypSize = boxSize(ftyp);
+
+        long trak = findAudioTrack(moov);
+        long mdia = require(findChild(trak, "mdia"), "mdia");
+        long mdhd = require(findChild(mdia, "mdhd"), "mdhd");
+        // Version 1 has 64-bit creation and modification times before the timescale
+        timescale = in.readInt(mdhd + 8 + (in.readUnsignedByte(mdhd + 8) == 1 ? 20 : 12));
+        hdlrOffset = require(findChild(mdia, "hdlr"), "hdlr");
+        hdlrSize = boxSize(hdlrOffset);
+
+        long minf = require(findChild(mdia, "minf"), "minf");
+        smhdOffset = require(findChild(minf, "smhd"), "smhd");
+        smhdSize = boxSize(smhdOffset);
+        dinfOffset = require(findChild(minf, "dinf"), "dinf");
+        dinfSize = boxSize(dinfOffset);
+
+        long stbl = require(findChild(minf, "stbl"), "stbl");
+        stsdOffset = require(findChild(stbl, "stsd"), "stsd");
+        stsdSize = boxSize(stsdOffset);
+        if (in.readInt(stsdOffset + 12) != 1) {
+            throw new IOException("Tracks with several sample descriptions are not supported");
+        }
+
+        long stts = require(findChild(stbl, "stts"), "stts");
+        int sttsEntries = in.readInt(stts + 12);
+        sampleRunCounts = new int[sttsEntries];
+        sampleRunDeltas = new int[sttsEntries];
+        for (int i = 0; i < sttsEntries; i++) {
+            sampleRunCounts[i] = in.readInt(stts + 16 + 8L * i);
+            sampleRunDeltas[i] = in.readInt(stts + 20 + 8L * i);
+        }
+
+        long stsc = require(findChild(stbl, "stsc"), "stsc");
+        int stscEntries = in.readInt(stsc + 12);
+        if (stscEntries == 0) {
+            throw new IOException("Empty sample-to-chunk table");
+        }
+        chunkRunFirst = new int[stscEntries];
+        chunkRunSamples = new int[stscEntries];
+        for (int i = 0; i < stscEntries; i++) {
+            chunkRunFirst[i] = in.readInt(stsc + 16 + 12L * i);
+            chunkRunSamples[i] = in.readInt(stsc + 20 + 12L * i);
+        }
+
+        long stsz = require(findChild(stbl, "stsz"), "stsz");
+        constantSampleSize = in.readInt(stsz + 12);
+        sampleCount = in.readInt(stsz + 16);
+        sampleSizeTable = stsz + 20;
+
+        long stco = findChild(stbl, "stco");
+        chunkOffsets64 = stco < 0;
+        if (chunkOffsets64) {
+            stco = require(findChild(stbl, "co64"), "stco");
+        }
+        chunkCount = in.readInt(stco + 12);
+        chunkOffsetTable = stco + 16;
+    }
+
+    private long findAudioTrack(long moov) throws IOException {
+        long end = moov + boxSize(moov);
+        for (long box = moov + 8; box + 8 <= end; box += boxSize(box)) {
+            if (!"trak".equals(boxType(box))) {
+                continue;
+            }
+            long mdia = findChild(box, "mdia");
+            long hdlr = mdia >= 0 ? findChild(mdia, "hdlr") : -1;
+            // handler_type follows the version, flags and pre_defined fields
+            if (hdlr >= 0 && "soun".equals(fourCc(hdlr + 16))) {
+                return box;
+            }
+        }
+        throw new IOException("No audio track");
+    }
+
+    private long findChild(long parent, String type) throws IOException {
+        return findBox(parent + 8, parent + boxSize(parent), type);
+    }
+
+    private long findBox(long start, long end, String type) throws IOException {
+        for (long box = start; box + 8 <= end; box += boxSize(box)) {
+            if (type.equals(boxType(box))) {
+                return box;
+            }
+        }
+        return -1;
+    }
+
+    private long boxSize(long box) throws IOException {
+        long size = in.readUnsignedInt(box);
+        if (size == 1) {
+            size = in.readLong(box + 8);
+        } else if (size == 0) {
+            size = in.size() - box;
+        }
+        if (size < 8) {
+            throw new IOException("Corrupt box at " + box);
+        }
+        return size;
+    }
+
+    private String boxType(long box) throws IOException {
+        return fourCc(box + 4);
+    }
+
+    private String fourCc(long position) throws IOException {
+        byte[] type = new byte[4];
+        in.read(position, type);
+        return new String(type, StandardCharsets.US_ASCII);
+    }
+
+    private static long require(long box, String type) throws IOException {
+        if (box < 0) {
+            throw new IOException("Missing " + type + " box");
+        }
+        return box;
+    }
+}
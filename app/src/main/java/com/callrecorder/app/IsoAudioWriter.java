@@ -0,0 +1,298 @@
+package com.callrecorder.app.editing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes an audio-only ISO media file from sample ranges of one or more tracks with
+ * the same format. Sample data and the matching slices of the sample size tables are
+ * copied with transferTo; only the box headers and the small run-length tables pass
+ * through memory. Each contiguous range becomes one chunk of the new file.
+ *
+ * Layout: ftyp, mdat, moov. The chunk offsets are known before the moov is written,
+ * so the file is produced in one pass.
+ */
+final class IsoAudioWriter {
+    private static final int MVHD_SIZE = 108;
+    private static final int TKHD_SIZE = 92;
+    private static final int MDHD_SIZE = 32;
+    // Enabled, in movie, in preview
+    private static final int TRACK_FLAGS = 7;
+    private static final int LANGUAGE_UNDETERMINED = 0x55c4;
+    private static final int[] UNITY_MATRIX = {0x00010000, 0, 0, 0, 0x00010000, 0, 0, 0, 0x40000000};
+
+    /**
+     * Samples [firstSample, firstSample + sampleCount) of a track
+     */
+    static final class Piece {
+        final IsoAudioTrack track;
+        final int firstSample;
+        final int sampleCount;
+
+        Piece(IsoAudioTrack track, int firstSample, int sampleCount) {
+            this.track = track;
+            this.firstSample = firstSample;
+            this.sampleCount = sampleCount;
+        }
+    }
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(8 * 1024);
+    private final FileChannel out;
+
+    private IsoAudioWriter(FileChannel out) {
+        this.out = out;
+    }
+
+    /**
+     * @throws IllegalArgumentException If the pieces do not share one audio format
+     */
+    static void write(List<Piece> pieces, FileChannel out) throws IOException {
+        new IsoAudioWriter(out).writeFile(pieces);
+    }
+
+    private void writeFile(List<Piece> pieces) throws IOException {
+        IsoAudioTrack first = pieces.get(0).track;
+        byte[] sampleDescription = first.readBox(first.stsdOffset, first.stsdSize);
+        for (Piece piece : pieces) {
+            if (piece.track.timescale != first.timescale || !Arrays.equals(sampleDescription,
+                    piece.track.readBox(piece.track.stsdOffset, piece.track.stsdSize))) {
+                throw new IllegalArgumentException("Recordings have different audio formats");
+            }
+        }
+
+        List<IsoAudioTrack.Run> runs = new ArrayList<>();
+        List<int[]> timeRuns = new ArrayList<>(); // {count, delta}
+        int totalSamples = 0;
+        long duration = 0;
+        int constantSize = first.constantSampleSize;
+        for (Piece piece : pieces) {
+            piece.track.collectRuns(piece.firstSample, piece.sampleCount, runs);
+            duration += addTimeRuns(piece, timeRuns);
+            totalSamples += piece.sampleCount;
+            if (piece.track.constantSampleSize != constantSize) {
+                constantSize = 0;
+            }
+        }
+        if (duration > 0xffffffffL) {
+            throw new IllegalArgumentException("Edited recording is too long");
+        }
+
+        long dataSize = 0;
+        for (IsoAudioTrack.Run run : runs) {
+            dataSize += run.length;
+        }
+        boolean largeMdat = dataSize + 8 > 0xffffffffL;
+        long dataStart = first.ftypSize + (largeMdat ? 16 : 8);
+        boolean offsets64 = dataStart + dataSize > 0xffffffffL;
+
+        // ftyp and mdat
+        out.position(0);
+        AdtsEditor.transferFully(first.channel, first.ftypOffset, first.ftypSize, out);
+        if (largeMdat) {
+            buffer.putInt(1).put(fourCc("mdat")).putLong(dataSize + 16);
+        } else {
+            buffer.putInt((int) (dataSize + 8)).put(fourCc("mdat"));
+        }
+        flush();
+        for (IsoAudioTrack.Run run : runs) {
+            AdtsEditor.transferFully(run.track.channel, run.offset, run.length, out);
+        }
+
+        // moov, sizes first since every box starts with its size
+        long stts = 16 + 8L * timeRuns.size();
+        long stsc = 16 + 12L * runs.size();
+        long stsz = 20 + (constantSize != 0 ? 0 : 4L * totalSamples);
+        long stco = 16 + (offsets64 ? 8L : 4L) * runs.size();
+        long stbl = 8 + first.stsdSize + stts + stsc + stsz + stco;
+        long minf = 8 + first.smhdSize + first.dinfSize + stbl;
+        long mdia = 8 + MDHD_SIZE + first.hdlrSize + minf;
+        long trak = 8 + TKHD_SIZE + mdia;
+        long moov = 8 + MVHD_SIZE + trak;
+
+        header(moov, "moov");
+        writeMvhd(first.timescale, duration);
+        header(trak, "trak");
+        writeTkhd(duration);
+        header(mdia, "mdia");
+        writeMdhd(first.timescale, duration);
+        copy(first, first.hdlrOffset, first.hdlrSize);
+        header(minf, "minf");
+        copy(first, first.smhdOffset, first.smhdSize);
+        copy(first, first.dinfOffset, first.dinfSize);
+        header(stbl, "stbl");
+        copy(first, first.stsdOffset, first.stsdSize);
+
+        fullHeader(stts, "stts");
+        putInt(timeRuns.size());
+        for (int[] timeRun : timeRuns) {
+            putInt(timeRun[0]);
+            putInt(timeRun[1]);
+        }
+
+        fullHeader(stsc, "stsc");
+        putInt(runs.size());
+        for (int i = 0; i < runs.size(); i++) {
+            putInt(i + 1);
+            putInt(runs.get(i).samples);
+            putInt(1);
+        }
+
+        fullHeader(stsz, "stsz");
+        putInt(constantSize);
+        putInt(totalSamples);
+        if (constantSize == 0) {
+            for (Piece piece : pieces) {
+                writeSampleSizes(piece);
+            }
+        }
+
+        fullHeader(stco, offsets64 ? "co64" : "stco");
+        putInt(runs.size());
+        long offset = dataStart;
+        for (IsoAudioTrack.Run run : runs) {
+            if (offsets64) {
+                ensure(8);
+                buffer.putLong(offset);
+            } else {
+                putInt((int) offset);
+            }
+            offset += run.length;
+        }
+        flush();
+        out.truncate(out.position());
+    }
+
+    // Appends the piece's slice of the time-to-sample table, merging equal durations
+    private static long addTimeRuns(Piece piece, List<int[]> timeRuns) {
+        IsoAudioTrack track = piece.track;
+        int skip = piece.firstSample;
+        int remaining = piece.sampleCount;
+        long duration = 0;
+        for (int i = 0; i < track.sampleRunCounts.length && remaining > 0; i++) {
+            int available = track.sampleRunCounts[i];
+            if (skip >= available) {
+                skip -= available;
+                continue;
+            }
+            int count = Math.min(available - skip, remaining);
+            skip = 0;
+            remaining -= count;
+            int delta = track.sampleRunDeltas[i];
+            duration += (long) count * delta;
+            int[] last = timeRuns.isEmpty() ? null : timeRuns.get(timeRuns.size() - 1);
+            if (last != null && last[1] == delta) {
+                last[0] += count;
+            } else {
+                timeRuns.add(new int[]{count, delta});
+            }
+        }
+        return duration;
+    }
+
+    private void writeSampleSizes(Piece piece) throws IOException {
+        IsoAudioTrack track = piece.track;
+        if (track.constantSampleSize == 0) {
+            flush();
+            AdtsEditor.transferFully(track.channel, track.sampleSizeTable + 4L * piece.firstSample,
+                    4L * piece.sampleCount, out);
+        } else {
+            for (int i = 0; i < piece.sampleCount; i++) {
+                putInt(track.constantSampleSize);
+            }
+        }
+    }
+
+    private void writeMvhd(int timescale, long duration) throws IOException {
+        fullHeader(MVHD_SIZE, "mvhd");
+        putInt(0); // creation time
+        putInt(0); // modification time
+        putInt(timescale);
+        putInt((int) duration);
+        putInt(0x00010000); // rate 1.0
+        ensure(12);
+        buffer.putShort((short) 0x0100); // volume 1.0
+        buffer.put(new byte[10]);
+        for (int value : UNITY_MATRIX) {
+            putInt(value);
+        }
+        ensure(24);
+        buffer.put(new byte[24]);
+        putInt(2); // next track id
+    }
+
+    private void writeTkhd(long duration) throws IOException {
+        header(TKHD_SIZE, "tkhd");
+        putInt(TRACK_FLAGS);
+        putInt(0); // creation time
+        putInt(0); // modification time
+        putInt(1); // track id
+        putInt(0);
+        putInt((int) duration);
+        ensure(16);
+        buffer.put(new byte[8]);
+        buffer.putShort((short) 0); // layer
+        buffer.putShort((short) 0); // alternate group
+        buffer.putShort((short) 0x0100); // volume 1.0
+        buffer.putShort((short) 0);
+        for (int value : UNITY_MATRIX) {
+            putInt(value);
+        }
+        putInt(0); // width
+        putInt(0); // height
+    }
+
+    private void writeMdhd(int timescale, long duration) throws IOException {
+        fullHeader(MDHD_SIZE, "mdhd");
+        putInt(0); // creation time
+        putInt(0); // modification time
+        putInt(timescale);
+        putInt((int) duration);
+        ensure(4);
+        buffer.putShort((short) LANGUAGE_UNDETERMINED);
+        buffer.putShort((short) 0);
+    }
+
+    private void header(long size, String type) throws IOException {
+        putInt((int) size);
+        ensure(4);
+        buffer.put(fourCc(type));
+    }
+
+    // Header of a box with version 0 and no flags
+    private void fullHeader(long size, String type) throws IOException {
+        header(size, type);
+        putInt(0);
+    }
+
+    private void copy(IsoAudioTrack track, long offset, long size) throws IOException {
+        flush();
+        AdtsEditor.transferFully(track.channel, offset, size, out);
+    }
+
+    private void putInt(int value) throws IOException {
+        ensure(4);
+        buffer.putInt(value);
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static byte[] fourCc(String type) {
+        return new byte[]{(byte) type.charAt(0), (byte) type.charAt(1), (byte) type.charAt(2), (byte) type.charAt(3)};
+    }
+}
@@ -0,0 +1,28 @@
+package com.callrecorder.app.models;
+
+/**
+ * A stored landmark that matched one being looked up
+ */
+public class LandmarkHit {
+    private final long recordingId;
+    private final int frame;
+    private final int value;
+
+    public LandmarkHit(long recordingId, int frame, int value) {
+        this.recordingId = recordingId;
+        this.frame = frame;
+        this.value = value;
+    }
+
+    public long getRecordingId() {
+        return recordingId;
+    }
+
+    public int getFrame() {
+        return frame;
+    }
+
+    public int getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,78 @@
+package com.callrecorder.app.backup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Backup target on a local or mounted file system:
+ * chunks/ab/abcdef... and snapshots/name.jsonl under a root directory
+ */
+public class LocalBackupTarget implements BackupTarget {
+    private final File chunksDirectory;
+    private final File snapshotsDirectory;
+
+    public LocalBackupTarget(File root) {
+        chunksDirectory = new File(root, "chunks");
+        snapshotsDirectory = new File(root, "snapshots");
+    }
+
+    @Override
+    public boolean hasChunk(String hash) {
+        return chunkFile(hash).exists();
+    }
+
+    @Override
+    public void putChunk(String hash, FileChannel source, long offset, long length) throws IOException {
+        File destination = chunkFile(hash);
+        File temp = new File(destination.getPath() + ".tmp");
+        destination.getParentFile().mkdirs();
+        copy(source, offset, length, temp);
+        commit(temp, destination);
+    }
+
+    @Override
+    public void putSnapshot(String name, File manifest) throws IOException {
+        snapshotsDirectory.mkdirs();
+        File destination = new File(snapshotsDirectory, name + ".jsonl");
+        File temp = new File(destination.getPath() + ".tmp");
+        FileInputStream in = new FileInputStream(manifest);
+        try {
+            copy(in.getChannel(), 0, in.getChannel().size(), temp);
+        } finally {
+            in.close();
+        }
+        commit(temp, destination);
+    }
+
+    private static void copy(FileChannel source, long offset, long length, File destination) throws IOException {
+        FileOutputStream out = new FileOutputStream(destination);
+        try {
+            FileChannel channel = out.getChannel();
+            long copied = 0;
+            while (copied < length) {
+                long transferred = source.transferTo(offset + copied, length - copied, channel);
+                if (transferred <= 0) {
+                    throw new IOException("Source ended early for " + destination);
+                }
+                copied += transferred;
+            }
+            channel.force(false);
+        } finally {
+            out.close();
+        }
+    }
+
+    private File chunkFile(String hash) {
+        return new File(new File(chunksDirectory, hash.substring(0, 2)), hash);
+    }
+
+    private static void commit(File temp, File destination) throws IOException {
+        if (!temp.renameTo(destination)) {
+            temp.delete();
+            throw new IOException("Error writing " + destination);
+        }
+    }
+}
@@ -4,7 +4,10 @@ import android.Manifest;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.text.InputType;
 import android.view.MenuItem;
+import android.view.View;
+import android.widget.EditText;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
@@ -13,18 +16,24 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
-import androidx.lifecycle.ViewModelProvider;
+import androidx.fragment.app.FragmentManager;
+import androidx.fragment.app.FragmentTransaction;
+import androidx.lifecycle.Lifecycle;
 
+import com.callrecorder.app.CallRecorderApp;
 import com.callrecorder.app.R;
 import com.callrecorder.app.fragments.ContactsFragment;
 import com.callrecorder.app.fragments.RecordingsFragment;
 import com.callrecorder.app.fragments.SettingsFragment;
 import com.callrecorder.app.services.CallRecorderService;
-import com.callrecorder.app.viewmodels.RecordingsViewModel;
+import com.callrecorder.app.utils.SettingsManager;
+import com.callrecorder.app.utils.StartupTracer;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
     private static final int PERMISSIONS_REQUEST_CODE = 100;
@@ -37,20 +46,40 @@ public class MainActivity extends AppCompatActivity {
             Manifest.permission.WRITE_EXTERNAL_STORAGE
     };
 
-    private RecordingsViewModel viewModel;
+    private static final String TAG_RECORDINGS = "tab_recordings";
+    private static final String TAG_CONTACTS = "tab_contacts";
+    private static final String TAG_SETTINGS = "tab_settings";
+    private static final String[] TAB_TAGS = {TAG_RECORDINGS, TAG_CONTACTS, TAG_SETTINGS};
+    private static final String STATE_ACTIVE_TAB = "active_tab";
+    private static final long SETTINGS_LOAD_TIMEOUT_MILLIS = 5_000;
+
     private BottomNavigationView bottomNavigationView;
+    private View fragmentContainer;
+    private String activeTabTag;
+
+    // Waits for settings and runs the password KDF off the main thread
+    private final ExecutorService lockExecutor = Executors.newSingleThreadExecutor();
+    private AlertDialog passwordDialog;
+    // Set while a load wait or password check is queued, so resuming does not queue another
+    private boolean lockCheckPending;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        StartupTracer.beginSection("MainActivity.onCreate");
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        // Initialize ViewModel
-        viewModel = new ViewModelProvider(this).get(RecordingsViewModel.class);
+        // RecordingsViewModel is created by RecordingsFragment when it is first shown
+
+        // Tab fragments are restored by the FragmentManager; only the selection needs restoring
+        if (savedInstanceState != null) {
+            activeTabTag = savedInstanceState.getString(STATE_ACTIVE_TAB);
+        }
 
         // Setup bottom navigation
         bottomNavigationView = findViewById(R.id.bottom_navigation);
         bottomNavigationView.setOnNavigationItemSelectedListener(navListener);
+        fragmentContainer = findViewById(R.id.fragment_container);
 
         // Check and request permissions
         if (!hasRequiredPermissions()) {
@@ -64,36 +93,189 @@ public class MainActivity extends AppCompatActivity {
         if (savedInstanceState == null) {
             bottomNavigationView.setSelectedItemId(R.id.nav_recordings);
         }
+        StartupTracer.endSection();
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        checkUnlocked();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        lockExecutor.shutdown();
+    }
+
+    // The tabs stay hidden until the password is entered or an unlock session is active
+    private void checkUnlocked() {
+        SettingsManager settingsManager = CallRecorderApp.getSettingsManager();
+        if (settingsManager.isUnlocked()) {
+            fragmentContainer.setVisibility(View.VISIBLE);
+            return;
+        }
+        fragmentContainer.setVisibility(View.INVISIBLE);
+        if (lockCheckPending || (passwordDialog != null && passwordDialog.isShowing())) {
+            return;
+        }
+
+        if (!settingsManager.isLoaded()) {
+            // Whether a password is set is only known once the stored settings are loaded
+            lockCheckPending = true;
+            lockExecutor.execute(() -> {
+                try {
+                    settingsManager.awaitLoaded(SETTINGS_LOAD_TIMEOUT_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                runOnUiThread(this::onLockCheckDone);
+            });
+            return;
+        }
+        showPasswordDialog(settingsManager);
+    }
+
+    private void onLockCheckDone() {
+        lockCheckPending = false;
+        if (!isFinishing() && !isDestroyed()) {
+            checkUnlocked();
+        }
+    }
+
+    private void showPasswordDialog(SettingsManager settingsManager) {
+        EditText passwordInput = new EditText(this);
+        passwordInput.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_PASSWORD);
+        passwordDialog = new AlertDialog.Builder(this)
+                .setTitle("أدخل كلمة المرور")
+                .setView(passwordInput)
+                .setPositiveButton("فتح", (dialog, which) -> {
+                    String password = passwordInput.getText().toString();
+                    // unlock() runs the KDF, which takes about a quarter of a second
+                    lockCheckPending = true;
+                    lockExecutor.execute(() -> {
+                        boolean unlocked = settingsManager.unlock(password);
+                        runOnUiThread(() -> {
+                            if (!unlocked) {
+                                Toast.makeText(MainActivity.this, "كلمة المرور غير صحيحة", Toast.LENGTH_SHORT).show();
+                            }
+                            onLockCheckDone();
+                        });
+                    });
+                })
+                .setNegativeButton("إلغاء", (dialog, which) -> finish())
+                .setCancelable(false)
+                .show();
     }
 
     private BottomNavigationView.OnNavigationItemSelectedListener navListener =
             new BottomNavigationView.OnNavigationItemSelectedListener() {
                 @Override
                 public boolean onNavigationItemSelected(@NonNull MenuItem item) {
-                    Fragment selectedFragment = null;
+                    String tag = null;
 
                     switch (item.getItemId()) {
                         case R.id.nav_recordings:
-                            selectedFragment = new RecordingsFragment();
+                            tag = TAG_RECORDINGS;
                             break;
                         case R.id.nav_contacts:
-                            selectedFragment = new ContactsFragment();
+                            tag = TAG_CONTACTS;
                             break;
                         case R.id.nav_settings:
-                            selectedFragment = new SettingsFragment();
+                            tag = TAG_SETTINGS;
                             break;
                     }
 
-                    if (selectedFragment != null) {
-                        getSupportFragmentManager().beginTransaction()
-                                .replace(R.id.fragment_container, selectedFragment)
-                                .commit();
+                    if (tag != null) {
+                        showTab(tag);
                         return true;
                     }
                     return false;
                 }
             };
 
+    // Tabs are added once and then shown/hidden, so switching keeps views,
+    // adapters, scroll position and LiveData queries alive
+    private void showTab(String tag) {
+        FragmentManager fragmentManager = getSupportFragmentManager();
+        if (tag.equals(activeTabTag) && fragmentManager.findFragmentByTag(tag) != null) {
+            return;
+        }
+
+        FragmentTransaction transaction = fragmentManager.beginTransaction()
+                .setReorderingAllowed(true);
+
+        Fragment current = activeTabTag != null ? fragmentManager.findFragmentByTag(activeTabTag) : null;
+        if (current != null) {
+            // Hidden tabs stay started so they are current when shown again
+            transaction.hide(current)
+                    .setMaxLifecycle(current, Lifecycle.State.STARTED);
+        }
+
+        Fragment target = fragmentManager.findFragmentByTag(tag);
+        if (target == null) {
+            target = createTabFragment(tag);
+            transaction.add(R.id.fragment_container, target, tag);
+        } else {
+            transaction.show(target);
+        }
+        // Synchronous, so the next tap's findFragmentByTag sees this fragment
+        // instead of adding a second one while this commit is still pending
+        transaction.setMaxLifecycle(target, Lifecycle.State.RESUMED)
+                .commitNow();
+        activeTabTag = tag;
+    }
+
+    private Fragment createTabFragment(String tag) {
+        switch (tag) {
+            case TAG_CONTACTS:
+                return new ContactsFragment();
+            case TAG_SETTINGS:
+                return new SettingsFragment();
+            case TAG_RECORDINGS:
+            default:
+                return new RecordingsFragment();
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_ACTIVE_TAB, activeTabTag);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        // Under memory pressure drop the hidden tabs; they are recreated on the next tap
+        boolean underPressure = level >= TRIM_MEMORY_RUNNING_LOW && level != TRIM_MEMORY_UI_HIDDEN;
+        if (!underPressure) {
+            return;
+        }
+        FragmentManager fragmentManager = getSupportFragmentManager();
+
+        FragmentTransaction transaction = fragmentManager.beginTransaction();
+        boolean removed = false;
+        for (String tag : TAB_TAGS) {
+            Fragment fragment = fragmentManager.findFragmentByTag(tag);
+            if (fragment != null && !tag.equals(activeTabTag)) {
+                transaction.remove(fragment);
+                removed = true;
+            }
+        }
+        if (!removed) {
+            return;
+        }
+        // The background levels arrive after onStop, once the state is saved. Losing the
+        // removal from that state only means a restored activity gets its hidden tabs back
+        if (fragmentManager.isStateSaved()) {
+            transaction.commitNowAllowingStateLoss();
+        } else {
+            transaction.commitNow();
+        }
+    }
+
     private boolean hasRequiredPermissions() {
         for (String permission : REQUIRED_PERMISSIONS) {
             if (ContextCompat.checkSelfPermission(this, permission) != PackageManager.PERMISSION_GRANTED) {
@@ -0,0 +1,140 @@
+package com.callrecorder.app.utils;
+
+import android.util.Base64;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted PBKDF2 password hashing. Hashes are stored as
+ * "pbkdf2-sha256$iterations$salt$hash" so the cost can be raised later
+ * without invalidating existing passwords.
+ */
+public final class PasswordHasher {
+    public static final long TARGET_MILLIS = 250;
+
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH_BITS = 256;
+    private static final int MIN_ITERATIONS = 10000;
+    private static final int CALIBRATION_ITERATIONS = 20000;
+
+    // PBKDF2WithHmacSHA256 is only available from API 26
+    private static final String ALGORITHM_SHA256 = "PBKDF2WithHmacSHA256";
+    private static final String ALGORITHM_SHA1 = "PBKDF2WithHmacSHA1";
+    static final String PREFIX_SHA256 = "pbkdf2-sha256";
+    static final String PREFIX_SHA1 = "pbkdf2-sha1";
+
+    private static volatile String currentPrefix;
+
+    private PasswordHasher() {
+    }
+
+    /**
+     * Find the iteration count that takes about targetMillis on this device. Blocks for a
+     * fraction of the target, so call it from a background thread.
+     * @param targetMillis Desired verification time
+     * @return Iteration count, never below the minimum
+     */
+    public static int calibrate(long targetMillis) {
+        return calibrate(currentPrefix(), targetMillis);
+    }
+
+    // Plain JCA and a monotonic clock, so the benchmark module can run it off-device
+    static int calibrate(String prefix, long targetMillis) {
+        byte[] salt = new byte[SALT_LENGTH];
+
+        // First run warms up the provider; time the second
+        derive(prefix, "calibration".toCharArray(), salt, CALIBRATION_ITERATIONS / 10);
+        long start = System.nanoTime();
+        derive(prefix, "calibration".toCharArray(), salt, CALIBRATION_ITERATIONS);
+        // Nanoseconds: a fast device finishes the run in a few milliseconds, and
+        // truncating that to whole milliseconds overstates the cost
+        long elapsedNanos = Math.max(1, System.nanoTime() - start);
+
+        long iterations = (long) ((double) CALIBRATION_ITERATIONS * targetMillis * 1000000 / elapsedNanos);
+        iterations = (iterations / 1000) * 1000;
+        return (int) Math.max(MIN_ITERATIONS, Math.min(Integer.MAX_VALUE, iterations));
+    }
+
+    /**
+     * Hash a password. Blocks for the KDF cost, so call it from a background thread.
+     * @return Encoded hash including algorithm, cost and salt
+     */
+    public static String hash(String password, int iterations) {
+        byte[] salt = new byte[SALT_LENGTH];
+        new SecureRandom().nextBytes(salt);
+        String prefix = currentPrefix();
+        byte[] hash = derive(prefix, password.toCharArray(), salt, iterations);
+        return prefix + "$" + iterations + "$" +
+                Base64.encodeToString(salt, Base64.NO_WRAP) + "$" +
+                Base64.encodeToString(hash, Base64.NO_WRAP);
+    }
+
+    /**
+     * Check a password against an encoded hash in constant time.
+     * Blocks for the KDF cost, so call it from a background thread.
+     */
+    public static boolean verify(String password, String encodedHash) {
+        if (password == null || encodedHash == null) {
+            return false;
+        }
+        String[] parts = encodedHash.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        try {
+            int iterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.decode(parts[2], Base64.NO_WRAP);
+            byte[] expected = Base64.decode(parts[3], Base64.NO_WRAP);
+            return matches(parts[0], password.toCharArray(), salt, iterations, expected);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // Asks the provider rather than the API level, so it runs off-device too
+    private static String currentPrefix() {
+        String prefix = currentPrefix;
+        if (prefix == null) {
+            try {
+                SecretKeyFactory.getInstance(ALGORITHM_SHA256);
+                prefix = PREFIX_SHA256;
+            } catch (NoSuchAlgorithmException e) {
+                prefix = PREFIX_SHA1;
+            }
+            currentPrefix = prefix;
+        }
+        return prefix;
+    }
+
+    static boolean matches(String prefix, char[] password, byte[] salt, int iterations, byte[] expected) {
+        return MessageDigest.isEqual(expected, derive(prefix, password, salt, iterations));
+    }
+
+    static byte[] derive(String prefix, char[] password, byte[] salt, int iterations) {
+        String algorithm;
+        if (PREFIX_SHA256.equals(prefix)) {
+            algorithm = ALGORITHM_SHA256;
+        } else if (PREFIX_SHA1.equals(prefix)) {
+            algorithm = ALGORITHM_SHA1;
+        } else {
+            throw new IllegalArgumentException("Unknown password hash " + prefix);
+        }
+
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, HASH_LENGTH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(algorithm).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(algorithm + " not available", e);
+        } finally {
+            spec.clearPassword();
+            Arrays.fill(password, '\0');
+        }
+    }
+}
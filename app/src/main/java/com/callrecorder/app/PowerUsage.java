@@ -0,0 +1,72 @@
+package com.callrecorder.app.energy;
+
+/**
+ * Time and resources attributed to one call session, or to idle listening
+ * between calls. Durations are in milliseconds.
+ */
+public final class PowerUsage {
+    public static final String KIND_CALL = "call";
+    public static final String KIND_IDLE = "idle";
+    // A call session that ended without a saved recording
+    public static final long NO_RECORDING = -1;
+
+    private final String kind;
+    private final long recordingId;
+    private final long startedAt;
+    private final long wallMillis;
+    private final long cpuMillis;
+    private final long wakeLockMillis;
+    private final long audioMillis;
+    private final long encoderMillis;
+
+    public PowerUsage(String kind, long recordingId, long startedAt, long wallMillis, long cpuMillis,
+                      long wakeLockMillis, long audioMillis, long encoderMillis) {
+        this.kind = kind;
+        this.recordingId = recordingId;
+        this.startedAt = startedAt;
+        this.wallMillis = wallMillis;
+        this.cpuMillis = cpuMillis;
+        this.wakeLockMillis = wakeLockMillis;
+        this.audioMillis = audioMillis;
+        this.encoderMillis = encoderMillis;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public boolean isCall() {
+        return KIND_CALL.equals(kind);
+    }
+
+    public long getRecordingId() {
+        return recordingId;
+    }
+
+    // Wall clock time the session started, or when idle accounting began
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getWallMillis() {
+        return wallMillis;
+    }
+
+    // Process CPU time, so it includes anything else the process ran meanwhile
+    public long getCpuMillis() {
+        return cpuMillis;
+    }
+
+    public long getWakeLockMillis() {
+        return wakeLockMillis;
+    }
+
+    // Microphone capture, which is also the length of the recording
+    public long getAudioMillis() {
+        return audioMillis;
+    }
+
+    public long getEncoderMillis() {
+        return encoderMillis;
+    }
+}
@@ -0,0 +1,24 @@
+package com.callrecorder.app.energy;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+/**
+ * The device clocks the accountant reads in the app
+ */
+public final class ProcessEnergyClock implements EnergyAccountant.Clock {
+    @Override
+    public long elapsedMillis() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public long cpuMillis() {
+        return Process.getElapsedCpuTime();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,180 @@
+package com.callrecorder.app.rules;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One auto-record rule. Rules are stored in settings one per line:
+ *
+ *   include number +966501234567
+ *   exclude prefix 0800 22:00-07:00
+ *   include country 966
+ *   include group 12
+ *
+ * A window limits the rule to a local time of day and may wrap past midnight.
+ */
+public final class RecordRule {
+    public static final int TYPE_NUMBER = 0;
+    public static final int TYPE_PREFIX = 1;
+    public static final int TYPE_COUNTRY_CODE = 2;
+    public static final int TYPE_CONTACT_GROUP = 3; // value is the ContactsContract group row id
+
+    private static final String[] TYPE_NAMES = {"number", "prefix", "country", "group"};
+    static final int ALL_DAY = -1;
+    static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final boolean include;
+    private final int type;
+    private final String value;
+    private final int windowStart; // minutes after midnight, ALL_DAY for no window
+    private final int windowEnd;
+
+    public RecordRule(boolean include, int type, String value, int windowStart, int windowEnd) {
+        this.include = include;
+        this.type = type;
+        this.value = value;
+        this.windowStart = windowStart;
+        this.windowEnd = windowEnd;
+    }
+
+    public static RecordRule allDay(boolean include, int type, String value) {
+        return new RecordRule(include, type, value, ALL_DAY, ALL_DAY);
+    }
+
+    public boolean isInclude() {
+        return include;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @param minuteOfDay Local time as minutes after midnight
+     * @return true if the rule applies at that time
+     */
+    boolean isActiveAt(int minuteOfDay) {
+        if (windowStart == ALL_DAY) {
+            return true;
+        }
+        if (windowStart <= windowEnd) {
+            return minuteOfDay >= windowStart && minuteOfDay < windowEnd;
+        }
+        return minuteOfDay >= windowStart || minuteOfDay < windowEnd;
+    }
+
+    /**
+     * Parse rules stored in settings. Lines that cannot be read are skipped so one
+     * bad entry does not disable the rest.
+     * @param text Rules, one per line
+     * @return Parsed rules in order
+     */
+    public static List<RecordRule> parseAll(String text) {
+        List<RecordRule> rules = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return rules;
+        }
+        for (String line : text.split("\n")) {
+            RecordRule rule = parse(line.trim());
+            if (rule != null) {
+                rules.add(rule);
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Format rules for storing in settings
+     * @param rules Rules to store
+     * @return Text readable by parseAll
+     */
+    public static String serialize(List<RecordRule> rules) {
+        StringBuilder text = new StringBuilder();
+        for (RecordRule rule : rules) {
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(rule);
+        }
+        return text.toString();
+    }
+
+    private static RecordRule parse(String line) {
+        if (line.isEmpty() || line.startsWith("#")) {
+            return null;
+        }
+        String[] parts = line.split("\\s+");
+        if (parts.length < 3 || parts.length > 4) {
+            return null;
+        }
+
+        boolean include;
+        if ("include".equals(parts[0])) {
+            include = true;
+        } else if ("exclude".equals(parts[0])) {
+            include = false;
+        } else {
+            return null;
+        }
+
+        int type = -1;
+        for (int i = 0; i < TYPE_NAMES.length; i++) {
+            if (TYPE_NAMES[i].equals(parts[1])) {
+                type = i;
+            }
+        }
+        if (type < 0) {
+            return null;
+        }
+
+        if (parts.length == 3) {
+            return allDay(include, type, parts[2]);
+        }
+        String[] window = parts[3].split("-");
+        if (window.length != 2) {
+            return null;
+        }
+        int start = parseTime(window[0]);
+        int end = parseTime(window[1]);
+        if (start < 0 || end < 0) {
+            return null;
+        }
+        return new RecordRule(include, type, parts[2], start, end);
+    }
+
+    // HH:MM to minutes after midnight, or -1
+    private static int parseTime(String time) {
+        int colon = time.indexOf(':');
+        if (colon < 0) {
+            return -1;
+        }
+        try {
+            int hours = Integer.parseInt(time.substring(0, colon));
+            int minutes = Integer.parseInt(time.substring(colon + 1));
+            if (hours < 0 || hours > 24 || minutes < 0 || minutes > 59) {
+                return -1;
+            }
+            return Math.min(hours * 60 + minutes, MINUTES_PER_DAY);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String formatTime(int minutes) {
+        return String.format(Locale.US, "%02d:%02d", minutes / 60, minutes % 60);
+    }
+
+    @Override
+    public String toString() {
+        String rule = (include ? "include " : "exclude ") + TYPE_NAMES[type] + " " + value;
+        if (windowStart != ALL_DAY) {
+            rule += " " + formatTime(windowStart) + "-" + formatTime(windowEnd);
+        }
+        return rule;
+    }
+}
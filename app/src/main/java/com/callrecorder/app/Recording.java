@@ -1,32 +1,71 @@
 package com.callrecorder.app.models;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "recordings")
+import java.util.UUID;
+
+@Entity(tableName = "recordings",
+        foreignKeys = @ForeignKey(entity = Contact.class,
+                parentColumns = "id",
+                childColumns = "contactId",
+                onDelete = ForeignKey.SET_NULL),
+        indices = {
+                @Index("date"),
+                @Index({"callType", "date"}),
+                @Index({"isStarred", "date"}),
+                @Index({"day", "date"}),
+                @Index({"callType", "day", "date"}),
+                @Index({"isStarred", "day", "date"}),
+                @Index("contactId"),
+                @Index(value = "syncId", unique = true),
+                @Index("dirty")
+        })
 public class Recording {
+    // Values for codec, matching the formats CallRecorderService records
+    public static final String CODEC_AAC_ADTS = "aac_adts";
+    public static final String CODEC_AMR_NB = "amr_nb";
+    public static final String CODEC_AAC_MP4 = "aac_mp4";
+
     @PrimaryKey(autoGenerate = true)
     private long id;
-    private String phoneNumber;
-    private String contactName;
+    private Long contactId; // null when the number is unknown
     private int callType; // 1 for incoming, 2 for outgoing
     private String filePath;
     private long duration;
     private long date;
     private boolean isStarred;
     private String notes;
-
-    public Recording(long id, String phoneNumber, String contactName, int callType, 
-                    String filePath, long duration, long date, boolean isStarred, String notes) {
+    private long fileSize; // 0 when unknown
+    private String codec;
+    private String syncId; // stable id shared with the sync server
+    @ColumnInfo(defaultValue = "0")
+    private long starredAt; // last-writer-wins clock for isStarred
+    @ColumnInfo(defaultValue = "0")
+    private long notesUpdatedAt; // last-writer-wins clock for notes
+    @ColumnInfo(defaultValue = "1")
+    private boolean dirty; // has local changes the server has not seen
+    private String day; // local yyyy-MM-dd when recorded; the insert trigger fills it in
+    private Long callLogId; // call log row CallLogImporter matched this recording to
+
+    public Recording(long id, Long contactId, int callType, String filePath, long duration,
+                     long date, boolean isStarred, String notes, long fileSize, String codec) {
         this.id = id;
-        this.phoneNumber = phoneNumber;
-        this.contactName = contactName;
+        this.contactId = contactId;
         this.callType = callType;
         this.filePath = filePath;
         this.duration = duration;
         this.date = date;
         this.isStarred = isStarred;
         this.notes = notes;
+        this.fileSize = fileSize;
+        this.codec = codec;
+        // New rows get a sync id here; rows read back from Room have theirs set after
+        this.syncId = UUID.randomUUID().toString();
+        this.dirty = true;
     }
 
     // Getters and setters
@@ -38,20 +77,12 @@ public class Recording {
         this.id = id;
     }
 
-    public String getPhoneNumber() {
-        return phoneNumber;
-    }
-
-    public void setPhoneNumber(String phoneNumber) {
-        this.phoneNumber = phoneNumber;
-    }
-
-    public String getContactName() {
-        return contactName;
+    public Long getContactId() {
+        return contactId;
     }
 
-    public void setContactName(String contactName) {
-        this.contactName = contactName;
+    public void setContactId(Long contactId) {
+        this.contactId = contactId;
     }
 
     public int getCallType() {
@@ -101,4 +132,68 @@ public class Recording {
     public void setNotes(String notes) {
         this.notes = notes;
     }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public String getCodec() {
+        return codec;
+    }
+
+    public void setCodec(String codec) {
+        this.codec = codec;
+    }
+
+    public String getSyncId() {
+        return syncId;
+    }
+
+    public void setSyncId(String syncId) {
+        this.syncId = syncId;
+    }
+
+    public long getStarredAt() {
+        return starredAt;
+    }
+
+    public void setStarredAt(long starredAt) {
+        this.starredAt = starredAt;
+    }
+
+    public long getNotesUpdatedAt() {
+        return notesUpdatedAt;
+    }
+
+    public void setNotesUpdatedAt(long notesUpdatedAt) {
+        this.notesUpdatedAt = notesUpdatedAt;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    public void setDirty(boolean dirty) {
+        this.dirty = dirty;
+    }
+
+    public String getDay() {
+        return day;
+    }
+
+    public void setDay(String day) {
+        this.day = day;
+    }
+
+    public Long getCallLogId() {
+        return callLogId;
+    }
+
+    public void setCallLogId(Long callLogId) {
+        this.callLogId = callLogId;
+    }
 }
@@ -5,38 +5,92 @@ import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.Query;
-import androidx.room.Update;
+import androidx.room.RawQuery;
+import androidx.sqlite.db.SupportSQLiteQuery;
 
+import com.callrecorder.app.models.Contact;
+import com.callrecorder.app.models.DailyStats;
 import com.callrecorder.app.models.Recording;
+import com.callrecorder.app.models.RecordingDetails;
+import com.callrecorder.app.models.RecordingFile;
+import com.callrecorder.app.models.RecordingListItem;
+import com.callrecorder.app.models.RecordingTiming;
+import com.callrecorder.app.models.Transcript;
 
 import java.util.List;
 
 @Dao
 public interface RecordingDao {
-    @Query("SELECT * FROM recordings ORDER BY date DESC")
-    LiveData<List<Recording>> getAllRecordings();
-    
-    @Query("SELECT * FROM recordings WHERE isStarred = 1 ORDER BY date DESC")
-    LiveData<List<Recording>> getStarredRecordings();
-    
-    @Query("SELECT * FROM recordings WHERE callType = :callType ORDER BY date DESC")
-    LiveData<List<Recording>> getRecordingsByType(int callType);
-    
-    @Query("SELECT * FROM recordings WHERE contactName LIKE '%' || :query || '%' OR phoneNumber LIKE '%' || :query || '%' ORDER BY date DESC")
-    LiveData<List<Recording>> searchRecordings(String query);
+    // Only the columns a list row shows, so notes never enter the cursor window
+    String SELECT_LIST_ITEMS = "SELECT recordings.id, contacts.phoneNumber, contacts.contactName, " +
+            "recordings.callType, recordings.duration, recordings.date, recordings.isStarred " +
+            "FROM recordings LEFT JOIN contacts ON contacts.id = recordings.contactId ";
+
+    String SELECT_DETAILS = "SELECT recordings.*, contacts.phoneNumber, contacts.contactName " +
+            "FROM recordings LEFT JOIN contacts ON contacts.id = recordings.contactId ";
+
+    // Per-day totals over the same rows a filtered list shows, newest day first.
+    // The unfiltered list reads the daily_stats rollup instead.
+    String SELECT_DAY_SECTIONS = "SELECT day, " +
+            "COUNT(*) AS callCount, SUM(callType = 1) AS incomingCount, " +
+            "SUM(callType = 2) AS outgoingCount, SUM(duration) AS totalDuration FROM recordings ";
+
+    @Query(SELECT_DAY_SECTIONS + "WHERE isStarred = 1 GROUP BY day ORDER BY day DESC")
+    LiveData<List<DailyStats>> getStarredDaySections();
+
+    @Query(SELECT_DAY_SECTIONS + "WHERE callType = :callType GROUP BY day ORDER BY day DESC")
+    LiveData<List<DailyStats>> getDaySectionsByType(int callType);
+
+    /**
+     * The recordings list for any filter, search and sort
+     * @param query Built by RecordingListQuery
+     */
+    @RawQuery(observedEntities = {Recording.class, Contact.class, Transcript.class})
+    LiveData<List<RecordingListItem>> queryRecordings(SupportSQLiteQuery query);
     
     @Insert
     long insert(Recording recording);
-    
-    @Update
-    void update(Recording recording);
+
+    // One transaction and one prepared statement for the whole list
+    @Insert
+    void insertAll(List<Recording> recordings);
     
     @Delete
     void delete(Recording recording);
     
     @Query("DELETE FROM recordings WHERE id = :id")
     void deleteById(long id);
+
+    // Local edits advance the field's clock past any value already seen, even if
+    // the device clock is behind, and mark the row for the next sync push
+    @Query("UPDATE recordings SET isStarred = :starred, starredAt = MAX(:changedAt, starredAt + 1), " +
+            "dirty = 1 WHERE id = :id")
+    void setStarred(long id, boolean starred, long changedAt);
+
+    @Query("UPDATE recordings SET notes = :notes, notesUpdatedAt = MAX(:changedAt, notesUpdatedAt + 1), " +
+            "dirty = 1 WHERE id = :id")
+    void setNotes(long id, String notes, long changedAt);
+
+    @Query("SELECT filePath FROM recordings WHERE id = :id")
+    String getFilePath(long id);
+
+    @Query("SELECT id FROM recordings ORDER BY date DESC")
+    List<Long> getAllRecordingIds();
+
+    // Keyset page over all recording files, in id order
+    @Query("SELECT id, filePath FROM recordings WHERE id > :afterId ORDER BY id LIMIT :limit")
+    List<RecordingFile> getRecordingFilesAfter(long afterId, int limit);
     
-    @Query("SELECT * FROM recordings WHERE id = :id")
-    Recording getRecordingById(long id);
+    // Recordings no call log row has been matched to yet
+    @Query("SELECT id, date, duration FROM recordings WHERE date BETWEEN :from AND :to " +
+            "AND callLogId IS NULL ORDER BY date")
+    List<RecordingTiming> getUnmatchedTimingsBetween(long from, long to);
+
+    // A null contactId keeps the current contact, for calls the log has no number for
+    @Query("UPDATE recordings SET callLogId = :callLogId, callType = :callType, " +
+            "contactId = COALESCE(:contactId, contactId), duration = :duration, dirty = 1 WHERE id = :id")
+    void updateCallDetails(long id, long callLogId, int callType, Long contactId, long duration);
+
+    @Query(SELECT_DETAILS + "WHERE recordings.id = :id")
+    RecordingDetails getRecordingById(long id);
 }
@@ -0,0 +1,34 @@
+package com.callrecorder.app.models;
+
+/**
+ * A recording together with the number and name of its contact,
+ * as returned by the joined queries in RecordingDao
+ */
+public class RecordingDetails extends Recording {
+    private String phoneNumber;
+    private String contactName;
+
+    public RecordingDetails(long id, Long contactId, int callType, String filePath, long duration,
+                            long date, boolean isStarred, String notes, long fileSize, String codec,
+                            String phoneNumber, String contactName) {
+        super(id, contactId, callType, filePath, duration, date, isStarred, notes, fileSize, codec);
+        this.phoneNumber = phoneNumber;
+        this.contactName = contactName;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    public void setPhoneNumber(String phoneNumber) {
+        this.phoneNumber = phoneNumber;
+    }
+
+    public String getContactName() {
+        return contactName;
+    }
+
+    public void setContactName(String contactName) {
+        this.contactName = contactName;
+    }
+}
@@ -0,0 +1,154 @@
+package com.callrecorder.app.editing;
+
+import com.callrecorder.app.utils.EncryptedRecordingFormat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Cuts and joins recordings without decoding them, at the frame level, for the
+ * formats CallRecorderService writes: ADTS .aac, and .mp4 or .3gp with AAC or AMR.
+ * Audio data is copied with FileChannel.transferTo, so memory use does not depend on
+ * the length of the recording. Edits go to a temporary file that replaces the target
+ * only when complete.
+ */
+public final class RecordingEditor {
+
+    private RecordingEditor() {
+    }
+
+    /**
+     * @return true if the file is a format this class can edit
+     */
+    public static boolean canEdit(File file) {
+        String extension = extension(file);
+        return ".aac".equals(extension) || ".mp4".equals(extension) || ".3gp".equals(extension)
+                || ".m4a".equals(extension);
+    }
+
+    /**
+     * Copy the frames playing between two times into a new file of the same format.
+     * Blocks, so call it from a background thread.
+     * @param startMillis Start of the clip; the frame playing then is the first one kept
+     * @param endMillis End of the clip; the frame playing then is the last one kept
+     * @throws IllegalArgumentException If the range is empty or outside the recording
+     */
+    public static void clip(File source, long startMillis, long endMillis, File target) throws IOException {
+        if (startMillis < 0 || endMillis <= startMillis) {
+            throw new IllegalArgumentException("Invalid clip range " + startMillis + "-" + endMillis);
+        }
+        checkEditable(source);
+        FileInputStream in = new FileInputStream(source);
+        try {
+            FileChannel channel = in.getChannel();
+            File temp = tempFile(target);
+            RandomAccessFile out = new RandomAccessFile(temp, "rw");
+            try {
+                if (".aac".equals(extension(source))) {
+                    AdtsEditor.clip(channel, startMillis, endMillis, out.getChannel());
+                } else {
+                    IsoAudioTrack track = new IsoAudioTrack(channel);
+                    int first = track.sampleAt(startMillis * track.timescale / 1000);
+                    int end = track.sampleStartingAt(endMillis * track.timescale / 1000);
+                    if (first >= track.sampleCount || end <= first) {
+                        throw new IllegalArgumentException(
+                                "Clip " + startMillis + "-" + endMillis + " ms is outside the recording");
+                    }
+                    IsoAudioWriter.write(Collections.singletonList(
+                            new IsoAudioWriter.Piece(track, first, end - first)), out.getChannel());
+                }
+            } finally {
+                out.close();
+            }
+            replace(temp, target);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Join recordings end to end into a new file of their common format. Blocks, so
+     * call it from a background thread.
+     * @param sources Recordings in playback order, all with the same extension
+     * @throws IllegalArgumentException If the recordings differ in format
+     */
+    public static void concat(List<File> sources, File target) throws IOException {
+        if (sources.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to join");
+        }
+        String extension = extension(sources.get(0));
+        for (File source : sources) {
+            checkEditable(source);
+            if (!extension.equals(extension(source))) {
+                throw new IllegalArgumentException("Recordings have different formats");
+            }
+        }
+
+        List<FileInputStream> inputs = new ArrayList<>(sources.size());
+        try {
+            List<FileChannel> channels = new ArrayList<>(sources.size());
+            for (File source : sources) {
+                FileInputStream in = new FileInputStream(source);
+                inputs.add(in);
+                channels.add(in.getChannel());
+            }
+            File temp = tempFile(target);
+            RandomAccessFile out = new RandomAccessFile(temp, "rw");
+            try {
+                if (".aac".equals(extension)) {
+                    AdtsEditor.concat(channels, out.getChannel());
+                } else {
+                    List<IsoAudioWriter.Piece> pieces = new ArrayList<>(channels.size());
+                    for (FileChannel channel : channels) {
+                        IsoAudioTrack track = new IsoAudioTrack(channel);
+                        pieces.add(new IsoAudioWriter.Piece(track, 0, track.sampleCount));
+                    }
+                    IsoAudioWriter.write(pieces, out.getChannel());
+                }
+            } finally {
+                out.close();
+            }
+            replace(temp, target);
+        } finally {
+            for (FileInputStream in : inputs) {
+                in.close();
+            }
+        }
+    }
+
+    private static void checkEditable(File file) throws IOException {
+        if (file.getName().endsWith(EncryptedRecordingFormat.FILE_EXTENSION)) {
+            // The frames are inside encrypted segments; a clip would need decrypting first
+            throw new IOException("Encrypted recordings cannot be edited");
+        }
+        if (!canEdit(file)) {
+            throw new IOException("Unsupported recording format: " + file.getName());
+        }
+    }
+
+    private static File tempFile(File target) {
+        File temp = new File(target.getPath() + ".part");
+        temp.delete();
+        return temp;
+    }
+
+    private static void replace(File temp, File target) throws IOException {
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Could not write " + target);
+        }
+    }
+
+    private static String extension(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 ? name.substring(dot).toLowerCase(Locale.US) : "";
+    }
+}
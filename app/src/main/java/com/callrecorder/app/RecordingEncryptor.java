@@ -0,0 +1,52 @@
+package com.callrecorder.app.utils;
+
+import android.os.Build;
+
+import androidx.annotation.RequiresApi;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class RecordingEncryptor {
+
+    /**
+     * Encrypt a finished recording and delete the plaintext
+     * @param source Plaintext recording, usually in app-private storage
+     * @param destination Encrypted file to create
+     * @return The encrypted file
+     */
+    @RequiresApi(Build.VERSION_CODES.M)
+    public static File encrypt(File source, File destination) throws IOException {
+        RecordingKeys.DataKey dataKey = RecordingKeys.getInstance().newDataKey();
+        byte[] buffer = new byte[EncryptedRecordingFormat.DEFAULT_CHUNK_SIZE];
+
+        InputStream in = new FileInputStream(source);
+        try {
+            FileOutputStream file = new FileOutputStream(destination);
+            EncryptedRecordingOutputStream out = new EncryptedRecordingOutputStream(file,
+                    dataKey.key, dataKey.wrapped, EncryptedRecordingFormat.DEFAULT_CHUNK_SIZE);
+            try {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                // The plaintext is deleted next, so the encrypted copy must be on storage first
+                out.finish();
+                file.getFD().sync();
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            destination.delete();
+            throw e;
+        } finally {
+            in.close();
+        }
+
+        source.delete();
+        return destination;
+    }
+}
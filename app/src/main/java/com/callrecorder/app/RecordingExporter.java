@@ -0,0 +1,266 @@
+package com.callrecorder.app.backup;
+
+import android.util.Log;
+
+import com.callrecorder.app.database.RecordingDao;
+import com.callrecorder.app.models.RecordingDetails;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Streams recordings and a metadata manifest into a single tar archive.
+ *
+ * Recording files are copied with FileChannel.transferTo and the manifest is built
+ * line by line in a side file, so memory use does not grow with the archive. After
+ * every entry the archive and manifest are synced and a checkpoint records how far the
+ * export got; calling export() again with the same ids and target continues from the
+ * last finished entry. Any other selection starts the archive over.
+ */
+public class RecordingExporter {
+    private static final String TAG = "RecordingExporter";
+
+    static final String MANIFEST_NAME = "manifest.jsonl";
+    private static final String CHECKPOINT_SUFFIX = ".progress";
+    private static final String MANIFEST_SUFFIX = ".manifest";
+
+    private final RecordingDao recordingDao;
+    private volatile boolean cancelled;
+
+    public RecordingExporter(RecordingDao recordingDao) {
+        this.recordingDao = recordingDao;
+    }
+
+    public interface ProgressListener {
+        void onProgress(int completedRecordings, int totalRecordings, long bytesWritten, long totalBytes);
+    }
+
+    /**
+     * Stop after the entry being written; a later export() resumes from there
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Export recordings into a tar archive. Blocks until done, cancelled or failed,
+     * so call it from a background thread.
+     * @param recordingIds Recordings to export, in archive order
+     * @param target Archive file to create or resume
+     * @param listener Progress callback, may be null
+     * @return true if the archive is complete, false if it was cancelled
+     */
+    public boolean export(List<Long> recordingIds, File target, ProgressListener listener) throws IOException {
+        cancelled = false;
+        File checkpointFile = new File(target.getPath() + CHECKPOINT_SUFFIX);
+        File manifestFile = new File(target.getPath() + MANIFEST_SUFFIX);
+        Checkpoint checkpoint = Checkpoint.read(checkpointFile, selectionHash(recordingIds));
+
+        long totalBytes = 0;
+        for (Long id : recordingIds) {
+            String path = recordingDao.getFilePath(id);
+            if (path != null) {
+                totalBytes += new File(path).length();
+            }
+        }
+
+        RandomAccessFile archive = new RandomAccessFile(target, "rw");
+        RandomAccessFile manifest = new RandomAccessFile(manifestFile, "rw");
+        try {
+            // Drop anything written after the last finished entry
+            FileChannel out = archive.getChannel();
+            FileChannel manifestChannel = manifest.getChannel();
+            out.truncate(checkpoint.archiveLength);
+            out.position(checkpoint.archiveLength);
+            manifestChannel.truncate(checkpoint.manifestLength);
+            manifest.seek(checkpoint.manifestLength);
+
+            TarArchiveWriter tar = new TarArchiveWriter(out);
+            long bytesWritten = checkpoint.bytesWritten;
+            for (int i = checkpoint.completed; i < recordingIds.size(); i++) {
+                if (cancelled) {
+                    return false;
+                }
+
+                RecordingDetails recording = recordingDao.getRecordingById(recordingIds.get(i));
+                if (recording != null) {
+                    bytesWritten += writeRecording(tar, recording, manifest);
+                }
+
+                // The checkpoint must never point past data that is on storage; after a
+                // power loss the archive would otherwise resume behind a zero-filled hole
+                out.force(false);
+                manifestChannel.force(false);
+                checkpoint.completed = i + 1;
+                checkpoint.archiveLength = out.position();
+                checkpoint.manifestLength = manifest.getFilePointer();
+                checkpoint.bytesWritten = bytesWritten;
+                checkpoint.write(checkpointFile);
+
+                if (listener != null) {
+                    listener.onProgress(i + 1, recordingIds.size(), bytesWritten, totalBytes);
+                }
+            }
+
+            tar.writeEntry(MANIFEST_NAME, manifestChannel, manifestChannel.size(), System.currentTimeMillis());
+            tar.finish();
+            out.force(true);
+        } finally {
+            manifest.close();
+            archive.close();
+        }
+
+        checkpointFile.delete();
+        manifestFile.delete();
+        return true;
+    }
+
+    private long writeRecording(TarArchiveWriter tar, RecordingDetails recording,
+                                RandomAccessFile manifest) throws IOException {
+        File file = recording.getFilePath() != null ? new File(recording.getFilePath()) : null;
+        String entryName = null;
+        long size = 0;
+
+        if (file != null && file.isFile()) {
+            entryName = entryName(recording.getId(), file.getName());
+            FileInputStream in = new FileInputStream(file);
+            try {
+                FileChannel source = in.getChannel();
+                size = source.size();
+                tar.writeEntry(entryName, source, size, file.lastModified());
+            } finally {
+                in.close();
+            }
+        } else {
+            Log.w(TAG, "Missing file for recording " + recording.getId());
+        }
+
+        manifest.write((toManifestLine(recording, entryName) + "\n").getBytes(StandardCharsets.UTF_8));
+        return size;
+    }
+
+    // SHA-256 of the ids in order, so a checkpoint only resumes the selection it was saved for
+    static String selectionHash(List<Long> recordingIds) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        byte[] id = new byte[8];
+        for (Long recordingId : recordingIds) {
+            long value = recordingId;
+            for (int i = 0; i < 8; i++) {
+                id[i] = (byte) (value >>> (56 - 8 * i));
+            }
+            digest.update(id);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    // Original names may contain contact names in any script, so entries use the id
+    static String entryName(long id, String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        String extension = dot >= 0 ? fileName.substring(dot) : "";
+        if (!extension.matches("\\.[A-Za-z0-9]{1,8}")) {
+            extension = "";
+        }
+        return "recordings/" + id + extension;
+    }
+
+    private static String toManifestLine(RecordingDetails recording, String entryName) throws IOException {
+        try {
+            return new JSONObject()
+                    .put("id", recording.getId())
+                    .put("entry", entryName != null ? entryName : JSONObject.NULL)
+                    .put("originalPath", recording.getFilePath())
+                    .put("phoneNumber", recording.getPhoneNumber())
+                    .put("contactName", recording.getContactName())
+                    .put("callType", recording.getCallType())
+                    .put("duration", recording.getDuration())
+                    .put("date", recording.getDate())
+                    .put("isStarred", recording.isStarred())
+                    .put("notes", recording.getNotes())
+                    .put("fileSize", recording.getFileSize())
+                    .put("codec", recording.getCodec())
+                    .toString();
+        } catch (JSONException e) {
+            throw new IOException("Error writing manifest for recording " + recording.getId(), e);
+        }
+    }
+
+    // How far an export got, rewritten atomically after every entry
+    private static final class Checkpoint {
+        String selection;
+        int completed;
+        long archiveLength;
+        long manifestLength;
+        long bytesWritten;
+
+        static Checkpoint read(File file, String selection) {
+            Checkpoint checkpoint = new Checkpoint();
+            checkpoint.selection = selection;
+            if (!file.exists()) {
+                return checkpoint;
+            }
+            try {
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+                try {
+                    Checkpoint saved = new Checkpoint();
+                    saved.selection = reader.readLine();
+                    saved.completed = Integer.parseInt(reader.readLine());
+                    saved.archiveLength = Long.parseLong(reader.readLine());
+                    saved.manifestLength = Long.parseLong(reader.readLine());
+                    saved.bytesWritten = Long.parseLong(reader.readLine());
+                    // A checkpoint for a different selection cannot be resumed, even one of
+                    // the same size: its entries and offsets belong to other recordings
+                    if (selection.equals(saved.selection)) {
+                        return saved;
+                    }
+                } finally {
+                    reader.close();
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Ignoring unreadable export checkpoint", e);
+            }
+            return checkpoint;
+        }
+
+        void write(File file) throws IOException {
+            File temp = new File(file.getPath() + ".tmp");
+            FileOutputStream stream = new FileOutputStream(temp);
+            Writer writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+            try {
+                writer.write(selection + "\n" + completed + "\n" + archiveLength + "\n" +
+                        manifestLength + "\n" + bytesWritten + "\n");
+                writer.flush();
+                stream.getFD().sync();
+            } finally {
+                writer.close();
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Error saving export checkpoint");
+            }
+        }
+    }
+}
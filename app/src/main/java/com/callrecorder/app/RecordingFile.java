@@ -0,0 +1,22 @@
+package com.callrecorder.app.models;
+
+/**
+ * Id and file path of a recording, for jobs that walk the archive's files
+ */
+public class RecordingFile {
+    private final long id;
+    private final String filePath;
+
+    public RecordingFile(long id, String filePath) {
+        this.id = id;
+        this.filePath = filePath;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+}
@@ -0,0 +1,140 @@
+package com.callrecorder.app.utils;
+
+import android.os.Build;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.LruCache;
+
+import androidx.annotation.RequiresApi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Keys for encrypted recordings. Each file has its own random AES key, wrapped by a
+ * master key that never leaves the Android Keystore. The master key handle and the
+ * unwrapped file keys are cached for the session, so the Keystore is hit once per file
+ * rather than once per chunk.
+ */
+public class RecordingKeys {
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String MASTER_KEY_ALIAS = "call_recorder_recordings";
+    private static final int DATA_KEY_LENGTH = 32;
+    private static final int WRAP_IV_LENGTH = 12;
+    private static final int CACHE_SIZE = 32;
+
+    private static volatile RecordingKeys instance;
+
+    private SecretKey masterKey;
+    private final LruCache<ByteBuffer, SecretKey> dataKeys = new LruCache<>(CACHE_SIZE);
+
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+    }
+
+    public static RecordingKeys getInstance() {
+        if (instance == null) {
+            synchronized (RecordingKeys.class) {
+                if (instance == null) {
+                    instance = new RecordingKeys();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * A new file key together with its wrapped form for the file header
+     */
+    public static final class DataKey {
+        public final SecretKey key;
+        public final byte[] wrapped;
+
+        DataKey(SecretKey key, byte[] wrapped) {
+            this.key = key;
+            this.wrapped = wrapped;
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.M)
+    public synchronized DataKey newDataKey() throws IOException {
+        try {
+            KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES);
+            generator.init(DATA_KEY_LENGTH * 8);
+            SecretKey dataKey = generator.generateKey();
+
+            // The Keystore picks the IV; store it in front of the wrapped key
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, getMasterKey());
+            byte[] iv = cipher.getIV();
+            byte[] encrypted = cipher.doFinal(dataKey.getEncoded());
+            byte[] wrapped = new byte[iv.length + encrypted.length];
+            System.arraycopy(iv, 0, wrapped, 0, iv.length);
+            System.arraycopy(encrypted, 0, wrapped, iv.length, encrypted.length);
+
+            dataKeys.put(ByteBuffer.wrap(wrapped.clone()), dataKey);
+            return new DataKey(dataKey, wrapped);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Error creating recording key", e);
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.M)
+    public synchronized SecretKey unwrapDataKey(byte[] wrapped) throws IOException {
+        ByteBuffer cacheKey = ByteBuffer.wrap(wrapped);
+        SecretKey cached = dataKeys.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, getMasterKey(),
+                    new GCMParameterSpec(128, wrapped, 0, WRAP_IV_LENGTH));
+            byte[] raw = cipher.doFinal(wrapped, WRAP_IV_LENGTH, wrapped.length - WRAP_IV_LENGTH);
+            SecretKey dataKey = new SecretKeySpec(raw, KeyProperties.KEY_ALGORITHM_AES);
+            Arrays.fill(raw, (byte) 0);
+            dataKeys.put(ByteBuffer.wrap(wrapped.clone()), dataKey);
+            return dataKey;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Error unwrapping recording key", e);
+        }
+    }
+
+    /**
+     * Forget cached file keys, e.g. when the app is locked
+     */
+    public synchronized void clearSession() {
+        dataKeys.evictAll();
+    }
+
+    @RequiresApi(Build.VERSION_CODES.M)
+    private SecretKey getMasterKey() throws GeneralSecurityException, IOException {
+        if (masterKey != null) {
+            return masterKey;
+        }
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        keyStore.load(null);
+        if (keyStore.containsAlias(MASTER_KEY_ALIAS)) {
+            masterKey = (SecretKey) keyStore.getKey(MASTER_KEY_ALIAS, null);
+        } else {
+            KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+            generator.init(new KeyGenParameterSpec.Builder(MASTER_KEY_ALIAS,
+                    KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                    .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                    .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                    .setKeySize(256)
+                    .build());
+            masterKey = generator.generateKey();
+        }
+        return masterKey;
+    }
+}
@@ -0,0 +1,84 @@
+package com.callrecorder.app.models;
+
+/**
+ * The columns a recordings list row shows. Notes and file details are left out;
+ * load the full recording with RecordingDao.getRecordingById when it is opened.
+ */
+public class RecordingListItem {
+    private final long id;
+    private final String phoneNumber;
+    private final String contactName;
+    private final int callType;
+    private final long duration;
+    private final long date;
+    private final boolean isStarred;
+
+    public RecordingListItem(long id, String phoneNumber, String contactName, int callType,
+                             long duration, long date, boolean isStarred) {
+        this.id = id;
+        this.phoneNumber = phoneNumber;
+        this.contactName = contactName;
+        this.callType = callType;
+        this.duration = duration;
+        this.date = date;
+        this.isStarred = isStarred;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    public String getContactName() {
+        return contactName;
+    }
+
+    public int getCallType() {
+        return callType;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public long getDate() {
+        return date;
+    }
+
+    public boolean isStarred() {
+        return isStarred;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RecordingListItem)) return false;
+        RecordingListItem other = (RecordingListItem) o;
+        return id == other.id &&
+               callType == other.callType &&
+               duration == other.duration &&
+               date == other.date &&
+               isStarred == other.isStarred &&
+               equalsNullable(phoneNumber, other.phoneNumber) &&
+               equalsNullable(contactName, other.contactName);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (id ^ (id >>> 32));
+        result = 31 * result + (phoneNumber != null ? phoneNumber.hashCode() : 0);
+        result = 31 * result + (contactName != null ? contactName.hashCode() : 0);
+        result = 31 * result + callType;
+        result = 31 * result + (int) (duration ^ (duration >>> 32));
+        result = 31 * result + (int) (date ^ (date >>> 32));
+        result = 31 * result + (isStarred ? 1 : 0);
+        return result;
+    }
+
+    private static boolean equalsNullable(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,67 @@
+package com.callrecorder.app.database;
+
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import com.callrecorder.app.models.RecordingQuery;
+import com.callrecorder.app.transcription.TranscriptSearch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the one SQL statement for a RecordingQuery, run by RecordingDao.queryRecordings.
+ * Filters come first so the indexes that lead with isStarred or callType can serve both
+ * the filter and the order; the search terms are bound, never inlined.
+ */
+public final class RecordingListQuery {
+
+    private RecordingListQuery() {
+    }
+
+    public static SupportSQLiteQuery build(RecordingQuery query) {
+        StringBuilder sql = new StringBuilder(RecordingDao.SELECT_LIST_ITEMS);
+        List<Object> args = new ArrayList<>();
+
+        String conjunction = "WHERE ";
+        if (query.getFilterType() == RecordingQuery.FILTER_STARRED) {
+            sql.append(conjunction).append("recordings.isStarred = 1 ");
+            conjunction = "AND ";
+        } else if (query.getFilterType() != RecordingQuery.FILTER_ALL) {
+            sql.append(conjunction).append("recordings.callType = ? ");
+            args.add(query.getFilterType());
+            conjunction = "AND ";
+        }
+
+        if (query.isSearching()) {
+            String text = query.getSearchText();
+            sql.append(conjunction).append("(contacts.contactName LIKE '%' || ? || '%' ")
+                    .append("OR contacts.phoneNumber LIKE '%' || ? || '%'");
+            args.add(text);
+            args.add(text);
+            String matchQuery = TranscriptSearch.toMatchQuery(text);
+            if (matchQuery != null) {
+                sql.append(" OR recordings.id IN (SELECT rowid FROM transcripts_fts ")
+                        .append("WHERE transcripts_fts MATCH ?)");
+                args.add(matchQuery);
+            }
+            sql.append(") ");
+        }
+
+        switch (query.getSort()) {
+            case RecordingQuery.SORT_OLDEST:
+                sql.append("ORDER BY recordings.date ASC");
+                break;
+            case RecordingQuery.SORT_LONGEST:
+                sql.append("ORDER BY recordings.duration DESC, recordings.date DESC");
+                break;
+            case RecordingQuery.SORT_NEWEST:
+            default:
+                // The stored day first, the key the day sections are built on, so a row
+                // recorded in another time zone sits under the header that counts it
+                sql.append("ORDER BY recordings.day DESC, recordings.date DESC");
+                break;
+        }
+        return new SimpleSQLiteQuery(sql.toString(), args.toArray());
+    }
+}
@@ -0,0 +1,79 @@
+package com.callrecorder.app.models;
+
+/**
+ * Everything that decides which recordings the list shows and in what order.
+ * Immutable; the with* methods return the same instance when nothing changes,
+ * so equal states can be told apart from real changes cheaply.
+ */
+public final class RecordingQuery {
+    // Values for filterType, as the filter spinner sets them
+    public static final int FILTER_ALL = 0;
+    public static final int FILTER_STARRED = -1;
+    public static final int FILTER_INCOMING = 1;
+    public static final int FILTER_OUTGOING = 2;
+
+    public static final int SORT_NEWEST = 0;
+    public static final int SORT_OLDEST = 1;
+    public static final int SORT_LONGEST = 2;
+
+    public static final RecordingQuery DEFAULT = new RecordingQuery(FILTER_ALL, "", SORT_NEWEST);
+
+    private final int filterType;
+    private final String searchText;
+    private final int sort;
+
+    private RecordingQuery(int filterType, String searchText, int sort) {
+        this.filterType = filterType;
+        this.searchText = searchText;
+        this.sort = sort;
+    }
+
+    public int getFilterType() {
+        return filterType;
+    }
+
+    // Trimmed; empty when not searching
+    public String getSearchText() {
+        return searchText;
+    }
+
+    public int getSort() {
+        return sort;
+    }
+
+    public boolean isSearching() {
+        return !searchText.isEmpty();
+    }
+
+    public RecordingQuery withFilterType(int filterType) {
+        return filterType == this.filterType ? this
+                : new RecordingQuery(filterType, searchText, sort);
+    }
+
+    public RecordingQuery withSearchText(String text) {
+        String trimmed = text != null ? text.trim() : "";
+        return trimmed.equals(searchText) ? this
+                : new RecordingQuery(filterType, trimmed, sort);
+    }
+
+    public RecordingQuery withSort(int sort) {
+        return sort == this.sort ? this
+                : new RecordingQuery(filterType, searchText, sort);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RecordingQuery other = (RecordingQuery) o;
+        return filterType == other.filterType && sort == other.sort && searchText.equals(other.searchText);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = filterType;
+        result = 31 * result + searchText.hashCode();
+        result = 31 * result + sort;
+        return result;
+    }
+}
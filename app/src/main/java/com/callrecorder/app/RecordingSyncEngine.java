@@ -0,0 +1,188 @@
+package com.callrecorder.app.sync;
+
+import android.util.Log;
+
+import com.callrecorder.app.database.AppDatabase;
+import com.callrecorder.app.database.SyncDao;
+import com.callrecorder.app.models.Recording;
+import com.callrecorder.app.models.RecordingDetails;
+import com.callrecorder.app.models.SyncCursor;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Offline-first sync of recording metadata. Local edits only mark rows dirty;
+ * a sync pushes dirty rows in batches, then pulls server changes since the
+ * stored cursor. Star and notes resolve conflicts field by field, last writer
+ * wins. Work per sync scales with the number of changes, not the archive.
+ */
+public class RecordingSyncEngine {
+    private static final String TAG = "RecordingSyncEngine";
+    private static final String CURSOR_RECORDINGS = "recordings";
+    private static final int PUSH_BATCH_SIZE = 50;
+    private static final int PULL_PAGE_SIZE = 200;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BASE_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 60000;
+
+    private final AppDatabase database;
+    private final SyncDao syncDao;
+    private final RecordingsRemoteDataSource remote;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean syncQueued = new AtomicBoolean();
+    private final Random random = new Random();
+    private final long baseBackoffMillis;
+
+    public RecordingSyncEngine(AppDatabase database, RecordingsRemoteDataSource remote) {
+        this(database, remote, BASE_BACKOFF_MILLIS);
+    }
+
+    // Tests shorten the backoff so retries don't dominate the run time
+    RecordingSyncEngine(AppDatabase database, RecordingsRemoteDataSource remote, long baseBackoffMillis) {
+        this.database = database;
+        this.syncDao = database.syncDao();
+        this.remote = remote;
+        this.baseBackoffMillis = baseBackoffMillis;
+    }
+
+    /**
+     * Sync in the background. Requests made while one is still queued are folded into it.
+     */
+    public void requestSync() {
+        if (!syncQueued.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            // Cleared before starting, so edits made during this sync queue another
+            syncQueued.set(false);
+            try {
+                sync();
+            } catch (IOException e) {
+                Log.w(TAG, "Sync failed, changes stay queued for the next one", e);
+            }
+        });
+    }
+
+    /**
+     * Push local changes, then pull remote ones. Blocks, so call it from a background thread.
+     */
+    public void sync() throws IOException {
+        int pushed = push();
+        int pulled = pull();
+        Log.d(TAG, "Sync done, pushed " + pushed + ", pulled " + pulled);
+    }
+
+    private int push() throws IOException {
+        int pushed = 0;
+        long afterId = 0;
+        List<RecordingDetails> batch;
+        do {
+            batch = syncDao.getDirtyAfter(afterId, PUSH_BATCH_SIZE);
+            if (batch.isEmpty()) {
+                break;
+            }
+            final List<RemoteRecording> outgoing = new ArrayList<>(batch.size());
+            for (RecordingDetails recording : batch) {
+                outgoing.add(toRemote(recording));
+            }
+            final List<RemoteRecording> merged = withRetry(() -> remote.push(outgoing));
+
+            final List<RecordingDetails> sent = batch;
+            database.runInTransaction(() -> {
+                for (int i = 0; i < sent.size(); i++) {
+                    RecordingDetails local = sent.get(i);
+                    RemoteRecording result = merged.get(i);
+                    syncDao.markPushed(local.getId(), local.getStarredAt(), local.getNotesUpdatedAt(),
+                            result.isStarred(), result.getStarredAt(),
+                            result.getNotes(), result.getNotesUpdatedAt());
+                }
+            });
+            afterId = batch.get(batch.size() - 1).getId();
+            pushed += batch.size();
+        } while (batch.size() == PUSH_BATCH_SIZE);
+        return pushed;
+    }
+
+    private int pull() throws IOException {
+        int pulled = 0;
+        RecordingsRemoteDataSource.Changes changes;
+        do {
+            Long cursor = syncDao.getCursor(CURSOR_RECORDINGS);
+            final long since = cursor != null ? cursor : 0;
+            changes = withRetry(() -> remote.getChanges(since, PULL_PAGE_SIZE));
+
+            // Rows and cursor commit together, so a page is applied exactly once
+            final RecordingsRemoteDataSource.Changes page = changes;
+            database.runInTransaction(() -> {
+                for (RemoteRecording record : page.records) {
+                    applyRemote(record);
+                }
+                syncDao.putCursor(new SyncCursor(CURSOR_RECORDINGS, page.version));
+            });
+            pulled += changes.records.size();
+        } while (changes.hasMore);
+        return pulled;
+    }
+
+    private void applyRemote(RemoteRecording record) {
+        Long id = syncDao.getIdBySyncId(record.getSyncId());
+        if (id != null) {
+            syncDao.applyRemoteStar(id, record.isStarred(), record.getStarredAt());
+            syncDao.applyRemoteNotes(id, record.getNotes(), record.getNotesUpdatedAt());
+            return;
+        }
+
+        // Recorded on another device; the audio stays there
+        Long contactId = database.contactDao().getOrCreateContactId(
+                record.getPhoneNumber(), record.getContactName());
+        Recording recording = new Recording(0, contactId, record.getCallType(), null,
+                record.getDuration(), record.getDate(), record.isStarred(), record.getNotes(), 0, null);
+        recording.setSyncId(record.getSyncId());
+        recording.setStarredAt(record.getStarredAt());
+        recording.setNotesUpdatedAt(record.getNotesUpdatedAt());
+        recording.setDirty(false);
+        syncDao.insert(recording);
+    }
+
+    private static RemoteRecording toRemote(RecordingDetails recording) {
+        return new RemoteRecording(recording.getSyncId(), recording.getPhoneNumber(),
+                recording.getContactName(), recording.getCallType(), recording.getDuration(),
+                recording.getDate(), recording.isStarred(), recording.getStarredAt(),
+                recording.getNotes(), recording.getNotesUpdatedAt(), 0);
+    }
+
+    private interface RemoteCall<T> {
+        T call() throws IOException;
+    }
+
+    // Exponential backoff with full jitter, so clients that failed together retry apart
+    private <T> T withRetry(RemoteCall<T> call) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.call();
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                long ceiling = Math.min(MAX_BACKOFF_MILLIS, baseBackoffMillis << (attempt - 1));
+                long delay = (long) (random.nextDouble() * ceiling);
+                Log.w(TAG, "Sync call failed (attempt " + attempt + "), retrying in " + delay + " ms", e);
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Sync interrupted");
+                }
+            }
+        }
+    }
+}
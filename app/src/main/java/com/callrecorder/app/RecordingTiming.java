@@ -0,0 +1,29 @@
+package com.callrecorder.app.models;
+
+/**
+ * When a recording was saved and how long it ran, for matching it to call log entries
+ */
+public class RecordingTiming {
+    private final long id;
+    private final long date;
+    private final long duration;
+
+    public RecordingTiming(long id, long date, long duration) {
+        this.id = id;
+        this.date = date;
+        this.duration = duration;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    // Set when the recording stopped, so this is roughly when the call ended
+    public long getDate() {
+        return date;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+}
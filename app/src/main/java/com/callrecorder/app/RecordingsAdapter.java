@@ -13,7 +13,8 @@ import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.callrecorder.app.R;
-import com.callrecorder.app.models.Recording;
+import com.callrecorder.app.models.RecordingListItem;
+import com.callrecorder.app.utils.AvatarLoader;
 import com.callrecorder.app.utils.ContactUtils;
 
 import java.text.SimpleDateFormat;
@@ -21,13 +22,15 @@ import java.util.Date;
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 
-public class RecordingsAdapter extends ListAdapter<Recording, RecordingsAdapter.RecordingViewHolder> {
+public class RecordingsAdapter extends ListAdapter<RecordingListItem, RecordingsAdapter.RecordingViewHolder> {
     
     private final RecordingItemListener listener;
+    private final AvatarLoader avatarLoader;
     
-    public RecordingsAdapter(RecordingItemListener listener) {
+    public RecordingsAdapter(RecordingItemListener listener, AvatarLoader avatarLoader) {
         super(DIFF_CALLBACK);
         this.listener = listener;
+        this.avatarLoader = avatarLoader;
     }
     
     @NonNull
@@ -40,15 +43,21 @@ public class RecordingsAdapter extends ListAdapter<Recording, RecordingsAdapter.
     
     @Override
     public void onBindViewHolder(@NonNull RecordingViewHolder holder, int position) {
-        Recording recording = getItem(position);
+        RecordingListItem recording = getItem(position);
         holder.bind(recording);
     }
+
+    @Override
+    public void onViewRecycled(@NonNull RecordingViewHolder holder) {
+        avatarLoader.cancel(holder.avatarImageView);
+    }
     
     class RecordingViewHolder extends RecyclerView.ViewHolder {
         private final TextView nameTextView;
         private final TextView dateTimeTextView;
         private final TextView durationTextView;
         private final ImageView callTypeImageView;
+        private final ImageView avatarImageView;
         private final ImageButton starButton;
         private final ImageButton deleteButton;
         
@@ -58,6 +67,7 @@ public class RecordingsAdapter extends ListAdapter<Recording, RecordingsAdapter.
             dateTimeTextView = itemView.findViewById(R.id.text_view_date_time);
             durationTextView = itemView.findViewById(R.id.text_view_duration);
             callTypeImageView = itemView.findViewById(R.id.image_view_call_type);
+            avatarImageView = itemView.findViewById(R.id.image_view_avatar);
             starButton = itemView.findViewById(R.id.button_star);
             deleteButton = itemView.findViewById(R.id.button_delete);
             
@@ -83,7 +93,7 @@ public class RecordingsAdapter extends ListAdapter<Recording, RecordingsAdapter.
             });
         }
         
-        public void bind(Recording recording) {
+        public void bind(RecordingListItem recording) {
             // Set contact name or phone number
             String displayName = recording.getContactName();
             if (displayName == null || displayName.isEmpty()) {
@@ -109,6 +119,9 @@ public class RecordingsAdapter extends ListAdapter<Recording, RecordingsAdapter.
             int callTypeIcon = recording.getCallType() == 1 ? 
                     R.drawable.ic_call_received : R.drawable.ic_call_made;
             callTypeImageView.setImageResource(callTypeIcon);
+
+            // Contact photo loads in the background; the placeholder shows until then
+            avatarLoader.load(recording.getPhoneNumber(), avatarImageView, R.drawable.ic_contact_placeholder);
             
             // Set star icon
             int starIcon = recording.isStarred() ? 
@@ -118,23 +131,22 @@ public class RecordingsAdapter extends ListAdapter<Recording, RecordingsAdapter.
     }
     
     public interface RecordingItemListener {
-        void onItemClick(Recording recording);
-        void onStarClick(Recording recording);
-        void onDeleteClick(Recording recording);
+        void onItemClick(RecordingListItem recording);
+        void onStarClick(RecordingListItem recording);
+        void onDeleteClick(RecordingListItem recording);
     }
     
-    private static final DiffUtil.ItemCallback<Recording> DIFF_CALLBACK = 
-            new DiffUtil.ItemCallback<Recording>() {
+    // Package-private for RecordingsDiffBenchmarkTest
+    static final DiffUtil.ItemCallback<RecordingListItem> DIFF_CALLBACK = 
+            new DiffUtil.ItemCallback<RecordingListItem>() {
                 @Override
-                public boolean areItemsTheSame(@NonNull Recording oldItem, @NonNull Recording newItem) {
+                public boolean areItemsTheSame(@NonNull RecordingListItem oldItem, @NonNull RecordingListItem newItem) {
                     return oldItem.getId() == newItem.getId();
                 }
                 
                 @Override
-                public boolean areContentsTheSame(@NonNull Recording oldItem, @NonNull Recording newItem) {
-                    return oldItem.getFilePath().equals(newItem.getFilePath()) &&
-                           oldItem.isStarred() == newItem.isStarred() &&
-                           oldItem.getDate() == newItem.getDate();
+                public boolean areContentsTheSame(@NonNull RecordingListItem oldItem, @NonNull RecordingListItem newItem) {
+                    return oldItem.equals(newItem);
                 }
             };
 }
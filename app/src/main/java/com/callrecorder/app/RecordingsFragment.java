@@ -1,11 +1,13 @@
 package com.callrecorder.app.fragments;
 
+import android.app.DatePickerDialog;
 import android.os.Bundle;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.EditText;
 import android.widget.Spinner;
 import android.widget.TextView;
@@ -18,20 +20,32 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.callrecorder.app.R;
+import com.callrecorder.app.adapters.DayHeaderDecoration;
 import com.callrecorder.app.adapters.RecordingsAdapter;
-import com.callrecorder.app.models.Recording;
+import com.callrecorder.app.adapters.TimelineSections;
+import com.callrecorder.app.models.DailyStats;
+import com.callrecorder.app.models.RecordingListItem;
+import com.callrecorder.app.models.RecordingQuery;
+import com.callrecorder.app.utils.AvatarLoader;
+import com.callrecorder.app.utils.StartupTracer;
 import com.callrecorder.app.viewmodels.RecordingsViewModel;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 
+import java.util.Calendar;
 import java.util.List;
+import java.util.Locale;
 
 public class RecordingsFragment extends Fragment implements RecordingsAdapter.RecordingItemListener {
     private RecordingsViewModel viewModel;
     private RecordingsAdapter adapter;
+    private LinearLayoutManager layoutManager;
+    private DayHeaderDecoration dayHeaders;
     private RecyclerView recyclerView;
     private TextView emptyView;
     private EditText searchEditText;
     private Spinner filterSpinner;
+    private View jumpToDateButton;
+    private List<DailyStats> dayTotals;
 
     @Nullable
     @Override
@@ -43,6 +57,7 @@ public class RecordingsFragment extends Fragment implements RecordingsAdapter.Re
         emptyView = view.findViewById(R.id.text_empty_recordings);
         searchEditText = view.findViewById(R.id.edit_text_search);
         filterSpinner = view.findViewById(R.id.spinner_filter);
+        jumpToDateButton = view.findViewById(R.id.button_jump_to_date);
         
         return view;
     }
@@ -65,12 +80,17 @@ public class RecordingsFragment extends Fragment implements RecordingsAdapter.Re
         
         // Observe recordings
         observeRecordings();
+
+        jumpToDateButton.setOnClickListener(v -> showJumpToDate());
     }
 
     private void setupRecyclerView() {
-        adapter = new RecordingsAdapter(this);
-        recyclerView.setLayoutManager(new LinearLayoutManager(requireContext()));
+        adapter = new RecordingsAdapter(this, AvatarLoader.getInstance(requireContext()));
+        layoutManager = new LinearLayoutManager(requireContext());
+        recyclerView.setLayoutManager(layoutManager);
         recyclerView.setAdapter(adapter);
+        dayHeaders = new DayHeaderDecoration(requireContext());
+        recyclerView.addItemDecoration(dayHeaders);
     }
 
     private void setupSearch() {
@@ -101,17 +121,17 @@ public class RecordingsFragment extends Fragment implements RecordingsAdapter.Re
                 int filterType;
                 switch (position) {
                     case 1:
-                        filterType = -1; // Starred
+                        filterType = RecordingQuery.FILTER_STARRED;
                         break;
                     case 2:
-                        filterType = 1; // Incoming
+                        filterType = RecordingQuery.FILTER_INCOMING;
                         break;
                     case 3:
-                        filterType = 2; // Outgoing
+                        filterType = RecordingQuery.FILTER_OUTGOING;
                         break;
                     case 0:
                     default:
-                        filterType = 0; // All
+                        filterType = RecordingQuery.FILTER_ALL;
                         break;
                 }
                 viewModel.setFilter(filterType);
@@ -125,13 +145,61 @@ public class RecordingsFragment extends Fragment implements RecordingsAdapter.Re
     }
 
     private void observeRecordings() {
-        viewModel.getSearchResults().observe(getViewLifecycleOwner(), recordings -> {
-            adapter.submitList(recordings);
+        viewModel.getRecordings().observe(getViewLifecycleOwner(), recordings -> {
+            adapter.submitList(recordings, () -> {
+                updateDayHeaders();
+                reportFirstFrame();
+            });
             updateEmptyView(recordings);
         });
+        viewModel.getDaySections().observe(getViewLifecycleOwner(), days -> {
+            dayTotals = days;
+            updateDayHeaders();
+        });
+    }
+
+    // The list and its day totals load separately; headers show once they agree.
+    // Totals are null while the list is not grouped by day.
+    private void updateDayHeaders() {
+        TimelineSections sections = TimelineSections.build(dayTotals, adapter.getCurrentList().size());
+        dayHeaders.setSections(sections);
+        recyclerView.invalidateItemDecorations();
+        jumpToDateButton.setEnabled(sections != null);
+    }
+
+    private void showJumpToDate() {
+        Calendar today = Calendar.getInstance();
+        new DatePickerDialog(requireContext(), (picker, year, month, dayOfMonth) -> {
+            TimelineSections sections = dayHeaders.getSections();
+            if (sections == null) {
+                return;
+            }
+            // Same yyyy-MM-dd local day as daily_stats, so the jump is a binary search
+            String day = String.format(Locale.US, "%04d-%02d-%02d", year, month + 1, dayOfMonth);
+            layoutManager.scrollToPositionWithOffset(sections.positionOfDay(day), 0);
+        }, today.get(Calendar.YEAR), today.get(Calendar.MONTH), today.get(Calendar.DAY_OF_MONTH)).show();
+    }
+
+    // Reports the cold-start milestone once the first list has been drawn
+    private void reportFirstFrame() {
+        View root = getView();
+        if (root == null) {
+            return;
+        }
+        root.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                root.getViewTreeObserver().removeOnPreDrawListener(this);
+                if (StartupTracer.markFirstFrame() && getActivity() != null) {
+                    // Picked up by "am start -W" and startup benchmarks as time to full display
+                    getActivity().reportFullyDrawn();
+                }
+                return true;
+            }
+        });
     }
 
-    private void updateEmptyView(List<Recording> recordings) {
+    private void updateEmptyView(List<RecordingListItem> recordings) {
         if (recordings == null || recordings.isEmpty()) {
             emptyView.setVisibility(View.VISIBLE);
             recyclerView.setVisibility(View.GONE);
@@ -142,7 +210,7 @@ public class RecordingsFragment extends Fragment implements RecordingsAdapter.Re
     }
 
     @Override
-    public void onItemClick(Recording recording) {
+    public void onItemClick(RecordingListItem recording) {
         // Open playback activity
         // Intent intent = new Intent(requireContext(), PlaybackActivity.class);
         // intent.putExtra("recording_id", recording.getId());
@@ -150,12 +218,12 @@ public class RecordingsFragment extends Fragment implements RecordingsAdapter.Re
     }
 
     @Override
-    public void onStarClick(Recording recording) {
+    public void onStarClick(RecordingListItem recording) {
         viewModel.toggleStar(recording);
     }
 
     @Override
-    public void onDeleteClick(Recording recording) {
+    public void onDeleteClick(RecordingListItem recording) {
         new MaterialAlertDialogBuilder(requireContext())
                 .setTitle("حذف التسجيل")
                 .setMessage("هل أنت متأكد من حذف هذا التسجيل؟")
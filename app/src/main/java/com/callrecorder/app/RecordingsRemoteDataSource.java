@@ -0,0 +1,40 @@
+package com.callrecorder.app.sync;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Server side of recording metadata sync. Both calls move only records that
+ * changed; nothing transfers or replaces the whole archive.
+ */
+public interface RecordingsRemoteDataSource {
+
+    /**
+     * One page of server changes, in version order
+     */
+    class Changes {
+        public final List<RemoteRecording> records;
+        public final long version; // cursor to pass to the next call
+        public final boolean hasMore;
+
+        public Changes(List<RemoteRecording> records, long version, boolean hasMore) {
+            this.records = records;
+            this.version = version;
+            this.hasMore = hasMore;
+        }
+    }
+
+    /**
+     * @param sinceVersion Version returned by the previous page, or 0 for everything
+     * @param limit Maximum number of records to return
+     * @return Records written after sinceVersion
+     */
+    Changes getChanges(long sinceVersion, int limit) throws IOException;
+
+    /**
+     * Write a batch of client changes. Safe to repeat if the response was lost.
+     * @param records Records to merge into the server's copy
+     * @return The merged records, in the same order as sent
+     */
+    List<RemoteRecording> push(List<RemoteRecording> records) throws IOException;
+}
@@ -1,6 +1,9 @@
 package com.callrecorder.app.viewmodels;
 
 import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
@@ -8,73 +11,135 @@ import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.Transformations;
 
+import com.callrecorder.app.CallRecorderApp;
 import com.callrecorder.app.database.AppDatabase;
+import com.callrecorder.app.database.CallStatsDao;
+import com.callrecorder.app.database.FingerprintDao;
 import com.callrecorder.app.database.RecordingDao;
+import com.callrecorder.app.database.RecordingListQuery;
+import com.callrecorder.app.editing.RecordingEditor;
+import com.callrecorder.app.models.DailyStats;
+import com.callrecorder.app.models.DuplicatePair;
 import com.callrecorder.app.models.Recording;
+import com.callrecorder.app.models.RecordingDetails;
+import com.callrecorder.app.models.RecordingListItem;
+import com.callrecorder.app.models.RecordingQuery;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executors;
 
 public class RecordingsViewModel extends AndroidViewModel {
+    private static final String TAG = "RecordingsViewModel";
+    private static final long SEARCH_DEBOUNCE_MS = 250;
+    // sectionFilter value for a list without day sections; not a filter type
+    private static final int NO_SECTIONS = Integer.MIN_VALUE;
+
     private final RecordingDao recordingDao;
-    private final LiveData<List<Recording>> allRecordings;
-    private final LiveData<List<Recording>> starredRecordings;
-    private final MutableLiveData<Integer> filterType = new MutableLiveData<>();
-    private final MutableLiveData<String> searchQuery = new MutableLiveData<>();
+    private final CallStatsDao callStatsDao;
+    private final FingerprintDao fingerprintDao;
+    private final LiveData<List<RecordingListItem>> recordings;
+    private final LiveData<List<DailyStats>> daySections;
+    private final MutableLiveData<File> clipFile = new MutableLiveData<>();
+    // The state the list shows; only set to a state that differs from the current one
+    private final MutableLiveData<RecordingQuery> query = new MutableLiveData<>(RecordingQuery.DEFAULT);
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private RecordingQuery pendingQuery = RecordingQuery.DEFAULT;
+    private final Runnable applyPendingQuery = () -> {
+        if (!pendingQuery.equals(query.getValue())) {
+            query.setValue(pendingQuery);
+        }
+    };
 
     public RecordingsViewModel(@NonNull Application application) {
         super(application);
         recordingDao = AppDatabase.getInstance(application).recordingDao();
-        allRecordings = recordingDao.getAllRecordings();
-        starredRecordings = recordingDao.getStarredRecordings();
-        
-        // Set default filter to show all recordings
-        filterType.setValue(0);
-        searchQuery.setValue("");
+        callStatsDao = AppDatabase.getInstance(application).callStatsDao();
+        fingerprintDao = AppDatabase.getInstance(application).fingerprintDao();
+
+        // Each applied state is one query; the previous one stops being observed
+        recordings = Transformations.switchMap(query,
+                state -> recordingDao.queryRecordings(RecordingListQuery.build(state)));
+        // Sections only change with the filter, or when they stop applying
+        daySections = Transformations.switchMap(
+                Transformations.distinctUntilChanged(Transformations.map(query, RecordingsViewModel::sectionFilter)),
+                this::loadDaySections);
     }
 
-    public LiveData<List<Recording>> getAllRecordings() {
-        return allRecordings;
+    /**
+     * The recordings for the current filter, search text and sort
+     */
+    public LiveData<List<RecordingListItem>> getRecordings() {
+        return recordings;
     }
 
-    public LiveData<List<Recording>> getStarredRecordings() {
-        return starredRecordings;
+    /**
+     * Per-day totals for the current filter, newest day first, or null while the list
+     * is not in newest-first date order or is showing search results.
+     */
+    public LiveData<List<DailyStats>> getDaySections() {
+        return daySections;
     }
 
-    public LiveData<List<Recording>> getFilteredRecordings() {
-        return Transformations.switchMap(filterType, type -> {
-            if (type == 0) {
-                return allRecordings;
-            } else if (type == -1) {
-                return starredRecordings;
-            } else {
-                return recordingDao.getRecordingsByType(type);
-            }
-        });
+    public void setFilter(int type) {
+        // Next main loop pass, so changes made together run one query
+        updateQuery(pendingQuery.withFilterType(type), 0);
     }
 
-    public LiveData<List<Recording>> getSearchResults() {
-        return Transformations.switchMap(searchQuery, query -> {
-            if (query == null || query.isEmpty()) {
-                return getFilteredRecordings();
-            } else {
-                return recordingDao.searchRecordings(query);
-            }
-        });
+    public void setSearchQuery(String text) {
+        // Waits for a pause in typing; an emptied box shows the full list right away
+        RecordingQuery next = pendingQuery.withSearchText(text);
+        updateQuery(next, next.isSearching() ? SEARCH_DEBOUNCE_MS : 0);
     }
 
-    public void setFilter(int type) {
-        filterType.setValue(type);
+    public void setSort(int sort) {
+        updateQuery(pendingQuery.withSort(sort), 0);
+    }
+
+    private void updateQuery(RecordingQuery next, long delayMillis) {
+        pendingQuery = next;
+        handler.removeCallbacks(applyPendingQuery);
+        handler.postDelayed(applyPendingQuery, delayMillis);
+    }
+
+    private static Integer sectionFilter(RecordingQuery state) {
+        return state.isSearching() || state.getSort() != RecordingQuery.SORT_NEWEST
+                ? NO_SECTIONS : state.getFilterType();
     }
 
-    public void setSearchQuery(String query) {
-        searchQuery.setValue(query);
+    private LiveData<List<DailyStats>> loadDaySections(Integer filterType) {
+        if (filterType == NO_SECTIONS) {
+            return new MutableLiveData<>(null);
+        } else if (filterType == RecordingQuery.FILTER_ALL) {
+            return callStatsDao.getDailyStatsNewestFirst();
+        } else if (filterType == RecordingQuery.FILTER_STARRED) {
+            return recordingDao.getStarredDaySections();
+        } else {
+            return recordingDao.getDaySectionsByType(filterType);
+        }
     }
 
-    public void toggleStar(Recording recording) {
-        recording.setStarred(!recording.isStarred());
-        updateRecording(recording);
+    @Override
+    protected void onCleared() {
+        handler.removeCallbacks(applyPendingQuery);
+    }
+
+    public void toggleStar(RecordingListItem recording) {
+        final long id = recording.getId();
+        final boolean starred = !recording.isStarred();
+        Executors.newSingleThreadExecutor().execute(() -> {
+            recordingDao.setStarred(id, starred, System.currentTimeMillis());
+            CallRecorderApp.requestSync();
+        });
+    }
+
+    public void setNotes(long id, String notes) {
+        Executors.newSingleThreadExecutor().execute(() -> {
+            recordingDao.setNotes(id, notes, System.currentTimeMillis());
+            CallRecorderApp.requestSync();
+        });
     }
 
     public void insertRecording(Recording recording) {
@@ -83,22 +148,137 @@ public class RecordingsViewModel extends AndroidViewModel {
         });
     }
 
-    public void updateRecording(Recording recording) {
+    public void deleteRecording(RecordingListItem recording) {
+        final long id = recording.getId();
+        Executors.newSingleThreadExecutor().execute(() -> deleteRecordingNow(id));
+    }
+
+    /**
+     * Recordings whose audio matches an earlier recording, newest first
+     */
+    public LiveData<List<DuplicatePair>> getDuplicatePairs() {
+        return fingerprintDao.getDuplicatePairs();
+    }
+
+    /**
+     * Delete the redundant copy of each pair, keeping the longer recording
+     */
+    public void deleteDuplicates(List<DuplicatePair> pairs) {
+        final long[] ids = new long[pairs.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = pairs.get(i).getRedundantId();
+        }
+        Executors.newSingleThreadExecutor().execute(() -> {
+            for (long id : ids) {
+                deleteRecordingNow(id);
+            }
+        });
+    }
+
+    public void dismissDuplicate(DuplicatePair pair) {
+        final long recordingId = pair.getRecordingId();
+        final long duplicateOfId = pair.getDuplicateOfId();
+        Executors.newSingleThreadExecutor().execute(() ->
+                fingerprintDao.dismissCandidate(recordingId, duplicateOfId));
+    }
+
+    /**
+     * The last clip made by createClip, or null if it failed
+     */
+    public LiveData<File> getClipFile() {
+        return clipFile;
+    }
+
+    /**
+     * Cut part of a recording into a file in the cache for sharing, without re-encoding
+     */
+    public void createClip(long recordingId, long startMillis, long endMillis) {
+        final File directory = new File(getApplication().getCacheDir(), "clips");
         Executors.newSingleThreadExecutor().execute(() -> {
-            recordingDao.update(recording);
+            String filePath = recordingDao.getFilePath(recordingId);
+            File target = null;
+            if (filePath != null) {
+                directory.mkdirs();
+                String name = new File(filePath).getName();
+                target = new File(directory, "clip_" + recordingId + "_" + startMillis
+                        + name.substring(Math.max(0, name.lastIndexOf('.'))));
+                try {
+                    RecordingEditor.clip(new File(filePath), startMillis, endMillis, target);
+                } catch (IOException | IllegalArgumentException e) {
+                    Log.e(TAG, "Error clipping recording " + recordingId, e);
+                    target = null;
+                }
+            }
+            clipFile.postValue(target);
         });
     }
 
-    public void deleteRecording(Recording recording) {
+    /**
+     * Join recordings of one call that dropped and was redialled into a new recording.
+     * The originals are kept; the duplicate finder offers them for cleanup afterwards.
+     * @param recordingIds Recordings in call order, all recorded in the same format
+     */
+    public void mergeRecordings(List<Long> recordingIds) {
+        final List<Long> ids = new ArrayList<>(recordingIds);
         Executors.newSingleThreadExecutor().execute(() -> {
-            // Delete the file first
-            File file = new File(recording.getFilePath());
+            List<RecordingDetails> parts = new ArrayList<>(ids.size());
+            List<File> files = new ArrayList<>(ids.size());
+            long duration = 0;
+            for (long id : ids) {
+                RecordingDetails part = recordingDao.getRecordingById(id);
+                if (part == null || part.getFilePath() == null) {
+                    return;
+                }
+                parts.add(part);
+                files.add(new File(part.getFilePath()));
+                duration += part.getDuration();
+            }
+
+            if (parts.isEmpty() || !RecordingEditor.canEdit(files.get(0))) {
+                return;
+            }
+            RecordingDetails first = parts.get(0);
+            File target = mergedFileFor(files.get(0));
+            try {
+                RecordingEditor.concat(files, target);
+            } catch (IOException | IllegalArgumentException e) {
+                Log.e(TAG, "Error merging recordings " + ids, e);
+                return;
+            }
+
+            Recording merged = new Recording(0, first.getContactId(), first.getCallType(),
+                    target.getAbsolutePath(), duration, parts.get(parts.size() - 1).getDate(),
+                    false, null, target.length(), first.getCodec());
+            long mergedId = recordingDao.insert(merged);
+            CallRecorderApp.requestSync();
+            CallRecorderApp.getFingerprintQueue().enqueue(mergedId, target.getAbsolutePath());
+        });
+    }
+
+    // A new name next to the first part for every merge, so an earlier merge is never replaced
+    private static File mergedFileFor(File first) {
+        String name = first.getName();
+        int dot = name.lastIndexOf('.');
+        String base = (dot >= 0 ? name.substring(0, dot) : name) + "_merged_" + System.currentTimeMillis();
+        String extension = dot >= 0 ? name.substring(dot) : "";
+        File target = new File(first.getParentFile(), base + extension);
+        for (int i = 1; target.exists(); i++) {
+            target = new File(first.getParentFile(), base + "_" + i + extension);
+        }
+        return target;
+    }
+
+    private void deleteRecordingNow(long id) {
+        // Delete the file first
+        String filePath = recordingDao.getFilePath(id);
+        if (filePath != null) {
+            File file = new File(filePath);
             if (file.exists()) {
                 file.delete();
             }
-            
-            // Then delete the database entry
-            recordingDao.delete(recording);
-        });
+        }
+
+        // Then delete the database entry; fingerprints and candidates cascade
+        recordingDao.deleteById(id);
     }
 }
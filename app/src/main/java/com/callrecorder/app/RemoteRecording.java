@@ -0,0 +1,113 @@
+package com.callrecorder.app.sync;
+
+/**
+ * Recording metadata as the sync server stores it. Audio files are not synced,
+ * only the call details and the user's star and notes.
+ */
+public class RemoteRecording {
+    private final String syncId;
+    private final String phoneNumber;
+    private final String contactName;
+    private final int callType;
+    private final long duration;
+    private final long date;
+    private final boolean starred;
+    private final long starredAt;
+    private final String notes;
+    private final long notesUpdatedAt;
+    private final long version; // assigned by the server, 0 for records not stored yet
+
+    public RemoteRecording(String syncId, String phoneNumber, String contactName, int callType,
+                           long duration, long date, boolean starred, long starredAt,
+                           String notes, long notesUpdatedAt, long version) {
+        this.syncId = syncId;
+        this.phoneNumber = phoneNumber;
+        this.contactName = contactName;
+        this.callType = callType;
+        this.duration = duration;
+        this.date = date;
+        this.starred = starred;
+        this.starredAt = starredAt;
+        this.notes = notes;
+        this.notesUpdatedAt = notesUpdatedAt;
+        this.version = version;
+    }
+
+    /**
+     * Merge an incoming write into the stored record. Star and notes are resolved
+     * separately, each keeping the value with the later clock; on a tie the stored
+     * value stays, so every client converges on what the server returns.
+     * @param stored Current record, or null if the server has none
+     * @param incoming Record sent by a client
+     * @param version Version to stamp on the result
+     * @return The merged record
+     */
+    public static RemoteRecording merge(RemoteRecording stored, RemoteRecording incoming, long version) {
+        if (stored == null) {
+            return incoming.withVersion(version);
+        }
+        boolean starWins = incoming.starredAt > stored.starredAt;
+        boolean notesWin = incoming.notesUpdatedAt > stored.notesUpdatedAt;
+        return new RemoteRecording(
+                stored.syncId,
+                stored.phoneNumber,
+                incoming.contactName != null ? incoming.contactName : stored.contactName,
+                stored.callType,
+                stored.duration,
+                stored.date,
+                starWins ? incoming.starred : stored.starred,
+                starWins ? incoming.starredAt : stored.starredAt,
+                notesWin ? incoming.notes : stored.notes,
+                notesWin ? incoming.notesUpdatedAt : stored.notesUpdatedAt,
+                version);
+    }
+
+    public RemoteRecording withVersion(long version) {
+        return new RemoteRecording(syncId, phoneNumber, contactName, callType, duration, date,
+                starred, starredAt, notes, notesUpdatedAt, version);
+    }
+
+    public String getSyncId() {
+        return syncId;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    public String getContactName() {
+        return contactName;
+    }
+
+    public int getCallType() {
+        return callType;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public long getDate() {
+        return date;
+    }
+
+    public boolean isStarred() {
+        return starred;
+    }
+
+    public long getStarredAt() {
+        return starredAt;
+    }
+
+    public String getNotes() {
+        return notes;
+    }
+
+    public long getNotesUpdatedAt() {
+        return notesUpdatedAt;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,35 @@
+package com.callrecorder.app.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+@Entity(tableName = "settings")
+public class SettingEntry {
+    @PrimaryKey
+    @NonNull
+    private String key;
+    private String value;
+
+    public SettingEntry(@NonNull String key, String value) {
+        this.key = key;
+        this.value = value;
+    }
+
+    @NonNull
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(@NonNull String key) {
+        this.key = key;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,34 @@
+package com.callrecorder.app.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.callrecorder.app.models.SettingEntry;
+
+import java.util.Collections;
+import java.util.List;
+
+@Dao
+public abstract class SettingsDao {
+    @Query("SELECT * FROM settings")
+    public abstract List<SettingEntry> getAll();
+
+    // All entries are written in one transaction
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void putAll(List<SettingEntry> entries);
+
+    @Query("DELETE FROM settings WHERE `key` = :key")
+    public abstract void delete(String key);
+
+    /**
+     * Remove one key and write another in the same transaction
+     */
+    @Transaction
+    public void replaceKey(String oldKey, SettingEntry newEntry) {
+        delete(oldKey);
+        putAll(Collections.singletonList(newEntry));
+    }
+}
@@ -0,0 +1,34 @@
+package com.callrecorder.app.database;
+
+import android.content.Context;
+
+import androidx.room.Database;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+
+import com.callrecorder.app.models.SettingEntry;
+
+// Kept apart from AppDatabase so settings never wait on recordings migrations
+@Database(entities = {SettingEntry.class}, version = 1, exportSchema = false)
+public abstract class SettingsDatabase extends RoomDatabase {
+
+    private static final String DATABASE_NAME = "call_recorder_settings_database";
+    private static volatile SettingsDatabase INSTANCE;
+
+    public abstract SettingsDao settingsDao();
+
+    public static SettingsDatabase getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (SettingsDatabase.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = Room.databaseBuilder(
+                            context.getApplicationContext(),
+                            SettingsDatabase.class,
+                            DATABASE_NAME)
+                            .build();
+                }
+            }
+        }
+        return INSTANCE;
+    }
+}
@@ -3,114 +3,745 @@ package com.callrecorder.app.utils;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.os.Environment;
+import android.util.Log;
+
+import com.callrecorder.app.database.SettingsDao;
+import com.callrecorder.app.database.SettingsDatabase;
+import com.callrecorder.app.models.SettingEntry;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class SettingsManager {
+    private static final String TAG = "SettingsManager";
+
+    // Legacy SharedPreferences file, migrated into the settings database once
     private static final String PREFS_NAME = "call_recorder_settings";
-    
-    // Keys for SharedPreferences
+
+    // Keys for stored settings
     private static final String KEY_AUTO_RECORD = "auto_record";
     private static final String KEY_RECORDING_QUALITY = "recording_quality";
     private static final String KEY_STORAGE_PATH = "storage_path";
     private static final String KEY_PASSWORD_PROTECTION = "password_protection";
-    private static final String KEY_PASSWORD = "password";
+    private static final String KEY_PASSWORD = "password"; // legacy plaintext, replaced by the hash
+    private static final String KEY_PASSWORD_HASH = "password_hash";
     private static final String KEY_NOTIFICATION_SOUND = "notification_sound";
     private static final String KEY_VIBRATION = "vibration";
     private static final String KEY_SHOW_NOTIFICATION = "show_notification";
-    
+    private static final String KEY_ENCRYPT_RECORDINGS = "encrypt_recordings";
+    private static final String KEY_AUTO_RECORD_RULES = "auto_record_rules";
+    private static final String KEY_PREFS_MIGRATED = "prefs_migrated";
+
+    // Bits marking which values an Editor changed
+    private static final int FIELD_AUTO_RECORD = 1;
+    private static final int FIELD_RECORDING_QUALITY = 1 << 1;
+    private static final int FIELD_STORAGE_PATH = 1 << 2;
+    private static final int FIELD_PASSWORD_PROTECTION = 1 << 3;
+    private static final int FIELD_PASSWORD_HASH = 1 << 4;
+    private static final int FIELD_NOTIFICATION_SOUND = 1 << 5;
+    private static final int FIELD_VIBRATION = 1 << 6;
+    private static final int FIELD_SHOW_NOTIFICATION = 1 << 7;
+    private static final int FIELD_ENCRYPT_RECORDINGS = 1 << 8;
+    private static final int FIELD_AUTO_RECORD_RULES = 1 << 9;
+    private static final int FIELD_ALL = (1 << 10) - 1;
+
     // Constants for recording quality
     public static final int QUALITY_LOW = 0;
     public static final int QUALITY_MEDIUM = 1;
     public static final int QUALITY_HIGH = 2;
-    
-    private final SharedPreferences prefs;
-    
+
+    private final Context context;
+    private final SettingsDao settingsDao;
+    private final String defaultStoragePath;
+    private final CopyOnWriteArrayList<OnSettingsChangedListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Single thread so the initial load always runs before any queued write
+    private final Executor diskExecutor = Executors.newSingleThreadExecutor();
+    private final CountDownLatch loadedLatch = new CountDownLatch(1);
+
+    // Current settings, replaced as a whole whenever anything changes
+    private volatile Settings settings;
+
+    // Plaintext password from an older version, until its hash is stored. Set before
+    // settings and cleared after, so a reader that sees it cleared also sees the hash
+    private volatile String legacyPassword;
+
+    // Edits made before the stored values were loaded, replayed on top of them
+    private List<Editor> pendingEdits = new ArrayList<>();
+
     public SettingsManager(Context context) {
-        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.context = context.getApplicationContext();
+        settingsDao = SettingsDatabase.getInstance(this.context).settingsDao();
+        defaultStoragePath = getDefaultStoragePath();
+        settings = Settings.defaults(defaultStoragePath);
+        diskExecutor.execute(this::loadFromDisk);
+    }
+
+    /**
+     * Get the current settings as one consistent snapshot. Never touches disk;
+     * until the stored values finish loading this returns the defaults.
+     * @return Immutable settings snapshot
+     */
+    public Settings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Check whether the stored settings have been loaded
+     * @return true once getSettings() reflects the stored values
+     */
+    public boolean isLoaded() {
+        return loadedLatch.getCount() == 0;
     }
-    
+
+    /**
+     * Wait for the stored settings to load. Must not be called on the main thread.
+     * @param timeoutMillis Maximum time to wait
+     * @return true if the settings were loaded in time
+     */
+    public boolean awaitLoaded(long timeoutMillis) throws InterruptedException {
+        return loadedLatch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
     public boolean isAutoRecordEnabled() {
-        return prefs.getBoolean(KEY_AUTO_RECORD, false);
+        return settings.isAutoRecordEnabled();
     }
-    
+
     public void setAutoRecordEnabled(boolean enabled) {
-        prefs.edit().putBoolean(KEY_AUTO_RECORD, enabled).apply();
+        edit().setAutoRecordEnabled(enabled).apply();
+    }
+
+    /**
+     * Per-number auto-record rules, one per line in the format read by RecordRule.parseAll
+     * @return Serialized rules, empty when there are none
+     */
+    public String getAutoRecordRules() {
+        return settings.getAutoRecordRules();
+    }
+
+    public void setAutoRecordRules(String rules) {
+        edit().setAutoRecordRules(rules).apply();
     }
-    
+
     public int getRecordingQuality() {
-        return prefs.getInt(KEY_RECORDING_QUALITY, QUALITY_MEDIUM);
+        return settings.getRecordingQuality();
     }
-    
+
     public void setRecordingQuality(int quality) {
-        prefs.edit().putInt(KEY_RECORDING_QUALITY, quality).apply();
+        edit().setRecordingQuality(quality).apply();
     }
-    
+
     public String getStoragePath() {
-        return prefs.getString(KEY_STORAGE_PATH, getDefaultStoragePath());
+        return settings.getStoragePath();
     }
-    
+
     public void setStoragePath(String path) {
-        prefs.edit().putString(KEY_STORAGE_PATH, path).apply();
+        edit().setStoragePath(path).apply();
     }
-    
+
     public boolean isPasswordProtectionEnabled() {
-        return prefs.getBoolean(KEY_PASSWORD_PROTECTION, false);
+        return settings.isPasswordProtectionEnabled();
     }
-    
+
     public void setPasswordProtectionEnabled(boolean enabled) {
-        prefs.edit().putBoolean(KEY_PASSWORD_PROTECTION, enabled).apply();
+        edit().setPasswordProtectionEnabled(enabled).apply();
     }
-    
-    public String getPassword() {
-        return prefs.getString(KEY_PASSWORD, null);
+
+    /**
+     * Until the stored settings are loaded this assumes a password is set, since the
+     * default snapshot cannot tell
+     * @return true if a password is set
+     */
+    public boolean hasPassword() {
+        return !isLoaded() || legacyPassword != null || settings.getPasswordHash() != null;
     }
-    
+
+    /**
+     * Set or clear the password. Only a salted hash is stored, with the KDF cost calibrated
+     * to about PasswordHasher.TARGET_MILLIS on this device. Blocks for that long plus the
+     * calibration, so call it from a background thread.
+     * @param password New password, or null to remove it
+     */
     public void setPassword(String password) {
-        prefs.edit().putString(KEY_PASSWORD, password).apply();
+        String hash = null;
+        if (password != null) {
+            hash = PasswordHasher.hash(password, PasswordHasher.calibrate(PasswordHasher.TARGET_MILLIS));
+        }
+        edit().setPasswordHash(hash).apply();
+        UnlockSession.end();
+    }
+
+    /**
+     * Check a password and start an unlock session if it matches. While the session is
+     * active, isUnlocked() returns true without running the KDF again.
+     * Blocks for the KDF cost, so call it from a background thread.
+     * @return true if the password is correct
+     */
+    public boolean unlock(String password) {
+        String legacy = legacyPassword;
+        boolean matches = legacy != null
+                ? password != null && MessageDigest.isEqual(legacy.getBytes(StandardCharsets.UTF_8),
+                        password.getBytes(StandardCharsets.UTF_8))
+                : PasswordHasher.verify(password, settings.getPasswordHash());
+        if (!matches) {
+            return false;
+        }
+        UnlockSession.start(UnlockSession.DEFAULT_DURATION_MILLIS);
+        return true;
     }
-    
+
+    /**
+     * Cheap check for protected screens; never runs the KDF. Returns false until the
+     * stored settings are loaded, because the defaults say no password is required.
+     * @return true if no password is required or an unlock session is active
+     */
+    public boolean isUnlocked() {
+        if (!isLoaded()) {
+            return false;
+        }
+        String legacy = legacyPassword;
+        Settings current = settings;
+        return !current.isPasswordProtectionEnabled()
+                || (legacy == null && current.getPasswordHash() == null)
+                || UnlockSession.isActive();
+    }
+
     public boolean isNotificationSoundEnabled() {
-        return prefs.getBoolean(KEY_NOTIFICATION_SOUND, true);
+        return settings.isNotificationSoundEnabled();
     }
-    
+
     public void setNotificationSoundEnabled(boolean enabled) {
-        prefs.edit().putBoolean(KEY_NOTIFICATION_SOUND, enabled).apply();
+        edit().setNotificationSoundEnabled(enabled).apply();
     }
-    
+
     public boolean isVibrationEnabled() {
-        return prefs.getBoolean(KEY_VIBRATION, true);
+        return settings.isVibrationEnabled();
     }
-    
+
     public void setVibrationEnabled(boolean enabled) {
-        prefs.edit().putBoolean(KEY_VIBRATION, enabled).apply();
+        edit().setVibrationEnabled(enabled).apply();
     }
-    
+
     public boolean isShowNotificationEnabled() {
-        return prefs.getBoolean(KEY_SHOW_NOTIFICATION, true);
+        return settings.isShowNotificationEnabled();
     }
-    
+
     public void setShowNotificationEnabled(boolean enabled) {
-        prefs.edit().putBoolean(KEY_SHOW_NOTIFICATION, enabled).apply();
+        edit().setShowNotificationEnabled(enabled).apply();
     }
-    
+
+    public boolean isEncryptRecordingsEnabled() {
+        return settings.isEncryptRecordingsEnabled();
+    }
+
+    public void setEncryptRecordingsEnabled(boolean enabled) {
+        edit().setEncryptRecordingsEnabled(enabled).apply();
+    }
+
+    /**
+     * Start a batch of changes that is stored in a single transaction
+     * @return Empty editor; only the values set on it are changed
+     */
+    public Editor edit() {
+        return new Editor();
+    }
+
+    /**
+     * Listeners may be called on any thread, including the background loader.
+     */
+    public void addOnSettingsChangedListener(OnSettingsChangedListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeOnSettingsChangedListener(OnSettingsChangedListener listener) {
+        listeners.remove(listener);
+    }
+
     private String getDefaultStoragePath() {
         File directory = new File(Environment.getExternalStoragePublicDirectory(
                 Environment.DIRECTORY_MUSIC), "CallRecordings");
         return directory.getAbsolutePath();
     }
-    
+
     // Reset all settings to default values
     public void resetToDefaults() {
-        prefs.edit()
-                .putBoolean(KEY_AUTO_RECORD, false)
-                .putInt(KEY_RECORDING_QUALITY, QUALITY_MEDIUM)
-                .putString(KEY_STORAGE_PATH, getDefaultStoragePath())
-                .putBoolean(KEY_PASSWORD_PROTECTION, false)
-                .putString(KEY_PASSWORD, null)
-                .putBoolean(KEY_NOTIFICATION_SOUND, true)
-                .putBoolean(KEY_VIBRATION, true)
-                .putBoolean(KEY_SHOW_NOTIFICATION, true)
+        Settings defaults = Settings.defaults(defaultStoragePath);
+        edit()
+                .setAutoRecordEnabled(defaults.autoRecord)
+                .setRecordingQuality(defaults.recordingQuality)
+                .setStoragePath(defaults.storagePath)
+                .setPasswordProtectionEnabled(defaults.passwordProtection)
+                .setPasswordHash(defaults.passwordHash)
+                .setNotificationSoundEnabled(defaults.notificationSound)
+                .setVibrationEnabled(defaults.vibration)
+                .setShowNotificationEnabled(defaults.showNotification)
+                .setEncryptRecordingsEnabled(defaults.encryptRecordings)
+                .setAutoRecordRules(defaults.autoRecordRules)
                 .apply();
     }
+
+    private void loadFromDisk() {
+        Settings stored;
+        String plaintext = null;
+        try {
+            List<SettingEntry> entries = settingsDao.getAll();
+            if (entries.isEmpty()) {
+                entries = migrateFromSharedPreferences();
+            }
+            entries = upgradeAutoRecord(entries);
+            plaintext = findValue(entries, KEY_PASSWORD);
+            stored = fromEntries(entries);
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading settings, using defaults", e);
+            stored = Settings.defaults(defaultStoragePath);
+        }
+
+        Settings oldSettings;
+        Settings newSettings;
+        synchronized (this) {
+            newSettings = stored;
+            for (Editor editor : pendingEdits) {
+                newSettings = editor.applyTo(newSettings);
+                if ((editor.changedFields & FIELD_PASSWORD_HASH) != 0) {
+                    // A password set before loading replaces the old one
+                    plaintext = null;
+                }
+            }
+            pendingEdits = null;
+            legacyPassword = plaintext;
+            oldSettings = settings;
+            settings = newSettings;
+        }
+        loadedLatch.countDown();
+        notifyListeners(oldSettings, newSettings);
+
+        // The KDF takes a calibration plus TARGET_MILLIS, so it runs after the settings
+        // are published; unlock() checks the plaintext until then
+        if (plaintext != null) {
+            upgradePlaintextPassword(plaintext);
+        }
+    }
+
+    private List<SettingEntry> migrateFromSharedPreferences() {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+
+        // Versions before the rules engine stored auto_record but recorded every call anyway
+        Settings legacy = new Settings(
+                true,
+                prefs.getInt(KEY_RECORDING_QUALITY, QUALITY_MEDIUM),
+                prefs.getString(KEY_STORAGE_PATH, defaultStoragePath),
+                prefs.getBoolean(KEY_PASSWORD_PROTECTION, false),
+                null,
+                prefs.getBoolean(KEY_NOTIFICATION_SOUND, true),
+                prefs.getBoolean(KEY_VIBRATION, true),
+                prefs.getBoolean(KEY_SHOW_NOTIFICATION, true),
+                false,
+                "");
+
+        // The marker row keeps an all-default install from being migrated again
+        List<SettingEntry> entries = toEntries(legacy, FIELD_ALL);
+        entries.add(new SettingEntry(KEY_PREFS_MIGRATED, Boolean.TRUE.toString()));
+        // Older versions kept the password in plaintext; it moves over as is and
+        // upgradePlaintextPassword replaces it with the hash once the settings are loaded
+        String plaintext = prefs.getString(KEY_PASSWORD, null);
+        if (plaintext != null) {
+            entries.add(new SettingEntry(KEY_PASSWORD, plaintext));
+        }
+        settingsDao.putAll(entries);
+
+        prefs.edit().clear().apply();
+        return entries;
+    }
+
+    // Settings written before the rules engine have no rules row. Their auto_record value
+    // was never honoured and every call was recorded, so carry that behaviour over
+    private List<SettingEntry> upgradeAutoRecord(List<SettingEntry> entries) {
+        for (SettingEntry entry : entries) {
+            if (KEY_AUTO_RECORD_RULES.equals(entry.getKey())) {
+                return entries;
+            }
+        }
+
+        List<SettingEntry> added = new ArrayList<>();
+        added.add(new SettingEntry(KEY_AUTO_RECORD, Boolean.TRUE.toString()));
+        added.add(new SettingEntry(KEY_AUTO_RECORD_RULES, ""));
+        List<SettingEntry> upgraded = new ArrayList<>();
+        for (SettingEntry entry : entries) {
+            if (!KEY_AUTO_RECORD.equals(entry.getKey())) {
+                upgraded.add(entry);
+            }
+        }
+        upgraded.addAll(added);
+        settingsDao.putAll(added);
+        return upgraded;
+    }
+
+    // Replaces a plaintext password left by older versions with its hash. Runs on the
+    // disk executor, so edits applied meanwhile are written after it
+    private void upgradePlaintextPassword(String plaintext) {
+        try {
+            String hash = PasswordHasher.hash(plaintext, PasswordHasher.calibrate(PasswordHasher.TARGET_MILLIS));
+            Settings oldSettings;
+            Settings newSettings = null;
+            synchronized (this) {
+                oldSettings = settings;
+                // Cleared when a new password was set while hashing
+                if (legacyPassword != null) {
+                    newSettings = new Editor().setPasswordHash(hash).applyTo(oldSettings);
+                    settings = newSettings;
+                    legacyPassword = null;
+                }
+            }
+            if (newSettings != null) {
+                settingsDao.replaceKey(KEY_PASSWORD, new SettingEntry(KEY_PASSWORD_HASH, hash));
+                notifyListeners(oldSettings, newSettings);
+            } else {
+                settingsDao.delete(KEY_PASSWORD);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error upgrading stored password", e);
+        }
+    }
+
+    private static String findValue(List<SettingEntry> entries, String key) {
+        for (SettingEntry entry : entries) {
+            if (key.equals(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private Settings fromEntries(List<SettingEntry> entries) {
+        Map<String, String> values = new HashMap<>();
+        for (SettingEntry entry : entries) {
+            values.put(entry.getKey(), entry.getValue());
+        }
+        return new Settings(
+                readBoolean(values, KEY_AUTO_RECORD, true),
+                readInt(values, KEY_RECORDING_QUALITY, QUALITY_MEDIUM),
+                values.containsKey(KEY_STORAGE_PATH) ? values.get(KEY_STORAGE_PATH) : defaultStoragePath,
+                readBoolean(values, KEY_PASSWORD_PROTECTION, false),
+                values.get(KEY_PASSWORD_HASH),
+                readBoolean(values, KEY_NOTIFICATION_SOUND, true),
+                readBoolean(values, KEY_VIBRATION, true),
+                readBoolean(values, KEY_SHOW_NOTIFICATION, true),
+                readBoolean(values, KEY_ENCRYPT_RECORDINGS, false),
+                values.containsKey(KEY_AUTO_RECORD_RULES) ? values.get(KEY_AUTO_RECORD_RULES) : "");
+    }
+
+    private static boolean readBoolean(Map<String, String> values, String key, boolean defaultValue) {
+        String value = values.get(key);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+
+    private static int readInt(Map<String, String> values, String key, int defaultValue) {
+        String value = values.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static List<SettingEntry> toEntries(Settings settings, int fields) {
+        List<SettingEntry> entries = new ArrayList<>();
+        if ((fields & FIELD_AUTO_RECORD) != 0) {
+            entries.add(new SettingEntry(KEY_AUTO_RECORD, Boolean.toString(settings.autoRecord)));
+        }
+        if ((fields & FIELD_RECORDING_QUALITY) != 0) {
+            entries.add(new SettingEntry(KEY_RECORDING_QUALITY, Integer.toString(settings.recordingQuality)));
+        }
+        if ((fields & FIELD_STORAGE_PATH) != 0) {
+            entries.add(new SettingEntry(KEY_STORAGE_PATH, settings.storagePath));
+        }
+        if ((fields & FIELD_PASSWORD_PROTECTION) != 0) {
+            entries.add(new SettingEntry(KEY_PASSWORD_PROTECTION, Boolean.toString(settings.passwordProtection)));
+        }
+        if ((fields & FIELD_PASSWORD_HASH) != 0) {
+            entries.add(new SettingEntry(KEY_PASSWORD_HASH, settings.passwordHash));
+        }
+        if ((fields & FIELD_NOTIFICATION_SOUND) != 0) {
+            entries.add(new SettingEntry(KEY_NOTIFICATION_SOUND, Boolean.toString(settings.notificationSound)));
+        }
+        if ((fields & FIELD_VIBRATION) != 0) {
+            entries.add(new SettingEntry(KEY_VIBRATION, Boolean.toString(settings.vibration)));
+        }
+        if ((fields & FIELD_SHOW_NOTIFICATION) != 0) {
+            entries.add(new SettingEntry(KEY_SHOW_NOTIFICATION, Boolean.toString(settings.showNotification)));
+        }
+        if ((fields & FIELD_ENCRYPT_RECORDINGS) != 0) {
+            entries.add(new SettingEntry(KEY_ENCRYPT_RECORDINGS, Boolean.toString(settings.encryptRecordings)));
+        }
+        if ((fields & FIELD_AUTO_RECORD_RULES) != 0) {
+            entries.add(new SettingEntry(KEY_AUTO_RECORD_RULES, settings.autoRecordRules));
+        }
+        return entries;
+    }
+
+    private void notifyListeners(Settings oldSettings, Settings newSettings) {
+        if (oldSettings.equals(newSettings)) {
+            return;
+        }
+        for (OnSettingsChangedListener listener : listeners) {
+            listener.onSettingsChanged(oldSettings, newSettings);
+        }
+    }
+
+    public interface OnSettingsChangedListener {
+        void onSettingsChanged(Settings oldSettings, Settings newSettings);
+    }
+
+    /**
+     * Collects setting changes and stores them together.
+     * The new snapshot is visible to readers as soon as apply() returns;
+     * the database write happens in the background.
+     */
+    public class Editor {
+        private boolean autoRecord;
+        private int recordingQuality;
+        private String storagePath;
+        private boolean passwordProtection;
+        private String passwordHash;
+        private boolean notificationSound;
+        private boolean vibration;
+        private boolean showNotification;
+        private boolean encryptRecordings;
+        private String autoRecordRules;
+        private int changedFields;
+
+        private Editor() {
+        }
+
+        public Editor setAutoRecordEnabled(boolean enabled) {
+            autoRecord = enabled;
+            changedFields |= FIELD_AUTO_RECORD;
+            return this;
+        }
+
+        public Editor setRecordingQuality(int quality) {
+            recordingQuality = quality;
+            changedFields |= FIELD_RECORDING_QUALITY;
+            return this;
+        }
+
+        public Editor setStoragePath(String path) {
+            storagePath = path;
+            changedFields |= FIELD_STORAGE_PATH;
+            return this;
+        }
+
+        public Editor setPasswordProtectionEnabled(boolean enabled) {
+            passwordProtection = enabled;
+            changedFields |= FIELD_PASSWORD_PROTECTION;
+            return this;
+        }
+
+        // Callers set passwords through SettingsManager.setPassword, which hashes them
+        private Editor setPasswordHash(String passwordHash) {
+            this.passwordHash = passwordHash;
+            changedFields |= FIELD_PASSWORD_HASH;
+            return this;
+        }
+
+        public Editor setNotificationSoundEnabled(boolean enabled) {
+            notificationSound = enabled;
+            changedFields |= FIELD_NOTIFICATION_SOUND;
+            return this;
+        }
+
+        public Editor setVibrationEnabled(boolean enabled) {
+            vibration = enabled;
+            changedFields |= FIELD_VIBRATION;
+            return this;
+        }
+
+        public Editor setShowNotificationEnabled(boolean enabled) {
+            showNotification = enabled;
+            changedFields |= FIELD_SHOW_NOTIFICATION;
+            return this;
+        }
+
+        public Editor setEncryptRecordingsEnabled(boolean enabled) {
+            encryptRecordings = enabled;
+            changedFields |= FIELD_ENCRYPT_RECORDINGS;
+            return this;
+        }
+
+        public Editor setAutoRecordRules(String rules) {
+            autoRecordRules = rules != null ? rules : "";
+            changedFields |= FIELD_AUTO_RECORD_RULES;
+            return this;
+        }
+
+        public void apply() {
+            if (changedFields == 0) {
+                return;
+            }
+
+            Settings oldSettings;
+            final Settings newSettings;
+            synchronized (SettingsManager.this) {
+                oldSettings = settings;
+                newSettings = applyTo(oldSettings);
+                settings = newSettings;
+                if ((changedFields & FIELD_PASSWORD_HASH) != 0) {
+                    legacyPassword = null;
+                }
+                if (pendingEdits != null) {
+                    pendingEdits.add(this);
+                }
+            }
+            notifyListeners(oldSettings, newSettings);
+
+            final List<SettingEntry> entries = toEntries(newSettings, changedFields);
+            diskExecutor.execute(() -> {
+                try {
+                    settingsDao.putAll(entries);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error saving settings", e);
+                }
+            });
+        }
+
+        private Settings applyTo(Settings base) {
+            int fields = changedFields;
+            return new Settings(
+                    (fields & FIELD_AUTO_RECORD) != 0 ? autoRecord : base.autoRecord,
+                    (fields & FIELD_RECORDING_QUALITY) != 0 ? recordingQuality : base.recordingQuality,
+                    (fields & FIELD_STORAGE_PATH) != 0 ? storagePath : base.storagePath,
+                    (fields & FIELD_PASSWORD_PROTECTION) != 0 ? passwordProtection : base.passwordProtection,
+                    (fields & FIELD_PASSWORD_HASH) != 0 ? passwordHash : base.passwordHash,
+                    (fields & FIELD_NOTIFICATION_SOUND) != 0 ? notificationSound : base.notificationSound,
+                    (fields & FIELD_VIBRATION) != 0 ? vibration : base.vibration,
+                    (fields & FIELD_SHOW_NOTIFICATION) != 0 ? showNotification : base.showNotification,
+                    (fields & FIELD_ENCRYPT_RECORDINGS) != 0 ? encryptRecordings : base.encryptRecordings,
+                    (fields & FIELD_AUTO_RECORD_RULES) != 0 ? autoRecordRules : base.autoRecordRules);
+        }
+    }
+
+    /**
+     * Immutable snapshot of all settings
+     */
+    public static final class Settings {
+        private final boolean autoRecord;
+        private final int recordingQuality;
+        private final String storagePath;
+        private final boolean passwordProtection;
+        private final String passwordHash;
+        private final boolean notificationSound;
+        private final boolean vibration;
+        private final boolean showNotification;
+        private final boolean encryptRecordings;
+        private final String autoRecordRules;
+
+        Settings(boolean autoRecord, int recordingQuality, String storagePath,
+                 boolean passwordProtection, String passwordHash, boolean notificationSound,
+                 boolean vibration, boolean showNotification, boolean encryptRecordings,
+                 String autoRecordRules) {
+            this.autoRecord = autoRecord;
+            this.recordingQuality = recordingQuality;
+            this.storagePath = storagePath;
+            this.passwordProtection = passwordProtection;
+            this.passwordHash = passwordHash;
+            this.notificationSound = notificationSound;
+            this.vibration = vibration;
+            this.showNotification = showNotification;
+            this.encryptRecordings = encryptRecordings;
+            this.autoRecordRules = autoRecordRules;
+        }
+
+        static Settings defaults(String storagePath) {
+            return new Settings(true, QUALITY_MEDIUM, storagePath, false, null, true, true, true, false, "");
+        }
+
+        public boolean isAutoRecordEnabled() {
+            return autoRecord;
+        }
+
+        public int getRecordingQuality() {
+            return recordingQuality;
+        }
+
+        public String getStoragePath() {
+            return storagePath;
+        }
+
+        public boolean isPasswordProtectionEnabled() {
+            return passwordProtection;
+        }
+
+        public String getPasswordHash() {
+            return passwordHash;
+        }
+
+        public boolean isNotificationSoundEnabled() {
+            return notificationSound;
+        }
+
+        public boolean isVibrationEnabled() {
+            return vibration;
+        }
+
+        public boolean isShowNotificationEnabled() {
+            return showNotification;
+        }
+
+        public boolean isEncryptRecordingsEnabled() {
+            return encryptRecordings;
+        }
+
+        public String getAutoRecordRules() {
+            return autoRecordRules;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Settings)) return false;
+            Settings other = (Settings) o;
+            return autoRecord == other.autoRecord &&
+                   recordingQuality == other.recordingQuality &&
+                   passwordProtection == other.passwordProtection &&
+                   notificationSound == other.notificationSound &&
+                   vibration == other.vibration &&
+                   showNotification == other.showNotification &&
+                   encryptRecordings == other.encryptRecordings &&
+                   equalsNullable(storagePath, other.storagePath) &&
+                   equalsNullable(passwordHash, other.passwordHash) &&
+                   equalsNullable(autoRecordRules, other.autoRecordRules);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = autoRecord ? 1 : 0;
+            result = 31 * result + recordingQuality;
+            result = 31 * result + (storagePath != null ? storagePath.hashCode() : 0);
+            result = 31 * result + (passwordProtection ? 1 : 0);
+            result = 31 * result + (passwordHash != null ? passwordHash.hashCode() : 0);
+            result = 31 * result + (notificationSound ? 1 : 0);
+            result = 31 * result + (vibration ? 1 : 0);
+            result = 31 * result + (showNotification ? 1 : 0);
+            result = 31 * result + (encryptRecordings ? 1 : 0);
+            result = 31 * result + (autoRecordRules != null ? autoRecordRules.hashCode() : 0);
+            return result;
+        }
+
+        private static boolean equalsNullable(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
 }
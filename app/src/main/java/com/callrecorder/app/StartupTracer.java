@@ -0,0 +1,54 @@
+package com.callrecorder.app.utils;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+/**
+ * Records startup milestones as systrace sections and logcat timings.
+ * Times are measured from process start, so the "first recordings frame"
+ * line is the cold-start number to compare between builds.
+ */
+public final class StartupTracer {
+    private static final String TAG = "StartupTracer";
+
+    private static final long processStart = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+            ? Process.getStartElapsedRealtime()
+            : SystemClock.elapsedRealtime();
+
+    private static volatile boolean firstFrameReported;
+
+    private StartupTracer() {
+    }
+
+    public static void beginSection(String name) {
+        Trace.beginSection(name);
+    }
+
+    public static void endSection() {
+        Trace.endSection();
+    }
+
+    /**
+     * Log a named milestone with the time since process start
+     * @param milestone Name of the milestone
+     */
+    public static void mark(String milestone) {
+        Log.i(TAG, milestone + ": " + (SystemClock.elapsedRealtime() - processStart) + "ms");
+    }
+
+    /**
+     * Mark the first frame of the recordings list. Only the first call per process counts.
+     * @return true if this call was the first one
+     */
+    public static boolean markFirstFrame() {
+        if (firstFrameReported) {
+            return false;
+        }
+        firstFrameReported = true;
+        mark("first recordings frame");
+        return true;
+    }
+}
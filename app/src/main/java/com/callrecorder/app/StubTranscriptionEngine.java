@@ -0,0 +1,42 @@
+package com.callrecorder.app.transcription;
+
+import android.os.CancellationSignal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Locale;
+
+/**
+ * Stand-in engine for devices without an offline recogniser and for exercising
+ * the queue. It takes time in proportion to the file size, checking for
+ * cancellation as it goes, and returns a fixed description of the file.
+ */
+public class StubTranscriptionEngine implements TranscriptionEngine {
+    private static final long MILLIS_PER_MEGABYTE = 200;
+    private static final long STEP_MILLIS = 50;
+
+    @Override
+    public String getName() {
+        return "stub";
+    }
+
+    @Override
+    public String transcribe(File file, CancellationSignal signal) throws IOException {
+        if (!file.isFile()) {
+            throw new IOException("Missing recording file " + file);
+        }
+        long remaining = Math.max(STEP_MILLIS, file.length() * MILLIS_PER_MEGABYTE / (1024 * 1024));
+        try {
+            while (remaining > 0) {
+                signal.throwIfCanceled();
+                Thread.sleep(Math.min(STEP_MILLIS, remaining));
+                remaining -= STEP_MILLIS;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Transcription interrupted");
+        }
+        return String.format(Locale.US, "stub transcript %s %d bytes", file.getName(), file.length());
+    }
+}
@@ -0,0 +1,31 @@
+package com.callrecorder.app.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * How far a sync stream has been applied locally. Stored in the same
+ * database as the rows it describes so both commit together.
+ */
+@Entity(tableName = "sync_cursors")
+public class SyncCursor {
+    @PrimaryKey
+    @NonNull
+    private String name;
+    private long value;
+
+    public SyncCursor(@NonNull String name, long value) {
+        this.name = name;
+        this.value = value;
+    }
+
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    public long getValue() {
+        return value;
+    }
+}
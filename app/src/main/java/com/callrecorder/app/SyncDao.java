@@ -0,0 +1,52 @@
+package com.callrecorder.app.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.callrecorder.app.models.Recording;
+import com.callrecorder.app.models.RecordingDetails;
+import com.callrecorder.app.models.SyncCursor;
+
+import java.util.List;
+
+@Dao
+public abstract class SyncDao {
+    // Keyset page over rows with unsent changes, in id order
+    @Query(RecordingDao.SELECT_DETAILS + "WHERE recordings.dirty = 1 AND recordings.id > :afterId " +
+            "ORDER BY recordings.id LIMIT :limit")
+    public abstract List<RecordingDetails> getDirtyAfter(long afterId, int limit);
+
+    @Query("SELECT id FROM recordings WHERE syncId = :syncId")
+    public abstract Long getIdBySyncId(String syncId);
+
+    @Insert
+    public abstract long insert(Recording recording);
+
+    /**
+     * Take the server's merged values for a pushed row and clear its dirty flag,
+     * unless the row was edited again after it was read for the push
+     * @return 1 if the row was updated, 0 if it changed in the meantime
+     */
+    @Query("UPDATE recordings SET isStarred = :starred, starredAt = :starredAt, notes = :notes, " +
+            "notesUpdatedAt = :notesUpdatedAt, dirty = 0 WHERE id = :id " +
+            "AND starredAt = :sentStarredAt AND notesUpdatedAt = :sentNotesUpdatedAt")
+    public abstract int markPushed(long id, long sentStarredAt, long sentNotesUpdatedAt,
+                                   boolean starred, long starredAt, String notes, long notesUpdatedAt);
+
+    // Remote values only replace local ones with an older clock (last writer wins)
+    @Query("UPDATE recordings SET isStarred = :starred, starredAt = :starredAt " +
+            "WHERE id = :id AND starredAt < :starredAt")
+    public abstract void applyRemoteStar(long id, boolean starred, long starredAt);
+
+    @Query("UPDATE recordings SET notes = :notes, notesUpdatedAt = :notesUpdatedAt " +
+            "WHERE id = :id AND notesUpdatedAt < :notesUpdatedAt")
+    public abstract void applyRemoteNotes(long id, String notes, long notesUpdatedAt);
+
+    @Query("SELECT value FROM sync_cursors WHERE name = :name")
+    public abstract Long getCursor(String name);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void putCursor(SyncCursor cursor);
+}
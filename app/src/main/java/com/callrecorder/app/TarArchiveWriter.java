@@ -0,0 +1,123 @@
+package com.callrecorder.app.backup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal ustar writer on top of a FileChannel. File contents are copied with
+ * FileChannel.transferTo, so entry data never passes through a Java buffer.
+ */
+class TarArchiveWriter {
+    static final int BLOCK_SIZE = 512;
+
+    private static final long MAX_OCTAL_SIZE = 077777777777L;
+
+    private final FileChannel out;
+    private final ByteBuffer header = ByteBuffer.allocate(BLOCK_SIZE);
+    private final ByteBuffer padding = ByteBuffer.allocate(BLOCK_SIZE);
+
+    TarArchiveWriter(FileChannel out) {
+        this.out = out;
+    }
+
+    /**
+     * Append a file entry
+     * @param name Entry name, ASCII and at most 100 bytes
+     * @param source Channel to copy from
+     * @param size Number of bytes to copy from the start of source
+     * @param modified Modification time in milliseconds
+     */
+    void writeEntry(String name, FileChannel source, long size, long modified) throws IOException {
+        writeHeader(name, size, modified);
+        long position = 0;
+        while (position < size) {
+            long transferred = source.transferTo(position, size - position, out);
+            if (transferred <= 0) {
+                throw new IOException("Source ended early for " + name);
+            }
+            position += transferred;
+        }
+        writePadding(size);
+    }
+
+    // Two empty blocks mark the end of the archive
+    void finish() throws IOException {
+        for (int i = 0; i < 2; i++) {
+            padding.clear();
+            writeFully(padding);
+        }
+    }
+
+    private void writeHeader(String name, long size, long modified) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+        if (nameBytes.length > 100) {
+            throw new IOException("Entry name too long: " + name);
+        }
+
+        byte[] block = header.array();
+        Arrays.fill(block, (byte) 0);
+        System.arraycopy(nameBytes, 0, block, 0, nameBytes.length);
+        writeOctal(block, 100, 8, 0644);
+        writeOctal(block, 108, 8, 0);
+        writeOctal(block, 116, 8, 0);
+        if (size <= MAX_OCTAL_SIZE) {
+            writeOctal(block, 124, 12, size);
+        } else {
+            // GNU base-256 size for entries of 8GB and more
+            block[124] = (byte) 0x80;
+            for (int i = 0; i < 8; i++) {
+                block[135 - i] = (byte) (size >>> (8 * i));
+            }
+        }
+        writeOctal(block, 136, 12, modified / 1000);
+        block[156] = '0';
+        byte[] magic = "ustar\0".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(magic, 0, block, 257, magic.length);
+        block[263] = '0';
+        block[264] = '0';
+
+        // Checksum is computed with its own field set to spaces
+        Arrays.fill(block, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : block) {
+            checksum += b & 0xff;
+        }
+        writeOctal(block, 148, 7, checksum);
+        block[155] = ' ';
+
+        header.clear();
+        writeFully(header);
+    }
+
+    private void writePadding(long size) throws IOException {
+        int remainder = (int) (size % BLOCK_SIZE);
+        if (remainder != 0) {
+            padding.clear();
+            padding.limit(BLOCK_SIZE - remainder);
+            writeFully(padding);
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    // Zero-padded octal followed by a NUL terminator
+    private static void writeOctal(byte[] block, int offset, int length, long value) {
+        String octal = Long.toOctalString(value);
+        int digits = length - 1;
+        int start = offset + digits - octal.length();
+        for (int i = offset; i < start; i++) {
+            block[i] = '0';
+        }
+        for (int i = 0; i < octal.length(); i++) {
+            block[start + i] = (byte) octal.charAt(i);
+        }
+        block[offset + digits] = 0;
+    }
+}
@@ -0,0 +1,109 @@
+package com.callrecorder.app.adapters;
+
+import com.callrecorder.app.models.DailyStats;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Day boundaries of a recordings list sorted newest first, built from per-day totals
+ * rather than by walking the rows. Section i covers list positions
+ * starts[i] to starts[i + 1] - 1, so every lookup is a binary search over the days.
+ */
+public final class TimelineSections {
+    private final String[] days; // yyyy-MM-dd, newest first
+    private final int[] starts;  // prefix sums of the day counts, one extra for the end
+    private final long[] totalDurations;
+
+    private TimelineSections(String[] days, int[] starts, long[] totalDurations) {
+        this.days = days;
+        this.starts = starts;
+        this.totalDurations = totalDurations;
+    }
+
+    /**
+     * @param dayTotals Totals per day, newest day first
+     * @param itemCount Number of rows in the list the totals describe
+     * @return The sections, or null when the totals do not add up to the list, as happens
+     * briefly while the list and the totals reload separately after a change
+     */
+    public static TimelineSections build(List<DailyStats> dayTotals, int itemCount) {
+        if (dayTotals == null) {
+            return null;
+        }
+        int size = dayTotals.size();
+        String[] days = new String[size];
+        int[] starts = new int[size + 1];
+        long[] totalDurations = new long[size];
+        for (int i = 0; i < size; i++) {
+            DailyStats day = dayTotals.get(i);
+            days[i] = day.getDay();
+            starts[i + 1] = starts[i] + (int) day.getCallCount();
+            totalDurations[i] = day.getTotalDuration();
+        }
+        if (starts[size] != itemCount) {
+            return null;
+        }
+        return new TimelineSections(days, starts, totalDurations);
+    }
+
+    public int getSectionCount() {
+        return days.length;
+    }
+
+    /**
+     * @param position List position
+     * @return Index of the section containing it
+     */
+    public int sectionOf(int position) {
+        int index = Arrays.binarySearch(starts, 0, days.length, position);
+        if (index >= 0) {
+            // Empty days never occur, so a start is owned by exactly one section
+            return index;
+        }
+        return -index - 2;
+    }
+
+    public boolean isSectionStart(int position) {
+        return Arrays.binarySearch(starts, 0, days.length, position) >= 0;
+    }
+
+    public int getSectionStart(int section) {
+        return starts[section];
+    }
+
+    public String getDay(int section) {
+        return days[section];
+    }
+
+    public int getCallCount(int section) {
+        return starts[section + 1] - starts[section];
+    }
+
+    public long getTotalDuration(int section) {
+        return totalDurations[section];
+    }
+
+    /**
+     * Position of the newest call on or before a day, for jumping to a date
+     * @param day yyyy-MM-dd in local time
+     * @return List position, or the last position if every call is newer than the day
+     */
+    public int positionOfDay(String day) {
+        // Days are newest first, so search for the first day that is not after the target
+        int low = 0;
+        int high = days.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (days[mid].compareTo(day) > 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low == days.length) {
+            return Math.max(0, starts[days.length] - 1);
+        }
+        return starts[low];
+    }
+}
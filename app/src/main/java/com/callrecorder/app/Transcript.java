@@ -0,0 +1,45 @@
+package com.callrecorder.app.models;
+
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.PrimaryKey;
+
+/**
+ * Speech-to-text output for a recording. The recording id is also the rowid,
+ * which is how transcripts_fts points back here.
+ */
+@Entity(tableName = "transcripts",
+        foreignKeys = @ForeignKey(entity = Recording.class,
+                parentColumns = "id",
+                childColumns = "recordingId",
+                onDelete = ForeignKey.CASCADE))
+public class Transcript {
+    @PrimaryKey
+    private long recordingId;
+    private String text;
+    private String engine; // name of the engine that produced the text
+    private long createdAt;
+
+    public Transcript(long recordingId, String text, String engine, long createdAt) {
+        this.recordingId = recordingId;
+        this.text = text;
+        this.engine = engine;
+        this.createdAt = createdAt;
+    }
+
+    public long getRecordingId() {
+        return recordingId;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,25 @@
+package com.callrecorder.app.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.callrecorder.app.models.RecordingFile;
+import com.callrecorder.app.models.Transcript;
+
+import java.util.List;
+
+@Dao
+public interface TranscriptDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(Transcript transcript);
+
+    @Query("SELECT * FROM transcripts WHERE recordingId = :recordingId")
+    Transcript getTranscript(long recordingId);
+
+    // Newest first, so a backfill reaches recent calls before old ones
+    @Query("SELECT id, filePath FROM recordings WHERE filePath IS NOT NULL AND id < :beforeId " +
+            "AND id NOT IN (SELECT recordingId FROM transcripts) ORDER BY id DESC LIMIT :limit")
+    List<RecordingFile> getUntranscribedBefore(long beforeId, int limit);
+}
@@ -0,0 +1,23 @@
+package com.callrecorder.app.models;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+
+/**
+ * Full-text index over transcripts. Room keeps it in step with the
+ * transcripts table through triggers, so it stores no text of its own.
+ */
+@Fts4(contentEntity = Transcript.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "transcripts_fts")
+public class TranscriptFts {
+    private String text;
+
+    public TranscriptFts(String text) {
+        this.text = text;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
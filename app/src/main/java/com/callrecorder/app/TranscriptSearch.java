@@ -0,0 +1,34 @@
+package com.callrecorder.app.transcription;
+
+/**
+ * Turns what the user typed into an FTS MATCH expression
+ */
+public final class TranscriptSearch {
+
+    /**
+     * Each word becomes a quoted prefix term, so quotes, dashes and words like
+     * OR in the input are searched for rather than read as FTS operators.
+     * @param query Search text as typed
+     * @return MATCH expression, or null if the text has no words
+     */
+    public static String toMatchQuery(String query) {
+        if (query == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        for (String word : query.trim().split("\\s+")) {
+            String term = word.replace("\"", "");
+            if (term.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append('"').append(term).append("*\"");
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
+    private TranscriptSearch() {
+    }
+}
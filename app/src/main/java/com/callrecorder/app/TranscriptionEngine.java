@@ -0,0 +1,26 @@
+package com.callrecorder.app.transcription;
+
+import android.os.CancellationSignal;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Speech-to-text backend used by TranscriptionQueue. Implementations run on
+ * a queue worker thread and may block for as long as recognition takes.
+ */
+public interface TranscriptionEngine {
+
+    /**
+     * @return Short name stored with each transcript
+     */
+    String getName();
+
+    /**
+     * @param file Recording file, possibly in the encrypted container format
+     * @param signal Cancelled when the job is withdrawn; long runs should check it
+     *               and throw OperationCanceledException
+     * @return The recognised text, or an empty string if nothing was said
+     */
+    String transcribe(File file, CancellationSignal signal) throws IOException;
+}
@@ -0,0 +1,180 @@
+package com.callrecorder.app.transcription;
+
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.util.Log;
+
+import com.callrecorder.app.database.TranscriptDao;
+import com.callrecorder.app.models.RecordingFile;
+import com.callrecorder.app.models.Transcript;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background transcription with at most a fixed number of jobs running.
+ * Waiting jobs run highest priority first, then in the order they were added.
+ * A job can be cancelled while waiting or while running.
+ */
+public class TranscriptionQueue {
+    private static final String TAG = "TranscriptionQueue";
+
+    // Someone is looking at the recording
+    public static final int PRIORITY_USER = 2;
+    // Just recorded
+    public static final int PRIORITY_NEW = 1;
+    // Older recordings without a transcript
+    public static final int PRIORITY_BACKFILL = 0;
+
+    private static final int BACKFILL_BATCH_SIZE = 50;
+
+    private final TranscriptDao transcriptDao;
+    private final TranscriptionEngine engine;
+    private final ThreadPoolExecutor executor;
+    // Loads the next backfill batch when a cancel drains the current one; cancel()
+    // may be called on the main thread, and the work queue only takes jobs
+    private final Executor backfillLoader = Executors.newSingleThreadExecutor();
+    // Waiting and running jobs by recording id
+    private final Map<Long, Job> jobs = new HashMap<>();
+    private long nextSequence;
+    private long backfillBeforeId = Long.MAX_VALUE;
+    private int backfillPending;
+    private boolean backfilling;
+
+    private class Job implements Runnable, Comparable<Job> {
+        final long recordingId;
+        final String filePath;
+        final int priority;
+        final long sequence;
+        final CancellationSignal signal = new CancellationSignal();
+
+        Job(long recordingId, String filePath, int priority, long sequence) {
+            this.recordingId = recordingId;
+            this.filePath = filePath;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            if (priority != other.priority) {
+                return Integer.compare(other.priority, priority);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!signal.isCanceled()) {
+                    String text = engine.transcribe(new File(filePath), signal);
+                    if (!signal.isCanceled()) {
+                        transcriptDao.insert(new Transcript(recordingId, text, engine.getName(),
+                                System.currentTimeMillis()));
+                    }
+                }
+            } catch (OperationCanceledException e) {
+                Log.d(TAG, "Transcription cancelled for recording " + recordingId);
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Error transcribing recording " + recordingId, e);
+            } finally {
+                if (finished(this)) {
+                    startBackfill();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param maxConcurrentJobs How many recordings may be transcribed at once
+     */
+    public TranscriptionQueue(TranscriptDao transcriptDao, TranscriptionEngine engine, int maxConcurrentJobs) {
+        this.transcriptDao = transcriptDao;
+        this.engine = engine;
+        // Jobs are Comparable, so the work queue hands out the highest priority first
+        executor = new ThreadPoolExecutor(maxConcurrentJobs, maxConcurrentJobs,
+                30, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queue a recording, or raise the priority of one already waiting
+     */
+    public synchronized void enqueue(long recordingId, String filePath, int priority) {
+        Job existing = jobs.get(recordingId);
+        if (existing != null) {
+            if (existing.priority >= priority || !executor.getQueue().remove(existing)) {
+                // Already high enough, or already running
+                return;
+            }
+            if (existing.priority == PRIORITY_BACKFILL) {
+                backfillPending--;
+            }
+        }
+        Job job = new Job(recordingId, filePath, priority, nextSequence++);
+        jobs.put(recordingId, job);
+        executor.execute(job);
+    }
+
+    /**
+     * Withdraw a recording's job, stopping it if it is already running
+     */
+    public synchronized void cancel(long recordingId) {
+        Job job = jobs.get(recordingId);
+        if (job == null) {
+            return;
+        }
+        job.signal.cancel();
+        // Never started, so run() will not clean up after it. Cancelling the last
+        // waiting job of a backfill batch counts as finishing it
+        if (executor.getQueue().remove(job) && finished(job)) {
+            backfillLoader.execute(this::startBackfill);
+        }
+    }
+
+    /**
+     * Start transcribing recordings that have no transcript yet, newest first.
+     * Recordings are loaded a batch at a time as earlier ones finish, so a large
+     * archive never sits in memory at once. Call from a background thread.
+     */
+    public void startBackfill() {
+        long beforeId;
+        synchronized (this) {
+            if (backfillPending > 0) {
+                return;
+            }
+            beforeId = backfillBeforeId;
+        }
+
+        List<RecordingFile> batch = transcriptDao.getUntranscribedBefore(beforeId, BACKFILL_BATCH_SIZE);
+        synchronized (this) {
+            backfilling = !batch.isEmpty();
+            for (RecordingFile recording : batch) {
+                backfillBeforeId = Math.min(backfillBeforeId, recording.getId());
+                if (!jobs.containsKey(recording.getId())) {
+                    enqueue(recording.getId(), recording.getFilePath(), PRIORITY_BACKFILL);
+                    backfillPending++;
+                }
+            }
+        }
+    }
+
+    // Returns true when the current backfill batch has drained and the next should load
+    private synchronized boolean finished(Job job) {
+        if (jobs.get(job.recordingId) == job) {
+            jobs.remove(job.recordingId);
+        }
+        if (job.priority == PRIORITY_BACKFILL) {
+            backfillPending--;
+        }
+        return backfilling && backfillPending == 0;
+    }
+}
@@ -0,0 +1,32 @@
+package com.callrecorder.app.utils;
+
+import android.os.SystemClock;
+
+/**
+ * Remembers a successful password check for a limited time, so moving between
+ * protected screens does not run the KDF again.
+ */
+public final class UnlockSession {
+    public static final long DEFAULT_DURATION_MILLIS = 5 * 60 * 1000;
+
+    private static volatile long expiresAt;
+
+    private UnlockSession() {
+    }
+
+    public static void start(long durationMillis) {
+        expiresAt = SystemClock.elapsedRealtime() + durationMillis;
+    }
+
+    public static boolean isActive() {
+        return SystemClock.elapsedRealtime() < expiresAt;
+    }
+
+    /**
+     * End the session and forget cached recording keys
+     */
+    public static void end() {
+        expiresAt = 0;
+        RecordingKeys.getInstance().clearSession();
+    }
+}
@@ -0,0 +1,49 @@
+package com.callrecorder.app.models;
+
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+
+/**
+ * One chunk of an upload session and whether the server has acknowledged it
+ */
+@Entity(tableName = "upload_chunks",
+        primaryKeys = {"sessionId", "chunkIndex"},
+        foreignKeys = @ForeignKey(entity = UploadSession.class,
+                parentColumns = "id",
+                childColumns = "sessionId",
+                onDelete = ForeignKey.CASCADE))
+public class UploadChunk {
+    private long sessionId;
+    private int chunkIndex;
+    private long chunkOffset;
+    private int length;
+    private boolean done;
+
+    public UploadChunk(long sessionId, int chunkIndex, long chunkOffset, int length, boolean done) {
+        this.sessionId = sessionId;
+        this.chunkIndex = chunkIndex;
+        this.chunkOffset = chunkOffset;
+        this.length = length;
+        this.done = done;
+    }
+
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    public int getChunkIndex() {
+        return chunkIndex;
+    }
+
+    public long getChunkOffset() {
+        return chunkOffset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+}
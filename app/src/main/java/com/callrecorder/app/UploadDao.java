@@ -0,0 +1,68 @@
+package com.callrecorder.app.database;
+
+import androidx.room.Dao;
+import androidx.room.Delete;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.callrecorder.app.models.RecordingFile;
+import com.callrecorder.app.models.UploadChunk;
+import com.callrecorder.app.models.UploadSession;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Dao
+public abstract class UploadDao {
+    // Keyset page over recordings whose file has not been fully uploaded
+    @Query("SELECT id, filePath FROM recordings WHERE filePath IS NOT NULL AND id > :afterId " +
+            "AND id NOT IN (SELECT recordingId FROM upload_sessions WHERE completed = 1) " +
+            "ORDER BY id LIMIT :limit")
+    public abstract List<RecordingFile> getRecordingsToUploadAfter(long afterId, int limit);
+
+    @Query("SELECT * FROM upload_sessions WHERE recordingId = :recordingId")
+    public abstract UploadSession getSessionForRecording(long recordingId);
+
+    @Insert
+    abstract long insertSession(UploadSession session);
+
+    @Insert
+    abstract void insertChunks(List<UploadChunk> chunks);
+
+    // Chunks go away with the session through the foreign key
+    @Delete
+    public abstract void deleteSession(UploadSession session);
+
+    @Query("SELECT * FROM upload_chunks WHERE sessionId = :sessionId AND done = 0 ORDER BY chunkIndex")
+    public abstract List<UploadChunk> getPendingChunks(long sessionId);
+
+    @Query("UPDATE upload_chunks SET done = 1 WHERE sessionId = :sessionId AND chunkIndex = :chunkIndex")
+    public abstract void markChunkDone(long sessionId, int chunkIndex);
+
+    @Query("UPDATE upload_chunks SET done = 1 WHERE sessionId = :sessionId AND chunkIndex IN (:chunkIndexes)")
+    public abstract void markChunksDone(long sessionId, List<Integer> chunkIndexes);
+
+    @Query("UPDATE upload_sessions SET completed = 1 WHERE id = :sessionId")
+    public abstract void markCompleted(long sessionId);
+
+    /**
+     * Store a new session together with its chunk list
+     * @return The session as stored, with its id set
+     */
+    @Transaction
+    public UploadSession createSession(UploadSession session) {
+        long sessionId = insertSession(session);
+        session.setId(sessionId);
+
+        int chunkCount = (int) ((session.getFileSize() + session.getChunkSize() - 1) / session.getChunkSize());
+        List<UploadChunk> chunks = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            long offset = (long) i * session.getChunkSize();
+            int length = (int) Math.min(session.getChunkSize(), session.getFileSize() - offset);
+            chunks.add(new UploadChunk(sessionId, i, offset, length, false));
+        }
+        insertChunks(chunks);
+        return session;
+    }
+}
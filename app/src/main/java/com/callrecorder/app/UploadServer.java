@@ -0,0 +1,52 @@
+package com.callrecorder.app.upload;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Server side of chunked uploads. Chunks may arrive in any order and more
+ * than once; the upload is assembled when finishUpload is called.
+ */
+public interface UploadServer {
+
+    /**
+     * Thrown when the server asks the client to slow down
+     */
+    class ThrottledException extends IOException {
+        public final long retryAfterMillis;
+
+        public ThrottledException(long retryAfterMillis) {
+            super("Throttled, retry after " + retryAfterMillis + " ms");
+            this.retryAfterMillis = retryAfterMillis;
+        }
+    }
+
+    /**
+     * Thrown when the server no longer knows an upload id, for example after it expired
+     */
+    class UploadNotFoundException extends IOException {
+        public UploadNotFoundException(String uploadId) {
+            super("Unknown upload " + uploadId);
+        }
+    }
+
+    /**
+     * @return Id for the new upload
+     */
+    String startUpload(String name, long size, int chunkSize) throws IOException;
+
+    /**
+     * @param data Chunk contents, from position to limit
+     * @param sha256 Hex SHA-256 of the data, checked by the server
+     */
+    void putChunk(String uploadId, int chunkIndex, ByteBuffer data, String sha256) throws IOException;
+
+    /**
+     * @return Indexes of the chunks the server already holds, including ones whose
+     * acknowledgement never reached the client
+     */
+    List<Integer> getReceivedChunks(String uploadId) throws IOException;
+
+    void finishUpload(String uploadId) throws IOException;
+}
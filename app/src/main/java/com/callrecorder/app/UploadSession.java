@@ -0,0 +1,76 @@
+package com.callrecorder.app.models;
+
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Upload of one recording file. Size and modification time pin the file
+ * version being sent; if either changes the session is started over.
+ */
+@Entity(tableName = "upload_sessions",
+        foreignKeys = @ForeignKey(entity = Recording.class,
+                parentColumns = "id",
+                childColumns = "recordingId",
+                onDelete = ForeignKey.CASCADE),
+        indices = @Index(value = "recordingId", unique = true))
+public class UploadSession {
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+    private long recordingId;
+    private String filePath;
+    private long fileSize;
+    private long lastModified;
+    private int chunkSize;
+    private String uploadId; // session id issued by the server
+    private boolean completed;
+
+    public UploadSession(long id, long recordingId, String filePath, long fileSize, long lastModified,
+                         int chunkSize, String uploadId, boolean completed) {
+        this.id = id;
+        this.recordingId = recordingId;
+        this.filePath = filePath;
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.chunkSize = chunkSize;
+        this.uploadId = uploadId;
+        this.completed = completed;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getRecordingId() {
+        return recordingId;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+}
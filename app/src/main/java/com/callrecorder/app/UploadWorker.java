@@ -0,0 +1,98 @@
+package com.callrecorder.app.upload;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.callrecorder.app.CallRecorderApp;
+import com.callrecorder.app.database.UploadDao;
+import com.callrecorder.app.models.RecordingFile;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads every recording that is not on the server yet. Runs only while
+ * charging on an unmetered network; WorkManager stops it when either goes
+ * away and runs it again later, resuming from the stored chunk progress.
+ */
+public class UploadWorker extends Worker {
+    private static final String TAG = "UploadWorker";
+    private static final String WORK_NAME = "recording_upload";
+    private static final int PAGE_SIZE = 50;
+
+    private final ChunkedUploader uploader;
+
+    public UploadWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+        UploadServer server = CallRecorderApp.getUploadServer();
+        uploader = server != null
+                ? new ChunkedUploader(CallRecorderApp.getDatabase().uploadDao(), server)
+                : null;
+    }
+
+    /**
+     * Queue an upload run. A run already queued or running picks up new recordings itself.
+     * Does nothing when no upload server is configured.
+     */
+    public static void schedule(Context context) {
+        if (CallRecorderApp.getUploadServer() == null) {
+            return;
+        }
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresCharging(true)
+                .setRequiredNetworkType(NetworkType.UNMETERED)
+                .build();
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(UploadWorker.class)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 1, TimeUnit.MINUTES)
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        if (uploader == null) {
+            // Queued before the server went away; nothing can be archived
+            return Result.success();
+        }
+        UploadDao uploadDao = CallRecorderApp.getDatabase().uploadDao();
+        long afterId = 0;
+        List<RecordingFile> page;
+        try {
+            do {
+                page = uploadDao.getRecordingsToUploadAfter(afterId, PAGE_SIZE);
+                for (RecordingFile recording : page) {
+                    if (isStopped()) {
+                        return Result.retry();
+                    }
+                    afterId = recording.getId();
+                    uploader.upload(recording);
+                }
+            } while (page.size() == PAGE_SIZE);
+        } catch (IOException e) {
+            Log.w(TAG, "Upload failed, will retry", e);
+            return Result.retry();
+        }
+        return Result.success();
+    }
+
+    @Override
+    public void onStopped() {
+        if (uploader != null) {
+            uploader.stop();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.callrecorder.app.database;
+
+import android.content.Context;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.room.Room;
+
+import com.callrecorder.app.models.Recording;
+import com.callrecorder.app.models.Transcript;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A synthetic archive in an in-memory AppDatabase for the Robolectric benchmark suites:
+ * recordings a few hours apart across a few hundred contacts, optionally each with a
+ * transcript. Queries and LiveData updates run on the calling thread (with
+ * InstantTaskExecutorRule), so a suite measures them there.
+ */
+public final class BenchmarkArchive {
+    private static final int CONTACT_COUNT = 500;
+    private static final long FIRST_DATE = 1_600_000_000_000L;
+    private static final long INTERVAL_MILLIS = 3 * 60 * 60 * 1000;
+    private static final int BATCH_SIZE = 5000;
+    private static final int TRANSCRIPT_WORDS = 30;
+    private static final String[] WORDS = {
+            "hello", "yes", "no", "okay", "thanks", "please", "later", "today", "call",
+            "back", "home", "work", "office", "meeting", "price", "order", "delivery",
+            "address", "number", "message", "family", "doctor", "school", "money", "car"
+    };
+
+    // In one transcript in a thousand, and one in ten
+    public static final String RARE_WORD = "invoice";
+    public static final String COMMON_WORD = "tomorrow";
+
+    public static AppDatabase create(Context context) {
+        return Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .setQueryExecutor(Runnable::run)
+                .build();
+    }
+
+    /**
+     * Add recordings with ids 1 to count, oldest first. One in twenty is starred.
+     */
+    public static void fill(AppDatabase database, int count, boolean withTranscripts) {
+        long[] contactIds = new long[CONTACT_COUNT];
+        database.runInTransaction(() -> {
+            for (int i = 0; i < CONTACT_COUNT; i++) {
+                String name = i % 2 == 0 ? "Contact " + i : null;
+                contactIds[i] = database.contactDao().getOrCreateContactId(
+                        String.format(Locale.US, "+9665%08d", i * 7919), name);
+            }
+        });
+
+        Random random = new Random(42);
+        List<Recording> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 1; i <= count; i++) {
+            batch.add(new Recording(0, contactIds[i % CONTACT_COUNT], 1 + i % 2,
+                    "/recordings/call_" + i + ".m4a", 5_000 + random.nextInt(600_000),
+                    FIRST_DATE + i * INTERVAL_MILLIS, i % 20 == 0, null, 1024 * 1024, "aac"));
+            if (batch.size() == BATCH_SIZE || i == count) {
+                database.recordingDao().insertAll(batch);
+                batch.clear();
+            }
+        }
+
+        if (withTranscripts) {
+            for (int first = 1; first <= count; first += BATCH_SIZE) {
+                int last = Math.min(count, first + BATCH_SIZE - 1);
+                int from = first;
+                database.runInTransaction(() -> {
+                    for (int id = from; id <= last; id++) {
+                        database.transcriptDao().insert(new Transcript(id, transcriptText(id, random),
+                                "benchmark", FIRST_DATE + id * INTERVAL_MILLIS));
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * The value a LiveData query delivers to its first observer, as when a screen opens
+     */
+    public static <T> T first(LiveData<T> liveData) {
+        List<T> values = new ArrayList<>(1);
+        Observer<T> observer = values::add;
+        liveData.observeForever(observer);
+        liveData.removeObserver(observer);
+        return values.get(0);
+    }
+
+    private static String transcriptText(int id, Random random) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < TRANSCRIPT_WORDS; i++) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        if (id % 10 == 0) {
+            text.append(COMMON_WORD).append(' ');
+        }
+        if (id % 1000 == 0) {
+            text.append(RARE_WORD).append(' ');
+        }
+        return text.toString().trim();
+    }
+
+    private BenchmarkArchive() {
+    }
+}
@@ -0,0 +1,168 @@
+package com.callrecorder.app.upload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.callrecorder.app.database.InMemoryUploadDao;
+import com.callrecorder.app.models.RecordingFile;
+import com.callrecorder.app.models.UploadSession;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Fault injection for ChunkedUploader against the in-process FakeUploadServer
+ */
+public class ChunkedUploaderTest {
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final long RECORDING_ID = 7;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private InMemoryUploadDao uploadDao;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        uploadDao = new InMemoryUploadDao();
+        file = writeFile("call.m4a", 5 * CHUNK_SIZE + 1234, 1);
+    }
+
+    @Test
+    public void uploadCompletesDespiteDropsLostAcksAndThrottling() throws IOException {
+        FakeUploadServer server = newServer(42)
+                .setFaults(0.2f, 0.2f)
+                .setThrottling(2, 5);
+
+        assertTrue(newUploader(server).upload(recording()));
+
+        UploadSession session = uploadDao.getSessionForRecording(RECORDING_ID);
+        assertTrue(session.isCompleted());
+        assertTrue(server.hasAllChunks(session.getUploadId()));
+        assertEquals(6, uploadDao.getDoneChunkCount(session.getId()));
+    }
+
+    @Test
+    public void lostAcknowledgementsAreReconciledWithoutResending() throws IOException {
+        // Every chunk is stored but no acknowledgement arrives, so the first run gives up
+        FakeUploadServer server = newServer(1).setFaults(0f, 1f);
+        try {
+            newUploader(server).upload(recording());
+            fail("Upload should fail while every acknowledgement is lost");
+        } catch (IOException expected) {
+            // The next run resumes
+        }
+        UploadSession session = uploadDao.getSessionForRecording(RECORDING_ID);
+        assertFalse(session.isCompleted());
+        assertEquals(0, uploadDao.getDoneChunkCount(session.getId()));
+        int stored = server.getReceivedChunks(session.getUploadId()).size();
+        assertTrue(stored > 0);
+
+        server.setFaults(0f, 0f);
+        int sentBefore = server.getChunksSent();
+        assertTrue(newUploader(server).upload(recording()));
+
+        // Only the chunks the server never stored go out again
+        assertEquals(sentBefore + 6 - stored, server.getChunksSent());
+        assertTrue(uploadDao.getSessionForRecording(RECORDING_ID).isCompleted());
+    }
+
+    @Test
+    public void expiredUploadStartsOver() throws IOException {
+        FakeUploadServer server = newServer(2).setFaults(0f, 1f);
+        try {
+            newUploader(server).upload(recording());
+            fail("Upload should fail while every acknowledgement is lost");
+        } catch (IOException expected) {
+            // The next run resumes
+        }
+        String firstUploadId = uploadDao.getSessionForRecording(RECORDING_ID).getUploadId();
+        server.expire(firstUploadId);
+
+        server.setFaults(0f, 0f);
+        assertTrue(newUploader(server).upload(recording()));
+
+        UploadSession session = uploadDao.getSessionForRecording(RECORDING_ID);
+        assertNotEquals(firstUploadId, session.getUploadId());
+        assertTrue(session.isCompleted());
+        assertTrue(server.hasAllChunks(session.getUploadId()));
+    }
+
+    @Test
+    public void changedFileStartsNewSession() throws IOException {
+        FakeUploadServer server = newServer(3);
+        assertTrue(newUploader(server).upload(recording()));
+        String firstUploadId = uploadDao.getSessionForRecording(RECORDING_ID).getUploadId();
+
+        file = writeFile("call.m4a", 2 * CHUNK_SIZE, 2);
+        assertTrue(file.setLastModified(file.lastModified() + 10000));
+        int sentBefore = server.getChunksSent();
+        assertTrue(newUploader(server).upload(recording()));
+
+        UploadSession session = uploadDao.getSessionForRecording(RECORDING_ID);
+        assertNotEquals(firstUploadId, session.getUploadId());
+        assertEquals(2 * CHUNK_SIZE, session.getFileSize());
+        assertEquals(sentBefore + 2, server.getChunksSent());
+    }
+
+    @Test
+    public void completedUploadIsNotSentAgain() throws IOException {
+        FakeUploadServer server = newServer(4);
+        assertTrue(newUploader(server).upload(recording()));
+        int sentBefore = server.getChunksSent();
+
+        assertTrue(newUploader(server).upload(recording()));
+
+        assertEquals(sentBefore, server.getChunksSent());
+    }
+
+    @Test
+    public void stoppedUploaderReportsNotDone() throws IOException {
+        FakeUploadServer server = newServer(5);
+        ChunkedUploader uploader = newUploader(server);
+        uploader.stop();
+
+        assertFalse(uploader.upload(recording()));
+        assertFalse(uploadDao.getSessionForRecording(RECORDING_ID).isCompleted());
+    }
+
+    // No latency, faults or throttling unless a test asks for them
+    private static FakeUploadServer newServer(long seed) {
+        return new FakeUploadServer(new Random(seed))
+                .setLatency(0)
+                .setFaults(0f, 0f)
+                .setThrottling(Integer.MAX_VALUE, 0);
+    }
+
+    private ChunkedUploader newUploader(FakeUploadServer server) {
+        return new ChunkedUploader(uploadDao, server, 1);
+    }
+
+    private RecordingFile recording() {
+        return new RecordingFile(RECORDING_ID, file.getPath());
+    }
+
+    private File writeFile(String name, int size, long seed) throws IOException {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        File target = new File(folder.getRoot(), name);
+        FileOutputStream out = new FileOutputStream(target);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        return target;
+    }
+}
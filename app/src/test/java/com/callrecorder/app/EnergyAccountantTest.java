@@ -0,0 +1,113 @@
+package com.callrecorder.app.energy;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Attribution with a hand-driven clock, including a call that begins while the
+ * previous one is still being saved
+ */
+public class EnergyAccountantTest {
+    private TestClock clock;
+    private EnergyAccountant accountant;
+
+    @Before
+    public void setUp() {
+        clock = new TestClock();
+        accountant = new EnergyAccountant(clock);
+        accountant.startListening();
+    }
+
+    @Test
+    public void timeBetweenCallsIsIdle() {
+        clock.advance(1_000, 10);
+        EnergyAccountant.Session call = accountant.beginCall();
+        clock.advance(5_000, 200);
+        accountant.endCall(call, 7);
+        clock.advance(2_000, 30);
+
+        List<PowerUsage> usages = accountant.snapshot();
+        assertEquals(2, usages.size());
+        assertUsage(usages.get(0), PowerUsage.KIND_IDLE, PowerUsage.NO_RECORDING, 3_000, 40);
+        assertUsage(usages.get(1), PowerUsage.KIND_CALL, 7, 5_000, 200);
+    }
+
+    // The next call starts before the save thread closes the first one
+    @Test
+    public void quickRedialKeepsEachRecordingOnItsOwnCall() {
+        EnergyAccountant.Session first = accountant.beginCall();
+        clock.advance(4_000, 100);
+        EnergyAccountant.Session second = accountant.beginCall();
+        clock.advance(1_000, 50);
+        accountant.endCall(first, 1);
+        clock.advance(3_000, 60);
+
+        List<PowerUsage> usages = accountant.snapshot();
+        assertEquals(3, usages.size());
+        assertUsage(usages.get(1), PowerUsage.KIND_CALL, 1, 4_000, 100);
+        assertUsage(usages.get(2), PowerUsage.KIND_CALL, PowerUsage.NO_RECORDING, 4_000, 110);
+
+        accountant.endCall(second, 2);
+        usages = accountant.snapshot();
+        assertEquals(3, usages.size());
+        assertUsage(usages.get(2), PowerUsage.KIND_CALL, 2, 4_000, 110);
+    }
+
+    @Test
+    public void callStillSavingIsReportedUntilEnded() {
+        EnergyAccountant.Session first = accountant.beginCall();
+        clock.advance(2_000, 20);
+        EnergyAccountant.Session second = accountant.beginCall();
+        clock.advance(1_000, 10);
+        accountant.endCall(second, 2);
+
+        List<PowerUsage> usages = accountant.snapshot();
+        assertEquals(3, usages.size());
+        // Finished calls come before ones still being saved
+        assertUsage(usages.get(1), PowerUsage.KIND_CALL, 2, 1_000, 10);
+        assertUsage(usages.get(2), PowerUsage.KIND_CALL, PowerUsage.NO_RECORDING, 2_000, 20);
+
+        accountant.endCall(first, 1);
+        accountant.endCall(first, 1);
+        usages = accountant.snapshot();
+        assertEquals(3, usages.size());
+        assertUsage(usages.get(2), PowerUsage.KIND_CALL, 1, 2_000, 20);
+    }
+
+    private static void assertUsage(PowerUsage usage, String kind, long recordingId, long wallMillis,
+                                    long cpuMillis) {
+        assertEquals(kind, usage.getKind());
+        assertEquals(recordingId, usage.getRecordingId());
+        assertEquals(wallMillis, usage.getWallMillis());
+        assertEquals(cpuMillis, usage.getCpuMillis());
+    }
+
+    private static final class TestClock implements EnergyAccountant.Clock {
+        long elapsed;
+        long cpu;
+
+        void advance(long elapsedMillis, long cpuMillis) {
+            elapsed += elapsedMillis;
+            cpu += cpuMillis;
+        }
+
+        @Override
+        public long elapsedMillis() {
+            return elapsed;
+        }
+
+        @Override
+        public long cpuMillis() {
+            return cpu;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return 1_600_000_000_000L + elapsed;
+        }
+    }
+}
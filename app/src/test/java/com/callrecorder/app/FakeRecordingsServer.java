@@ -0,0 +1,148 @@
+package com.callrecorder.app.sync;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * In-process stand-in for the sync server. Every call waits out a simulated
+ * network latency and fails at a configurable rate, half the time before the
+ * write is applied and half the time after, as when a response is lost.
+ */
+public class FakeRecordingsServer implements RecordingsRemoteDataSource {
+    private static final long SERVICE_LATENCY_MILLIS = 2000;
+    private static final float FAILURE_RATE = 0.1f;
+
+    // A lock is used to ensure that reads and writes are thread-safe
+    private final Object lock = new Object();
+    private final Map<String, RemoteRecording> recordsById = new HashMap<>();
+    private final TreeMap<Long, RemoteRecording> recordsByVersion = new TreeMap<>();
+    private final long latencyMillis;
+    private final float failureRate;
+    private final Random random;
+    private long version;
+    private int recordsReceived; // records in pushes that reached the server
+    private int recordsSent; // records returned by getChanges
+
+    public FakeRecordingsServer() {
+        this(SERVICE_LATENCY_MILLIS, FAILURE_RATE, new Random());
+    }
+
+    /**
+     * @param latencyMillis Delay added to every call
+     * @param failureRate Fraction of calls that fail, from 0 to 1
+     * @param random Source for failures; pass a seeded one for repeatable runs
+     */
+    public FakeRecordingsServer(long latencyMillis, float failureRate, Random random) {
+        this.latencyMillis = latencyMillis;
+        this.failureRate = failureRate;
+        this.random = random;
+    }
+
+    @Override
+    public Changes getChanges(long sinceVersion, int limit) throws IOException {
+        simulateNetwork();
+        synchronized (lock) {
+            List<RemoteRecording> records = new ArrayList<>();
+            long last = sinceVersion;
+            for (RemoteRecording record : recordsByVersion.tailMap(sinceVersion, false).values()) {
+                if (records.size() == limit) {
+                    recordsSent += records.size();
+                    return new Changes(records, last, true);
+                }
+                records.add(record);
+                last = record.getVersion();
+            }
+            recordsSent += records.size();
+            return new Changes(records, last, false);
+        }
+    }
+
+    @Override
+    public List<RemoteRecording> push(List<RemoteRecording> records) throws IOException {
+        simulateNetwork();
+        List<RemoteRecording> merged = new ArrayList<>(records.size());
+        synchronized (lock) {
+            recordsReceived += records.size();
+            for (RemoteRecording incoming : records) {
+                RemoteRecording stored = recordsById.get(incoming.getSyncId());
+                RemoteRecording result = RemoteRecording.merge(stored, incoming, version + 1);
+                if (stored != null && sameValues(stored, result)) {
+                    // Nothing new, so the record keeps its place in the change feed
+                    merged.add(stored);
+                    continue;
+                }
+                version++;
+                if (stored != null) {
+                    recordsByVersion.remove(stored.getVersion());
+                }
+                recordsById.put(result.getSyncId(), result);
+                recordsByVersion.put(result.getVersion(), result);
+                merged.add(result);
+            }
+        }
+        // The write went through but the client never hears about it
+        if (shouldFail()) {
+            throw new IOException("Simulated lost response");
+        }
+        return merged;
+    }
+
+    public RemoteRecording get(String syncId) {
+        synchronized (lock) {
+            return recordsById.get(syncId);
+        }
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return recordsById.size();
+        }
+    }
+
+    public int getRecordsReceived() {
+        synchronized (lock) {
+            return recordsReceived;
+        }
+    }
+
+    public int getRecordsSent() {
+        synchronized (lock) {
+            return recordsSent;
+        }
+    }
+
+    private void simulateNetwork() throws IOException {
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during simulated latency");
+        }
+        if (shouldFail()) {
+            throw new IOException("Simulated network failure");
+        }
+    }
+
+    // Pushes are checked before and after the write, so each check gets half the rate
+    private boolean shouldFail() {
+        synchronized (random) {
+            return random.nextFloat() < failureRate / 2;
+        }
+    }
+
+    private static boolean sameValues(RemoteRecording a, RemoteRecording b) {
+        return a.isStarred() == b.isStarred() && a.getStarredAt() == b.getStarredAt()
+                && a.getNotesUpdatedAt() == b.getNotesUpdatedAt()
+                && equals(a.getContactName(), b.getContactName());
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
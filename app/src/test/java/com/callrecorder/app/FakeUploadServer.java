@@ -0,0 +1,224 @@
+package com.callrecorder.app.upload;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stand-in for the upload server. It adds latency and a bandwidth
+ * limit, drops a share of requests (some after the chunk was stored, as when
+ * an acknowledgement is lost), and throttles clients that send too many
+ * requests at once. Chunks are checked and counted but not kept.
+ */
+public class FakeUploadServer implements UploadServer {
+    private static final long BYTES_PER_SECOND = 2 * 1024 * 1024;
+    private static final long RETRY_AFTER_MILLIS = 1000;
+
+    private static class Upload {
+        final int chunkCount;
+        final BitSet received;
+
+        Upload(long size, int chunkSize) {
+            this.chunkCount = (int) ((size + chunkSize - 1) / chunkSize);
+            this.received = new BitSet(chunkCount);
+        }
+    }
+
+    private final Map<String, Upload> uploads = new HashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger chunksSent = new AtomicInteger();
+    private final Random random;
+    private volatile long latencyMillis = 200;
+    private volatile boolean limitBandwidth = true;
+    private volatile float dropRate = 0.05f;
+    private volatile float lostAckRate = 0.05f;
+    private volatile int maxConcurrentRequests = 2;
+    private volatile long retryAfterMillis = RETRY_AFTER_MILLIS;
+
+    public FakeUploadServer() {
+        this(new Random());
+    }
+
+    /**
+     * @param random Source for drops; pass a seeded one for repeatable runs
+     */
+    public FakeUploadServer(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Latency per request; the bandwidth limit is only applied while it is non-zero
+     */
+    public FakeUploadServer setLatency(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        this.limitBandwidth = latencyMillis > 0;
+        return this;
+    }
+
+    /**
+     * @param dropRate Share of requests that fail before reaching the server
+     * @param lostAckRate Share of chunks stored but reported as failed
+     */
+    public FakeUploadServer setFaults(float dropRate, float lostAckRate) {
+        this.dropRate = dropRate;
+        this.lostAckRate = lostAckRate;
+        return this;
+    }
+
+    public FakeUploadServer setThrottling(int maxConcurrentRequests, long retryAfterMillis) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.retryAfterMillis = retryAfterMillis;
+        return this;
+    }
+
+    /**
+     * Forget an upload, as the server does when one expires
+     */
+    public void expire(String uploadId) {
+        synchronized (uploads) {
+            uploads.remove(uploadId);
+        }
+    }
+
+    /**
+     * @return Number of chunk requests that reached the server, including repeats
+     */
+    public int getChunksSent() {
+        return chunksSent.get();
+    }
+
+    /**
+     * @return true if every chunk of the upload was stored
+     */
+    public boolean hasAllChunks(String uploadId) {
+        synchronized (uploads) {
+            Upload upload = uploads.get(uploadId);
+            return upload != null && upload.received.cardinality() == upload.chunkCount;
+        }
+    }
+
+    @Override
+    public String startUpload(String name, long size, int chunkSize) throws IOException {
+        beginRequest(0);
+        try {
+            String uploadId = UUID.randomUUID().toString();
+            synchronized (uploads) {
+                uploads.put(uploadId, new Upload(size, chunkSize));
+            }
+            return uploadId;
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void putChunk(String uploadId, int chunkIndex, ByteBuffer data, String sha256) throws IOException {
+        int length = data.remaining();
+        beginRequest(length);
+        try {
+            chunksSent.incrementAndGet();
+            if (!sha256.equals(ChunkedUploader.sha256(data))) {
+                throw new IOException("Checksum mismatch for chunk " + chunkIndex);
+            }
+            synchronized (uploads) {
+                Upload upload = getUpload(uploadId);
+                if (chunkIndex < 0 || chunkIndex >= upload.chunkCount) {
+                    throw new IOException("Chunk index out of range: " + chunkIndex);
+                }
+                upload.received.set(chunkIndex);
+            }
+            if (shouldDrop(lostAckRate)) {
+                throw new IOException("Simulated lost acknowledgement");
+            }
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public List<Integer> getReceivedChunks(String uploadId) throws IOException {
+        beginRequest(0);
+        try {
+            synchronized (uploads) {
+                BitSet received = getUpload(uploadId).received;
+                List<Integer> indexes = new ArrayList<>(received.cardinality());
+                for (int i = received.nextSetBit(0); i >= 0; i = received.nextSetBit(i + 1)) {
+                    indexes.add(i);
+                }
+                return indexes;
+            }
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void finishUpload(String uploadId) throws IOException {
+        beginRequest(0);
+        try {
+            synchronized (uploads) {
+                Upload upload = getUpload(uploadId);
+                int missing = upload.chunkCount - upload.received.cardinality();
+                if (missing > 0) {
+                    throw new IOException(missing + " chunks missing from upload " + uploadId);
+                }
+            }
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    // Callers must decrement inFlight once this returns
+    private void beginRequest(long bytes) throws IOException {
+        if (inFlight.incrementAndGet() > maxConcurrentRequests) {
+            inFlight.decrementAndGet();
+            throw new ThrottledException(retryAfterMillis);
+        }
+        try {
+            long transferMillis = limitBandwidth ? bytes * 1000 / BYTES_PER_SECOND : 0;
+            if (shouldDrop(dropRate)) {
+                // Fail partway through the transfer
+                sleep(latencyMillis + transferMillis / 2);
+                throw new IOException("Simulated connection drop");
+            }
+            sleep(latencyMillis + transferMillis);
+        } catch (IOException e) {
+            inFlight.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private Upload getUpload(String uploadId) throws UploadNotFoundException {
+        Upload upload = uploads.get(uploadId);
+        if (upload == null) {
+            throw new UploadNotFoundException(uploadId);
+        }
+        return upload;
+    }
+
+    private boolean shouldDrop(float rate) {
+        synchronized (random) {
+            return random.nextFloat() < rate;
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during simulated transfer");
+        }
+    }
+}
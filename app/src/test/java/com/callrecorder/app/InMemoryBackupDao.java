@@ -0,0 +1,51 @@
+package com.callrecorder.app.database;
+
+import com.callrecorder.app.models.BackupFileEntry;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * BackupDao over a plain map, for JVM tests of the backup path
+ */
+public class InMemoryBackupDao implements BackupDao {
+    private final Map<String, BackupFileEntry> entries = new TreeMap<>();
+
+    @Override
+    public synchronized BackupFileEntry getEntry(String filePath) {
+        return entries.get(filePath);
+    }
+
+    @Override
+    public synchronized void putEntries(List<BackupFileEntry> changed) {
+        for (BackupFileEntry entry : changed) {
+            entries.put(entry.getFilePath(), entry);
+        }
+    }
+
+    @Override
+    public synchronized void markSeen(List<String> filePaths, long snapshot) {
+        for (String filePath : filePaths) {
+            BackupFileEntry entry = entries.get(filePath);
+            if (entry != null) {
+                entry.setLastSnapshot(snapshot);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void deleteNotSeenSince(long snapshot) {
+        Iterator<BackupFileEntry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getLastSnapshot() < snapshot) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,102 @@
+package com.callrecorder.app.database;
+
+import com.callrecorder.app.models.RecordingFile;
+import com.callrecorder.app.models.UploadChunk;
+import com.callrecorder.app.models.UploadSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * UploadDao over plain maps, for JVM tests of the upload path. Chunk rows are
+ * replaced on update since UploadChunk is immutable, as Room does.
+ */
+public class InMemoryUploadDao extends UploadDao {
+    private final Map<Long, UploadSession> sessions = new TreeMap<>();
+    private final Map<Long, TreeMap<Integer, UploadChunk>> chunks = new TreeMap<>();
+    private long nextSessionId = 1;
+
+    @Override
+    public synchronized List<RecordingFile> getRecordingsToUploadAfter(long afterId, int limit) {
+        throw new UnsupportedOperationException("Recordings are not tracked here");
+    }
+
+    @Override
+    public synchronized UploadSession getSessionForRecording(long recordingId) {
+        for (UploadSession session : sessions.values()) {
+            if (session.getRecordingId() == recordingId) {
+                return session;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    synchronized long insertSession(UploadSession session) {
+        long id = nextSessionId++;
+        sessions.put(id, session);
+        chunks.put(id, new TreeMap<>());
+        return id;
+    }
+
+    @Override
+    synchronized void insertChunks(List<UploadChunk> newChunks) {
+        for (UploadChunk chunk : newChunks) {
+            chunks.get(chunk.getSessionId()).put(chunk.getChunkIndex(), chunk);
+        }
+    }
+
+    @Override
+    public synchronized void deleteSession(UploadSession session) {
+        sessions.remove(session.getId());
+        chunks.remove(session.getId());
+    }
+
+    @Override
+    public synchronized List<UploadChunk> getPendingChunks(long sessionId) {
+        List<UploadChunk> pending = new ArrayList<>();
+        for (UploadChunk chunk : chunks.get(sessionId).values()) {
+            if (!chunk.isDone()) {
+                pending.add(chunk);
+            }
+        }
+        return pending;
+    }
+
+    @Override
+    public synchronized void markChunkDone(long sessionId, int chunkIndex) {
+        TreeMap<Integer, UploadChunk> sessionChunks = chunks.get(sessionId);
+        UploadChunk chunk = sessionChunks.get(chunkIndex);
+        if (chunk != null) {
+            sessionChunks.put(chunkIndex, new UploadChunk(sessionId, chunkIndex,
+                    chunk.getChunkOffset(), chunk.getLength(), true));
+        }
+    }
+
+    @Override
+    public synchronized void markChunksDone(long sessionId, List<Integer> chunkIndexes) {
+        for (Integer chunkIndex : chunkIndexes) {
+            markChunkDone(sessionId, chunkIndex);
+        }
+    }
+
+    @Override
+    public synchronized void markCompleted(long sessionId) {
+        UploadSession session = sessions.get(sessionId);
+        sessions.put(sessionId, new UploadSession(sessionId, session.getRecordingId(),
+                session.getFilePath(), session.getFileSize(), session.getLastModified(),
+                session.getChunkSize(), session.getUploadId(), true));
+    }
+
+    public synchronized int getDoneChunkCount(long sessionId) {
+        int done = 0;
+        for (UploadChunk chunk : chunks.get(sessionId).values()) {
+            if (chunk.isDone()) {
+                done++;
+            }
+        }
+        return done;
+    }
+}
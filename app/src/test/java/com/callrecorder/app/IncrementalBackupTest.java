@@ -0,0 +1,231 @@
+package com.callrecorder.app.backup;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.callrecorder.app.database.InMemoryBackupDao;
+import com.callrecorder.app.database.RecordingDao;
+import com.callrecorder.app.models.RecordingFile;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Backs an archive up into a LocalBackupTarget, changes it, backs it up again and
+ * restores each snapshot from the target's chunks
+ */
+public class IncrementalBackupTest {
+    private static final int FILE_SIZE = 6 * 1024 * 1024;
+    private static final int FILE_COUNT = 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<RecordingFile> recordings = new ArrayList<>();
+    private InMemoryBackupDao backupDao;
+    private File targetRoot;
+
+    @Before
+    public void setUp() throws IOException {
+        backupDao = new InMemoryBackupDao();
+        targetRoot = folder.newFolder("target");
+        File recordingsDirectory = folder.newFolder("recordings");
+        for (int i = 1; i <= FILE_COUNT; i++) {
+            File file = new File(recordingsDirectory, "call_" + i + ".m4a");
+            Files.write(file.toPath(), randomBytes(FILE_SIZE, i));
+            recordings.add(new RecordingFile(i, file.getPath()));
+        }
+    }
+
+    @Test
+    public void unchangedArchiveIsNotReadAgain() throws Exception {
+        IncrementalBackup.Result first = backUp(targetRoot);
+        assertEquals(FILE_COUNT, first.filesHashed);
+        assertEquals(FILE_COUNT * FILE_SIZE, first.bytesCopied);
+
+        IncrementalBackup.Result second = backUp(targetRoot);
+        assertEquals(FILE_COUNT, second.filesTotal);
+        assertEquals(0, second.filesHashed);
+        assertEquals(0, second.chunksCopied);
+        assertEquals(first.chunksCopied, countChunks(targetRoot));
+    }
+
+    @Test
+    public void changedFilesCopyOnlyChangedChunksAndEverySnapshotRestores() throws Exception {
+        IncrementalBackup.Result first = backUp(targetRoot);
+        Map<String, byte[]> original = readArchive();
+
+        // An overwrite in place, and an insertion that shifts everything after it
+        byte[] overwritten = original.get(path(1)).clone();
+        System.arraycopy(randomBytes(4096, 100), 0, overwritten, FILE_SIZE / 2, 4096);
+        writeRecording(1, overwritten);
+        byte[] inserted = concat(Arrays.copyOfRange(original.get(path(2)), 0, FILE_SIZE / 3),
+                randomBytes(1000, 200),
+                Arrays.copyOfRange(original.get(path(2)), FILE_SIZE / 3, FILE_SIZE));
+        writeRecording(2, inserted);
+
+        IncrementalBackup.Result second = backUp(targetRoot);
+        assertEquals(2, second.filesHashed);
+        assertTrue("Copied " + second.bytesCopied + " bytes", second.bytesCopied < 2L * FILE_SIZE);
+        assertEquals(first.chunksCopied + second.chunksCopied, countChunks(targetRoot));
+
+        List<Map<String, List<String>>> manifests = readManifests(targetRoot);
+        assertEquals(2, manifests.size());
+        assertEquals(manifests.get(0).get(path(3)), manifests.get(1).get(path(3)));
+        // Each edit changes the chunk it falls in and at most its neighbour; the rest are reused
+        for (long id = 1; id <= 2; id++) {
+            List<String> before = manifests.get(0).get(path(id));
+            List<String> reused = new ArrayList<>(manifests.get(1).get(path(id)));
+            reused.retainAll(before);
+            assertTrue("Reused " + reused.size() + " of " + before.size() + " chunks",
+                    reused.size() >= before.size() - 2);
+        }
+
+        assertArchiveEquals(original, restore(targetRoot, manifests.get(0)));
+        assertArchiveEquals(readArchive(), restore(targetRoot, manifests.get(1)));
+    }
+
+    @Test
+    public void newTargetGetsEveryChunkAgain() throws Exception {
+        IncrementalBackup.Result first = backUp(targetRoot);
+
+        // The hash index still matches every file, but the new target holds nothing
+        File otherRoot = folder.newFolder("other");
+        IncrementalBackup.Result second = backUp(otherRoot);
+
+        assertEquals(FILE_COUNT, second.filesHashed);
+        assertEquals(first.chunksCopied, second.chunksCopied);
+        assertArchiveEquals(readArchive(), restore(otherRoot, readManifests(otherRoot).get(0)));
+    }
+
+    private IncrementalBackup.Result backUp(File root) throws Exception {
+        // Snapshots are named by the millisecond they start
+        Thread.sleep(2);
+        return new IncrementalBackup(recordingDao(), backupDao, new LocalBackupTarget(root),
+                new File(folder.getRoot(), "work")).run();
+    }
+
+    // Only the paged file listing is used by IncrementalBackup
+    private RecordingDao recordingDao() {
+        return (RecordingDao) Proxy.newProxyInstance(RecordingDao.class.getClassLoader(),
+                new Class<?>[]{RecordingDao.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("getRecordingFilesAfter")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    long afterId = (Long) args[0];
+                    int limit = (Integer) args[1];
+                    List<RecordingFile> page = new ArrayList<>();
+                    for (RecordingFile recording : recordings) {
+                        if (recording.getId() > afterId && page.size() < limit) {
+                            page.add(recording);
+                        }
+                    }
+                    return page;
+                });
+    }
+
+    // The chunk list of every file in every snapshot in the target, oldest snapshot first
+    private static List<Map<String, List<String>>> readManifests(File root) throws IOException, JSONException {
+        File[] manifests = new File(root, "snapshots").listFiles();
+        Arrays.sort(manifests);
+        List<Map<String, List<String>>> snapshots = new ArrayList<>();
+        for (File manifest : manifests) {
+            Map<String, List<String>> files = new HashMap<>();
+            for (String line : Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8)) {
+                JSONObject entry = new JSONObject(line);
+                JSONArray chunks = entry.getJSONArray("chunks");
+                List<String> hashes = new ArrayList<>();
+                for (int i = 0; i < chunks.length(); i++) {
+                    hashes.add(chunks.getString(i));
+                }
+                files.put(entry.getString("path"), hashes);
+            }
+            snapshots.add(files);
+        }
+        return snapshots;
+    }
+
+    private static Map<String, byte[]> restore(File root, Map<String, List<String>> manifest) throws IOException {
+        Map<String, byte[]> files = new HashMap<>();
+        for (Map.Entry<String, List<String>> file : manifest.entrySet()) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            for (String hash : file.getValue()) {
+                content.write(Files.readAllBytes(
+                        new File(new File(new File(root, "chunks"), hash.substring(0, 2)), hash).toPath()));
+            }
+            files.put(file.getKey(), content.toByteArray());
+        }
+        return files;
+    }
+
+    private static int countChunks(File root) {
+        Set<String> hashes = new HashSet<>();
+        File[] prefixes = new File(root, "chunks").listFiles();
+        for (File prefix : prefixes) {
+            hashes.addAll(Arrays.asList(prefix.list()));
+        }
+        return hashes.size();
+    }
+
+    private static void assertArchiveEquals(Map<String, byte[]> expected, Map<String, byte[]> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, byte[]> file : expected.entrySet()) {
+            assertArrayEquals(file.getKey(), file.getValue(), actual.get(file.getKey()));
+        }
+    }
+
+    private Map<String, byte[]> readArchive() throws IOException {
+        Map<String, byte[]> files = new HashMap<>();
+        for (RecordingFile recording : recordings) {
+            files.put(recording.getFilePath(), Files.readAllBytes(new File(recording.getFilePath()).toPath()));
+        }
+        return files;
+    }
+
+    // Moves the modification time on, as a coarse file system clock might not
+    private void writeRecording(long id, byte[] content) throws IOException {
+        File file = new File(path(id));
+        long lastModified = file.lastModified();
+        Files.write(file.toPath(), content);
+        assertTrue(file.setLastModified(lastModified + 2000));
+    }
+
+    private String path(long id) {
+        return recordings.get((int) id - 1).getFilePath();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
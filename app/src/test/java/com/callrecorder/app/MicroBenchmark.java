@@ -0,0 +1,87 @@
+package com.callrecorder.app;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Runs an operation on the test thread after a warmup and records time and bytes
+ * allocated per call, in the shape of a JMH result from :benchmark, so the same tooling
+ * reads both. Each measurement writes a one-entry file to build/results/microbenchmark.
+ * There are no allocation budgets here yet: a budget is only added once it comes from a
+ * measured run, as in benchmark/allocation-budgets.properties. Under Robolectric the
+ * times show trends, not device numbers.
+ */
+public final class MicroBenchmark {
+    private static final String RESULTS_PROPERTY = "microbenchmark.results";
+    private static final String DEFAULT_RESULTS = "build/results/microbenchmark";
+
+    public interface Operation {
+        void run() throws Exception;
+    }
+
+    /**
+     * @param key Result name, Class.method plus [param-value] for parameterized suites
+     * @param iterations Calls to measure, after as many warmup calls
+     */
+    public static void measure(String key, int iterations, Operation operation) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = (threads.getThreadAllocatedBytes(thread) - allocatedBefore) / iterations;
+
+        write(key, result(key, iterations, elapsed / 1000.0 / iterations, allocated));
+    }
+
+    // Field names follow JMH's JSON output
+    private static JSONObject result(String key, int iterations, double micros, long allocated)
+            throws JSONException {
+        JSONObject result = new JSONObject();
+        int bracket = key.indexOf('[');
+        result.put("benchmark", bracket < 0 ? key : key.substring(0, bracket));
+        if (bracket >= 0) {
+            // [name-value], the value may hold dashes of its own
+            String param = key.substring(bracket + 1, key.length() - 1);
+            int dash = param.indexOf('-');
+            result.put("params", new JSONObject().put(param.substring(0, dash), param.substring(dash + 1)));
+        }
+        result.put("mode", "avgt");
+        result.put("measurementIterations", iterations);
+        result.put("primaryMetric", new JSONObject().put("score", micros).put("scoreUnit", "us/op"));
+        result.put("secondaryMetrics", new JSONObject().put("gc.alloc.rate.norm",
+                new JSONObject().put("score", allocated).put("scoreUnit", "B/op")));
+        return result;
+    }
+
+    private static void write(String key, JSONObject result) throws IOException, JSONException {
+        File directory = new File(System.getProperty(RESULTS_PROPERTY, DEFAULT_RESULTS));
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        try (Writer out = new OutputStreamWriter(
+                new FileOutputStream(new File(directory, key + ".json")), StandardCharsets.UTF_8)) {
+            out.write(new JSONArray().put(result).toString(2));
+        }
+    }
+
+    private MicroBenchmark() {
+    }
+}
@@ -0,0 +1,103 @@
+package com.callrecorder.app.database;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.callrecorder.app.MicroBenchmark;
+import com.callrecorder.app.models.RecordingQuery;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * RecordingDao queries against archives of 1k to 100k recordings, on the device's
+ * SQLite build through Robolectric. The list queries go through Room's LiveData and
+ * map every row, as opening the recordings screen does.
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class RecordingDaoBenchmarkTest {
+    private static final int PAGE_SIZE = 200;
+    // Enough rows mapped per suite for a stable per-call figure, without minutes at 100k
+    private static final int LIST_ROWS_PER_SUITE = 300_000;
+    private static final int MAX_LIST_ITERATIONS = 1_000;
+
+    @ParameterizedRobolectricTestRunner.Parameters(name = "rows-{0}")
+    public static List<Object[]> rows() {
+        return Arrays.asList(new Object[][]{{1_000}, {10_000}, {100_000}});
+    }
+
+    @Rule
+    public InstantTaskExecutorRule instantTaskExecutor = new InstantTaskExecutorRule();
+
+    private final int rows;
+    private AppDatabase database;
+    private RecordingDao recordingDao;
+
+    public RecordingDaoBenchmarkTest(int rows) {
+        this.rows = rows;
+    }
+
+    @Before
+    public void setUp() {
+        database = BenchmarkArchive.create(ApplicationProvider.getApplicationContext());
+        BenchmarkArchive.fill(database, rows, false);
+        recordingDao = database.recordingDao();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void listNewestFirst() throws Exception {
+        assertEquals(rows, BenchmarkArchive.first(recordingDao.queryRecordings(
+                RecordingListQuery.build(RecordingQuery.DEFAULT))).size());
+        measure("listNewestFirst", listIterations(rows), () ->
+                BenchmarkArchive.first(recordingDao.queryRecordings(
+                        RecordingListQuery.build(RecordingQuery.DEFAULT))));
+    }
+
+    @Test
+    public void listStarred() throws Exception {
+        RecordingQuery starred = RecordingQuery.DEFAULT.withFilterType(RecordingQuery.FILTER_STARRED);
+        assertEquals(rows / 20, BenchmarkArchive.first(recordingDao.queryRecordings(
+                RecordingListQuery.build(starred))).size());
+        measure("listStarred", listIterations(rows / 20), () ->
+                BenchmarkArchive.first(recordingDao.queryRecordings(RecordingListQuery.build(starred))));
+    }
+
+    @Test
+    public void filesPage() throws Exception {
+        long afterId = rows / 2;
+        assertEquals(PAGE_SIZE, recordingDao.getRecordingFilesAfter(afterId, PAGE_SIZE).size());
+        measure("filesPage", 500, () -> recordingDao.getRecordingFilesAfter(afterId, PAGE_SIZE));
+    }
+
+    @Test
+    public void recordingById() throws Exception {
+        long id = rows / 2;
+        assertEquals(id, recordingDao.getRecordingById(id).getId());
+        measure("recordingById", 2_000, () -> recordingDao.getRecordingById(id));
+    }
+
+    private void measure(String method, int iterations, MicroBenchmark.Operation operation) throws Exception {
+        MicroBenchmark.measure("RecordingDaoBenchmarkTest." + method + "[rows-" + rows + "]",
+                iterations, operation);
+    }
+
+    private static int listIterations(int rowsPerCall) {
+        return Math.max(3, Math.min(MAX_LIST_ITERATIONS, LIST_ROWS_PER_SUITE / rowsPerCall));
+    }
+}
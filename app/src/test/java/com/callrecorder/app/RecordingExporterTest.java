@@ -0,0 +1,179 @@
+package com.callrecorder.app.backup;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.callrecorder.app.database.RecordingDao;
+import com.callrecorder.app.models.RecordingDetails;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Exports into a tar archive, stops part way and resumes, then reads the archive back
+ * entry by entry
+ */
+public class RecordingExporterTest {
+    private static final int RECORDING_COUNT = 6;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Map<Long, RecordingDetails> recordings = new HashMap<>();
+    private final Map<Long, byte[]> contents = new HashMap<>();
+    private File target;
+
+    @Before
+    public void setUp() throws IOException {
+        File directory = folder.newFolder("recordings");
+        Random random = new Random(7);
+        for (long id = 1; id <= RECORDING_COUNT; id++) {
+            // Sizes that are not block multiples, so entries carry padding
+            byte[] content = new byte[10_000 + random.nextInt(50_000)];
+            random.nextBytes(content);
+            File file = new File(directory, "call_" + id + ".m4a");
+            Files.write(file.toPath(), content);
+            contents.put(id, content);
+            recordings.put(id, new RecordingDetails(id, null, 1, file.getPath(), 60_000,
+                    1_600_000_000_000L + id, false, null, content.length, "aac_mp4",
+                    "+96650000000" + id, null));
+        }
+        target = new File(folder.getRoot(), "export.tar");
+    }
+
+    @Test
+    public void cancelledExportResumesFromCheckpoint() throws IOException, JSONException {
+        List<Long> ids = Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L);
+        assertFalse(exportCancellingAfter(ids, 3));
+        assertTrue(new RecordingExporter(recordingDao()).export(ids, target, null));
+
+        assertArchiveHolds(ids);
+        assertFalse(new File(target.getPath() + ".progress").exists());
+    }
+
+    @Test
+    public void bytesWrittenAfterCheckpointAreDropped() throws IOException, JSONException {
+        List<Long> ids = Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L);
+        assertFalse(exportCancellingAfter(ids, 2));
+
+        // As if the process died part way through the next entry
+        append(target, 3000);
+        append(new File(target.getPath() + ".manifest"), 40);
+
+        assertTrue(new RecordingExporter(recordingDao()).export(ids, target, null));
+        assertArchiveHolds(ids);
+    }
+
+    @Test
+    public void differentSelectionOfSameSizeStartsOver() throws IOException, JSONException {
+        assertFalse(exportCancellingAfter(Arrays.asList(1L, 2L, 3L), 2));
+
+        List<Long> other = Arrays.asList(4L, 5L, 6L);
+        assertTrue(new RecordingExporter(recordingDao()).export(other, target, null));
+        assertArchiveHolds(other);
+    }
+
+    @Test
+    public void sameRecordingsInAnotherOrderStartOver() throws IOException, JSONException {
+        assertFalse(exportCancellingAfter(Arrays.asList(1L, 2L, 3L, 4L), 2));
+
+        List<Long> reordered = Arrays.asList(2L, 1L, 4L, 3L);
+        assertTrue(new RecordingExporter(recordingDao()).export(reordered, target, null));
+        assertArchiveHolds(reordered);
+    }
+
+    private boolean exportCancellingAfter(List<Long> ids, int entries) throws IOException {
+        RecordingExporter exporter = new RecordingExporter(recordingDao());
+        return exporter.export(ids, target, (completed, total, bytesWritten, totalBytes) -> {
+            if (completed == entries) {
+                exporter.cancel();
+            }
+        });
+    }
+
+    // Every recording once, in order, followed by a manifest line for each
+    private void assertArchiveHolds(List<Long> ids) throws IOException, JSONException {
+        Map<String, byte[]> entries = readTar(target);
+        List<String> expectedNames = new ArrayList<>();
+        for (long id : ids) {
+            expectedNames.add(RecordingExporter.entryName(id, "call_" + id + ".m4a"));
+        }
+        expectedNames.add(RecordingExporter.MANIFEST_NAME);
+        assertEquals(expectedNames, new ArrayList<>(entries.keySet()));
+
+        for (long id : ids) {
+            assertArrayEquals(contents.get(id), entries.get(RecordingExporter.entryName(id, "call_" + id + ".m4a")));
+        }
+        String[] lines = new String(entries.get(RecordingExporter.MANIFEST_NAME), StandardCharsets.UTF_8).split("\n");
+        assertEquals(ids.size(), lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            JSONObject line = new JSONObject(lines[i]);
+            assertEquals((long) ids.get(i), line.getLong("id"));
+            assertEquals(expectedNames.get(i), line.getString("entry"));
+        }
+    }
+
+    // Entry names to contents, in archive order
+    private static Map<String, byte[]> readTar(File file) throws IOException {
+        byte[] archive = Files.readAllBytes(file.toPath());
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        int offset = 0;
+        while (offset + TarArchiveWriter.BLOCK_SIZE <= archive.length && archive[offset] != 0) {
+            int nameEnd = offset;
+            while (nameEnd < offset + 100 && archive[nameEnd] != 0) {
+                nameEnd++;
+            }
+            String name = new String(archive, offset, nameEnd - offset, StandardCharsets.US_ASCII);
+            int size = Integer.parseInt(new String(archive, offset + 124, 11, StandardCharsets.US_ASCII), 8);
+            offset += TarArchiveWriter.BLOCK_SIZE;
+            entries.put(name, Arrays.copyOfRange(archive, offset, offset + size));
+            offset += (size + TarArchiveWriter.BLOCK_SIZE - 1) / TarArchiveWriter.BLOCK_SIZE * TarArchiveWriter.BLOCK_SIZE;
+        }
+        // Two zero blocks end the archive
+        assertEquals(archive.length, offset + 2 * TarArchiveWriter.BLOCK_SIZE);
+        return entries;
+    }
+
+    private static void append(File file, int length) throws IOException {
+        byte[] junk = new byte[length];
+        Arrays.fill(junk, (byte) 0x5a);
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(junk);
+        }
+    }
+
+    // Only the lookups RecordingExporter makes
+    private RecordingDao recordingDao() {
+        return (RecordingDao) Proxy.newProxyInstance(RecordingDao.class.getClassLoader(),
+                new Class<?>[]{RecordingDao.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getFilePath":
+                            return recordings.get((Long) args[0]).getFilePath();
+                        case "getRecordingById":
+                            return recordings.get((Long) args[0]);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
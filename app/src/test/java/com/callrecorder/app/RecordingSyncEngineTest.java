@@ -0,0 +1,259 @@
+package com.callrecorder.app.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.callrecorder.app.database.AppDatabase;
+import com.callrecorder.app.models.Recording;
+import com.callrecorder.app.models.RecordingDetails;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Two devices, each with its own in-memory database, syncing through one in-process
+ * FakeRecordingsServer, with and without injected failures
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RecordingSyncEngineTest {
+    // More than one push batch and one pull page
+    private static final int RECORDINGS = 250;
+    private static final long FIRST_DATE = 1_600_000_000_000L;
+    // Each sync gives up after a few failed attempts, leaving its changes for the next one
+    private static final int MAX_SYNC_RUNS = 20;
+
+    private AppDatabase deviceA;
+    private AppDatabase deviceB;
+
+    @Before
+    public void setUp() {
+        deviceA = newDatabase();
+        deviceB = newDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        deviceA.close();
+        deviceB.close();
+    }
+
+    @Test
+    public void syncMovesOnlyChangedRecords() throws IOException {
+        FakeRecordingsServer server = newServer(0f, 1);
+        List<Long> ids = insertRecordings(deviceA, RECORDINGS);
+
+        newEngine(deviceA, server).sync();
+        assertEquals(RECORDINGS, server.size());
+        assertEquals(RECORDINGS, server.getRecordsReceived());
+        assertEquals(0, countDirty(deviceA));
+
+        newEngine(deviceB, server).sync();
+        assertEquals(RECORDINGS, countRecordings(deviceB));
+        assertEquals(0, countDirty(deviceB));
+
+        // Nothing changed, so nothing moves either way
+        int received = server.getRecordsReceived();
+        int sent = server.getRecordsSent();
+        newEngine(deviceA, server).sync();
+        newEngine(deviceB, server).sync();
+        assertEquals(received, server.getRecordsReceived());
+        assertEquals(sent, server.getRecordsSent());
+
+        // One star goes up once and comes down once to each device
+        deviceA.recordingDao().setStarred(ids.get(100), true, 5_000);
+        newEngine(deviceA, server).sync();
+        newEngine(deviceB, server).sync();
+        assertEquals(received + 1, server.getRecordsReceived());
+        assertEquals(sent + 2, server.getRecordsSent());
+        assertTrue(find(deviceB, syncId(deviceA, ids.get(100))).isStarred());
+    }
+
+    @Test
+    public void starAndNotesEachKeepTheLaterWrite() throws IOException {
+        FakeRecordingsServer server = newServer(0f, 2);
+        long idA = insertRecordings(deviceA, 1).get(0);
+        newEngine(deviceA, server).sync();
+        newEngine(deviceB, server).sync();
+        String syncId = syncId(deviceA, idA);
+        long idB = find(deviceB, syncId).getId();
+
+        // B's star is later, A's notes are later
+        deviceA.recordingDao().setStarred(idA, true, 1_000);
+        deviceA.recordingDao().setNotes(idA, "notes from A", 3_000);
+        deviceB.recordingDao().setStarred(idB, false, 2_000);
+        deviceB.recordingDao().setNotes(idB, "notes from B", 2_500);
+
+        newEngine(deviceA, server).sync();
+        newEngine(deviceB, server).sync();
+        newEngine(deviceA, server).sync();
+
+        for (AppDatabase device : new AppDatabase[]{deviceA, deviceB}) {
+            RecordingDetails recording = find(device, syncId);
+            assertFalse(recording.isStarred());
+            assertEquals(2_000, recording.getStarredAt());
+            assertEquals("notes from A", recording.getNotes());
+            assertEquals(3_000, recording.getNotesUpdatedAt());
+            assertFalse(recording.isDirty());
+        }
+        assertFalse(server.get(syncId).isStarred());
+        assertEquals("notes from A", server.get(syncId).getNotes());
+    }
+
+    @Test
+    public void devicesConvergeDespiteFailuresAndLostResponses() {
+        FakeRecordingsServer server = newServer(0.4f, 3);
+        List<Long> idsA = insertRecordings(deviceA, RECORDINGS);
+        syncUntilDone(deviceA, server);
+        syncUntilDone(deviceB, server);
+
+        Random random = new Random(4);
+        for (int i = 0; i < 40; i++) {
+            String syncId = syncId(deviceA, idsA.get(random.nextInt(RECORDINGS)));
+            AppDatabase device = i % 2 == 0 ? deviceA : deviceB;
+            long id = find(device, syncId).getId();
+            if (random.nextBoolean()) {
+                device.recordingDao().setStarred(id, random.nextBoolean(), 10_000 + i);
+            } else {
+                device.recordingDao().setNotes(id, "edit " + i, 10_000 + i);
+            }
+        }
+        syncUntilDone(deviceA, server);
+        syncUntilDone(deviceB, server);
+        syncUntilDone(deviceA, server);
+
+        // Lost push responses were retried without duplicating anything
+        assertEquals(RECORDINGS, server.size());
+        assertEquals(RECORDINGS, countRecordings(deviceB));
+        for (long id : idsA) {
+            String syncId = syncId(deviceA, id);
+            RemoteRecording stored = server.get(syncId);
+            for (AppDatabase device : new AppDatabase[]{deviceA, deviceB}) {
+                RecordingDetails recording = find(device, syncId);
+                assertEquals(stored.isStarred(), recording.isStarred());
+                assertEquals(stored.getStarredAt(), recording.getStarredAt());
+                assertEquals(stored.getNotes(), recording.getNotes());
+                assertEquals(stored.getNotesUpdatedAt(), recording.getNotesUpdatedAt());
+                assertFalse(recording.isDirty());
+            }
+        }
+    }
+
+    @Test
+    public void editDuringPushStaysDirtyForTheNextSync() throws IOException {
+        FakeRecordingsServer server = newServer(0f, 5);
+        long id = insertRecordings(deviceA, 1).get(0);
+        String syncId = syncId(deviceA, id);
+
+        // The user edits the notes after the row was read for the push
+        boolean[] edited = {false};
+        RecordingsRemoteDataSource editingServer = new RecordingsRemoteDataSource() {
+            @Override
+            public Changes getChanges(long sinceVersion, int limit) throws IOException {
+                return server.getChanges(sinceVersion, limit);
+            }
+
+            @Override
+            public List<RemoteRecording> push(List<RemoteRecording> records) throws IOException {
+                if (!edited[0]) {
+                    edited[0] = true;
+                    deviceA.recordingDao().setNotes(id, "edited during push", 9_000);
+                }
+                return server.push(records);
+            }
+        };
+
+        newEngine(deviceA, editingServer).sync();
+        assertNull(server.get(syncId).getNotes());
+        RecordingDetails local = find(deviceA, syncId);
+        assertEquals("edited during push", local.getNotes());
+        assertTrue(local.isDirty());
+
+        newEngine(deviceA, server).sync();
+        assertEquals("edited during push", server.get(syncId).getNotes());
+        assertFalse(find(deviceA, syncId).isDirty());
+    }
+
+    private static AppDatabase newDatabase() {
+        Context context = ApplicationProvider.getApplicationContext();
+        return Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+    }
+
+    private static FakeRecordingsServer newServer(float failureRate, long seed) {
+        return new FakeRecordingsServer(0, failureRate, new Random(seed));
+    }
+
+    private static RecordingSyncEngine newEngine(AppDatabase database, RecordingsRemoteDataSource remote) {
+        return new RecordingSyncEngine(database, remote, 1);
+    }
+
+    private static void syncUntilDone(AppDatabase database, FakeRecordingsServer server) {
+        RecordingSyncEngine engine = newEngine(database, server);
+        for (int run = 1; ; run++) {
+            try {
+                engine.sync();
+                return;
+            } catch (IOException e) {
+                if (run == MAX_SYNC_RUNS) {
+                    throw new AssertionError("Sync still failing after " + run + " runs", e);
+                }
+            }
+        }
+    }
+
+    private static List<Long> insertRecordings(AppDatabase database, int count) {
+        List<Long> ids = new ArrayList<>(count);
+        database.runInTransaction(() -> {
+            for (int i = 0; i < count; i++) {
+                Long contactId = database.contactDao().getOrCreateContactId("+96650000" + (1000 + i % 20), null);
+                ids.add(database.recordingDao().insert(new Recording(0, contactId, 1 + i % 2,
+                        "/recordings/call_" + i + ".m4a", 60_000, FIRST_DATE + i * 60_000L,
+                        false, null, 1024, Recording.CODEC_AAC_MP4)));
+            }
+        });
+        return ids;
+    }
+
+    private static String syncId(AppDatabase database, long id) {
+        return database.recordingDao().getRecordingById(id).getSyncId();
+    }
+
+    private static RecordingDetails find(AppDatabase database, String syncId) {
+        Long id = database.syncDao().getIdBySyncId(syncId);
+        assertNotNull("No recording with sync id " + syncId, id);
+        return database.recordingDao().getRecordingById(id);
+    }
+
+    private static int countRecordings(AppDatabase database) {
+        return count(database, "SELECT COUNT(*) FROM recordings");
+    }
+
+    private static int countDirty(AppDatabase database) {
+        return count(database, "SELECT COUNT(*) FROM recordings WHERE dirty = 1");
+    }
+
+    private static int count(AppDatabase database, String sql) {
+        try (Cursor cursor = database.query(sql, null)) {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.callrecorder.app.adapters;
+
+import android.content.Context;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.callrecorder.app.MicroBenchmark;
+import com.callrecorder.app.models.RecordingListItem;
+import com.callrecorder.app.utils.AvatarLoader;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binding recordings list rows into one view holder, as scrolling does once rows are
+ * recycled. The holder comes from RecordingsAdapter, which inflates R.layout.item_recording;
+ * that layout is not part of this source tree, so the suite runs only in a checkout that
+ * has the app's res/ directory.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RecordingsAdapterBenchmarkTest {
+    private static final int ITEMS = 1_000;
+
+    @Test
+    public void bind() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        RecordingsAdapter adapter = new RecordingsAdapter(null, AvatarLoader.getInstance(context));
+        // The first list is applied at once, without a diff
+        adapter.submitList(items(ITEMS));
+        RecyclerView parent = new RecyclerView(context);
+        parent.setLayoutManager(new LinearLayoutManager(context));
+        RecordingsAdapter.RecordingViewHolder holder = adapter.onCreateViewHolder(parent, 0);
+
+        int[] position = {0};
+        MicroBenchmark.measure("RecordingsAdapterBenchmarkTest.bind", ITEMS, () -> {
+            adapter.onBindViewHolder(holder, position[0]);
+            position[0] = (position[0] + 1) % ITEMS;
+        });
+    }
+
+    // Named contacts, bare numbers and unknown callers, as a real list mixes them
+    static List<RecordingListItem> items(int count) {
+        List<RecordingListItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String number = i % 10 == 0 ? null : "+9665" + (10_000_000 + i * 7919 % 90_000_000);
+            String name = i % 3 == 0 ? "Contact " + i : null;
+            items.add(new RecordingListItem(i + 1, number, name, 1 + i % 2,
+                    5_000 + i * 37_000L % 600_000, 1_600_000_000_000L - i * 3_600_000L, i % 20 == 0));
+        }
+        return items;
+    }
+}
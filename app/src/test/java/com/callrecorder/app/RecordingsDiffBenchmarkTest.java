@@ -0,0 +1,125 @@
+package com.callrecorder.app.adapters;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import com.callrecorder.app.MicroBenchmark;
+import com.callrecorder.app.models.RecordingListItem;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The diff RecordingsAdapter runs when a new list arrives, over lists of 1k to 100k
+ * recordings, with the adapter's own item callback. DiffUtil is plain Java, so this
+ * runs without Robolectric.
+ */
+@RunWith(Parameterized.class)
+public class RecordingsDiffBenchmarkTest {
+    // Enough items diffed per suite for a stable per-call figure
+    private static final int ITEMS_PER_SUITE = 2_000_000;
+
+    @Parameterized.Parameters(name = "items-{0}")
+    public static List<Object[]> items() {
+        return Arrays.asList(new Object[][]{{1_000}, {10_000}, {100_000}});
+    }
+
+    private final int items;
+
+    public RecordingsDiffBenchmarkTest(int items) {
+        this.items = items;
+    }
+
+    // A call just ended: its recording appears at the top
+    @Test
+    public void newRecording() throws Exception {
+        List<RecordingListItem> before = RecordingsAdapterBenchmarkTest.items(items);
+        List<RecordingListItem> after = new ArrayList<>(before.size() + 1);
+        after.add(new RecordingListItem(items + 1, "+966500000000", null, 1, 60_000,
+                1_600_000_000_000L + 3_600_000L, false));
+        after.addAll(before);
+        check("newRecording", before, after, 1);
+    }
+
+    // One row starred and another deleted, each a single change in the middle of the list
+    @Test
+    public void starAndDelete() throws Exception {
+        List<RecordingListItem> before = RecordingsAdapterBenchmarkTest.items(items);
+        List<RecordingListItem> after = new ArrayList<>(before);
+        RecordingListItem starred = after.get(items / 3);
+        after.set(items / 3, new RecordingListItem(starred.getId(), starred.getPhoneNumber(),
+                starred.getContactName(), starred.getCallType(), starred.getDuration(),
+                starred.getDate(), !starred.isStarred()));
+        after.remove(items * 2 / 3);
+        check("starAndDelete", before, after, 2);
+    }
+
+    private void check(String method, List<RecordingListItem> before, List<RecordingListItem> after,
+                       int expectedUpdates) throws Exception {
+        CountingCallback counter = new CountingCallback();
+        diff(before, after).dispatchUpdatesTo(counter);
+        assertEquals(expectedUpdates, counter.updates);
+
+        MicroBenchmark.measure("RecordingsDiffBenchmarkTest." + method + "[items-" + items + "]",
+                Math.max(3, ITEMS_PER_SUITE / items), () -> diff(before, after));
+    }
+
+    // What AsyncListDiffer computes off the main thread
+    private static DiffUtil.DiffResult diff(List<RecordingListItem> before, List<RecordingListItem> after) {
+        return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return before.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return after.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return RecordingsAdapter.DIFF_CALLBACK.areItemsTheSame(
+                        before.get(oldItemPosition), after.get(newItemPosition));
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                return RecordingsAdapter.DIFF_CALLBACK.areContentsTheSame(
+                        before.get(oldItemPosition), after.get(newItemPosition));
+            }
+        });
+    }
+
+    // Counts the adapter notifications a diff produces
+    private static class CountingCallback implements ListUpdateCallback {
+        int updates;
+
+        @Override
+        public void onInserted(int position, int count) {
+            updates++;
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            updates++;
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            updates++;
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            updates++;
+        }
+    }
+}
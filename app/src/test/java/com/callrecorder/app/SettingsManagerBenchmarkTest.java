@@ -0,0 +1,56 @@
+package com.callrecorder.app.utils;
+
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.callrecorder.app.MicroBenchmark;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/**
+ * Settings reads on the hot paths, once the stored values are loaded. Reads only touch
+ * the immutable snapshot, so they should not allocate at all.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SettingsManagerBenchmarkTest {
+    private static final int ITERATIONS = 100_000;
+
+    private SettingsManager settingsManager;
+    // Keeps the reads from being optimised away
+    private int sink;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        settingsManager = new SettingsManager(ApplicationProvider.getApplicationContext());
+        assertTrue(settingsManager.awaitLoaded(5_000));
+    }
+
+    // What CallRecorderService and AutoRecordPolicy read when a call starts
+    @Test
+    public void callStartSnapshot() throws Exception {
+        MicroBenchmark.measure("SettingsManagerBenchmarkTest.callStartSnapshot", ITERATIONS, () -> {
+            SettingsManager.Settings settings = settingsManager.getSettings();
+            sink += settings.getStoragePath().length() + settings.getRecordingQuality()
+                    + (settings.isEncryptRecordingsEnabled() ? 1 : 0)
+                    + (settings.isShowNotificationEnabled() ? 1 : 0)
+                    + (settings.isAutoRecordEnabled() ? 1 : 0)
+                    + (settings.getAutoRecordRules() != null ? 1 : 0);
+        });
+    }
+
+    // The single-value getters screens call, including the lock check on every resume
+    @Test
+    public void getters() throws Exception {
+        MicroBenchmark.measure("SettingsManagerBenchmarkTest.getters", ITERATIONS, () ->
+                sink += (settingsManager.isAutoRecordEnabled() ? 1 : 0)
+                        + settingsManager.getRecordingQuality()
+                        + (settingsManager.isPasswordProtectionEnabled() ? 1 : 0)
+                        + (settingsManager.isUnlocked() ? 1 : 0)
+                        + (settingsManager.isVibrationEnabled() ? 1 : 0)
+                        + (settingsManager.isNotificationSoundEnabled() ? 1 : 0));
+    }
+}
@@ -0,0 +1,71 @@
+package com.callrecorder.app.database;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.callrecorder.app.MicroBenchmark;
+import com.callrecorder.app.models.RecordingQuery;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.SQLiteMode;
+
+/**
+ * Transcript search over 100k transcripts: the recordings list query with search text,
+ * which matches contacts with LIKE and transcripts through transcripts_fts, on the
+ * device's SQLite build through Robolectric. TranscriptSearchBenchmark in :benchmark
+ * covers only building the MATCH expression.
+ */
+@RunWith(RobolectricTestRunner.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class TranscriptFtsBenchmarkTest {
+    private static final int ROWS = 100_000;
+
+    @Rule
+    public InstantTaskExecutorRule instantTaskExecutor = new InstantTaskExecutorRule();
+
+    private AppDatabase database;
+
+    @Before
+    public void setUp() {
+        database = BenchmarkArchive.create(ApplicationProvider.getApplicationContext());
+        BenchmarkArchive.fill(database, ROWS, true);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void searchRareWord() throws Exception {
+        search("searchRareWord", BenchmarkArchive.RARE_WORD, ROWS / 1000, 20);
+    }
+
+    @Test
+    public void searchCommonWord() throws Exception {
+        search("searchCommonWord", BenchmarkArchive.COMMON_WORD, ROWS / 10, 10);
+    }
+
+    // Typed a word at a time, so the last word is a prefix
+    @Test
+    public void searchPrefix() throws Exception {
+        String prefix = BenchmarkArchive.RARE_WORD.substring(0, 4);
+        search("searchPrefix", prefix, ROWS / 1000, 20);
+    }
+
+    private void search(String method, String text, int expectedRows, int iterations) throws Exception {
+        RecordingQuery query = RecordingQuery.DEFAULT.withSearchText(text);
+        RecordingDao recordingDao = database.recordingDao();
+        assertEquals(expectedRows, BenchmarkArchive.first(
+                recordingDao.queryRecordings(RecordingListQuery.build(query))).size());
+        MicroBenchmark.measure("TranscriptFtsBenchmarkTest." + method + "[rows-" + ROWS + "]", iterations, () ->
+                BenchmarkArchive.first(recordingDao.queryRecordings(RecordingListQuery.build(query))));
+    }
+}
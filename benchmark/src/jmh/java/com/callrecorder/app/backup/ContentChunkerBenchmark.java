@@ -0,0 +1,66 @@
+package com.callrecorder.app.backup;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Content-defined chunking of one recording file, the per-file cost of an
+ * incremental backup when the file changed. Random bytes stand in for
+ * compressed audio, which looks much the same to the rolling hash.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ContentChunkerBenchmark {
+    @Param({"1", "16"})
+    public int megabytes;
+
+    private File file;
+    private RandomAccessFile input;
+    private ContentChunker chunker;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        file = File.createTempFile("chunker", ".bin");
+        byte[] block = new byte[1024 * 1024];
+        Random random = new Random(42);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            for (int i = 0; i < megabytes; i++) {
+                random.nextBytes(block);
+                out.write(block);
+            }
+        }
+        input = new RandomAccessFile(file, "r");
+        chunker = new ContentChunker();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        input.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public List<ContentChunker.Chunk> chunk() throws IOException {
+        FileChannel channel = input.getChannel();
+        channel.position(0);
+        return chunker.chunk(channel);
+    }
+}
@@ -0,0 +1,94 @@
+package com.callrecorder.app.backup;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a whole export archive the way RecordingExporter does: one tar entry per
+ * recording copied with transferTo, then a forced write to storage. Each operation
+ * writes the full archive, so throughput is gigabytes / score. At 10GB the archive no
+ * longer fits in the page cache. Needs that much free space in java.io.tmpdir.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class TarArchiveWriterBenchmark {
+    // About an hour of call audio per recording
+    private static final int RECORDING_MEGABYTES = 16;
+
+    @Param({"1", "10"})
+    public int gigabytes;
+
+    private File recording;
+    private File archive;
+    private FileInputStream source;
+    private RandomAccessFile output;
+
+    @Setup(Level.Trial)
+    public void createFiles() throws IOException {
+        recording = File.createTempFile("recording", ".m4a");
+        archive = File.createTempFile("export", ".tar");
+        byte[] block = new byte[1024 * 1024];
+        Random random = new Random(42);
+        try (FileOutputStream out = new FileOutputStream(recording)) {
+            for (int i = 0; i < RECORDING_MEGABYTES; i++) {
+                random.nextBytes(block);
+                out.write(block);
+            }
+        }
+        source = new FileInputStream(recording);
+        output = new RandomAccessFile(archive, "rw");
+    }
+
+    // Each archive starts from an empty file, as a new export does
+    @Setup(Level.Iteration)
+    public void truncateArchive() throws IOException {
+        output.getChannel().truncate(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        source.close();
+        output.close();
+        recording.delete();
+        archive.delete();
+    }
+
+    @Benchmark
+    public long export() throws IOException {
+        FileChannel out = output.getChannel();
+        out.position(0);
+        TarArchiveWriter tar = new TarArchiveWriter(out);
+        FileChannel in = source.getChannel();
+        long size = in.size();
+        int entries = gigabytes * 1024 / RECORDING_MEGABYTES;
+        for (int i = 0; i < entries; i++) {
+            // Entry names as RecordingExporter.entryName makes them
+            tar.writeEntry("recordings/" + i + ".m4a", in, size, recording.lastModified());
+        }
+        tar.finish();
+        out.force(true);
+        return out.position();
+    }
+}
@@ -0,0 +1,151 @@
+package com.callrecorder.app.energy;
+
+import com.callrecorder.app.fingerprint.FingerprintBuilder;
+import com.callrecorder.app.fingerprint.FingerprintMatcher;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Replays a seeded day of calls through EnergyAccountant on the JVM. Call and idle
+ * time are simulated; the per-call work the app does after a call (fingerprinting
+ * the recording) really runs, and its CPU time is what the accountant is charged.
+ * A change that makes that work slower raises the cost per recording minute.
+ *
+ * Usage: EnergySimulation [budget.properties]
+ */
+public class EnergySimulation {
+    private static final int CALLS = 12;
+    private static final int SAMPLE_RATE = 8000;
+    private static final long IDLE_BETWEEN_CALLS_MS = 10 * 60_000;
+
+    // Simulated time for calls and idle gaps, measured thread CPU time for the work
+    private static final class SimulatedClock implements EnergyAccountant.Clock {
+        private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long elapsed;
+
+        @Override
+        public long elapsedMillis() {
+            return elapsed;
+        }
+
+        @Override
+        public long cpuMillis() {
+            return threads.getCurrentThreadCpuTime() / 1_000_000;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return elapsed;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        // First pass warms up the JIT; only the second is reported
+        run(42);
+        List<PowerUsage> usages = run(42);
+
+        EnergyModel model = EnergyModel.DEFAULT;
+        double perMinute = model.perRecordingMinute(usages);
+        double cpuPerMinute = cpuPerRecordingMinute(usages);
+        System.out.println(EnergyReport.summary(usages, model));
+        System.out.println(String.format(Locale.US, "cpu per recording minute: %.1f ms", cpuPerMinute));
+
+        if (args.length > 0) {
+            Properties budgets = new Properties();
+            try (InputStream in = new FileInputStream(args[0])) {
+                budgets.load(in);
+            }
+            boolean withinBudget = check("perRecordingMinute.mAh", perMinute, budgets);
+            // Audio and encoder time dominate the charge, so CPU gets its own budget
+            withinBudget &= check("cpuPerRecordingMinute.ms", cpuPerMinute, budgets);
+            if (!withinBudget) {
+                System.exit(1);
+            }
+        }
+    }
+
+    private static boolean check(String key, double value, Properties budgets) {
+        String budget = budgets.getProperty(key);
+        if (budget == null || value <= Double.parseDouble(budget)) {
+            return true;
+        }
+        System.err.println(String.format(Locale.US, "%s is %.4f, budget is %s", key, value, budget));
+        return false;
+    }
+
+    private static double cpuPerRecordingMinute(List<PowerUsage> usages) {
+        long cpu = 0;
+        long recorded = 0;
+        for (PowerUsage usage : usages) {
+            if (usage.isCall()) {
+                cpu += usage.getCpuMillis();
+                recorded += usage.getAudioMillis();
+            }
+        }
+        return recorded > 0 ? cpu / (recorded / 60_000d) : 0;
+    }
+
+    static List<PowerUsage> run(long seed) {
+        Random random = new Random(seed);
+        int[] durations = new int[CALLS];
+        short[][] audio = new short[CALLS][];
+        // Generated before accounting starts so it is not charged to any call
+        for (int i = 0; i < CALLS; i++) {
+            durations[i] = 30 + random.nextInt(270);
+            audio[i] = speechLike(random, durations[i] * SAMPLE_RATE);
+        }
+
+        SimulatedClock clock = new SimulatedClock();
+        EnergyAccountant accountant = new EnergyAccountant(clock);
+        accountant.startListening();
+        for (int i = 0; i < CALLS; i++) {
+            clock.elapsed += IDLE_BETWEEN_CALLS_MS;
+
+            EnergyAccountant.Session session = accountant.beginCall();
+            accountant.setAudioActive(true);
+            accountant.setEncoderActive(true);
+            clock.elapsed += durations[i] * 1000L;
+            accountant.setAudioActive(false);
+            accountant.setEncoderActive(false);
+
+            // Post-call work under the save wakelock, taking as long as it really does
+            accountant.wakeLockAcquired();
+            long cpuBefore = clock.cpuMillis();
+            FingerprintBuilder builder = new FingerprintBuilder(SAMPLE_RATE, 1);
+            builder.addSamples(audio[i], 0, audio[i].length);
+            FingerprintMatcher.landmarks(builder.finish());
+            clock.elapsed += clock.cpuMillis() - cpuBefore;
+            accountant.endCall(session, i + 1);
+            accountant.wakeLockReleased();
+        }
+        clock.elapsed += IDLE_BETWEEN_CALLS_MS;
+        accountant.stopListening();
+        return accountant.snapshot();
+    }
+
+    // Bursts of harmonic tones with pauses, enough for the fingerprint's speech detection
+    private static short[] speechLike(Random random, int length) {
+        short[] samples = new short[length];
+        int position = 0;
+        while (position < length) {
+            int burst = Math.min(length - position, SAMPLE_RATE / 4 + random.nextInt(SAMPLE_RATE));
+            double pitch = 100 + random.nextInt(150);
+            for (int i = 0; i < burst; i++) {
+                double t = (double) i / SAMPLE_RATE;
+                double value = Math.sin(2 * Math.PI * pitch * t) + 0.5 * Math.sin(4 * Math.PI * pitch * t)
+                        + 0.25 * Math.sin(6 * Math.PI * pitch * t) + 0.1 * random.nextGaussian();
+                samples[position + i] = (short) (value * 6000);
+            }
+            position += burst + Math.min(length - position - burst, random.nextInt(SAMPLE_RATE / 2));
+        }
+        return samples;
+    }
+}
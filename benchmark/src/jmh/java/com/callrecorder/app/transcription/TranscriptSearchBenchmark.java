@@ -0,0 +1,31 @@
+package com.callrecorder.app.transcription;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the FTS query runs on every keystroke in the search box
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TranscriptSearchBenchmark {
+    private final String[] queries = {
+            "موعد",
+            "موعد الطبيب غدا",
+            "invoice \"march\" OR april",
+    };
+    private int next;
+
+    @Benchmark
+    public String toMatchQuery() {
+        next = (next + 1) % queries.length;
+        return TranscriptSearch.toMatchQuery(queries[next]);
+    }
+}
@@ -0,0 +1,146 @@
+package com.callrecorder.app.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Cost of encrypting recordings, each encrypted path next to its plaintext baseline:
+ * encrypt against a plain copy synced to storage (what RecordingEncryptor does after a
+ * call), and EncryptedRecordingFile reads against RandomAccessFile reads (playback
+ * through EncryptedMediaDataSource). checkEncryptionOverhead compares the difference
+ * with the time the audio plays at the highest recording bitrate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EncryptedRecordingBenchmark {
+    // MediaPlayer asks for small reads while playing
+    private static final int PLAYBACK_READ_SIZE = 8 * 1024;
+
+    // About an hour of call audio
+    @Param({"32"})
+    public int megabytes;
+
+    private File plain;
+    private File encrypted;
+    private File output;
+    private SecretKey dataKey;
+    private byte[] wrappedKey;
+    private byte[] copyBuffer;
+    private byte[] readBuffer;
+
+    @Setup(Level.Trial)
+    public void createFiles() throws IOException {
+        plain = File.createTempFile("recording", ".m4a");
+        encrypted = File.createTempFile("recording", EncryptedRecordingFormat.FILE_EXTENSION);
+        output = File.createTempFile("output", ".bin");
+        Random random = new Random(42);
+        byte[] key = new byte[16];
+        random.nextBytes(key);
+        dataKey = new SecretKeySpec(key, "AES");
+        // Stands in for the keystore-wrapped key; only its length matters here
+        wrappedKey = new byte[40];
+        copyBuffer = new byte[EncryptedRecordingFormat.DEFAULT_CHUNK_SIZE];
+        readBuffer = new byte[PLAYBACK_READ_SIZE];
+
+        byte[] block = new byte[1024 * 1024];
+        try (FileOutputStream out = new FileOutputStream(plain)) {
+            for (int i = 0; i < megabytes; i++) {
+                random.nextBytes(block);
+                out.write(block);
+            }
+        }
+        encrypt(plain, encrypted);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() {
+        plain.delete();
+        encrypted.delete();
+        output.delete();
+    }
+
+    @Benchmark
+    public long copyPlain() throws IOException {
+        FileOutputStream file = new FileOutputStream(output);
+        long copied = copy(plain, file);
+        file.getFD().sync();
+        file.close();
+        return copied;
+    }
+
+    @Benchmark
+    public long encrypt() throws IOException {
+        return encrypt(plain, output);
+    }
+
+    @Benchmark
+    public long readPlain() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(plain, "r")) {
+            long position = 0;
+            int read;
+            while ((read = file.read(readBuffer)) > 0) {
+                position += read;
+            }
+            return position;
+        }
+    }
+
+    @Benchmark
+    public long readEncrypted() throws IOException {
+        try (EncryptedRecordingFile file = new EncryptedRecordingFile(encrypted, wrapped -> dataKey)) {
+            long position = 0;
+            int read;
+            while ((read = file.read(position, readBuffer, 0, readBuffer.length)) > 0) {
+                position += read;
+            }
+            return position;
+        }
+    }
+
+    // The same steps as RecordingEncryptor.encrypt, which syncs before deleting the plaintext
+    private long encrypt(File source, File destination) throws IOException {
+        FileOutputStream file = new FileOutputStream(destination);
+        EncryptedRecordingOutputStream out = new EncryptedRecordingOutputStream(file,
+                dataKey, wrappedKey, EncryptedRecordingFormat.DEFAULT_CHUNK_SIZE);
+        long copied = copy(source, out);
+        out.finish();
+        file.getFD().sync();
+        out.close();
+        return copied;
+    }
+
+    // Leaves out open; the callers sync it before closing
+    private long copy(File source, OutputStream out) throws IOException {
+        long total = 0;
+        try (InputStream in = new FileInputStream(source)) {
+            int read;
+            while ((read = in.read(copyBuffer)) != -1) {
+                out.write(copyBuffer, 0, read);
+                total += read;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,57 @@
+package com.callrecorder.app.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The password KDF: calibration when a password is set, and a verification at the
+ * calibrated cost when the app is unlocked. Verification should land close to
+ * PasswordHasher.TARGET_MILLIS; much less means calibration underestimates the cost.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PasswordHasherBenchmark {
+    private static final int WARMUP_CALIBRATIONS = 20;
+
+    // SHA-256 from API 26, SHA-1 before
+    @Param({PasswordHasher.PREFIX_SHA256, PasswordHasher.PREFIX_SHA1})
+    public String prefix;
+
+    private int iterations;
+    private byte[] salt;
+    private byte[] expected;
+
+    @Setup(Level.Trial)
+    public void hashPassword() {
+        // Devices run the KDF as native code; calibrate once HotSpot has compiled it too,
+        // or the cold first pass sets far too few iterations
+        for (int i = 0; i < WARMUP_CALIBRATIONS; i++) {
+            PasswordHasher.calibrate(prefix, PasswordHasher.TARGET_MILLIS);
+        }
+        iterations = PasswordHasher.calibrate(prefix, PasswordHasher.TARGET_MILLIS);
+        salt = new byte[16];
+        new Random(42).nextBytes(salt);
+        expected = PasswordHasher.derive(prefix, "correct horse".toCharArray(), salt, iterations);
+    }
+
+    @Benchmark
+    public int calibrate() {
+        return PasswordHasher.calibrate(prefix, PasswordHasher.TARGET_MILLIS);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return PasswordHasher.matches(prefix, "correct horse".toCharArray(), salt, iterations, expected);
+    }
+}
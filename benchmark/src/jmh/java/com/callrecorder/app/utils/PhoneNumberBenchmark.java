@@ -0,0 +1,43 @@
+package com.callrecorder.app.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phone number helpers run once per list row bind and per recorded call
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PhoneNumberBenchmark {
+    // Local, international, formatted and short numbers, as telephony reports them
+    private final String[] numbers = {
+            "0501234567",
+            "+966501234567",
+            "+1 (555) 123-4567",
+            "050-123-4567",
+            "12345",
+    };
+    private int next;
+
+    private String nextNumber() {
+        next = (next + 1) % numbers.length;
+        return numbers[next];
+    }
+
+    @Benchmark
+    public String formatPhoneNumber() {
+        return ContactUtils.formatPhoneNumber(nextNumber());
+    }
+
+    @Benchmark
+    public String normalizePhoneNumber() {
+        return ContactUtils.normalizePhoneNumber(nextNumber());
+    }
+}
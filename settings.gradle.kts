@@ -30,4 +30,6 @@ dependencyResolutionManagement {
 }
 
 include(":app")
+include(":benchmark")
+include(":macrobenchmark")
 include(":shared-test")